@@ -23,6 +23,7 @@ import org.forome.annotation.config.Config;
 import org.forome.annotation.config.ServiceConfig;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.anfisa.AnfisaConnector;
+import org.forome.annotation.data.anfisa.AnfisaLookupExecutor;
 import org.forome.annotation.data.clinvar.ClinvarConnector;
 import org.forome.annotation.data.clinvar.mysql.ClinvarConnectorMysql;
 import org.forome.annotation.data.gnomad.GnomadConnectorImpl;
@@ -31,6 +32,7 @@ import org.forome.annotation.data.gtex.GTEXConnector;
 import org.forome.annotation.data.gtex.mysql.GTEXConnectorMysql;
 import org.forome.annotation.data.gtf.GTFConnector;
 import org.forome.annotation.data.gtf.GTFConnectorImpl;
+import org.forome.annotation.data.gtf.datasource.memory.GTFDataSourceMemory;
 import org.forome.annotation.data.gtf.datasource.mysql.GTFDataConnector;
 import org.forome.annotation.data.hgmd.HgmdConnector;
 import org.forome.annotation.data.hgmd.mysql.HgmdConnectorMysql;
@@ -48,10 +50,12 @@ import org.forome.annotation.network.component.UserEditableComponent;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.service.ensemblvep.EnsemblVepService;
 import org.forome.annotation.service.ensemblvep.external.EnsemblVepExternalService;
+import org.forome.annotation.service.metrics.MetricsService;
 import org.forome.annotation.service.notification.NotificationService;
 import org.forome.annotation.service.source.SourceService;
 import org.forome.annotation.service.ssh.SSHConnectService;
 import org.forome.annotation.utils.ArgumentParser;
+import org.forome.annotation.utils.Statistics;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,6 +120,7 @@ public class Service {
 	private final EnsemblVepService ensemblVepService;
 	private final AnfisaConnector anfisaConnector;
 
+	private final MetricsService metricsService;
 
 	private final NotificationService notificationService;
 
@@ -142,11 +147,12 @@ public class Service {
 
 //        this.gnomadConnector = new GnomadConnectorOld(databaseConnectService, serviceConfig.gnomadConfigConnector, uncaughtExceptionHandler);
 
-		this.liftoverConnector = new LiftoverConnector();
+		this.liftoverConnector = sourceService.liftoverConnector;
 //		this.fastaSource = new FastaSourcePython(databaseConnectService, serviceConfig.aStorageConfigConnector);
 
 		this.gnomadConnector = new GnomadConnectorImpl(
 				new GnomadDataSourceHttp(liftoverConnector, sourceService.dataSource),
+				serviceConfig.gnomadExecutorConfig,
 				uncaughtExceptionHandler
 		);
 //		this.gnomadConnector = new GnomadConnectorImpl(databaseConnectService, serviceConfig.gnomadConfigConnector, uncaughtExceptionHandler);
@@ -166,11 +172,13 @@ public class Service {
 //				new GTFDataSourceHttp(databaseConnectService, liftoverConnector, serviceConfig.aStorageConfigConnector),
 //				uncaughtExceptionHandler
 //		);
+		DatabaseConnector gtfDatabaseConnector = new DatabaseConnector(databaseConnectService, serviceConfig.gtfConfigConnector);
 		this.gtfConnector = new GTFConnectorImpl(
-				new GTFDataConnector(
-						new DatabaseConnector(databaseConnectService, serviceConfig.gtfConfigConnector)
-				),
+				(serviceConfig.gtfConfigConnector.memory) ?
+						new GTFDataSourceMemory(gtfDatabaseConnector, serviceConfig.gtfConfigConnector.snapshot) :
+						new GTFDataConnector(gtfDatabaseConnector),
 				liftoverConnector,
+				serviceConfig.gtfExecutorConfig,
 				uncaughtExceptionHandler
 		);
 
@@ -200,11 +208,20 @@ public class Service {
 				liftoverConnector,
 				gtfConnector,
 				gtexConnector,
-				pharmGKBConnector
+				pharmGKBConnector,
+				new AnfisaLookupExecutor(
+						serviceConfig.annotatorConfig.lookupThreads,
+						serviceConfig.annotatorConfig.lookupMaxPerSource,
+						uncaughtExceptionHandler
+				)
 //				,
 //				sourceHttp38
 		);
 
+		Statistics.setEnabled(serviceConfig.annotatorConfig.statistics);
+		this.metricsService = new MetricsService()
+				.register(sourceService, databaseConnectService, anfisaConnector);
+
 		queryPool.execute(this.databaseService.getDomainObjectSource(), new Query<Void>() {
 
 			private ReadableResource<UserReadable> userReadableResource;
@@ -278,11 +295,16 @@ public class Service {
 		return anfisaConnector;
 	}
 
+	public MetricsService getMetricsService() {
+		return metricsService;
+	}
+
 	public NotificationService getNotificationService() {
 		return notificationService;
 	}
 
 	public void stop() {
+		metricsService.close();
 		anfisaConnector.close();
 		gtfConnector.close();
 		liftoverConnector.close();
@@ -18,14 +18,19 @@
 
 package org.forome.annotation.annotator;
 
+import net.minidev.json.JSONObject;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.forome.annotation.Main;
+import org.forome.annotation.annotator.recovery.Checkpoint;
+import org.forome.annotation.annotator.recovery.CheckpointWriter;
 import org.forome.annotation.annotator.recovery.Recovery;
 import org.forome.annotation.annotator.recovery.RecoveryResult;
 import org.forome.annotation.annotator.struct.AnnotatorResult;
+import org.forome.annotation.annotator.writer.AnfisaJsonWriter;
 import org.forome.annotation.config.ServiceConfig;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.anfisa.AnfisaConnector;
+import org.forome.annotation.data.anfisa.AnfisaLookupExecutor;
 import org.forome.annotation.data.clinvar.ClinvarConnector;
 import org.forome.annotation.data.clinvar.mysql.ClinvarConnectorMysql;
 import org.forome.annotation.data.conservation.ConservationData;
@@ -35,6 +40,7 @@ import org.forome.annotation.data.gtex.GTEXConnector;
 import org.forome.annotation.data.gtex.mysql.GTEXConnectorMysql;
 import org.forome.annotation.data.gtf.GTFConnector;
 import org.forome.annotation.data.gtf.GTFConnectorImpl;
+import org.forome.annotation.data.gtf.datasource.memory.GTFDataSourceMemory;
 import org.forome.annotation.data.gtf.datasource.mysql.GTFDataConnector;
 import org.forome.annotation.data.hgmd.HgmdConnector;
 import org.forome.annotation.data.hgmd.mysql.HgmdConnectorMysql;
@@ -45,33 +51,44 @@ import org.forome.annotation.data.spliceai.SpliceAIConnectorImpl;
 import org.forome.annotation.data.spliceai.datasource.http.SpliceAIDataSourceHttp;
 import org.forome.annotation.processing.Processing;
 import org.forome.annotation.processing.TypeQuery;
+import org.forome.annotation.processing.struct.ProcessingResult;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.service.ensemblvep.EnsemblVepService;
 import org.forome.annotation.service.ensemblvep.external.EnsemblVepExternalService;
+import org.forome.annotation.service.metrics.MetricsService;
 import org.forome.annotation.service.notification.NotificationService;
 import org.forome.annotation.service.source.SourceService;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
 import org.forome.annotation.service.source.struct.Source;
 import org.forome.annotation.service.ssh.SSHConnectService;
 import org.forome.annotation.struct.CasePlatform;
 import org.forome.annotation.utils.AppVersion;
 import org.forome.annotation.utils.RuntimeExec;
+import org.forome.annotation.utils.Statistics;
+import org.forome.annotation.utils.compression.BgzfIndex;
+import org.forome.annotation.utils.compression.BgzfOutputStream;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.AbstractMap;
 import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
 public class AnnotationConsole {
 
@@ -93,6 +110,8 @@ public class AnnotationConsole {
 	private final Path cnvFile;
 
 	private final int startPosition;
+	private final long startOffset;
+	private final int endPosition;
 
 	private final Path outFile;
 	private final Path recoveryAnfisaJson;
@@ -121,6 +140,7 @@ public class AnnotationConsole {
 	private EnsemblVepService ensemblVepService;
 	private AnfisaConnector anfisaConnector;
 	private Processing processing;
+	private MetricsService metricsService;
 
 	public AnnotationConsole(
 			Path configFile,
@@ -130,7 +150,7 @@ public class AnnotationConsole {
 			Path pathCohorts,
 			Path vcfFile, Path vepJsonFile,
 			Path cnvFile,
-			int startPosition,
+			int startPosition, long startOffset, int endPosition,
 			Path outFile,
 			Path recoveryAnfisaJson,
 			Supplier<String> arguments
@@ -151,6 +171,8 @@ public class AnnotationConsole {
 		this.cnvFile = cnvFile;
 
 		this.startPosition = startPosition;
+		this.startOffset = startOffset;
+		this.endPosition = endPosition;
 
 		this.outFile = outFile;
 		this.recoveryAnfisaJson = recoveryAnfisaJson;
@@ -161,6 +183,7 @@ public class AnnotationConsole {
 
 		try {
 			serviceConfig = new ServiceConfig(configFile);
+			Statistics.setEnabled(serviceConfig.annotatorConfig.statistics);
 
 			if (serviceConfig.notificationSlackConfig != null) {
 				notificationService = new NotificationService(serviceConfig.notificationSlackConfig);
@@ -173,7 +196,7 @@ public class AnnotationConsole {
 			databaseConnectService = new DatabaseConnectService(sshTunnelService, serviceConfig.databaseConfig);
 //            gnomadConnector = new GnomadConnectorOld(databaseConnectService, serviceConfig.gnomadConfigConnector, (t, e) -> fail(e, arguments));
 
-			liftoverConnector = new LiftoverConnector();
+			liftoverConnector = sourceService.liftoverConnector;
 
 //			this.fastaSource = new FastaSourceRocksDB(databaseConnectService.getAStorage());
 //			this.fastaSource = new FastaSourcePortPython(databaseConnectService.getAStorage());
@@ -181,6 +204,7 @@ public class AnnotationConsole {
 
 			gnomadConnector = new GnomadConnectorImpl(
 					new GnomadDataSourceHttp(liftoverConnector, sourceService.dataSource),
+					serviceConfig.gnomadExecutorConfig,
 					(t, e) -> fail(e, null, arguments)
 			);
 //			gnomadConnector = new GnomadConnectorImpl(databaseConnectService, serviceConfig.gnomadConfigConnector, (t, e) -> fail(e, null, arguments));
@@ -200,11 +224,13 @@ public class AnnotationConsole {
 //					new GTFDataSourceHttp(databaseConnectService, liftoverConnector, serviceConfig.aStorageConfigConnector),
 //					(t, e) -> fail(e, null, arguments)
 //			);
+			DatabaseConnector gtfDatabaseConnector = new DatabaseConnector(databaseConnectService, serviceConfig.gtfConfigConnector);
 			this.gtfConnector = new GTFConnectorImpl(
-					new GTFDataConnector(
-							new DatabaseConnector(databaseConnectService, serviceConfig.gtfConfigConnector)
-					),
+					(serviceConfig.gtfConfigConnector.memory) ?
+							new GTFDataSourceMemory(gtfDatabaseConnector, serviceConfig.gtfConfigConnector.snapshot) :
+							new GTFDataConnector(gtfDatabaseConnector),
 					liftoverConnector,
+					serviceConfig.gtfExecutorConfig,
 					(t, e) -> fail(e, null, arguments)
 			);
 
@@ -228,7 +254,12 @@ public class AnnotationConsole {
 					liftoverConnector,
 					gtfConnector,
 					gtexConnector,
-					pharmGKBConnector
+					pharmGKBConnector,
+					new AnfisaLookupExecutor(
+							serviceConfig.annotatorConfig.lookupThreads,
+							serviceConfig.annotatorConfig.lookupMaxPerSource,
+							(t, e) -> fail(e, null, arguments)
+					)
 //					,
 //					sourceHttp38
 			);
@@ -236,6 +267,10 @@ public class AnnotationConsole {
 			Source source = sourceService.dataSource.getSource(assembly);
 
 			processing = new Processing(source, anfisaConnector, TypeQuery.PATIENT_HG19);
+
+			metricsService = new MetricsService()
+					.register(sourceService, databaseConnectService, anfisaConnector)
+					.register("graphql", this::buildGraphQLMetrics);
 		} catch (Throwable e) {
 			fail(e, null, arguments);
 		}
@@ -250,17 +285,17 @@ public class AnnotationConsole {
 			log.info("Input cohortFile: {}", pathCohorts);
 			log.info("Input vepVcfFile: {}", inputVcfFile);
 			log.info("Input start position: {}", startPosition);
+			if (startOffset >= 0) {
+				log.info("Input start offset: {}", startOffset);
+			}
+			if (endPosition != 0) {
+				log.info("Input end position: {}", endPosition);
+			}
 			log.info("Input vepJsonFile: {}", inputVepJsonFile);
 			log.info("Input cnvFile: {}", cnvFile);
 
-			if (!inputVcfFile.getFileName().toString().endsWith(".gz")) {
-				vcfFile = inputVcfFile;
-			} else {
-				Path pathDir = outFile.getParent();
-				log.info("unpacking vcf file: {}...", inputVcfFile);
-				vcfFile = gunzipVcfFile(inputVcfFile, pathDir);
-				log.info("unpacking vcf file: {}... complete", inputVcfFile);
-			}
+			//Сжатый vcf-файл (*.vcf.gz) читается напрямую, без распаковки на диск
+			vcfFile = inputVcfFile;
 			Path finalVcfFile = vcfFile;
 
 			//Билдим при необходимости vep-json
@@ -272,14 +307,9 @@ public class AnnotationConsole {
 				vepJson = buildVepJson(vcfFile, pathDirVepJson);
 			}
 
-			Files.deleteIfExists(outFile);
-			Files.createFile(outFile);
-
-			OutputStream os = buildOutputStream(outFile);
-			BufferedOutputStream bos = new BufferedOutputStream(os);
-
 			Annotator annotator = new Annotator(
 					ensemblVepService, processing,
+					serviceConfig.annotatorConfig,
 					caseName, casePlatform,
 					assembly,
 					famFile,
@@ -288,61 +318,98 @@ public class AnnotationConsole {
 					vcfFile, vepJson
 			);
 
-			String outMetadata = annotator.buildMetadata().toJSON().toJSONString();
-			bos.write(outMetadata.getBytes(StandardCharsets.UTF_8));
-			bos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+			Checkpoint checkpoint = (recoveryAnfisaJson != null) ? Recovery.restore(recoveryAnfisaJson, outFile) : null;
 
+			OutputStream os;
+			AnfisaJsonWriter writer;
 			int offset;
+			long vcfOffset;
 			AtomicInteger countRecords;
-			if (recoveryAnfisaJson != null) {
-				Recovery recovery = new Recovery(vcfFile, recoveryAnfisaJson);
-				RecoveryResult recoveryResult = recovery.execute(bos);
-				offset = recoveryResult.offset;
-				countRecords = new AtomicInteger(recoveryResult.countRecords);
+			if (checkpoint != null) {
+				//Дописываем результат прерванной аннотации с контрольной точки
+				os = buildOutputStream(outFile, serviceConfig.annotatorConfig.outputThreads, checkpoint.outputSize);
+				writer = new AnfisaJsonWriter(os);
+				offset = checkpoint.offset;
+				vcfOffset = checkpoint.vcfOffset;
+				countRecords = new AtomicInteger(checkpoint.countRecords);
 			} else {
-				offset = startPosition;
-				countRecords = new AtomicInteger();
+				Files.deleteIfExists(outFile);
+				Files.createFile(outFile);
+
+				os = buildOutputStream(outFile, serviceConfig.annotatorConfig.outputThreads, -1);
+				writer = new AnfisaJsonWriter(os);
+				writer.write(annotator.buildMetadata().toJSON());
+
+				if (recoveryAnfisaJson != null) {
+					Recovery recovery = new Recovery(vcfFile, recoveryAnfisaJson);
+					RecoveryResult recoveryResult = recovery.execute(writer);
+					offset = recoveryResult.offset;
+					vcfOffset = -1;
+					countRecords = new AtomicInteger(recoveryResult.countRecords);
+				} else {
+					offset = startPosition;
+					vcfOffset = startOffset;
+					countRecords = new AtomicInteger();
+				}
 			}
+			CheckpointWriter checkpointWriter = new CheckpointWriter(
+					outFile, writer, serviceConfig.annotatorConfig.checkpointInterval, offset
+			);
 
 			AnnotatorResult annotatorResult = annotator.exec(
 					cnvFile,
-					offset
+					offset, vcfOffset, endPosition
 			);
-			annotatorResult.observableAnfisaResult.blockingSubscribe(
-					processingResult -> {
-						String out = processingResult.toJSON().toJSONString();
-						bos.write(out.getBytes(StandardCharsets.UTF_8));
-						bos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
-
-						if (countRecords.getAndIncrement() % 100 == 0) {
-							log.debug("progress (records): {}", countRecords.get());
+
+			ScheduledExecutorService statisticsReporter = buildStatisticsReporter();
+
+			if (annotatorResult.memoryBudget != null) {
+				metricsService.register("memory_budget", () -> {
+					JSONObject out = new JSONObject();
+					out.put("concurrency", annotatorResult.memoryBudget.getConcurrency());
+					out.put("limit", annotatorResult.memoryBudget.getLimit());
+					out.put("record_size", annotatorResult.memoryBudget.getRecordSize());
+					return out;
+				});
+			}
+			Path metricsFile = serviceConfig.annotatorConfig.metricsFile;
+			if (metricsFile != null) {
+				metricsService.startDump(metricsFile, serviceConfig.annotatorConfig.metricsInterval);
+			}
+			annotatorResult.observableAnfisaBatch.blockingSubscribe(
+					batch -> {
+						long batchSize = 0;
+						for (ProcessingResult processingResult : batch.processingResults) {
+							batchSize += writer.write(processingResult.toJSON());
+
+							if (countRecords.getAndIncrement() % 100 == 0) {
+								if (annotatorResult.memoryBudget != null) {
+									log.debug("progress (records): {}, {}", countRecords.get(), annotatorResult.memoryBudget);
+								} else {
+									log.debug("progress (records): {}", countRecords.get());
+								}
+							}
 						}
+						if (annotatorResult.memoryBudget != null) {
+							annotatorResult.memoryBudget.observe(batchSize);
+						}
+						checkpointWriter.onWrite(batch.position + 1, batch.nextOffset, countRecords.get());
 					},
 					e -> fail(e, finalVcfFile, arguments),
 					() -> {
 						log.debug("progress completed");
-						sourceService.dataSource.printStatistics();
-						log.debug("gtf: {}", anfisaConnector.gtfAnfisaBuilder.statisticGtfs.getStat());
-						log.debug("gtf cds: {}", ((GTFConnectorImpl) anfisaConnector.gtfConnector).statisticCds.getStat());
-						log.debug("clinvar submitters: {}", anfisaConnector.clinvarConnector.getStatisticClinvarSubmitters().getStat());
-						log.debug("clinvar data: {}", anfisaConnector.clinvarConnector.getStatisticClinvarData().getStat());
-						log.debug("clinvar expanded data: {}", anfisaConnector.clinvarConnector.getStatisticClinvarExpandedData().getStat());
-						log.debug("clinvar variant summary: {}", anfisaConnector.clinvarConnector.getStatisticClinvarVariantSummary().getStat());
-						log.debug("gtex: {}", anfisaConnector.gtexConnector.getStatistics().getStat());
-						log.debug("pharmGKB notes: {}", anfisaConnector.pharmGKBConnector.getStatisticNotes().getStat());
-						log.debug("pharmGKB pmids: {}", anfisaConnector.pharmGKBConnector.getStatisticPmids().getStat());
-						log.debug("pharmGKB diseases: {}", anfisaConnector.pharmGKBConnector.getStatisticDiseases().getStat());
-						log.debug("pharmGKB chemicals: {}", anfisaConnector.pharmGKBConnector.getStatisticChemicals().getStat());
-						log.debug("anfisa: {}", processing.anfisaStatistics.getStat());
-						log.debug("graphql: {}", processing.graphqlStatistics.getStat());
-						processing.statisticsInstrumentation.statistics.entrySet().stream()
-								.sorted(Comparator.comparingLong(o -> o.getValue().getStat().fullMillisTime))
-								.forEach(entry -> {
-									log.debug("graphql: {}, {}", entry.getKey(), entry.getValue().getStat());
-								});
-
-						bos.close();
+						printStatistics();
+						if (statisticsReporter != null) {
+							statisticsReporter.shutdownNow();
+						}
+						metricsService.close();
+						if (metricsFile != null) {
+							metricsService.dump(metricsFile);
+						}
+
+						writer.close();
 						os.close();
+						checkpointWriter.clear();
 						anfisaConnector.close();
 						clear(finalVcfFile);
 						sendNotification(null, arguments);
@@ -354,6 +421,67 @@ public class AnnotationConsole {
 		}
 	}
 
+	private void printStatistics() {
+		sourceService.dataSource.printStatistics();
+		HttpClientPool.getPools().forEach(httpClientPool -> log.debug("http: {}", httpClientPool));
+		log.debug("gtf: {}", anfisaConnector.gtfAnfisaBuilder.statisticGtfs.getStat());
+		log.debug("gtf cds: {}", ((GTFConnectorImpl) anfisaConnector.gtfConnector).statisticCds.getStat());
+		log.debug("clinvar submitters: {}", anfisaConnector.clinvarConnector.getStatisticClinvarSubmitters().getStat());
+		log.debug("clinvar data: {}", anfisaConnector.clinvarConnector.getStatisticClinvarData().getStat());
+		log.debug("clinvar expanded data: {}", anfisaConnector.clinvarConnector.getStatisticClinvarExpandedData().getStat());
+		log.debug("clinvar variant summary: {}", anfisaConnector.clinvarConnector.getStatisticClinvarVariantSummary().getStat());
+		log.debug("gtex: {}", anfisaConnector.gtexConnector.getStatistics().getStat());
+		log.debug("pharmGKB notes: {}", anfisaConnector.pharmGKBConnector.getStatisticNotes().getStat());
+		log.debug("pharmGKB pmids: {}", anfisaConnector.pharmGKBConnector.getStatisticPmids().getStat());
+		log.debug("pharmGKB diseases: {}", anfisaConnector.pharmGKBConnector.getStatisticDiseases().getStat());
+		log.debug("pharmGKB chemicals: {}", anfisaConnector.pharmGKBConnector.getStatisticChemicals().getStat());
+		log.debug("anfisa: {}", processing.anfisaStatistics.getStat());
+		log.debug("graphql: {}", processing.graphqlStatistics.getStat());
+		processing.statisticsInstrumentation.statistics.entrySet().stream()
+				.map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().getStat()))
+				.sorted(Comparator.comparingLong(o -> o.getValue().fullNanoTime))
+				.forEach(entry -> {
+					log.debug("graphql: {}, {}", entry.getKey(), entry.getValue());
+				});
+	}
+
+	private JSONObject buildGraphQLMetrics() {
+		JSONObject out = new JSONObject();
+		out.put("anfisa", processing.anfisaStatistics.getStat().toJSON());
+		out.put("graphql", processing.graphqlStatistics.getStat().toJSON());
+		JSONObject outFields = new JSONObject();
+		for (Map.Entry<String, Statistics> entry : processing.statisticsInstrumentation.statistics.entrySet()) {
+			outFields.put(entry.getKey(), entry.getValue().getStat().toJSON());
+		}
+		out.put("fields", outFields);
+		return out;
+	}
+
+	/**
+	 * Периодический вывод статистики во время длительной аннотации
+	 */
+	private ScheduledExecutorService buildStatisticsReporter() {
+		int interval = serviceConfig.annotatorConfig.statisticsInterval;
+		if (interval == 0) {
+			return null;
+		}
+		ScheduledExecutorService statisticsReporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "StatisticsReporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		statisticsReporter.scheduleAtFixedRate(() -> {
+			try {
+				if (Statistics.isEnabled()) {
+					printStatistics();
+				}
+			} catch (Throwable e) {
+				log.error("Exception print statistics", e);
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+		return statisticsReporter;
+	}
+
 	private void fail(Throwable e, Path vcfFile, Supplier<String> arguments) {
 		if (Files.exists(outFile)) {
 			String newFileName = new StringBuilder()
@@ -361,7 +489,12 @@ public class AnnotationConsole {
 					.append("_invalid_").append(timeStart.toEpochMilli())
 					.toString();
 			try {
+				Path checkpointFile = Checkpoint.getPath(outFile);
 				Files.move(outFile, outFile.getParent().resolve(newFileName));
+				//Контрольная точка переносится вместе с результатом - по ней работает восстановление
+				if (Files.exists(checkpointFile)) {
+					Files.move(checkpointFile, Checkpoint.getPath(outFile.getParent().resolve(newFileName)));
+				}
 			} catch (Throwable e1) {
 				log.error("Exception clear file: " + outFile, e);
 			}
@@ -416,57 +549,49 @@ public class AnnotationConsole {
 		}
 	}
 
-	private static OutputStream buildOutputStream(Path pathOutput) throws IOException {
+	/**
+	 * Сжатый результат пишется в формате BGZF (читается обычным gunzip) с индексом блоков рядом (*.gz.gzi)
+	 *
+	 * @param appendSize - размер, до которого обрезается существующий файл перед дозаписью, -1 - новый файл
+	 */
+	static OutputStream buildOutputStream(Path pathOutput, int threads, long appendSize) throws IOException {
 		if (pathOutput.getFileName().toString().endsWith(".gz")) {
-			return new GZIPOutputStream(Files.newOutputStream(pathOutput));
+			if (threads == 0) {
+				threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+			}
+			if (appendSize >= 0) {
+				return BgzfOutputStream.append(
+						pathOutput, appendSize, threads,
+						BgzfIndex.getPath(pathOutput), Deflater.DEFAULT_COMPRESSION
+				);
+			}
+			return new BgzfOutputStream(
+					Files.newOutputStream(pathOutput), threads,
+					BgzfIndex.getPath(pathOutput), Deflater.DEFAULT_COMPRESSION
+			);
 		} else {
-			return Files.newOutputStream(pathOutput);
-		}
-	}
-
-	private static Path gunzipVcfFile(Path vcfFile, Path pathDir) throws IOException {
-		if (!vcfFile.getFileName().toString().endsWith(".vcf.gz")) {
-			throw new RuntimeException("VcfFile does not *.vcf.gz" + vcfFile.toAbsolutePath());
-		}
-
-		String fileNameVcfFile = vcfFile.getFileName().toString();
-		String s = fileNameVcfFile.substring(0, fileNameVcfFile.length() - ".vcf.gz".length());
-		fileNameVcfFile = s + ".vcf";
-		int i = 0;
-		while (Files.exists(pathDir.resolve(fileNameVcfFile))) {
-			fileNameVcfFile = String.format("%s(%s).vcf", s, ++i);
-		}
-		Path pathVcfFile = pathDir.resolve(fileNameVcfFile).toAbsolutePath();
-
-		try (FileInputStream fis = new FileInputStream(vcfFile.toFile())) {
-			try (GZIPInputStream gis = new GZIPInputStream(fis)) {
-				try (FileOutputStream fos = new FileOutputStream(pathVcfFile.toFile())) {
-					byte[] buffer = new byte[1024];
-					int len;
-					while ((len = gis.read(buffer)) != -1) {
-						fos.write(buffer, 0, len);
-					}
-				} catch (Throwable e) {
-					Files.deleteIfExists(pathVcfFile);
-					throw e;
+			if (appendSize >= 0) {
+				try (FileChannel channel = FileChannel.open(pathOutput, StandardOpenOption.WRITE)) {
+					channel.truncate(appendSize);
 				}
+				return new BufferedOutputStream(Files.newOutputStream(pathOutput, StandardOpenOption.APPEND));
 			}
+			return new BufferedOutputStream(Files.newOutputStream(pathOutput));
 		}
-		return pathVcfFile;
 	}
 
-	private static Path buildVepJson(Path vcfFile, Path pathDirVepJson) {
+	static Path buildVepJson(Path vcfFile, Path pathDirVepJson) {
 		String fileNameVcf = vcfFile.getFileName().toString();
 		String fileNameVepJson;
-		if (fileNameVcf.endsWith(".vcf")) {
-			String s = fileNameVcf.substring(0, fileNameVcf.length() - ".vcf".length());
+		if (fileNameVcf.endsWith(".vcf") || fileNameVcf.endsWith(".vcf.gz")) {
+			String s = fileNameVcf.substring(0, fileNameVcf.lastIndexOf(".vcf"));
 			fileNameVepJson = s + ".vep.json";
 			int i = 0;
 			while (Files.exists(pathDirVepJson.resolve(fileNameVepJson))) {
 				fileNameVepJson = String.format("%s(%s).vep.json", s, ++i);
 			}
 		} else {
-			throw new IllegalArgumentException("Bad vcf filename (Need *.vcf): " + vcfFile.toAbsolutePath());
+			throw new IllegalArgumentException("Bad vcf filename (Need *.vcf or *.vcf.gz): " + vcfFile.toAbsolutePath());
 		}
 		Path pathVepJson = pathDirVepJson.resolve(fileNameVepJson).toAbsolutePath();
 
@@ -0,0 +1,255 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator;
+
+import org.forome.annotation.annotator.main.AnnotatorMain;
+import org.forome.annotation.annotator.main.argument.ParserArgument;
+import org.forome.annotation.annotator.shard.ScanResult;
+import org.forome.annotation.annotator.shard.Shard;
+import org.forome.annotation.annotator.shard.ShardPlanner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Распределенная аннотация одного vcf-файла несколькими процессами (jvm).
+ * Vcf-файл делится на шарды - непрерывные регионы с примерно равным кол-вом записей,
+ * каждый шард аннотирует отдельный процесс AnnotatorMain (с аргументами -start/-end) в свой файл,
+ * после чего результаты шардов склеиваются в порядке vcf-файла с одной строкой метаданных.
+ * Для vcf-файла в формате BGZF процесс шарда получает и виртуальное смещение своей первой записи (-offset)
+ * и начинает чтение с него, иначе - пропускает предшествующие записи чтением.
+ * Vep.json, если не передан, строится один раз до запуска шардов и передается им всем (-vepjson):
+ * иначе каждый шард строил бы его заново для всего vcf-файла.
+ * Восстановление (-recovery) в распределенном режиме не поддерживается - шардам оно не передается.
+ * Шард можно запустить и вручную (на другом хосте) теми же аргументами.
+ */
+public class AnnotationCoordinator {
+
+	private final static Logger log = LoggerFactory.getLogger(AnnotationCoordinator.class);
+
+	private final Path pathVcf;
+	private final Path outFile;
+
+	/**
+	 * null - строится перед запуском шардов
+	 */
+	private Path pathVepJson;
+
+	private final int shards;
+	private final int outputThreads;
+
+	/**
+	 * Исходные аргументы запуска, передаются процессам шардов
+	 */
+	private final String[] args;
+
+	/**
+	 * Класс и параметры jvm процесса шарда
+	 */
+	private final Class<?> mainClass;
+	private final List<String> jvmArguments;
+
+	/**
+	 * Шаг (в записях), с которым при сканировании запоминаются смещения
+	 */
+	private final int offsetStep;
+
+	public AnnotationCoordinator(Path pathVcf, Path pathVepJson, Path outFile, int shards, int outputThreads, String[] args) {
+		this(
+				pathVcf, pathVepJson, outFile, shards, outputThreads, args,
+				AnnotatorMain.class, ManagementFactory.getRuntimeMXBean().getInputArguments(),
+				ShardPlanner.OFFSET_STEP
+		);
+	}
+
+	AnnotationCoordinator(
+			Path pathVcf, Path pathVepJson, Path outFile, int shards, int outputThreads, String[] args,
+			Class<?> mainClass, List<String> jvmArguments, int offsetStep
+	) {
+		if (shards < 1) throw new IllegalArgumentException();
+
+		this.pathVcf = pathVcf;
+		this.pathVepJson = pathVepJson;
+		this.outFile = outFile;
+		this.shards = shards;
+		this.outputThreads = outputThreads;
+		this.args = args;
+		this.mainClass = mainClass;
+		this.jvmArguments = jvmArguments;
+		this.offsetStep = offsetStep;
+	}
+
+	public void execute() throws IOException, InterruptedException {
+		long t1 = System.currentTimeMillis();
+		ScanResult scan = ShardPlanner.scan(pathVcf, offsetStep);
+		List<Shard> plan = ShardPlanner.split(scan, shards);
+		log.info("Scan vcf file: {}, contigs: {}, time: {} ms", pathVcf, scan.counts.size(), System.currentTimeMillis() - t1);
+		if (!scan.hasOffsets()) {
+			log.warn("Vcf file is not in bgzf format, shards read all records preceding their start: {}", pathVcf);
+		}
+		if (hasOption(ParserArgument.OPTION_FILE_RECOVERY)) {
+			log.warn("Recovery is not supported with shards, option is ignored: -{}", ParserArgument.OPTION_FILE_RECOVERY);
+		}
+		if (pathVepJson == null) {
+			pathVepJson = AnnotationConsole.buildVepJson(pathVcf, outFile.toAbsolutePath().getParent());
+		}
+
+		List<Process> processes = new ArrayList<>();
+		List<Path> shardFiles = new ArrayList<>();
+		try {
+			for (Shard shard : plan) {
+				Path shardFile = getShardFile(shard);
+				Path shardLogFile = Paths.get(shardFile.toString() + ".log");
+				List<String> cmd = buildCommand(shard, shardFile);
+				log.info("Run {}, log: {}", shard, shardLogFile);
+				log.debug("Run process: {}", String.join(" ", cmd));
+
+				ProcessBuilder processBuilder = new ProcessBuilder(cmd);
+				processBuilder.directory(Paths.get(".").toAbsolutePath().toFile());
+				processBuilder.redirectErrorStream(true);
+				processBuilder.redirectOutput(shardLogFile.toFile());
+				processes.add(processBuilder.start());
+				shardFiles.add(shardFile);
+			}
+
+			for (int i = 0; i < processes.size(); i++) {
+				int exitCode = processes.get(i).waitFor();
+				if (exitCode != 0) {
+					throw new RuntimeException("Shard process ended with an error, exitCode: " + exitCode + ", " + plan.get(i)
+							+ ", log: " + shardFiles.get(i) + ".log");
+				}
+				log.info("Shard completed: {}", plan.get(i));
+			}
+		} catch (Throwable e) {
+			for (Process process : processes) {
+				process.destroy();
+			}
+			throw e;
+		}
+
+		long t2 = System.currentTimeMillis();
+		merge(shardFiles, outFile, outputThreads);
+		log.info("Merge shards: {}, output: {}, time: {} ms", shardFiles.size(), outFile, System.currentTimeMillis() - t2);
+
+		for (Path shardFile : shardFiles) {
+			Files.deleteIfExists(shardFile);
+		}
+	}
+
+	/**
+	 * Склейка результатов шардов: строки копируются без разбора json,
+	 * у всех шардов, кроме первого, пропускается строка метаданных
+	 */
+	static void merge(List<Path> shardFiles, Path outFile, int outputThreads) throws IOException {
+		Files.deleteIfExists(outFile);
+		try (OutputStream os = AnnotationConsole.buildOutputStream(outFile, outputThreads, -1)) {
+			byte[] buffer = new byte[64 * 1024];
+			for (int i = 0; i < shardFiles.size(); i++) {
+				try (InputStream is = new BufferedInputStream(Files.newInputStream(shardFiles.get(i)), buffer.length)) {
+					if (i > 0) {
+						int b;
+						while ((b = is.read()) != -1 && b != '\n') {
+						}
+					}
+					int n;
+					while ((n = is.read(buffer)) != -1) {
+						os.write(buffer, 0, n);
+					}
+				}
+			}
+		}
+	}
+
+	private Path getShardFile(Shard shard) {
+		String fileName = outFile.getFileName().toString();
+		if (fileName.endsWith(".gz")) {
+			fileName = fileName.substring(0, fileName.length() - ".gz".length());
+		}
+		return outFile.resolveSibling(fileName + ".shard-" + shard.index);
+	}
+
+	/**
+	 * Процесс шарда запускается с теми же параметрами jvm и аргументами, кроме выходного файла и кол-ва шардов
+	 */
+	private List<String> buildCommand(Shard shard, Path shardFile) {
+		Path pathJava = Paths.get(System.getProperty("java.home")).resolve("bin").resolve("java").toAbsolutePath();
+
+		List<String> cmd = new ArrayList<>();
+		cmd.add(pathJava.toString());
+		cmd.addAll(jvmArguments);
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(mainClass.getName());
+
+		List<String> skipOptions = Arrays.asList(
+				ParserArgument.OPTION_SHARDS, ParserArgument.OPTION_FILE_OUTPUT,
+				ParserArgument.OPTION_START_POSITION, ParserArgument.OPTION_END_POSITION,
+				ParserArgument.OPTION_START_OFFSET,
+				ParserArgument.OPTION_FILE_VEP_JSON, ParserArgument.OPTION_FILE_RECOVERY
+		);
+		for (int i = 0; i < args.length; i++) {
+			if (isOption(args[i]) && skipOptions.contains(toOption(args[i]))) {
+				i++;//Пропускаем и значение
+				continue;
+			}
+			cmd.add(args[i]);
+		}
+
+		cmd.add("-" + ParserArgument.OPTION_FILE_VEP_JSON);
+		cmd.add(pathVepJson.toString());
+		cmd.add("-" + ParserArgument.OPTION_FILE_OUTPUT);
+		cmd.add(shardFile.toString());
+		cmd.add("-" + ParserArgument.OPTION_START_POSITION);
+		cmd.add(String.valueOf(shard.start));
+		if (shard.start > 0 && shard.offset >= 0) {
+			cmd.add("-" + ParserArgument.OPTION_START_OFFSET);
+			cmd.add(String.valueOf(shard.offset));
+		}
+		if (shard.end > 0) {
+			cmd.add("-" + ParserArgument.OPTION_END_POSITION);
+			cmd.add(String.valueOf(shard.end));
+		}
+		return cmd;
+	}
+
+	private boolean hasOption(String option) {
+		for (String arg : args) {
+			if (isOption(arg) && option.equals(toOption(arg))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isOption(String arg) {
+		return arg.startsWith("-");
+	}
+
+	private static String toOption(String arg) {
+		return arg.replaceFirst("^-{1,2}", "");
+	}
+}
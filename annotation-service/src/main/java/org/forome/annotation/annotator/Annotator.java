@@ -39,10 +39,13 @@ package org.forome.annotation.annotator;
 import io.reactivex.Observable;
 import net.minidev.json.parser.ParseException;
 import org.forome.annotation.annotator.executor.AnnotatorExecutor;
+import org.forome.annotation.annotator.executor.MemoryBudget;
 import org.forome.annotation.annotator.executor.Result;
+import org.forome.annotation.annotator.struct.AnnotatorBatch;
 import org.forome.annotation.annotator.struct.AnnotatorResult;
 import org.forome.annotation.annotator.struct.AnnotatorResultMetadata;
 import org.forome.annotation.annotator.utils.CaseUtils;
+import org.forome.annotation.config.annotator.AnnotatorConfig;
 import org.forome.annotation.processing.Processing;
 import org.forome.annotation.processing.struct.ProcessingResult;
 import org.forome.annotation.service.ensemblvep.EnsemblVepService;
@@ -67,6 +70,7 @@ public class Annotator {
 
 	private final EnsemblVepService ensemblVepService;
 	private final Processing processing;
+	private final AnnotatorConfig annotatorConfig;
 
 	private final String caseName;
 	private final CasePlatform casePlatform;
@@ -79,6 +83,7 @@ public class Annotator {
 	public Annotator(
 			EnsemblVepService ensemblVepService,
 			Processing processing,
+			AnnotatorConfig annotatorConfig,
 
 			String caseName,
 			CasePlatform casePlatform,
@@ -93,6 +98,7 @@ public class Annotator {
 	) throws IOException, ParseException {
 		this.ensemblVepService = ensemblVepService;
 		this.processing = processing;
+		this.annotatorConfig = annotatorConfig;
 
 		this.caseName = caseName;
 		this.casePlatform = casePlatform;
@@ -101,8 +107,8 @@ public class Annotator {
 		if (!Files.exists(pathVcf)) {
 			throw new RuntimeException("Vcf file does not exists: " + pathVcf.toAbsolutePath());
 		}
-		if (!pathVcf.getFileName().toString().endsWith(".vcf")) {
-			throw new IllegalArgumentException("Bad name vcf file (Need *.vcf): " + pathVcf.toAbsolutePath());
+		if (!pathVcf.getFileName().toString().endsWith(".vcf") && !pathVcf.getFileName().toString().endsWith(".vcf.gz")) {
+			throw new IllegalArgumentException("Bad name vcf file (Need *.vcf or *.vcf.gz): " + pathVcf.toAbsolutePath());
 		}
 
 		if (!Files.exists(pathFam)) {
@@ -132,6 +138,22 @@ public class Annotator {
 			Path cnvFile,
 			int startPosition
 	) {
+		return exec(cnvFile, startPosition, -1, 0);
+	}
+
+	/**
+	 * @param startOffset - виртуальное смещение (BGZF) записи startPosition в vcf-файле, -1 - неизвестно
+	 * @param endPosition - позиция записи vcf-файла, на которой аннотация останавливается (не включительно),
+	 *                    0 - до конца файла
+	 */
+	public AnnotatorResult exec(
+			Path cnvFile,
+			int startPosition,
+			long startOffset,
+			int endPosition
+	) {
+		MemoryBudget memoryBudget = new MemoryBudget(annotatorConfig.heapBudget, mCase.samples.size());
+
 		return new AnnotatorResult(
 				Observable.create(o -> {
 					new Thread(new Runnable() {
@@ -142,19 +164,26 @@ public class Annotator {
 									mCase,
 									pathVcf, pathVepJson,
 									cnvFile,
-									startPosition, getThreads(mCase),
+									startPosition, startOffset, endPosition, getThreads(), getInputThreads(),
+									annotatorConfig.executorMode, annotatorConfig.maxInFlight,
+									memoryBudget,
 									(t, e) -> o.tryOnError(e)
 							)) {
 								boolean run = true;
 								while (run) {
+									if (o.isDisposed()) {
+										//Подписчик отключился (например, клиент потокового ответа) - прекращаем аннотацию
+										break;
+									}
 									Result result = annotatorExecutor.next();
+									if (endPosition > 0 && result.position >= endPosition) {
+										break;
+									}
 									List<ProcessingResult> processingResults;
 									try {
 										processingResults = result.future.get();
 										if (processingResults != null) {
-											for (ProcessingResult processingResult : processingResults) {
-												o.onNext(processingResult);
-											}
+											o.onNext(new AnnotatorBatch(result.position, result.nextOffset, processingResults));
 										} else {
 											run = false;
 										}
@@ -168,22 +197,28 @@ public class Annotator {
 							}
 						}
 					}).start();
-				})
+				}),
+				memoryBudget
 		);
 	}
 
 
 	/**
-	 * Необходимо учитывать, что при большом колличестве samples у нас сильно увеличивается потребления оперативной памяти
-	 * для этого мы усеньшаем кол-во поток и соответсвенно кол-во экземпляторов чтения vcf-файлов
+	 * При большом колличестве samples сильно увеличивается потребление оперативной памяти на запись,
+	 * поэтому кол-во одновременно обрабатываемых записей (в обоих режимах) ограничивает бюджет памяти,
+	 * построенный по кол-ву samples, а не кол-во потоков.
 	 */
-	private static int getThreads(MCase mCase) {
-		int maxThread = Runtime.getRuntime().availableProcessors() * 8;
-
-		int ks = mCase.samples.size() / 100;
-		int thread = maxThread / (ks + 1);
-		if (thread == 0) thread = 1;
+	private int getThreads() {
+		if (annotatorConfig.threads > 0) {
+			return annotatorConfig.threads;
+		}
+		return Runtime.getRuntime().availableProcessors() * 8;
+	}
 
-		return thread;
+	private int getInputThreads() {
+		if (annotatorConfig.inputThreads > 0) {
+			return annotatorConfig.inputThreads;
+		}
+		return Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
 	}
 }
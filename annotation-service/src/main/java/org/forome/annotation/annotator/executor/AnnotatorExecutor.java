@@ -31,7 +31,14 @@ import java.util.List;
 
 public class AnnotatorExecutor implements AutoCloseable {
 
+	/**
+	 * Кол-во записей в обработке (в режиме PIPELINE) на один поток
+	 */
+	private static final int WINDOW_PER_THREAD = 4;
+
+	private final SharedSourceReader sharedSourceReader;
 	private final ThreadExecutor[] threadExecutors;
+	private final PipelineExecutor pipelineExecutor;
 
 	private int activeExecutor;
 
@@ -41,10 +48,13 @@ public class AnnotatorExecutor implements AutoCloseable {
 			MCase mCase,
 			Path pathVcf, Path pathVepJson,
 			Path cnvFile,
-			int start, int thread,
+			int start, long startOffset, int end, int thread, int inputThreads,
+			ExecutorMode mode, int maxInFlight,
+			MemoryBudget memoryBudget,
 			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
 	) {
 		if (thread < 1) throw new IllegalArgumentException();
+		if (maxInFlight < 0) throw new IllegalArgumentException();
 
 		//Validation samples fam-file and vcf-file
 		VCFFileReader vcfFileReader = new VCFFileReader(pathVcf, false);
@@ -55,6 +65,35 @@ public class AnnotatorExecutor implements AutoCloseable {
 			);
 		}
 
+		//Каждый поток обрабатывает не более одной записи одновременно
+		if (maxInFlight > 0 && maxInFlight < thread) {
+			thread = maxInFlight;
+		}
+
+		if (mode == ExecutorMode.PIPELINE) {
+			sharedSourceReader = null;
+			threadExecutors = null;
+			pipelineExecutor = new PipelineExecutor(
+					ensemblVepService,
+					processing,
+					mCase,
+					pathVcf, pathVepJson,
+					cnvFile,
+					start, startOffset, end, thread, (maxInFlight > 0) ? maxInFlight : thread * WINDOW_PER_THREAD,
+					inputThreads,
+					memoryBudget,
+					uncaughtExceptionHandler
+			);
+			return;
+		}
+
+		pipelineExecutor = null;
+		SourceReader sourceReader = new SourceReader(pathVcf, pathVepJson, cnvFile, inputThreads, start, startOffset);
+		sharedSourceReader = new SharedSourceReader(
+				sourceReader,
+				new SourceProcessor(ensemblVepService, processing, mCase, sourceReader.hasVepJson()),
+				thread, SourceProcessor.PREFETCH_SIZE
+		);
 		threadExecutors = new ThreadExecutor[thread];
 		for (int i = 0; i < thread; i++) {
 			threadExecutors[i] = new ThreadExecutor(
@@ -62,9 +101,9 @@ public class AnnotatorExecutor implements AutoCloseable {
 					ensemblVepService,
 					processing,
 					mCase,
-					pathVcf, pathVepJson,
-					cnvFile,
+					sharedSourceReader,
 					start + i, thread,
+					memoryBudget,
 					uncaughtExceptionHandler
 			);
 		}
@@ -73,6 +112,10 @@ public class AnnotatorExecutor implements AutoCloseable {
 	}
 
 	public synchronized Result next() {
+		if (pipelineExecutor != null) {
+			return pipelineExecutor.next();
+		}
+
 		ThreadExecutor threadExecutor = threadExecutors[activeExecutor];
 		activeExecutor++;
 		if (activeExecutor > threadExecutors.length - 1) {
@@ -84,8 +127,13 @@ public class AnnotatorExecutor implements AutoCloseable {
 
 	@Override
 	public void close() throws IOException {
+		if (pipelineExecutor != null) {
+			pipelineExecutor.close();
+			return;
+		}
 		for (ThreadExecutor threadExecutor : threadExecutors) {
 			threadExecutor.close();
 		}
+		sharedSourceReader.close();
 	}
 }
@@ -0,0 +1,41 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+public enum ExecutorMode {
+
+	/**
+	 * Vcf и vep.json читаются один раз общим читателем, каждый поток обрабатывает каждую step-запись
+	 */
+	PARTITIONED,
+
+	/**
+	 * Один поток читает vcf и vep.json, варианты обрабатываются фиксированным пулом потоков
+	 */
+	PIPELINE;
+
+	public static ExecutorMode of(String value) {
+		for (ExecutorMode item : ExecutorMode.values()) {
+			if (item.name().equalsIgnoreCase(value)) {
+				return item;
+			}
+		}
+		throw new IllegalArgumentException("Unknown executor mode: " + value);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+/**
+ * Ограничение кол-ва записей, одновременно находящихся в обработке, по объему памяти.
+ * Начальная оценка памяти на запись строится по кол-ву samples, далее уточняется
+ * по размеру уже сериализованных результатов (их сообщает тот, кто записывает результат).
+ */
+public class MemoryBudget {
+
+	private static final long BASE_RECORD_SIZE = 64L * 1024L;
+	private static final long SAMPLE_RECORD_SIZE = 2L * 1024L;
+
+	/**
+	 * Во время построения результат (дерево json и промежуточные данные источников) занимает
+	 * в памяти в несколько раз больше, чем его сериализованное представление
+	 */
+	private static final int OVERHEAD_FACTOR = 8;
+
+	private static final double SMOOTHING = 0.05;
+
+	private final long budget;
+
+	private double recordSize;
+	private int concurrency;
+
+	public MemoryBudget(long budget, int samples) {
+		if (budget <= 0) throw new IllegalArgumentException();
+		if (samples < 0) throw new IllegalArgumentException();
+
+		this.budget = budget;
+		this.recordSize = BASE_RECORD_SIZE + SAMPLE_RECORD_SIZE * samples;
+	}
+
+	/**
+	 * Ожидает, пока в бюджете не появится место для еще одной записи.
+	 * Одна запись допускается всегда, даже если ее оценка превышает бюджет.
+	 */
+	public synchronized void acquire() throws InterruptedException {
+		while (!tryAcquire()) {
+			wait();
+		}
+	}
+
+	/**
+	 * @return false - места в бюджете нет, запись не допущена
+	 */
+	public synchronized boolean tryAcquire() {
+		if (concurrency > 0 && concurrency >= getLimit()) {
+			return false;
+		}
+		concurrency++;
+		return true;
+	}
+
+	public synchronized void release() {
+		if (concurrency < 1) throw new IllegalStateException();
+		concurrency--;
+		notifyAll();
+	}
+
+	/**
+	 * Уточнение оценки памяти на запись
+	 *
+	 * @param serializedSize - размер сериализованного результата записи (в символах)
+	 */
+	public synchronized void observe(long serializedSize) {
+		if (serializedSize <= 0) return;
+		recordSize += SMOOTHING * (serializedSize * OVERHEAD_FACTOR - recordSize);
+		notifyAll();
+	}
+
+	public long getBudget() {
+		return budget;
+	}
+
+	public synchronized long getRecordSize() {
+		return (long) recordSize;
+	}
+
+	public synchronized int getLimit() {
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, budget / (long) recordSize));
+	}
+
+	public synchronized int getConcurrency() {
+		return concurrency;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MemoryBudget(" +
+				"budget: " + budget / (1024 * 1024) + " (mb)" +
+				", record: " + (long) recordSize / 1024 + " (kb)" +
+				", concurrency: " + concurrency + "/" + getLimit() +
+				')';
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import org.forome.annotation.processing.Processing;
+import org.forome.annotation.service.ensemblvep.EnsemblVepService;
+import org.forome.annotation.struct.mcase.MCase;
+import org.forome.annotation.utils.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Vcf и vep.json читаются один раз, единственным потоком-читателем.
+ * Прочитанные записи раздаются фиксированному пулу обработчиков через ограниченную очередь,
+ * а порядок выдачи результатов (порядок vcf-файла) сохраняет буфер упорядочивания:
+ * результаты ставятся в него в момент чтения и забираются в том же порядке.
+ * Чтение следующей записи допускается только при наличии места в бюджете памяти,
+ * запись освобождает бюджет после того, как ее результат забран.
+ */
+public class PipelineExecutor implements AutoCloseable {
+
+	private final static Logger log = LoggerFactory.getLogger(PipelineExecutor.class);
+
+	private static class Task {
+
+		private final Source source;
+		private final Result result;
+
+		private Task(Source source, Result result) {
+			this.source = source;
+			this.result = result;
+		}
+	}
+
+	private static final Task STOP = new Task(null, null);
+
+	private final SourceReader sourceReader;
+	private final SourceProcessor sourceProcessor;
+
+	private final MemoryBudget memoryBudget;
+
+	private final int prefetchSize;
+
+	private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+
+	private final BlockingQueue<Task> workQueue;
+	private final BlockingQueue<Result> reorderBuffer;
+
+	private final Thread reader;
+	private final Thread[] workers;
+
+	private volatile Result completedResult;
+	private Result lastResult;
+	private Result previousResult;
+
+	public PipelineExecutor(
+			EnsemblVepService ensemblVepService,
+			Processing processing,
+			MCase samples,
+			Path pathVcf, Path pathVepJson,
+			Path cnvFile,
+			int start, long startOffset, int end, int thread, int window,
+			int inputThreads,
+			MemoryBudget memoryBudget,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
+	) {
+		this(
+				new SourceReader(pathVcf, pathVepJson, cnvFile, inputThreads, start, startOffset),
+				new SourceProcessor(ensemblVepService, processing, samples, pathVepJson != null),
+				start, end, thread, window,
+				memoryBudget,
+				uncaughtExceptionHandler
+		);
+	}
+
+	PipelineExecutor(
+			SourceReader sourceReader,
+			SourceProcessor sourceProcessor,
+			int start, int end, int thread, int window,
+			MemoryBudget memoryBudget,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
+	) {
+		if (thread < 1) throw new IllegalArgumentException();
+		if (window < thread) throw new IllegalArgumentException();
+
+		this.sourceReader = sourceReader;
+		this.sourceProcessor = sourceProcessor;
+
+		this.memoryBudget = memoryBudget;
+
+		this.prefetchSize = Math.min(window, SourceProcessor.PREFETCH_SIZE);
+
+		this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+
+		this.workQueue = new ArrayBlockingQueue<>(window);
+		this.reorderBuffer = new ArrayBlockingQueue<>(window);
+
+		ThreadFactory threadFactory = new DefaultThreadFactory("PipelineExecutor", uncaughtExceptionHandler);
+
+		this.workers = new Thread[thread];
+		for (int i = 0; i < thread; i++) {
+			workers[i] = threadFactory.newThread(this::work);
+			workers[i].start();
+		}
+
+		this.reader = threadFactory.newThread(() -> read(start, end));
+		this.reader.start();
+
+		log.debug("PipelineExecutor start, threads: {}, window: {}, {}", thread, window, memoryBudget);
+	}
+
+	/**
+	 * @param end - позиция, до которой читаются записи (не включительно), 0 - до конца файла
+	 */
+	private void read(int start, int end) {
+		int position = start;
+		try {
+			List<Source> batch = new ArrayList<>(prefetchSize);
+			boolean completed = false;
+			while (!completed) {
+				while (batch.size() < prefetchSize) {
+					if (end > 0 && position + batch.size() >= end) {
+						completed = true;
+						break;
+					}
+					//Место в бюджете занимается до чтения записи - пакет предзагрузки не выходит за бюджет.
+					//Если места нет, сначала отдаем в обработку уже набранный пакет: иначе бюджет,
+					//занятый его записями, никогда не освободится
+					if (!memoryBudget.tryAcquire()) {
+						if (!batch.isEmpty()) {
+							break;
+						}
+						memoryBudget.acquire();
+					}
+					try {
+						batch.add(sourceReader.next(1));
+					} catch (NoSuchElementException e) {
+						memoryBudget.release();
+						completed = true;
+						break;
+					}
+				}
+
+				sourceProcessor.prefetch(batch);
+
+				for (Source source : batch) {
+					Result result = new Result(position++, new CompletableFuture<>());
+					result.nextOffset = source.nextOffset;
+					reorderBuffer.put(result);
+					workQueue.put(new Task(source, result));
+				}
+				batch.clear();
+			}
+			log.debug("PipelineExecutor read completed, records: {}", position - start);
+		} catch (InterruptedException e) {
+			return;
+		} catch (Throwable e) {
+			uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), e);
+		}
+
+		try {
+			completedResult = new Result(position, CompletableFuture.completedFuture(null));
+			reorderBuffer.put(completedResult);
+			for (int i = 0; i < workers.length; i++) {
+				workQueue.put(STOP);
+			}
+		} catch (InterruptedException ignore) {
+		}
+	}
+
+	private void work() {
+		while (true) {
+			Task task;
+			try {
+				task = workQueue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (task == STOP) {
+				return;
+			}
+
+			try {
+				sourceProcessor.process(task.source, task.result.future);
+			} catch (Throwable e) {
+				task.result.future.completeExceptionally(e);
+				uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), e);
+				continue;
+			}
+
+			//Дожидаемся выполнения (с прерыванием - close() ждет остановки обработчиков)
+			try {
+				task.result.future.get();
+			} catch (InterruptedException e) {
+				return;
+			} catch (Throwable ignore) {
+			}
+		}
+	}
+
+	public Result next() {
+		if (lastResult != null) {
+			return lastResult;
+		}
+
+		//Предыдущий результат уже забран - освобождаем занятый им бюджет
+		if (previousResult != null) {
+			memoryBudget.release();
+			previousResult = null;
+		}
+
+		Result result;
+		try {
+			result = reorderBuffer.take();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		if (result == completedResult) {
+			lastResult = result;
+		} else {
+			previousResult = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Дожидается остановки читателя и обработчиков, только после этого закрывает файлы
+	 */
+	@Override
+	public void close() throws IOException {
+		reader.interrupt();
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		try {
+			reader.join();
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		sourceReader.close();
+	}
+}
@@ -28,6 +28,12 @@ public class Result {
 	public final int position;
 	public final CompletableFuture<List<ProcessingResult>> future;
 
+	/**
+	 * Виртуальное смещение (BGZF) записи vcf-файла, следующей за этой, -1 - неизвестно.
+	 * Выставляется исполнителем до завершения future
+	 */
+	public volatile long nextOffset = -1;
+
 	public Result(int position, CompletableFuture<List<ProcessingResult>> future) {
 		this.position = position;
 		this.future = future;
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Общий читатель потоков режима PARTITIONED: vcf и vep.json читаются (и распаковываются) один раз,
+ * а записи раздаются потокам по очереди - поток partition получает записи partition, partition + step, ...
+ * Поток, которому понадобилась следующая запись, дочитывает файл пакетом до prefetchSize записей,
+ * загружает для пакета данные источников и только после этого раздает записи потокам.
+ * Чтение и предзагрузка выполняются под отдельной блокировкой - потоки, чьи записи уже прочитаны,
+ * забирают их, не дожидаясь предзагрузки следующего пакета.
+ */
+class SharedSourceReader implements AutoCloseable {
+
+	private final SourceReader sourceReader;
+	private final SourceProcessor sourceProcessor;
+
+	private final int prefetchSize;
+
+	private final Object readLock = new Object();
+
+	private final ArrayDeque<Source>[] partitions;
+
+	/**
+	 * Поток, которому принадлежит следующая прочитанная запись
+	 */
+	private int nextPartition;
+
+	private volatile boolean completed;
+
+	@SuppressWarnings("unchecked")
+	public SharedSourceReader(SourceReader sourceReader, SourceProcessor sourceProcessor, int step, int prefetchSize) {
+		if (step < 1) throw new IllegalArgumentException();
+		if (prefetchSize < 1) throw new IllegalArgumentException();
+
+		this.sourceReader = sourceReader;
+		this.sourceProcessor = sourceProcessor;
+		this.prefetchSize = prefetchSize;
+		this.partitions = new ArrayDeque[step];
+		for (int i = 0; i < step; i++) {
+			partitions[i] = new ArrayDeque<>();
+		}
+		this.nextPartition = 0;
+	}
+
+	public boolean hasVepJson() {
+		return sourceReader.hasVepJson();
+	}
+
+	public Source next(int partition) throws NoSuchElementException {
+		while (true) {
+			Source source = poll(partition);
+			if (source != null) {
+				return source;
+			}
+
+			synchronized (readLock) {
+				//Пока ждали блокировку, пакет с нашей записью мог прочитать другой поток
+				if (hasNext(partition)) {
+					continue;
+				}
+
+				List<Source> batch = new ArrayList<>(prefetchSize);
+				boolean eof = false;
+				while (batch.size() < prefetchSize) {
+					try {
+						batch.add(sourceReader.next(1));
+					} catch (NoSuchElementException e) {
+						eof = true;
+						break;
+					}
+				}
+
+				sourceProcessor.prefetch(batch);
+
+				synchronized (this) {
+					for (Source item : batch) {
+						partitions[nextPartition].add(item);
+						nextPartition = (nextPartition + 1) % partitions.length;
+					}
+					if (eof) {
+						completed = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return null - запись потока еще не прочитана
+	 */
+	private synchronized Source poll(int partition) throws NoSuchElementException {
+		ArrayDeque<Source> queue = partitions[partition];
+		if (queue.isEmpty() && completed) {
+			throw new NoSuchElementException();
+		}
+		return queue.poll();
+	}
+
+	private synchronized boolean hasNext(int partition) {
+		return !partitions[partition].isEmpty() || completed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		sourceReader.close();
+	}
+}
@@ -36,14 +36,24 @@ class Source {
 	public final MAVariantVep variant;
 	public final JSONObject vepJson;
 
+	/**
+	 * Виртуальное смещение (BGZF) записи vcf-файла, следующей за этой, -1 - неизвестно
+	 */
+	public final long nextOffset;
+
 	public Source(MAVariantVep variant, JSONObject vepJson) {
+		this(variant, vepJson, -1);
+	}
+
+	public Source(MAVariantVep variant, JSONObject vepJson, long nextOffset) {
 		this.variant = variant;
 		this.vepJson = vepJson;
+		this.nextOffset = nextOffset;
 
 		variant.setVepJson(vepJson);
 
-		//Валидация на соотвествие строк
-		if (variant instanceof MAVariantVCF) {
+		//Валидация на соотвествие строк (без vep.json аннотация запрашивается у ensembl-vep при обработке)
+		if (variant instanceof MAVariantVCF && vepJson != null) {
 			VariantContext variantContext = ((MAVariantVCF) variant).variantContext;
 
 			String[] vepJsonInput = vepJson.getAsString("input").split("\t");
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import org.forome.annotation.processing.Processing;
+import org.forome.annotation.processing.struct.ProcessingResult;
+import org.forome.annotation.service.ensemblvep.EnsemblVepService;
+import org.forome.annotation.struct.mavariant.MAVariant;
+import org.forome.annotation.struct.mavariant.MAVariantCNV;
+import org.forome.annotation.struct.mavariant.MAVariantVCF;
+import org.forome.annotation.struct.mcase.MCase;
+import org.forome.annotation.struct.variant.Variant;
+import org.forome.annotation.struct.variant.vep.VariantVep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Аннотация одной записи vcf-файла (или cnv-файла)
+ */
+class SourceProcessor {
+
+	private final static Logger log = LoggerFactory.getLogger(SourceProcessor.class);
+
+	/**
+	 * Кол-во записей, данные источников для которых загружаются одним пакетом
+	 */
+	static final int PREFETCH_SIZE = 32;
+
+	private final EnsemblVepService ensemblVepService;
+	private final Processing processing;
+
+	private final MCase samples;
+
+	private final boolean hasVepJson;
+
+	public SourceProcessor(
+			EnsemblVepService ensemblVepService,
+			Processing processing,
+			MCase samples,
+			boolean hasVepJson
+	) {
+		this.ensemblVepService = ensemblVepService;
+		this.processing = processing;
+		this.samples = samples;
+		this.hasVepJson = hasVepJson;
+	}
+
+	/**
+	 * Ошибка предварительной загрузки не критична - данные будут запрошены при обработке записи
+	 */
+	public void prefetch(List<Source> sources) {
+		if (!hasVepJson) {
+			return;
+		}
+
+		List<MAVariant> maVariants = new ArrayList<>(sources.size());
+		for (Source source : sources) {
+			if (source.variant instanceof MAVariantVCF) {
+				maVariants.add(source.variant);
+			}
+		}
+		try {
+			processing.prefetch(samples.assembly, maVariants);
+		} catch (Throwable e) {
+			log.warn("Exception prefetch sources", e);
+		}
+	}
+
+	/**
+	 * Варианты из vcf-файла обрабатываются в текущем потоке, если vep.json не задан - после получения
+	 * ответа от ensembl-vep (запросы всех потоков собираются клиентом в пакеты),
+	 * для cnv-вариантов future завершается после получения ответа от ensembl-vep
+	 */
+	public void process(Source source, CompletableFuture<List<ProcessingResult>> future) {
+		MAVariant maVariant = source.variant;
+
+		if (maVariant instanceof MAVariantVCF) {
+			MAVariantVCF maVariantVCF = (MAVariantVCF) maVariant;
+			if (!hasVepJson) {
+				maVariantVCF.setVepJson(ensemblVepService.getVepJson(maVariantVCF).join());
+			}
+			List<ProcessingResult> processingResults = processing.exec(samples, maVariant);
+
+			future.complete(processingResults);
+		} else {
+			Variant variant;
+			if (maVariant instanceof MAVariantCNV) {
+				variant = ((MAVariantCNV) maVariant).variantCNV;
+			} else {
+				throw new RuntimeException("Not support type maVariant: " + maVariant);
+			}
+
+			ensemblVepService.getVepJson(variant)
+					.thenApply(iVepJson -> {
+						((VariantVep) variant).setVepJson(iVepJson);
+
+						ProcessingResult processingResult = processing.exec(samples, variant);
+						future.complete(Collections.singletonList(processingResult));
+						return null;
+					})
+					.exceptionally(throwable -> {
+						future.completeExceptionally(throwable);
+						return null;
+					});
+		}
+	}
+}
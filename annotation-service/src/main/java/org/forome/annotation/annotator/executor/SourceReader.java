@@ -0,0 +1,134 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.iterator.vcf.VCFFileIterator;
+import org.forome.annotation.iterator.vepjson.VepJsonFileIterator;
+import org.forome.annotation.struct.mavariant.MAVariantVCF;
+import org.forome.annotation.struct.mavariant.MAVariantVep;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+
+/**
+ * Последовательное чтение пар (вариант из vcf, запись из vep.json)
+ */
+class SourceReader implements AutoCloseable {
+
+	private final VCFFileIterator vcfFileIterator;
+	private final VepJsonFileIterator vepJsonIterator;
+
+	/**
+	 * Кол-во записей, пропускаемых до начала итерации
+	 */
+	private int skip;
+
+	/**
+	 * Кол-во записей vep.json, пропускаемых до начала итерации (vcf-файл уже открыт со смещения)
+	 */
+	private int skipVepJson;
+
+	/**
+	 * @param threads     - кол-во потоков чтения сжатого vcf-файла
+	 * @param start       - порядковый номер записи, с которой начинается чтение
+	 * @param startOffset - виртуальное смещение (BGZF) записи start, -1 - неизвестно,
+	 *                    тогда предшествующие записи пропускаются чтением
+	 */
+	public SourceReader(Path pathVcf, Path pathVepJson, Path cnvFile, int threads, int start, long startOffset) {
+		if (start < 0) throw new IllegalArgumentException();
+		boolean seek = (start > 0 && startOffset >= 0);
+
+		this.vcfFileIterator = new VCFFileIterator(pathVcf, cnvFile, threads, (seek) ? startOffset : -1);
+
+		if (pathVepJson != null) {
+			vepJsonIterator = new VepJsonFileIterator(pathVepJson);
+		} else {
+			vepJsonIterator = null;
+		}
+
+		this.skip = (seek) ? 0 : start;
+		this.skipVepJson = (seek && vepJsonIterator != null) ? start : 0;
+	}
+
+	SourceReader(VCFFileIterator vcfFileIterator, VepJsonFileIterator vepJsonIterator) {
+		this.vcfFileIterator = vcfFileIterator;
+		this.vepJsonIterator = vepJsonIterator;
+	}
+
+	public boolean hasVepJson() {
+		return vepJsonIterator != null;
+	}
+
+	/**
+	 * Пропускает step - 1 записей и возвращает следующую
+	 */
+	public Source next(int step) throws NoSuchElementException {
+		if (step < 1) throw new IllegalArgumentException();
+
+		//Прокручиваем до начала итерации
+		for (; skipVepJson > 0; skipVepJson--) {
+			try {
+				vepJsonIterator.next();
+			} catch (NoSuchElementException ne) {
+				throw new RuntimeException("Not equals count rows, vcf file and vep.json file");
+			}
+		}
+		step += skip;
+		skip = 0;
+		MAVariantVep variantVep = null;
+		JSONObject vepJson = null;
+		for (int i = 0; i < step; i++) {
+			try {
+				variantVep = vcfFileIterator.next();
+			} catch (NoSuchElementException ne) {
+				//Валидация того, что в vep.json - тоже не осталось записей
+				if (vepJsonIterator != null) {
+					try {
+						vepJsonIterator.next();
+						throw new RuntimeException("Not equals count rows, vcf file and vep.json file");
+					} catch (NoSuchElementException ignore) {
+					}
+				}
+				throw ne;
+			}
+			if (variantVep instanceof MAVariantVCF && vepJsonIterator != null) {
+				try {
+					vepJson = vepJsonIterator.next();
+				} catch (NoSuchElementException ne) {
+					//Валидация того, что в vep.json - остались записи
+					throw new RuntimeException("Not equals count rows, vcf file and vep.json file");
+				}
+			} else {
+				vepJson = null;
+			}
+		}
+		return new Source(variantVep, vepJson, vcfFileIterator.getVirtualOffset());
+	}
+
+	@Override
+	public void close() throws IOException {
+		vcfFileIterator.close();
+
+		if (vepJsonIterator != null) {
+			vepJsonIterator.close();
+		}
+	}
+}
@@ -18,30 +18,16 @@
 
 package org.forome.annotation.annotator.executor;
 
-import net.minidev.json.JSONObject;
-import org.forome.annotation.iterator.vcf.VCFFileIterator;
-import org.forome.annotation.iterator.vepjson.VepJsonFileIterator;
 import org.forome.annotation.processing.Processing;
-import org.forome.annotation.processing.struct.ProcessingResult;
 import org.forome.annotation.service.ensemblvep.EnsemblVepService;
-import org.forome.annotation.struct.mavariant.MAVariant;
-import org.forome.annotation.struct.mavariant.MAVariantCNV;
-import org.forome.annotation.struct.mavariant.MAVariantVCF;
-import org.forome.annotation.struct.mavariant.MAVariantVep;
 import org.forome.annotation.struct.mcase.MCase;
-import org.forome.annotation.struct.variant.Variant;
-import org.forome.annotation.struct.variant.vep.VariantVep;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.nio.file.Path;
-import java.util.Collections;
-import java.util.Deque;
-import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class ThreadExecutor implements AutoCloseable {
 
@@ -49,143 +35,94 @@ public class ThreadExecutor implements AutoCloseable {
 
 	private final int index;
 
-	private final EnsemblVepService ensemblVepService;
-	private final Processing processing;
-
-	private final MCase samples;
-
-	private final int start;
 	private final int step;
 
-	private final VCFFileIterator vcfFileIterator;
-	private final VepJsonFileIterator vepJsonIterator;
+	private final SharedSourceReader sourceReader;
+	private final SourceProcessor sourceProcessor;
+
+	private final MemoryBudget memoryBudget;
 
 	private Result nextResult;
-	private final Deque<Result> waitExecuteVariants;//Варианты ожидающие выполнения
+	private final BlockingQueue<Result> waitExecuteVariants;//Варианты ожидающие выполнения
 
 	private int nextPosition;
 	private volatile boolean isCompleted = false;
 
+	private final Thread executor;
+
 	public ThreadExecutor(
 			int index,
 			EnsemblVepService ensemblVepService,
 			Processing processing,
 			MCase samples,
-			Path pathVcf, Path pathVepJson,
-			Path cnvFile,
+			SharedSourceReader sourceReader,
 			int start, int step,
+			MemoryBudget memoryBudget,
 			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
 	) {
 		this.index = index;
 
-		this.ensemblVepService = ensemblVepService;
-		this.processing = processing;
-
-		this.samples = samples;
-
-		this.start = start;
 		this.step = step;
 
-		this.vcfFileIterator = new VCFFileIterator(pathVcf, cnvFile);
+		//Поток index получает из общего читателя каждую step-запись, начиная с записи (index - 1)
+		this.sourceReader = sourceReader;
+		this.sourceProcessor = new SourceProcessor(ensemblVepService, processing, samples, sourceReader.hasVepJson());
 
-		if (pathVepJson != null) {
-			vepJsonIterator = new VepJsonFileIterator(pathVepJson);
-		} else {
-			vepJsonIterator = null;
-		}
+		this.memoryBudget = memoryBudget;
 
+		//Позиция - порядковый номер записи в vcf-файле
+		this.nextPosition = start;
 		this.nextResult = new Result(nextPosition, new CompletableFuture<>());
-		this.waitExecuteVariants = new ConcurrentLinkedDeque<>();
+		this.waitExecuteVariants = new LinkedBlockingQueue<>();
 		this.waitExecuteVariants.add(nextResult);
 
-		nextPosition = start + step;
-
 		//Исполнитель
-		Thread executor = new Thread(() -> {
+		executor = new Thread(() -> {
 			log.debug("Thread: {} start", index);
 
-			Source source = null;
+			Source source;
 			try {
-				//Прокручиваем до начала итерации
-				if (start > 0) {
-					nextSource(start);
-				}
-				source = nextSource(1);
+				source = sourceReader.next(index - 1);
 			} catch (NoSuchElementException e) {
-				isCompleted = true;
-				log.debug("Thread: {} completed", index);
+				complete();
+				return;
 			}
 
 			while (true) {
-
-				//TODO Переписать на засыпание потока
-				while (waitExecuteVariants.isEmpty()) {
-					if (isCompleted) return;
-					try {
-						Thread.sleep(10L);
-					} catch (InterruptedException e) {
-					}
-				}
-				Result result = waitExecuteVariants.poll();
-				if (isCompleted) {
-					result.future.complete(null);
-					continue;
+				//Засыпаем до появления ожидающего варианта
+				Result result;
+				try {
+					result = waitExecuteVariants.take();
+				} catch (InterruptedException e) {
+					return;
 				}
 
-				MAVariant maVariant = source.variant;
-
-				if (maVariant instanceof MAVariantVCF && vepJsonIterator != null) {
-					List<ProcessingResult> processingResults = processing.exec(samples, maVariant);
-
-					result.future.complete(processingResults);
-				} else {
-//					String alternative;
-//					if (variant instanceof MAVariantVCF) {
-//						VariantContext variantContext = ((MAVariantVCF) variant).variantContext;
-//
-//						Allele allele = variantContext.getAlternateAlleles().stream()
-//								.filter(iAllele -> !iAllele.getDisplayString().equals("*"))
-//								.max(Comparator.comparing(variantContext::getCalledChrCount))
-//								.orElse(null);
-//						alternative = allele.getDisplayString();
-//					} else if (variant instanceof MAVariantCNV) {
-//						alternative = "-";
-//					} else {
-//						throw new RuntimeException("Not support type variant: " + variant);
-//					}
-
-					Variant variant;
-					if (maVariant instanceof MAVariantCNV) {
-						variant = ((MAVariantCNV) maVariant).variantCNV;
-					} else {
-						throw new RuntimeException("Not support type maVariant: " + maVariant);
-					}
-
-					ensemblVepService.getVepJson(variant)
-							.thenApply(iVepJson -> {
-								((VariantVep) variant).setVepJson(iVepJson);
-
-								ProcessingResult processingResult = processing.exec(samples, variant);
-								result.future.complete(Collections.singletonList(processingResult));
-								return null;
-							})
-							.exceptionally(throwable -> {
-								result.future.completeExceptionally(throwable);
-								return null;
-							});
+				//Бюджет общий для всех потоков: ограничивает кол-во записей, обрабатываемых одновременно.
+				//Освобождается сразу после выполнения, а не когда результат забран - результаты забираются
+				//строго по очереди, и поток, чья запись нужна следующей, не должен ждать бюджет, занятый другими
+				try {
+					memoryBudget.acquire();
+				} catch (InterruptedException e) {
+					return;
 				}
-
-				//Дожидаемся выполнения
 				try {
-					result.future.join();
-				} catch (Throwable ignore) {
+					result.nextOffset = source.nextOffset;
+					sourceProcessor.process(source, result.future);
+
+					//Дожидаемся выполнения
+					try {
+						result.future.join();
+					} catch (Throwable ignore) {
+					}
+				} finally {
+					memoryBudget.release();
 				}
 
 				try {
-					source = nextSource(step);
+					source = sourceReader.next(index - 1);
 				} catch (NoSuchElementException e) {
-					isCompleted = true;
-					log.debug("Thread: {} completed", index);
+					complete();
+					return;
 				}
 			}
 		});
@@ -193,36 +130,18 @@ public class ThreadExecutor implements AutoCloseable {
 		executor.start();
 	}
 
-	private Source nextSource(int step) {
-		if (step < 1) throw new IllegalArgumentException();
-		MAVariantVep variantVep = null;
-		JSONObject vepJson = null;
-		for (int i = 0; i < step; i++) {
-			try {
-				variantVep = vcfFileIterator.next();
-			} catch (NoSuchElementException ne) {
-				//Валидация того, что в vep.json - тоже не осталось записей
-				if (vepJsonIterator != null) {
-					try {
-						vepJsonIterator.next();
-						throw new RuntimeException("Not equals count rows, vcf file and vep.json file");
-					} catch (NoSuchElementException ignore) {
-					}
-				}
-				throw ne;
-			}
-			if (variantVep instanceof MAVariantVCF && vepJsonIterator != null) {
-				try {
-					vepJson = vepJsonIterator.next();
-				} catch (NoSuchElementException ne) {
-					//Валидация того, что в vep.json - остались записи
-					throw new RuntimeException("Not equals count rows, vcf file and vep.json file");
-				}
-			} else {
-				vepJson = null;
+	/**
+	 * Все ожидающие и последующие варианты завершаются пустым результатом
+	 */
+	private void complete() {
+		synchronized (waitExecuteVariants) {
+			isCompleted = true;
+			Result result;
+			while ((result = waitExecuteVariants.poll()) != null) {
+				result.future.complete(null);
 			}
 		}
-		return new Source(variantVep, vepJson);
+		log.debug("Thread: {} completed", index);
 	}
 
 	public Result next() {
@@ -242,12 +161,11 @@ public class ThreadExecutor implements AutoCloseable {
 	}
 
 
+	/**
+	 * Общий читатель закрывается владельцем (AnnotatorExecutor)
+	 */
 	@Override
-	public void close() throws IOException {
-		vcfFileIterator.close();
-
-		if (vepJsonIterator != null) {
-			vepJsonIterator.close();
-		}
+	public void close() {
+		executor.interrupt();
 	}
 }
@@ -18,8 +18,11 @@
 
 package org.forome.annotation.annotator.main;
 
+import org.forome.annotation.Main;
 import org.forome.annotation.annotator.AnnotationConsole;
+import org.forome.annotation.annotator.AnnotationCoordinator;
 import org.forome.annotation.annotator.main.argument.*;
+import org.forome.annotation.config.ServiceConfig;
 import org.forome.annotation.inventory.Inventory;
 import org.forome.annotation.logback.LogbackConfigure;
 import org.forome.annotation.utils.AppVersion;
@@ -61,12 +64,26 @@ public class AnnotatorMain {
 					inventory.cohortsFile,
 					inventory.vcfFile, inventory.vepJsonFile,
 					inventory.cnvFile,
-					argumentsInventory.start,
+					argumentsInventory.start, -1, 0,
 					inventory.outFile,
 					argumentsInventory.pathRecoveryAnfisaJson,
 					() -> arguments.getArguments()
 			);
 			annotationConsole.execute();
+		} else if (arguments instanceof ArgumentsAnnotation && ((ArgumentsAnnotation) arguments).shards > 1) {
+			ArgumentsAnnotation argumentsAnnotation = (ArgumentsAnnotation) arguments;
+			try {
+				ServiceConfig serviceConfig = new ServiceConfig(argumentsAnnotation.config);
+				new AnnotationCoordinator(
+						argumentsAnnotation.pathVcf, argumentsAnnotation.pathVepJson,
+						argumentsAnnotation.pathOutput,
+						argumentsAnnotation.shards,
+						serviceConfig.annotatorConfig.outputThreads,
+						args
+				).execute();
+			} catch (Throwable e) {
+				Main.crash(e);
+			}
 		} else if (arguments instanceof ArgumentsAnnotation) {
 			ArgumentsAnnotation argumentsAnnotation = (ArgumentsAnnotation) arguments;
 			AnnotationConsole annotationConsole = new AnnotationConsole(
@@ -77,7 +94,7 @@ public class AnnotatorMain {
 					argumentsAnnotation.cohortFile,
 					argumentsAnnotation.pathVcf, argumentsAnnotation.pathVepJson,
 					argumentsAnnotation.pathCnv,
-					argumentsAnnotation.start,
+					argumentsAnnotation.start, argumentsAnnotation.startOffset, argumentsAnnotation.end,
 					argumentsAnnotation.pathOutput,
 					argumentsAnnotation.pathRecoveryAnfisaJson,
 					() -> arguments.getArguments()
@@ -77,7 +77,7 @@ public class AnnotatorScanInventory {
 				inventory.cohortsFile,
 				inventory.vcfFile, inventory.vepJsonFile,
 				inventory.cnvFile,
-				0,
+				0, 0,
 				inventory.outFile,
 				null,
 				() -> arguments.getArguments()
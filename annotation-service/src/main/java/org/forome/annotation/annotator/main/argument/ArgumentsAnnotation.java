@@ -51,8 +51,16 @@ public class ArgumentsAnnotation extends Arguments {
 	public final Path pathOutput;
 
 	public final int start;
+	public final int end;
+
+	/**
+	 * Виртуальное смещение (BGZF) записи start в vcf-файле, -1 - неизвестно
+	 */
+	public final long startOffset;
 	public final Path pathRecoveryAnfisaJson;
 
+	public final int shards;
+
 	public ArgumentsAnnotation(CommandLine cmd) {
 		super(cmd);
 
@@ -116,6 +124,14 @@ public class ArgumentsAnnotation extends Arguments {
 		}
 
 		this.start = Integer.parseInt(cmd.getOptionValue(ParserArgument.OPTION_START_POSITION, "0"));
+		this.end = Integer.parseInt(cmd.getOptionValue(ParserArgument.OPTION_END_POSITION, "0"));
+		if (end != 0 && end <= start) {
+			throw new IllegalArgumentException("End position must be greater than start position");
+		}
+		this.startOffset = Long.parseLong(cmd.getOptionValue(ParserArgument.OPTION_START_OFFSET, "-1"));
+		if (startOffset >= 0 && !pathVcf.getFileName().toString().endsWith(".gz")) {
+			throw new IllegalArgumentException("Start offset is supported only for bgzf vcf file (*.vcf.gz)");
+		}
 
 		this.pathOutput = Paths.get(cmd.getOptionValue(ParserArgument.OPTION_FILE_OUTPUT)).toAbsolutePath();
 
@@ -140,9 +156,17 @@ public class ArgumentsAnnotation extends Arguments {
 			pathRecoveryAnfisaJson = null;
 		}
 
-		if (start != 0 && pathRecoveryAnfisaJson != null) {
+		if ((start != 0 || startOffset >= 0) && pathRecoveryAnfisaJson != null) {
 			throw new IllegalArgumentException("Conflict argument recovery file and start position");
 		}
+
+		this.shards = Integer.parseInt(cmd.getOptionValue(ParserArgument.OPTION_SHARDS, "1"));
+		if (shards < 1) {
+			throw new IllegalArgumentException("Bad count shards: " + shards);
+		}
+		if (shards > 1 && (start != 0 || startOffset >= 0 || end != 0 || pathRecoveryAnfisaJson != null)) {
+			throw new IllegalArgumentException("Conflict argument shards and start/end position or recovery file");
+		}
 	}
 
 }
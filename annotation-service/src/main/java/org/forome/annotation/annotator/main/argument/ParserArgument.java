@@ -39,10 +39,14 @@ public class ParserArgument {
 	public static final String OPTION_FILE_VEP_JSON = "vepjson";
 	public static final String OPTION_FILE_CNV = "cnv";
 	public static final String OPTION_START_POSITION = "start";
+	public static final String OPTION_END_POSITION = "end";
+	public static final String OPTION_START_OFFSET = "offset";
 	public static final String OPTION_FILE_OUTPUT = "output";
 
 	public static final String OPTION_FILE_RECOVERY = "recovery";
 
+	public static final String OPTION_SHARDS = "shards";
+
 	public static final String OPTION_FILE_INVENTORY = "inventory";
 
 	public static final String OPTION_SCAN_FILE_INVENTORY = "scan-inventory";
@@ -122,6 +126,20 @@ public class ParserArgument {
 						.desc("Start position")
 						.type(Integer.class)
 						.build())
+				.addOption(Option.builder()
+						.longOpt(OPTION_END_POSITION)
+						.hasArg(true)
+						.optionalArg(true)
+						.desc("End position (exclusive)")
+						.type(Integer.class)
+						.build())
+				.addOption(Option.builder()
+						.longOpt(OPTION_START_OFFSET)
+						.hasArg(true)
+						.optionalArg(true)
+						.desc("Virtual offset (bgzf) of the start position record in the vcf file")
+						.type(Long.class)
+						.build())
 				.addOption(Option.builder()
 						.longOpt(OPTION_FILE_OUTPUT)
 						.hasArg(true)
@@ -134,6 +152,14 @@ public class ParserArgument {
 						.hasArg(true)
 						.optionalArg(false)
 						.desc("Absolute path to recovery file")
+						.build())
+
+				.addOption(Option.builder()
+						.longOpt(OPTION_SHARDS)
+						.hasArg(true)
+						.optionalArg(false)
+						.desc("Count of annotation processes (shards)")
+						.type(Integer.class)
 						.build());
 
 		try {
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.recovery;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONValue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Контрольная точка аннотации, сохраняется рядом с результатом (*.checkpoint).
+ * Фиксирует согласованное состояние: все записи первых offset вариантов vcf-файла записаны
+ * и сброшены в файл результата, размер которого на этот момент - outputSize
+ * (для BGZF - граница блока). Восстановление обрезает результат до outputSize
+ * и продолжает аннотацию с offset, не перечитывая уже записанные данные.
+ * Если vcf-файл в формате BGZF, то сохраняется и виртуальное смещение варианта offset -
+ * vcf-файл читается сразу с него, предшествующие варианты не пропускаются чтением.
+ */
+public class Checkpoint {
+
+	public static final String EXTENSION = ".checkpoint";
+
+	private final static String FIELD_OFFSET = "offset";
+	private final static String FIELD_VCF_OFFSET = "vcf_offset";
+	private final static String FIELD_COUNT_RECORDS = "count_records";
+	private final static String FIELD_OUTPUT_SIZE = "output_size";
+
+	/**
+	 * Кол-во обработанных вариантов vcf-файла (позиция, с которой продолжается аннотация)
+	 */
+	public final int offset;
+
+	/**
+	 * Виртуальное смещение (BGZF) варианта offset в vcf-файле, -1 - неизвестно
+	 */
+	public final long vcfOffset;
+
+	/**
+	 * Кол-во записей в результате, без метаданных
+	 */
+	public final int countRecords;
+
+	/**
+	 * Размер файла результата в байтах
+	 */
+	public final long outputSize;
+
+	public Checkpoint(int offset, long vcfOffset, int countRecords, long outputSize) {
+		this.offset = offset;
+		this.vcfOffset = vcfOffset;
+		this.countRecords = countRecords;
+		this.outputSize = outputSize;
+	}
+
+	public static Path getPath(Path output) {
+		return Paths.get(output.toString() + EXTENSION);
+	}
+
+	public JSONObject toJSON() {
+		JSONObject out = new JSONObject();
+		out.put(FIELD_OFFSET, offset);
+		out.put(FIELD_VCF_OFFSET, vcfOffset);
+		out.put(FIELD_COUNT_RECORDS, countRecords);
+		out.put(FIELD_OUTPUT_SIZE, outputSize);
+		return out;
+	}
+
+	/**
+	 * Запись через временный файл с атомарным переименованием - при падении во время записи
+	 * сохраняется предыдущая контрольная точка
+	 */
+	public void write(Path file) throws IOException {
+		Path tmpFile = Paths.get(file.toString() + ".tmp");
+		Files.write(tmpFile, toJSON().toJSONString().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return null - если контрольной точки нет
+	 */
+	public static Checkpoint read(Path file) throws IOException {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		Object value = JSONValue.parse(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		if (!(value instanceof JSONObject)) {
+			throw new IOException("Bad checkpoint file: " + file);
+		}
+		JSONObject parse = (JSONObject) value;
+		//Контрольные точки, сохраненные до появления смещения, восстанавливаются пропуском вариантов
+		Number vcfOffset = parse.getAsNumber(FIELD_VCF_OFFSET);
+		return new Checkpoint(
+				parse.getAsNumber(FIELD_OFFSET).intValue(),
+				(vcfOffset != null) ? vcfOffset.longValue() : -1,
+				parse.getAsNumber(FIELD_COUNT_RECORDS).intValue(),
+				parse.getAsNumber(FIELD_OUTPUT_SIZE).longValue()
+		);
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.recovery;
+
+import org.forome.annotation.annotator.writer.AnfisaJsonWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Периодическое сохранение контрольных точек во время записи результата.
+ * Вызывается после записи всех результатов очередного варианта vcf-файла, поэтому
+ * контрольная точка всегда соответствует границе варианта.
+ */
+public class CheckpointWriter {
+
+	private final Path outFile;
+	private final Path checkpointFile;
+	private final AnfisaJsonWriter writer;
+
+	/**
+	 * Кол-во вариантов между контрольными точками, 0 - контрольные точки не сохраняются
+	 */
+	private final int interval;
+
+	private int lastOffset;
+
+	public CheckpointWriter(Path outFile, AnfisaJsonWriter writer, int interval, int offset) {
+		this.outFile = outFile;
+		this.checkpointFile = Checkpoint.getPath(outFile);
+		this.writer = writer;
+		this.interval = interval;
+		this.lastOffset = offset;
+	}
+
+	/**
+	 * @param offset       - кол-во вариантов, результаты которых полностью записаны
+	 * @param vcfOffset    - виртуальное смещение (BGZF) варианта offset в vcf-файле, -1 - неизвестно
+	 * @param countRecords - кол-во записанных записей
+	 */
+	public void onWrite(int offset, long vcfOffset, int countRecords) throws IOException {
+		if (interval == 0 || offset - lastOffset < interval) {
+			return;
+		}
+		//Сбрасываем буферы (в BGZF текущий блок закрывается досрочно) - размер файла становится границей блока
+		writer.flush();
+		new Checkpoint(offset, vcfOffset, countRecords, Files.size(outFile)).write(checkpointFile);
+		lastOffset = offset;
+	}
+
+	/**
+	 * Аннотация завершена - контрольная точка больше не нужна
+	 */
+	public void clear() throws IOException {
+		Files.deleteIfExists(checkpointFile);
+	}
+}
@@ -19,6 +19,7 @@
 package org.forome.annotation.annotator.recovery;
 
 import net.minidev.json.JSONObject;
+import org.forome.annotation.annotator.writer.AnfisaJsonWriter;
 import org.forome.annotation.exception.AnnotatorException;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.iterator.json.JsonFileIterator;
@@ -29,13 +30,12 @@ import org.forome.annotation.struct.variant.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -52,7 +52,33 @@ public class Recovery {
 		this.recoveryAnfisaJson = recoveryAnfisaJson;
 	}
 
-	public RecoveryResult execute(BufferedOutputStream bos) throws IOException {
+	/**
+	 * Быстрое восстановление по контрольной точке: файл результата прерванной аннотации переносится
+	 * в outFile, записи не перечитываются. Обрезка файла до checkpoint.outputSize выполняется при открытии
+	 * выходного потока на дозапись.
+	 *
+	 * @return null - если контрольной точки нет (требуется полное восстановление через execute)
+	 */
+	public static Checkpoint restore(Path recoveryAnfisaJson, Path outFile) throws IOException {
+		Path recoveryCheckpointFile = Checkpoint.getPath(recoveryAnfisaJson);
+		Checkpoint checkpoint = Checkpoint.read(recoveryCheckpointFile);
+		if (checkpoint == null) {
+			return null;
+		}
+		long size = Files.size(recoveryAnfisaJson);
+		if (size < checkpoint.outputSize) {
+			throw new RuntimeException("Bad recovery file, size: " + size + " less than checkpoint: " + checkpoint.outputSize);
+		}
+
+		log.debug("Recovery from checkpoint, variants: {}, vcf offset: {}, records: {}, size: {}",
+				checkpoint.offset, checkpoint.vcfOffset, checkpoint.countRecords, checkpoint.outputSize);
+		Files.move(recoveryAnfisaJson, outFile, StandardCopyOption.REPLACE_EXISTING);
+		checkpoint.write(Checkpoint.getPath(outFile));
+		Files.deleteIfExists(recoveryCheckpointFile);
+		return checkpoint;
+	}
+
+	public RecoveryResult execute(AnfisaJsonWriter writer) throws IOException {
 		log.debug("Run recovery mode...");
 
 		int offset = 0;
@@ -88,8 +114,7 @@ public class Recovery {
 
 				//Заливаем данные
 				for (JSONObject jRecoveryRecord : jRecoveryRecords) {
-					bos.write(jRecoveryRecord.toJSONString().getBytes(StandardCharsets.UTF_8));
-					bos.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+					writer.write(jRecoveryRecord);
 				}
 				offset++;
 				countRecords +=jRecoveryRecords.size();
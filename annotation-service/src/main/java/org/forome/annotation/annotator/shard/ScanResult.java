@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.shard;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Результат предварительного сканирования vcf-файла
+ */
+public class ScanResult {
+
+	/**
+	 * Кол-во записей по хромосомам, в порядке следования в файле
+	 */
+	public final LinkedHashMap<String, Integer> counts;
+
+	/**
+	 * Шаг (в записях), с которым запомнены смещения
+	 */
+	public final int offsetStep;
+
+	/**
+	 * offsets[i] - виртуальное смещение (BGZF) записи с порядковым номером i * offsetStep,
+	 * null - файл не в формате BGZF
+	 */
+	private final long[] offsets;
+
+	public ScanResult(LinkedHashMap<String, Integer> counts, int offsetStep, long[] offsets) {
+		if (offsetStep < 1) throw new IllegalArgumentException();
+
+		this.counts = counts;
+		this.offsetStep = offsetStep;
+		this.offsets = offsets;
+	}
+
+	public boolean hasOffsets() {
+		return offsets != null;
+	}
+
+	/**
+	 * @param position - порядковый номер записи, кратный offsetStep
+	 * @return виртуальное смещение записи, -1 - неизвестно
+	 */
+	public long getOffset(int position) {
+		if (offsets == null || position % offsetStep != 0 || position / offsetStep >= offsets.length) {
+			return -1;
+		}
+		return offsets[position / offsetStep];
+	}
+}
@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.shard;
+
+/**
+ * Часть vcf-файла, аннотируемая отдельным процессом: записи с порядковыми номерами [start, end).
+ * Vcf-файл отсортирован, поэтому шард - непрерывный геномный регион от firstContig до lastContig.
+ */
+public class Shard {
+
+	public final int index;
+
+	public final int start;
+
+	/**
+	 * 0 - до конца файла (последний шард, включая записи cnv-файла)
+	 */
+	public final int end;
+
+	public final String firstContig;
+	public final String lastContig;
+
+	/**
+	 * Виртуальное смещение (BGZF) записи start, процесс шарда начинает чтение с него.
+	 * -1 - неизвестно (файл не в формате BGZF), записи до start пропускаются чтением
+	 */
+	public final long offset;
+
+	public Shard(int index, int start, int end, String firstContig, String lastContig, long offset) {
+		this.index = index;
+		this.start = start;
+		this.end = end;
+		this.firstContig = firstContig;
+		this.lastContig = lastContig;
+		this.offset = offset;
+	}
+
+	@Override
+	public String toString() {
+		return "Shard(" +
+				"index: " + index +
+				", records: [" + start + ", " + ((end == 0) ? "end" : String.valueOf(end)) + ")" +
+				", region: " + firstContig + ((firstContig.equals(lastContig)) ? "" : " - " + lastContig) +
+				')';
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.shard;
+
+import org.forome.annotation.utils.compression.BgzfInputStream;
+import org.forome.core.struct.Chromosome;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Разбиение vcf-файла на шарды с примерно равным кол-вом записей.
+ * Порядковые номера записей считаются так же, как при аннотации: записи неподдерживаемых хромосом пропускаются.
+ * Индекс tabix не хранит кол-во записей в регионе, поэтому файл предварительно сканируется -
+ * разбирается только первая колонка (хромосома). Для файла в формате BGZF при сканировании запоминаются
+ * виртуальные смещения каждой OFFSET_STEP-записи, границы шардов выравниваются на них,
+ * и процесс шарда начинает чтение сразу со своего смещения.
+ */
+public class ShardPlanner {
+
+	private final static int SCAN_THREADS = 4;
+
+	/**
+	 * Шаг (в записях), с которым запоминаются смещения
+	 */
+	public final static int OFFSET_STEP = 1024;
+
+	/**
+	 * Больше максимального размера BGZF-блока: чтение из BgzfInputStream возвращает данные одного блока целиком
+	 */
+	private final static int BUFFER_SIZE = 128 * 1024;
+
+	private static class Scanner {
+
+		private final int offsetStep;
+
+		private final LinkedHashMap<String, Integer> counts;
+		private long[] offsets;
+		private int countOffsets;
+
+		private String contig;
+		private boolean supportContig;
+		private int count;
+
+		private int position;
+
+		private Scanner(int offsetStep, boolean bgzf) {
+			this.offsetStep = offsetStep;
+			this.counts = new LinkedHashMap<>();
+			this.offsets = (bgzf) ? new long[64] : null;
+		}
+
+		private void record(String value, long offset) {
+			if (!value.equals(contig)) {
+				flush();
+				contig = value;
+				supportContig = Chromosome.isSupportChromosome(contig);
+			}
+			if (!supportContig) {
+				return;
+			}
+			if (offsets != null && position % offsetStep == 0) {
+				if (countOffsets == offsets.length) {
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				}
+				offsets[countOffsets++] = offset;
+			}
+			count++;
+			position++;
+		}
+
+		private void flush() {
+			if (supportContig && count > 0) {
+				counts.merge(contig, count, Integer::sum);
+			}
+			count = 0;
+		}
+
+		private ScanResult complete() {
+			flush();
+			return new ScanResult(
+					counts, offsetStep,
+					(offsets != null) ? Arrays.copyOf(offsets, countOffsets) : null
+			);
+		}
+	}
+
+	public static ScanResult scan(Path pathVcf) throws IOException {
+		return scan(pathVcf, OFFSET_STEP);
+	}
+
+	/**
+	 * @param offsetStep - шаг (в записях), с которым запоминаются смещения
+	 */
+	public static ScanResult scan(Path pathVcf, int offsetStep) throws IOException {
+		if (offsetStep < 1) throw new IllegalArgumentException();
+
+		try (InputStream is = openVcf(pathVcf)) {
+			BgzfInputStream bgzfInputStream = (is instanceof BgzfInputStream) ? (BgzfInputStream) is : null;
+			Scanner scanner = new Scanner(offsetStep, bgzfInputStream != null);
+
+			byte[] buffer = new byte[BUFFER_SIZE];
+			StringBuilder firstColumn = new StringBuilder();
+			boolean lineStart = true;
+			boolean skipLine = false;
+			long lineOffset = -1;
+			while (true) {
+				long bufferOffset = (bgzfInputStream != null) ? bgzfInputStream.getVirtualOffset() : -1;
+				int n = is.read(buffer);
+				if (n == -1) {
+					break;
+				}
+				for (int i = 0; i < n; i++) {
+					byte b = buffer[i];
+					if (lineStart) {
+						lineStart = false;
+						lineOffset = (bgzfInputStream != null) ? bufferOffset + i : -1;
+						skipLine = (b == '#');
+						firstColumn.setLength(0);
+					}
+					if (b == '\n') {
+						if (!skipLine && firstColumn.length() > 0) {
+							scanner.record(firstColumn.toString(), lineOffset);
+						}
+						lineStart = true;
+					} else if (!skipLine) {
+						if (b == '\t') {
+							scanner.record(firstColumn.toString(), lineOffset);
+							skipLine = true;
+						} else {
+							firstColumn.append((char) b);
+						}
+					}
+				}
+			}
+			if (!lineStart && !skipLine && firstColumn.length() > 0) {
+				scanner.record(firstColumn.toString(), lineOffset);
+			}
+			return scanner.complete();
+		}
+	}
+
+	/**
+	 * Точное разбиение по кол-ву записей, без смещений
+	 *
+	 * @param counts - кол-во записей по хромосомам в порядке файла
+	 * @param shards - желаемое кол-во шардов, пустые шарды не создаются
+	 */
+	public static List<Shard> split(LinkedHashMap<String, Integer> counts, int shards) {
+		return split(new ScanResult(counts, 1, null), shards);
+	}
+
+	/**
+	 * Если смещения известны, то границы шардов выравниваются на шаг смещений
+	 *
+	 * @param shards - желаемое кол-во шардов, пустые шарды не создаются
+	 */
+	public static List<Shard> split(ScanResult scan, int shards) {
+		if (shards < 1) throw new IllegalArgumentException();
+
+		long total = 0;
+		for (int count : scan.counts.values()) {
+			total += count;
+		}
+
+		List<Shard> result = new ArrayList<>();
+		if (total == 0) {
+			result.add(new Shard(0, 0, 0, "-", "-", -1));
+			return result;
+		}
+		shards = (int) Math.min(shards, total);
+
+		int step = (scan.hasOffsets()) ? scan.offsetStep : 1;
+		int start = 0;
+		for (int i = 0; i < shards; i++) {
+			int end = 0;
+			if (i < shards - 1) {
+				end = (int) (total * (i + 1) / shards);
+				end -= end % step;
+				if (end <= start) {
+					continue;
+				}
+			}
+			result.add(new Shard(
+					result.size(), start, end,
+					getContig(scan.counts, start),
+					getContig(scan.counts, (end == 0) ? (int) total - 1 : end - 1),
+					scan.getOffset(start)
+			));
+			start = end;
+		}
+		return result;
+	}
+
+	private static String getContig(LinkedHashMap<String, Integer> counts, int position) {
+		int offset = 0;
+		String contig = null;
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			contig = entry.getKey();
+			offset += entry.getValue();
+			if (position < offset) {
+				break;
+			}
+		}
+		return contig;
+	}
+
+	private static InputStream openVcf(Path pathVcf) throws IOException {
+		if (!pathVcf.getFileName().toString().endsWith(".gz")) {
+			return Files.newInputStream(pathVcf);
+		} else if (BgzfInputStream.isBgzf(pathVcf)) {
+			return new BgzfInputStream(pathVcf, SCAN_THREADS);
+		} else {
+			return new GZIPInputStream(Files.newInputStream(pathVcf), 64 * 1024);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.struct;
+
+import org.forome.annotation.processing.struct.ProcessingResult;
+
+import java.util.List;
+
+/**
+ * Результаты обработки одной записи vcf-файла (после разбиения мультиаллельного варианта)
+ */
+public class AnnotatorBatch {
+
+	/**
+	 * Порядковый номер записи в vcf-файле
+	 */
+	public final int position;
+
+	/**
+	 * Виртуальное смещение (BGZF) записи vcf-файла, следующей за этой, -1 - неизвестно
+	 */
+	public final long nextOffset;
+
+	public final List<ProcessingResult> processingResults;
+
+	public AnnotatorBatch(int position, long nextOffset, List<ProcessingResult> processingResults) {
+		this.position = position;
+		this.nextOffset = nextOffset;
+		this.processingResults = processingResults;
+	}
+}
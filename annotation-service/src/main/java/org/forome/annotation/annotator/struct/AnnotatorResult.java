@@ -19,6 +19,7 @@
 package org.forome.annotation.annotator.struct;
 
 import io.reactivex.Observable;
+import org.forome.annotation.annotator.executor.MemoryBudget;
 import org.forome.annotation.processing.struct.ProcessingResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,9 +28,21 @@ public class AnnotatorResult {
 
 	private final static Logger log = LoggerFactory.getLogger(AnnotatorResult.class);
 
+	/**
+	 * Результаты, сгруппированные по записям vcf-файла (в порядке файла)
+	 */
+	public final Observable<AnnotatorBatch> observableAnfisaBatch;
+
 	public final Observable<ProcessingResult> observableAnfisaResult;
 
-	public AnnotatorResult(Observable<ProcessingResult> observableAnfisaResult) {
-		this.observableAnfisaResult = observableAnfisaResult;
+	/**
+	 * Бюджет памяти, null - если исполнитель его не использует
+	 */
+	public final MemoryBudget memoryBudget;
+
+	public AnnotatorResult(Observable<AnnotatorBatch> observableAnfisaBatch, MemoryBudget memoryBudget) {
+		this.observableAnfisaBatch = observableAnfisaBatch;
+		this.observableAnfisaResult = observableAnfisaBatch.concatMapIterable(batch -> batch.processingResults);
+		this.memoryBudget = memoryBudget;
 	}
 }
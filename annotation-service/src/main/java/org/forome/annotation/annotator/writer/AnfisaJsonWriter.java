@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.writer;
+
+import net.minidev.json.JSONObject;
+
+import java.io.Closeable;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Запись результата аннотации: по одной json-записи на строку.
+ * Запись сериализуется сразу в выходной поток, без построения промежуточной строки и массива байт.
+ */
+public class AnfisaJsonWriter implements Closeable {
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	/**
+	 * Подсчет записанных символов
+	 */
+	private static class CountingWriter extends FilterWriter {
+
+		private long count;
+
+		private CountingWriter(Writer out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			super.write(c);
+			count++;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			super.write(cbuf, off, len);
+			count += len;
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			super.write(str, off, len);
+			count += len;
+		}
+	}
+
+	private final CountingWriter writer;
+
+	public AnfisaJsonWriter(OutputStream os) {
+		this.writer = new CountingWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return размер сериализованной записи (в символах)
+	 */
+	public long write(JSONObject record) throws IOException {
+		long start = writer.count;
+		record.writeJSONString(writer);
+		writer.write(LINE_SEPARATOR);
+		return writer.count - start;
+	}
+
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
@@ -20,12 +20,14 @@ package org.forome.annotation.config;
 
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
+import org.forome.annotation.config.annotator.AnnotatorConfig;
 import org.forome.annotation.config.connector.ForomeConfigConnector;
 import org.forome.annotation.config.connector.GTFConfigConnector;
 import org.forome.annotation.config.connector.HgmdConfigConnector;
 import org.forome.annotation.config.connector.RefConfigConnector;
 import org.forome.annotation.config.database.DatabaseConfig;
 import org.forome.annotation.config.ensemblvep.EnsemblVepConfig;
+import org.forome.annotation.config.executor.ExecutorConfig;
 import org.forome.annotation.config.frontend.FrontendConfig;
 import org.forome.annotation.config.notification.NotificationSlackConfig;
 import org.forome.annotation.config.source.SourceConfig;
@@ -46,6 +48,11 @@ public class ServiceConfig {
 
 	public final EnsemblVepConfig ensemblVepConfigConnector;
 
+	public final AnnotatorConfig annotatorConfig;
+
+	public final ExecutorConfig gnomadExecutorConfig;
+	public final ExecutorConfig gtfExecutorConfig;
+
 	public final ForomeConfigConnector foromeConfigConnector;
 
 	public final HgmdConfigConnector hgmdConfigConnector;
@@ -75,6 +82,25 @@ public class ServiceConfig {
 
 		ensemblVepConfigConnector = new EnsemblVepConfig((JSONObject) configFileJson.get("ensembl-vep"));
 
+		JSONObject jAnnotator = (JSONObject) configFileJson.get("annotator");
+		if (jAnnotator != null) {
+			annotatorConfig = new AnnotatorConfig(jAnnotator);
+		} else {
+			annotatorConfig = new AnnotatorConfig();
+		}
+
+		JSONObject jExecutors = (JSONObject) configFileJson.get("executors");
+		if (jExecutors != null && jExecutors.containsKey("gnomad")) {
+			gnomadExecutorConfig = new ExecutorConfig((JSONObject) jExecutors.get("gnomad"));
+		} else {
+			gnomadExecutorConfig = new ExecutorConfig();
+		}
+		if (jExecutors != null && jExecutors.containsKey("gtf")) {
+			gtfExecutorConfig = new ExecutorConfig((JSONObject) jExecutors.get("gtf"));
+		} else {
+			gtfExecutorConfig = new ExecutorConfig();
+		}
+
 		JSONObject jConnectors = (JSONObject) configFileJson.get("connectors");
 		foromeConfigConnector = new ForomeConfigConnector((JSONObject) jConnectors.get("forome"));
 		hgmdConfigConnector = new HgmdConfigConnector((JSONObject) jConnectors.get("hgmd"));
@@ -0,0 +1,221 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.config.annotator;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.annotator.executor.ExecutorMode;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class AnnotatorConfig {
+
+	private final static String FIELD_EXECUTOR = "executor";
+	private final static String FIELD_THREADS = "threads";
+	private final static String FIELD_MAX_IN_FLIGHT = "max_in_flight";
+	private final static String FIELD_HEAP_BUDGET = "heap_budget";
+	private final static String FIELD_LOOKUP_THREADS = "lookup_threads";
+	private final static String FIELD_LOOKUP_MAX_PER_SOURCE = "lookup_max_per_source";
+	private final static String FIELD_STATISTICS = "statistics";
+	private final static String FIELD_STATISTICS_INTERVAL = "statistics_interval";
+	private final static String FIELD_METRICS_FILE = "metrics_file";
+	private final static String FIELD_METRICS_INTERVAL = "metrics_interval";
+	private final static String FIELD_OUTPUT_THREADS = "output_threads";
+	private final static String FIELD_CHECKPOINT_INTERVAL = "checkpoint_interval";
+	private final static String FIELD_INPUT_THREADS = "input_threads";
+
+	public final ExecutorMode executorMode;
+
+	/**
+	 * Кол-во потоков обработки, 0 - определяется автоматически
+	 */
+	public final int threads;
+
+	/**
+	 * Максимальное кол-во одновременно обрабатываемых записей, 0 - определяется по кол-ву потоков
+	 */
+	public final int maxInFlight;
+
+	/**
+	 * Объем памяти (в байтах), доступный записям в обработке,
+	 * в конфиге задается в мегабайтах, по умолчанию - половина heap
+	 */
+	public final long heapBudget;
+
+	/**
+	 * Кол-во потоков для параллельных запросов к источникам при аннотации варианта,
+	 * 0 - запросы выполняются последовательно
+	 */
+	public final int lookupThreads;
+
+	/**
+	 * Максимальное кол-во одновременных запросов к одному источнику, 0 - без ограничений
+	 */
+	public final int lookupMaxPerSource;
+
+	/**
+	 * Сбор статистики времени выполнения (источники, поля graphql), можно переключить во время работы
+	 */
+	public final boolean statistics;
+
+	/**
+	 * Период (в секундах) вывода статистики в лог во время аннотации, 0 - только по завершению
+	 */
+	public final int statisticsInterval;
+
+	/**
+	 * Файл, в который периодически сохраняются метрики аннотации (json), null - не сохраняются
+	 */
+	public final Path metricsFile;
+
+	/**
+	 * Период (в секундах) сохранения метрик в файл
+	 */
+	public final int metricsInterval;
+
+	/**
+	 * Кол-во потоков сжатия результата (*.gz, формат BGZF), 0 - определяется автоматически
+	 */
+	public final int outputThreads;
+
+	/**
+	 * Кол-во вариантов vcf-файла между контрольными точками (для восстановления), 0 - не сохраняются
+	 */
+	public final int checkpointInterval;
+
+	/**
+	 * Кол-во потоков чтения сжатого vcf-файла (*.vcf.gz), 0 - определяется автоматически
+	 */
+	public final int inputThreads;
+
+	public AnnotatorConfig() {
+		this(new JSONObject());
+	}
+
+	public AnnotatorConfig(JSONObject parse) {
+		if (parse.containsKey(FIELD_EXECUTOR)) {
+			this.executorMode = ExecutorMode.of(parse.getAsString(FIELD_EXECUTOR));
+		} else {
+			this.executorMode = ExecutorMode.PARTITIONED;
+		}
+
+		if (parse.containsKey(FIELD_THREADS)) {
+			this.threads = parse.getAsNumber(FIELD_THREADS).intValue();
+			if (threads < 0) {
+				throw new RuntimeException("Exception annotator threads: " + threads);
+			}
+		} else {
+			this.threads = 0;
+		}
+
+		if (parse.containsKey(FIELD_MAX_IN_FLIGHT)) {
+			this.maxInFlight = parse.getAsNumber(FIELD_MAX_IN_FLIGHT).intValue();
+			if (maxInFlight < 0) {
+				throw new RuntimeException("Exception annotator max_in_flight: " + maxInFlight);
+			}
+		} else {
+			this.maxInFlight = 0;
+		}
+
+		if (parse.containsKey(FIELD_HEAP_BUDGET)) {
+			long heapBudgetMb = parse.getAsNumber(FIELD_HEAP_BUDGET).longValue();
+			if (heapBudgetMb <= 0) {
+				throw new RuntimeException("Exception annotator heap_budget: " + heapBudgetMb);
+			}
+			this.heapBudget = heapBudgetMb * 1024L * 1024L;
+		} else {
+			this.heapBudget = Runtime.getRuntime().maxMemory() / 2;
+		}
+
+		if (parse.containsKey(FIELD_LOOKUP_THREADS)) {
+			this.lookupThreads = parse.getAsNumber(FIELD_LOOKUP_THREADS).intValue();
+			if (lookupThreads < 0) {
+				throw new RuntimeException("Exception annotator lookup_threads: " + lookupThreads);
+			}
+		} else {
+			this.lookupThreads = 0;
+		}
+
+		if (parse.containsKey(FIELD_LOOKUP_MAX_PER_SOURCE)) {
+			this.lookupMaxPerSource = parse.getAsNumber(FIELD_LOOKUP_MAX_PER_SOURCE).intValue();
+			if (lookupMaxPerSource < 0) {
+				throw new RuntimeException("Exception annotator lookup_max_per_source: " + lookupMaxPerSource);
+			}
+		} else {
+			this.lookupMaxPerSource = 0;
+		}
+
+		if (parse.containsKey(FIELD_STATISTICS)) {
+			this.statistics = (boolean) parse.get(FIELD_STATISTICS);
+		} else {
+			this.statistics = true;
+		}
+
+		if (parse.containsKey(FIELD_STATISTICS_INTERVAL)) {
+			this.statisticsInterval = parse.getAsNumber(FIELD_STATISTICS_INTERVAL).intValue();
+			if (statisticsInterval < 0) {
+				throw new RuntimeException("Exception annotator statistics_interval: " + statisticsInterval);
+			}
+		} else {
+			this.statisticsInterval = 0;
+		}
+
+		if (parse.containsKey(FIELD_METRICS_FILE)) {
+			this.metricsFile = Paths.get(parse.getAsString(FIELD_METRICS_FILE)).toAbsolutePath();
+		} else {
+			this.metricsFile = null;
+		}
+
+		if (parse.containsKey(FIELD_METRICS_INTERVAL)) {
+			this.metricsInterval = parse.getAsNumber(FIELD_METRICS_INTERVAL).intValue();
+			if (metricsInterval < 1) {
+				throw new RuntimeException("Exception annotator metrics_interval: " + metricsInterval);
+			}
+		} else {
+			this.metricsInterval = 60;
+		}
+
+		if (parse.containsKey(FIELD_OUTPUT_THREADS)) {
+			this.outputThreads = parse.getAsNumber(FIELD_OUTPUT_THREADS).intValue();
+			if (outputThreads < 0) {
+				throw new RuntimeException("Exception annotator output_threads: " + outputThreads);
+			}
+		} else {
+			this.outputThreads = 0;
+		}
+
+		if (parse.containsKey(FIELD_CHECKPOINT_INTERVAL)) {
+			this.checkpointInterval = parse.getAsNumber(FIELD_CHECKPOINT_INTERVAL).intValue();
+			if (checkpointInterval < 0) {
+				throw new RuntimeException("Exception annotator checkpoint_interval: " + checkpointInterval);
+			}
+		} else {
+			this.checkpointInterval = 10000;
+		}
+
+		if (parse.containsKey(FIELD_INPUT_THREADS)) {
+			this.inputThreads = parse.getAsNumber(FIELD_INPUT_THREADS).intValue();
+			if (inputThreads < 0) {
+				throw new RuntimeException("Exception annotator input_threads: " + inputThreads);
+			}
+		} else {
+			this.inputThreads = 0;
+		}
+	}
+}
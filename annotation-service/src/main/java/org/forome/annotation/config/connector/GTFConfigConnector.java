@@ -21,9 +21,37 @@ package org.forome.annotation.config.connector;
 import net.minidev.json.JSONObject;
 import org.forome.annotation.config.connector.base.DatabaseConfigConnector;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 public class GTFConfigConnector extends DatabaseConfigConnector {
 
+	private final static String FIELD_MEMORY = "memory";
+	private final static String FIELD_SNAPSHOT = "snapshot";
+
+	/**
+	 * GTF загружается в память целиком, запросы выполняются без обращения к БД
+	 */
+	public final boolean memory;
+
+	/**
+	 * Каталог файлов снапшотов GTF (для режима memory), null - снапшот не сохраняется
+	 */
+	public final Path snapshot;
+
 	public GTFConfigConnector(JSONObject parse) {
 		super(parse);
+
+		if (parse.containsKey(FIELD_MEMORY)) {
+			this.memory = (boolean) parse.get(FIELD_MEMORY);
+		} else {
+			this.memory = false;
+		}
+
+		if (parse.containsKey(FIELD_SNAPSHOT)) {
+			this.snapshot = Paths.get(parse.getAsString(FIELD_SNAPSHOT)).toAbsolutePath();
+		} else {
+			this.snapshot = null;
+		}
 	}
 }
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.config.executor;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.utils.BoundedThreadPoolExecutor;
+
+/**
+ * Настройки пула потоков коннектора (секция executors в конфиге, например {"gnomad": {...}, "gtf": {...}})
+ */
+public class ExecutorConfig {
+
+	private final static String FIELD_THREADS = "threads";
+	private final static String FIELD_QUEUE = "queue";
+	private final static String FIELD_OVERFLOW = "overflow";
+	private final static String FIELD_VIRTUAL = "virtual";
+
+	private final static int DEFAULT_QUEUE = 1024;
+
+	/**
+	 * Кол-во потоков, по умолчанию - по кол-ву процессоров
+	 */
+	public final int threads;
+
+	/**
+	 * Размер очереди задач
+	 */
+	public final int queue;
+
+	/**
+	 * Поведение при переполнении очереди: caller_runs (по умолчанию) - задача выполняется в вызывающем потоке,
+	 * reject - задача отклоняется с ошибкой server_overloaded
+	 */
+	public final BoundedThreadPoolExecutor.Overflow overflow;
+
+	/**
+	 * Использовать виртуальные потоки, если они доступны в JVM (Java 21+), иначе - обычные потоки.
+	 * Имеет смысл вместе с увеличенным threads для источников, которые в основном ждут ответа по сети
+	 */
+	public final boolean virtual;
+
+	public ExecutorConfig() {
+		this(new JSONObject());
+	}
+
+	public ExecutorConfig(JSONObject parse) {
+		if (parse.containsKey(FIELD_THREADS)) {
+			this.threads = parse.getAsNumber(FIELD_THREADS).intValue();
+			if (threads <= 0) {
+				throw new RuntimeException("Exception executor threads: " + threads);
+			}
+		} else {
+			this.threads = Runtime.getRuntime().availableProcessors();
+		}
+
+		if (parse.containsKey(FIELD_QUEUE)) {
+			this.queue = parse.getAsNumber(FIELD_QUEUE).intValue();
+			if (queue <= 0) {
+				throw new RuntimeException("Exception executor queue: " + queue);
+			}
+		} else {
+			this.queue = DEFAULT_QUEUE;
+		}
+
+		if (parse.containsKey(FIELD_OVERFLOW)) {
+			this.overflow = BoundedThreadPoolExecutor.Overflow.of(parse.getAsString(FIELD_OVERFLOW));
+		} else {
+			this.overflow = BoundedThreadPoolExecutor.Overflow.CALLER_RUNS;
+		}
+
+		if (parse.containsKey(FIELD_VIRTUAL)) {
+			this.virtual = (boolean) parse.get(FIELD_VIRTUAL);
+		} else {
+			this.virtual = false;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.config.source;
+
+import net.minidev.json.JSONObject;
+
+public class SourceCacheConfig {
+
+	private final static String FIELD_CAPACITY_MB = "capacity_mb";
+	private final static String FIELD_FASTA_WINDOW = "fasta_window";
+
+	private final static int DEFAULT_CAPACITY_MB = 256;
+
+	/**
+	 * Объем кеша (в байтах), делится поровну между типами запросов
+	 */
+	public final long capacity;
+
+	/**
+	 * Размер окна (в нуклеотидах), которым читается референсная последовательность.
+	 * 0 - запрашивается только необходимый интервал
+	 */
+	public final int fastaWindow;
+
+	public SourceCacheConfig() {
+		this(new JSONObject());
+	}
+
+	public SourceCacheConfig(JSONObject parse) {
+		if (parse.containsKey(FIELD_CAPACITY_MB)) {
+			long capacityMb = parse.getAsNumber(FIELD_CAPACITY_MB).longValue();
+			if (capacityMb < 0) {
+				throw new RuntimeException("Exception source cache capacity_mb: " + capacityMb);
+			}
+			capacity = capacityMb * 1024L * 1024L;
+		} else {
+			capacity = DEFAULT_CAPACITY_MB * 1024L * 1024L;
+		}
+
+		if (parse.containsKey(FIELD_FASTA_WINDOW)) {
+			fastaWindow = parse.getAsNumber(FIELD_FASTA_WINDOW).intValue();
+			if (fastaWindow < 0) {
+				throw new RuntimeException("Exception source cache fasta_window: " + fastaWindow);
+			}
+		} else {
+			fastaWindow = 0;
+		}
+	}
+}
@@ -24,9 +24,11 @@ public class SourceConfig {
 
 	private final static String FIELD_INTERNAL = "internal";
 	private final static String FIELD_EXTERNAL = "external";
+	private final static String FIELD_CACHE = "cache";
 
 	public final SourceInternalConfig sourceInternalConfig;
 	public final SourceExternalConfig sourceExternalConfig;
+	public final SourceCacheConfig sourceCacheConfig;
 
 	public SourceConfig(JSONObject parse) {
 		if (parse.containsKey(FIELD_INTERNAL)) {
@@ -41,6 +43,12 @@ public class SourceConfig {
 			sourceExternalConfig = null;
 		}
 
+		if (parse.containsKey(FIELD_CACHE)) {
+			sourceCacheConfig = new SourceCacheConfig((JSONObject) parse.get(FIELD_CACHE));
+		} else {
+			sourceCacheConfig = new SourceCacheConfig();
+		}
+
 		if (sourceInternalConfig != null && sourceExternalConfig != null) {
 			throw new RuntimeException("Conflict configuration");
 		}
@@ -20,15 +20,23 @@ package org.forome.annotation.config.source;
 
 import net.minidev.json.JSONObject;
 import org.forome.annotation.config.sshtunnel.SshTunnelConfig;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
 
 import java.net.MalformedURLException;
 import java.net.URL;
 
 public class SourceExternalConfig {
 
+	private final static String FIELD_MAX_CONNECTIONS_PER_ROUTE = "max_connections_per_route";
+
 	public final SshTunnelConfig sshTunnelConfig;
 	public final URL url;
 
+	/**
+	 * Размер пула keep-alive соединений к хосту
+	 */
+	public final int maxConnectionsPerRoute;
+
 	public SourceExternalConfig(JSONObject parse) {
 		if (parse.containsKey("ssh_tunnel")) {
 			sshTunnelConfig = new SshTunnelConfig((JSONObject) parse.get("ssh_tunnel"));
@@ -41,5 +49,14 @@ public class SourceExternalConfig {
 		} catch (MalformedURLException e) {
 			throw new RuntimeException(e);
 		}
+
+		if (parse.containsKey(FIELD_MAX_CONNECTIONS_PER_ROUTE)) {
+			maxConnectionsPerRoute = parse.getAsNumber(FIELD_MAX_CONNECTIONS_PER_ROUTE).intValue();
+			if (maxConnectionsPerRoute < 1) {
+				throw new RuntimeException("Exception source max_connections_per_route: " + maxConnectionsPerRoute);
+			}
+		} else {
+			maxConnectionsPerRoute = HttpClientPool.DEFAULT_MAX_PER_ROUTE;
+		}
 	}
 }
@@ -29,12 +29,20 @@ public class SourceInternalConfig {
 	private final static String FIELD_PATH_HG37 = "hg37";
 	private final static String FIELD_PATH_HG38 = "hg38";
 	private final static String FIELD_PATH_PASTORAGE = "pastorage";
+	private final static String FIELD_PATH_FASTA_HG37 = "fasta_hg37";
+	private final static String FIELD_PATH_FASTA_HG38 = "fasta_hg38";
 
 	public final Path hg37;
 	public final Path hg38;
 
 	public final Path pastorage;
 
+	/**
+	 * Локальные индексированные fasta-файлы, при наличии референсная последовательность читается из них
+	 */
+	public final Path fastaHg37;
+	public final Path fastaHg38;
+
 	public final SourceExternalConfig sourceExternalConfig;
 
 	public SourceInternalConfig(JSONObject parse) {
@@ -66,6 +74,23 @@ public class SourceInternalConfig {
 			this.pastorage = null;
 		}
 
+		this.fastaHg37 = parseFastaPath(parse, FIELD_PATH_FASTA_HG37);
+		this.fastaHg38 = parseFastaPath(parse, FIELD_PATH_FASTA_HG38);
+
 		sourceExternalConfig = new SourceExternalConfig((JSONObject) parse.get("external"));
 	}
+
+	private static Path parseFastaPath(JSONObject parse, String field) {
+		if (!parse.containsKey(field)) {
+			return null;
+		}
+		Path path = Paths.get(parse.getAsString(field)).toAbsolutePath();
+		if (!Files.exists(path) || !Files.isRegularFile(path)) {
+			throw new RuntimeException("Exception fasta path: " + path);
+		}
+		if (!Files.exists(Paths.get(path.toString() + ".fai"))) {
+			throw new RuntimeException("Exception fasta index (.fai) not found: " + path);
+		}
+		return path;
+	}
 }
@@ -100,7 +100,7 @@ public class FormatAnfisaController {
 				List<CompletableFuture<JSONObject>> futureAnfisaResults = new ArrayList<>();
 				for (GetAnfisaJSONController.RequestItem requestItem : requestItems) {
 					futureAnfisaResults.add(
-							ensemblVepService.getVepJson(requestItem.chromosome, requestItem.start, requestItem.end, requestItem.alternative)
+							GetAnfisaJSONController.requestVepJson(ensemblVepService, source, requestItem)
 									.thenApply(vepJson -> {
 										VariantVep variantVep = new VariantCustom(
 												requestItem.chromosome,
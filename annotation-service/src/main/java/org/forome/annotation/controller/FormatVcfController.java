@@ -22,6 +22,7 @@ import com.google.common.base.Strings;
 import htsjdk.tribble.TribbleException;
 import htsjdk.variant.vcf.VCFFileReader;
 import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.ParseException;
@@ -30,6 +31,7 @@ import org.forome.annotation.Service;
 import org.forome.annotation.annotator.Annotator;
 import org.forome.annotation.annotator.struct.AnnotatorResult;
 import org.forome.annotation.controller.utils.ResponseBuilder;
+import org.forome.annotation.controller.utils.StreamResponseBuilder;
 import org.forome.annotation.data.anfisa.AnfisaConnector;
 import org.forome.annotation.data.format.FormatAnfisaHttpClient;
 import org.forome.annotation.exception.ExceptionBuilder;
@@ -49,13 +51,17 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 
 @Controller
@@ -64,8 +70,151 @@ public class FormatVcfController {
 
 	private final static Logger log = LoggerFactory.getLogger(FormatVcfController.class);
 
+	private static class FormatVcfRequest {
+
+		private final String requestId;
+		private final TempVCFFile tempVCFFile;
+		private final AnnotatorResult annotatorResult;
+		private final FormatAnfisaHttpClient formatAnfisaHttpClient;
+
+		private FormatVcfRequest(String requestId, TempVCFFile tempVCFFile, AnnotatorResult annotatorResult, FormatAnfisaHttpClient formatAnfisaHttpClient) {
+			this.requestId = requestId;
+			this.tempVCFFile = tempVCFFile;
+			this.annotatorResult = annotatorResult;
+			this.formatAnfisaHttpClient = formatAnfisaHttpClient;
+		}
+	}
+
 	@RequestMapping(value = {"/get"})
 	public CompletableFuture<ResponseEntity> get(HttpServletRequest request) {
+		FormatVcfRequest formatVcfRequest = buildRequest(request);
+		String requestId = formatVcfRequest.requestId;
+		TempVCFFile tempVCFFile = formatVcfRequest.tempVCFFile;
+		AnnotatorResult annotatorResult = formatVcfRequest.annotatorResult;
+		FormatAnfisaHttpClient formatAnfisaHttpClient = formatVcfRequest.formatAnfisaHttpClient;
+
+		CompletableFuture<ResponseEntity> completableFuture = new CompletableFuture<>();
+		List<JSONObject> ourResults = Collections.synchronizedList(new ArrayList<JSONObject>());
+		annotatorResult.observableAnfisaResult
+				.map(processingResult -> {
+					log.debug("FormatVcfController requestId: {}, 1: {}", requestId, processingResult);
+					return processingResult;
+				})
+				.flatMap(processingResult -> {
+					String value = processingResult.toJSON().toJSONString();
+					if (annotatorResult.memoryBudget != null) {
+						annotatorResult.memoryBudget.observe(value.length());
+					}
+					return Observable.fromFuture(formatAnfisaHttpClient.request(value)
+							.thenApply(jsonArray -> {
+								log.debug("FormatVcfController requestId: {}, 2: {}", requestId, jsonArray);
+								return new Object[]{processingResult, jsonArray};
+							}).exceptionally(throwable -> {
+								Main.crash(throwable);
+								return null;
+							})
+					);
+				})
+				.map(objects -> {
+					ProcessingResult processingResult = (ProcessingResult) objects[0];
+					JSONArray results = (JSONArray) objects[1];
+					log.debug("FormatVcfController requestId: {}, 3: {}", requestId, results.toJSONString().length());
+					return buildResult(processingResult, results);
+				})
+				.subscribe(jsonArray -> {
+					log.debug("FormatVcfController requestId: {}, 4: {}", requestId, jsonArray.toJSONString().length());
+					ourResults.add(jsonArray);
+				}, throwable -> {
+					log.error("Exception execute request", throwable);
+					completableFuture.completeExceptionally(throwable);
+					tempVCFFile.close();
+				}, () -> {
+					log.debug("FormatVcfController requestId: {}, 5", requestId);
+					JSONArray out = new JSONArray();
+					for (JSONObject jsonObject : ourResults) {
+						out.add(jsonObject);
+					}
+					completableFuture.complete(ResponseBuilder.build(out));
+					log.debug("FormatVcfController build response, time: {}", System.currentTimeMillis());
+					tempVCFFile.close();
+				});
+		return completableFuture;
+	}
+
+	/**
+	 * Потоковый вариант get: записи отдаются в формате NDJSON по мере аннотации, в порядке vcf-файла.
+	 * Запись в ответ блокируется медленным клиентом, что останавливает и аннотацию -
+	 * в обработке находится не более StreamResponseBuilder.WINDOW записей.
+	 */
+	@RequestMapping(value = {"/stream"})
+	public ResponseEntity<StreamingResponseBody> stream(HttpServletRequest request) {
+		FormatVcfRequest formatVcfRequest = buildRequest(request);
+		String requestId = formatVcfRequest.requestId;
+
+		return StreamResponseBuilder.build(os -> {
+			StreamResponseBuilder.RecordWriter writer = new StreamResponseBuilder.RecordWriter(os);
+
+			CompletableFuture<JSONObject> end = CompletableFuture.completedFuture(null);
+			BlockingQueue<CompletableFuture<JSONObject>> window = new ArrayBlockingQueue<>(StreamResponseBuilder.WINDOW);
+			Disposable disposable = formatVcfRequest.annotatorResult.observableAnfisaResult.subscribe(
+					processingResult -> window.put(
+							formatVcfRequest.formatAnfisaHttpClient.request(processingResult.toJSON().toJSONString())
+									.thenApply(results -> buildResult(processingResult, results))
+					),
+					throwable -> {
+						CompletableFuture<JSONObject> error = new CompletableFuture<>();
+						error.completeExceptionally(throwable);
+						window.put(error);
+					},
+					() -> window.put(end)
+			);
+			int count = 0;
+			try {
+				while (true) {
+					CompletableFuture<JSONObject> future = window.take();
+					if (future == end) {
+						break;
+					}
+					JSONObject out;
+					try {
+						out = future.join();
+					} catch (Throwable e) {
+						log.error("Exception execute request", e);
+						writer.writeError(e);
+						break;
+					}
+					writer.write(out);
+					count++;
+				}
+				log.debug("FormatVcfController requestId: {}, stream completed, records: {}", requestId, count);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} finally {
+				//Клиент мог отключиться - останавливаем аннотацию
+				disposable.dispose();
+				window.clear();
+				formatVcfRequest.tempVCFFile.close();
+			}
+		});
+	}
+
+	private static JSONObject buildResult(ProcessingResult processingResult, JSONArray results) {
+		JSONObject out = new JSONObject();
+		Variant variant = processingResult.variant;
+		out.put("input", new JSONArray() {{
+			add(variant.chromosome.getChromosome());
+			add(variant.getStart());
+			add(variant.end);
+			add(processingResult.variant.getStrAlt());
+		}});
+		out.put("result", new JSONArray() {{
+			add(results);
+		}});
+		return out;
+	}
+
+	private static FormatVcfRequest buildRequest(HttpServletRequest request) {
 		Service service = Service.getInstance();
 
 		BuilderAuthContext builderAuthContext = new BuilderAuthContext(service);
@@ -94,6 +243,7 @@ public class FormatVcfController {
 		try {
 			annotator = new Annotator(
 					ensemblVepService, processing,
+					service.getServiceConfig().annotatorConfig,
 					String.format("%s_wgs", "noname"), CasePlatform.WGS,
 					Assembly.GRCh37,
 					null,null,null,
@@ -116,60 +266,7 @@ public class FormatVcfController {
 				null,0
 		);
 
-		CompletableFuture<ResponseEntity> completableFuture = new CompletableFuture<>();
-		List<JSONObject> ourResults = Collections.synchronizedList(new ArrayList<JSONObject>());
-		annotatorResult.observableAnfisaResult
-				.map(processingResult -> {
-					log.debug("FormatVcfController requestId: {}, 1: {}", requestId, processingResult);
-					return processingResult;
-				})
-				.flatMap(processingResult ->
-						Observable.fromFuture(formatAnfisaHttpClient.request(processingResult.toJSON().toJSONString())
-								.thenApply(jsonArray -> {
-									log.debug("FormatVcfController requestId: {}, 2: {}", requestId, jsonArray);
-									return new Object[]{processingResult, jsonArray};
-								}).exceptionally(throwable -> {
-									Main.crash(throwable);
-									return null;
-								})
-						)
-				)
-				.map(objects -> {
-					ProcessingResult processingResult = (ProcessingResult) objects[0];
-					JSONArray results = (JSONArray) objects[1];
-					log.debug("FormatVcfController requestId: {}, 3: {}", requestId, results.toJSONString().length());
-
-					JSONObject out = new JSONObject();
-					Variant variant = processingResult.variant;
-					out.put("input", new JSONArray() {{
-						add(variant.chromosome.getChromosome());
-						add(variant.getStart());
-						add(variant.end);
-						add(processingResult.variant.getStrAlt());
-					}});
-					out.put("result", new JSONArray() {{
-						add(results);
-					}});
-					return out;
-				})
-				.subscribe(jsonArray -> {
-					log.debug("FormatVcfController requestId: {}, 4: {}", requestId, jsonArray.toJSONString().length());
-					ourResults.add(jsonArray);
-				}, throwable -> {
-					log.error("Exception execute request", throwable);
-					completableFuture.completeExceptionally(throwable);
-					tempVCFFile.close();
-				}, () -> {
-					log.debug("FormatVcfController requestId: {}, 5", requestId);
-					JSONArray out = new JSONArray();
-					for (JSONObject jsonObject : ourResults) {
-						out.add(jsonObject);
-					}
-					completableFuture.complete(ResponseBuilder.build(out));
-					log.debug("FormatVcfController build response, time: {}", System.currentTimeMillis());
-					tempVCFFile.close();
-				});
-		return completableFuture;
+		return new FormatVcfRequest(requestId, tempVCFFile, annotatorResult, formatAnfisaHttpClient);
 	}
 
 	private static class TempVCFFile implements AutoCloseable {
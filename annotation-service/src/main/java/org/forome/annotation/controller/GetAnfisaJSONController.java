@@ -25,6 +25,7 @@ import net.minidev.json.parser.JSONParser;
 import org.forome.annotation.Service;
 import org.forome.annotation.controller.utils.RequestParser;
 import org.forome.annotation.controller.utils.ResponseBuilder;
+import org.forome.annotation.controller.utils.StreamResponseBuilder;
 import org.forome.annotation.data.anfisa.AnfisaConnector;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.network.authcontext.BuilderAuthContext;
@@ -39,13 +40,16 @@ import org.forome.annotation.struct.variant.vep.VariantVep;
 import org.forome.annotation.utils.ExecutorServiceUtils;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
@@ -110,17 +114,7 @@ public class GetAnfisaJSONController {
 
 				for (RequestItem requestItem : requestItems) {
 					futureProcessingResults.add(
-							ensemblVepService.getVepJson(requestItem.chromosome, requestItem.start, requestItem.end, requestItem.alternative)
-									.thenApply(vepJson -> {
-										VariantVep variantVep = new VariantCustom(
-												requestItem.chromosome,
-												requestItem.start, requestItem.end,
-												null, //TODO Ulitin V. не реализованно
-												new Allele(requestItem.alternative)
-										);
-										variantVep.setVepJson(vepJson);
-										return processing.exec(null, variantVep);
-									})
+							annotate(ensemblVepService, source, processing, requestItem)
 					);
 				}
 
@@ -130,20 +124,7 @@ public class GetAnfisaJSONController {
 							for (int i = 0; i < requestItems.size(); i++) {
 								RequestItem requestItem = requestItems.get(i);
 								ProcessingResult processingResult = futureProcessingResults.get(i).join();
-
-								JSONObject result = new JSONObject();
-								result.put("input", new JSONArray() {{
-									add(requestItem.chromosome);
-									add(requestItem.start);
-									add(requestItem.end);
-									add(requestItem.alternative);
-								}});
-
-								JSONArray outAnfisaResults = new JSONArray();
-								outAnfisaResults.add(processingResult.toJSON());
-								result.put("result", outAnfisaResults);
-
-								results.add(result);
+								results.add(buildResult(requestItem, processingResult));
 							}
 
 							long t2 = System.currentTimeMillis();
@@ -177,6 +158,107 @@ public class GetAnfisaJSONController {
 				.exceptionally(throwable -> ResponseBuilder.build(throwable));
 	}
 
+	/**
+	 * Потоковый вариант: результаты отдаются в формате NDJSON в порядке запроса, по мере готовности.
+	 * Одновременно обрабатывается не более StreamResponseBuilder.WINDOW вариантов, следующий вариант
+	 * запускается после отправки клиенту самого раннего из обрабатываемых.
+	 */
+	@RequestMapping(value = { "/stream" })
+	public ResponseEntity<StreamingResponseBody> stream(HttpServletRequest request) {
+		Service service = Service.getInstance();
+
+		BuilderAuthContext builderAuthContext = new BuilderAuthContext(service);
+		builderAuthContext.auth(request);
+
+		String sRequestData = request.getParameter("data");
+		if (Strings.isNullOrEmpty(sRequestData)) {
+			throw ExceptionBuilder.buildInvalidValueException("data");
+		}
+
+		EnsemblVepService ensemblVepService = service.getEnsemblVepService();
+		if (ensemblVepService == null) {
+			throw ExceptionBuilder.buildInvalidOperation("inited");
+		}
+
+		ArrayList<RequestItem> requestItems = parseRequestData(sRequestData);
+
+		Source source = service.getSourceService().dataSource.getSource(Assembly.GRCh37);
+		Processing processing = new Processing(source, service.getAnfisaConnector(), TypeQuery.PATIENT_HG19);
+
+		return StreamResponseBuilder.build(os -> {
+			long t1 = System.currentTimeMillis();
+			StreamResponseBuilder.RecordWriter writer = new StreamResponseBuilder.RecordWriter(os);
+
+			ArrayDeque<CompletableFuture<JSONObject>> window = new ArrayDeque<>();
+			try {
+				for (RequestItem requestItem : requestItems) {
+					if (window.size() >= StreamResponseBuilder.WINDOW) {
+						writer.write(window.poll().join());
+					}
+					window.add(
+							annotate(ensemblVepService, source, processing, requestItem)
+									.thenApply(processingResult -> buildResult(requestItem, processingResult))
+					);
+				}
+				while (!window.isEmpty()) {
+					writer.write(window.poll().join());
+				}
+			} catch (RuntimeException ex) {
+				log.error("Exception execute request", (ex instanceof CompletionException) ? ex.getCause() : ex);
+				writer.writeError(ex);
+				return;
+			}
+
+			long t2 = System.currentTimeMillis();
+			log.debug("GetAnfisaJSONController stream request, size: {}, time: {} ms", requestItems.size(), t2 - t1);
+		});
+	}
+
+	private static CompletableFuture<ProcessingResult> annotate(EnsemblVepService ensemblVepService, Source source, Processing processing, RequestItem requestItem) {
+		return requestVepJson(ensemblVepService, source, requestItem)
+				.thenApply(vepJson -> {
+					VariantVep variantVep = new VariantCustom(
+							requestItem.chromosome,
+							requestItem.start, requestItem.end,
+							null, //TODO Ulitin V. не реализованно
+							new Allele(requestItem.alternative)
+					);
+					variantVep.setVepJson(vepJson);
+					return processing.exec(null, variantVep);
+				});
+	}
+
+	/**
+	 * Запрос идет через пакетный endpoint ensembl-vep: одновременные запросы объединяются клиентом
+	 * в один POST, референсный аллель берется из fasta (у вставки start = end + 1 - пустой)
+	 */
+	static CompletableFuture<JSONObject> requestVepJson(EnsemblVepService ensemblVepService, Source source, RequestItem requestItem) {
+		String reference = "";
+		if (requestItem.start <= requestItem.end) {
+			reference = source.getFastaSequence(
+					Interval.of(requestItem.chromosome, requestItem.start, requestItem.end)
+			).getValue().toUpperCase();
+		}
+		return ensemblVepService.getVepJson(
+				requestItem.chromosome, requestItem.start, requestItem.end, reference, requestItem.alternative
+		);
+	}
+
+	private static JSONObject buildResult(RequestItem requestItem, ProcessingResult processingResult) {
+		JSONObject result = new JSONObject();
+		result.put("input", new JSONArray() {{
+			add(requestItem.chromosome);
+			add(requestItem.start);
+			add(requestItem.end);
+			add(requestItem.alternative);
+		}});
+
+		JSONArray outAnfisaResults = new JSONArray();
+		outAnfisaResults.add(processingResult.toJSON());
+		result.put("result", outAnfisaResults);
+		return result;
+	}
+
 	public static ArrayList<RequestItem> parseRequestData(String sRequestData) {
 		ArrayList<RequestItem> requestItems = new ArrayList<>();
 		JSONArray jRequestData;
@@ -92,6 +92,8 @@ public class GetGnomAdDataController {
 
 				List<CompletableFuture<GnomadResult>> futureGnomadResults = new ArrayList<>();
 				GnomadConnectorImpl gnomadConnector = service.getGnomadConnector();
+				//Если пул gnomAD не успевает - запрос отклоняется целиком (503 и Retry-After)
+				gnomadConnector.getExecutor().checkCapacity(requestItems.size());
 				for (RequestItem requestItem : requestItems) {
 					futureGnomadResults.add(gnomadConnector.request(
 							null,
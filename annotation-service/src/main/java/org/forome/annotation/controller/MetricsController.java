@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.controller;
+
+import org.forome.annotation.Service;
+import org.forome.annotation.controller.utils.ResponseBuilder;
+import org.forome.annotation.exception.ExceptionBuilder;
+import org.forome.annotation.network.authcontext.BuilderAuthContext;
+import org.forome.annotation.utils.Statistics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * http://localhost:8095/Metrics?session=...
+ * POST http://localhost:8095/Metrics/statistics?session=...&enabled=false - выключить сбор статистики времени выполнения
+ * (начальное значение - параметр statistics секции annotator конфига)
+ */
+@Controller
+@RequestMapping(value = {"/Metrics", "/annotationservice/Metrics"})
+public class MetricsController {
+
+	@RequestMapping(value = {"", "/"}, method = RequestMethod.GET)
+	public ResponseEntity execute(HttpServletRequest request) {
+		Service service = Service.getInstance();
+
+		BuilderAuthContext builderAuthContext = new BuilderAuthContext(service);
+		builderAuthContext.auth(request);
+
+		return ResponseBuilder.build(service.getMetricsService().build());
+	}
+
+	@RequestMapping(value = {"/statistics"}, method = RequestMethod.POST)
+	public ResponseEntity statistics(HttpServletRequest request) {
+		Service service = Service.getInstance();
+
+		BuilderAuthContext builderAuthContext = new BuilderAuthContext(service);
+		builderAuthContext.auth(request);
+
+		String sEnabled = request.getParameter("enabled");
+		if ("true".equals(sEnabled)) {
+			Statistics.setEnabled(true);
+		} else if ("false".equals(sEnabled)) {
+			Statistics.setEnabled(false);
+		} else {
+			throw ExceptionBuilder.buildInvalidValueException("enabled", sEnabled);
+		}
+
+		return ResponseBuilder.build(service.getMetricsService().build());
+	}
+}
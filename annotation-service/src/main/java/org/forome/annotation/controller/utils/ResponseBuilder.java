@@ -36,6 +36,9 @@ public class ResponseBuilder {
 	private static final String JSON_PROP_ERROR = "error";
 	private static final String JSON_PROP_DATA = "data";
 
+	private static final String CODE_SERVER_OVERLOADED = "server_overloaded";
+	private static final String PARAMETER_RETRY_AFTER = "retry_after";
+
 	public static ResponseEntity build(JSONAware data) {
 		JSONObject out = new JSONObject();
 		out.put(JSON_PROP_DATA, data);
@@ -66,6 +69,30 @@ public class ResponseBuilder {
 	}
 
 	public static ResponseEntity build(AnnotatorException e) {
+		JSONObject out = buildError(e);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+		headers.setCacheControl("no-cache, no-store, must-revalidate");
+		headers.setPragma("no-cache");
+		headers.setExpires(0);
+
+		//Перегрузка - временная ошибка, клиент может повторить запрос позже
+		if (CODE_SERVER_OVERLOADED.equals(e.getCode())) {
+			Object retryAfter = (e.getParameters() != null) ? e.getParameters().get(PARAMETER_RETRY_AFTER) : null;
+			if (retryAfter != null) {
+				headers.set("Retry-After", retryAfter.toString());
+			}
+			return new ResponseEntity(out.toString().getBytes(StandardCharsets.UTF_8), headers, HttpStatus.SERVICE_UNAVAILABLE);
+		}
+
+		return new ResponseEntity(out.toString().getBytes(StandardCharsets.UTF_8), headers, HttpStatus.INTERNAL_SERVER_ERROR);
+	}
+
+	/**
+	 * Описание ошибки: {"error": {"code": ..., "parameters": ..., "comment": ...}}
+	 */
+	public static JSONObject buildError(AnnotatorException e) {
 		JSONObject outError = new JSONObject();
 		outError.put("code", e.getCode());
 		if (e.getParameters() != null && !e.getParameters().isEmpty()) {
@@ -81,13 +108,6 @@ public class ResponseBuilder {
 
 		JSONObject out = new JSONObject();
 		out.put(JSON_PROP_ERROR, outError);
-
-		HttpHeaders headers = new HttpHeaders();
-		headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
-		headers.setCacheControl("no-cache, no-store, must-revalidate");
-		headers.setPragma("no-cache");
-		headers.setExpires(0);
-
-		return new ResponseEntity(out.toString().getBytes(StandardCharsets.UTF_8), headers, HttpStatus.INTERNAL_SERVER_ERROR);
+		return out;
 	}
 }
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.controller.utils;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.Service;
+import org.forome.annotation.exception.AnnotatorException;
+import org.forome.annotation.exception.ExceptionBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Потоковый ответ в формате NDJSON: по одной json-записи на строку, каждая запись отправляется клиенту
+ * сразу после записи (chunked). Запись в поток ответа блокируется, пока клиент не прочитает данные,
+ * поэтому кол-во записей в обработке ограничивается окном, а не размером запроса.
+ */
+public class StreamResponseBuilder {
+
+	public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
+	/**
+	 * Максимальное кол-во записей, обрабатываемых одновременно для одного ответа
+	 */
+	public static final int WINDOW = 64;
+
+	public static ResponseEntity<StreamingResponseBody> build(StreamingResponseBody body) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(APPLICATION_NDJSON);
+		headers.setCacheControl("no-cache, no-store, must-revalidate");
+		headers.setPragma("no-cache");
+		headers.setExpires(0);
+
+		return new ResponseEntity<>(body, headers, HttpStatus.OK);
+	}
+
+	public static class RecordWriter {
+
+		private final Writer writer;
+
+		public RecordWriter(OutputStream os) {
+			this.writer = new OutputStreamWriter(os, StandardCharsets.UTF_8);
+		}
+
+		public void write(JSONObject record) throws IOException {
+			record.writeJSONString(writer);
+			writer.write('\n');
+			writer.flush();
+		}
+
+		/**
+		 * Статус ответа уже отправлен, поэтому ошибка всегда передается последней строкой - иначе оборванный
+		 * поток неотличим от полного. Непредвиденные ошибки дополнительно обрабатываются так же, как в
+		 * ResponseBuilder, а клиенту передается код internal_error
+		 */
+		public void writeError(Throwable throwable) throws IOException {
+			Throwable exception = throwable;
+			while ((exception instanceof CompletionException || exception instanceof ExecutionException)
+					&& exception.getCause() != null) {
+				exception = exception.getCause();
+			}
+			if (exception instanceof AnnotatorException) {
+				write(ResponseBuilder.buildError((AnnotatorException) exception));
+			} else {
+				Service.getInstance().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), exception);
+				write(ResponseBuilder.buildError(ExceptionBuilder.buildInternalException(exception)));
+			}
+		}
+	}
+}
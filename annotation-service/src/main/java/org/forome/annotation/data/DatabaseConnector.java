@@ -21,6 +21,7 @@ package org.forome.annotation.data;
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 import com.mchange.v2.resourcepool.TimeoutException;
 import org.forome.annotation.config.connector.base.DatabaseConfigConnector;
+import org.forome.annotation.data.query.QueryStatistics;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.struct.SourceMetadata;
@@ -37,6 +38,18 @@ public class DatabaseConnector implements Closeable {
 
 	private final static Logger log = LoggerFactory.getLogger(DatabaseConnector.class);
 
+	@FunctionalInterface
+	public interface StatementBinder {
+
+		void bind(PreparedStatement statement) throws SQLException;
+	}
+
+	@FunctionalInterface
+	public interface RowHandler {
+
+		void handle(ResultSet resultSet) throws SQLException;
+	}
+
 	private final DatabaseConfigConnector databaseConfigConnector;
 	private final ComboPooledDataSource pooledDataSource;
 
@@ -73,6 +86,34 @@ public class DatabaseConnector implements Closeable {
 		}
 	}
 
+	public void query(QueryStatistics statistics, String sql, StatementBinder binder, RowHandler handler) throws SQLException {
+		query(statistics, sql, 1, binder, handler);
+	}
+
+	/**
+	 * Выполнение подготовленного запроса. Драйвер кеширует server-side prepared statements на соединении
+	 * (cachePrepStmts), поэтому повторный запрос с тем же текстом не разбирается сервером заново.
+	 *
+	 * @param keyCount - кол-во ключей в пакетном запросе (для статистики)
+	 */
+	public void query(QueryStatistics statistics, String sql, int keyCount, StatementBinder binder, RowHandler handler) throws SQLException {
+		long t1 = System.nanoTime();
+		int rows = 0;
+		try (Connection connection = createConnection()) {
+			try (PreparedStatement statement = connection.prepareStatement(sql)) {
+				binder.bind(statement);
+				try (ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						handler.handle(resultSet);
+						rows++;
+					}
+				}
+			}
+		} finally {
+			statistics.add(System.nanoTime() - t1, rows, keyCount);
+		}
+	}
+
 	public String getDatabase() {
 		return databaseConfigConnector.mysqlDatabase;
 	}
@@ -26,6 +26,7 @@ import htsjdk.variant.variantcontext.GenotypeType;
 import htsjdk.variant.variantcontext.VariantContext;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
+import org.forome.annotation.data.anfisa.AnfisaLookupExecutor.Lookup;
 import org.forome.annotation.data.anfisa.struct.*;
 import org.forome.annotation.data.clinvar.ClinvarConnector;
 import org.forome.annotation.data.clinvar.struct.ClinvarResult;
@@ -72,6 +73,8 @@ import org.slf4j.LoggerFactory;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -101,6 +104,8 @@ public class AnfisaConnector implements AutoCloseable {
 
 	public final DbNSFPConnector dbNSFPConnector;
 
+	private final AnfisaLookupExecutor lookupExecutor;
+
 	public AnfisaConnector(
 			SourceService sourceService,
 			GnomadConnector gnomadConnector,
@@ -111,6 +116,26 @@ public class AnfisaConnector implements AutoCloseable {
 			GTFConnector gtfConnector,
 			GTEXConnector gtexConnector,
 			PharmGKBConnector pharmGKBConnector
+	) {
+		this(
+				sourceService,
+				gnomadConnector, spliceAIConnector, hgmdConnector, clinvarConnector,
+				liftoverConnector, gtfConnector, gtexConnector, pharmGKBConnector,
+				new AnfisaLookupExecutor()
+		);
+	}
+
+	public AnfisaConnector(
+			SourceService sourceService,
+			GnomadConnector gnomadConnector,
+			SpliceAIConnector spliceAIConnector,
+			HgmdConnector hgmdConnector,
+			ClinvarConnector clinvarConnector,
+			LiftoverConnector liftoverConnector,
+			GTFConnector gtfConnector,
+			GTEXConnector gtexConnector,
+			PharmGKBConnector pharmGKBConnector,
+			AnfisaLookupExecutor lookupExecutor
 	) {
 		this.sourceService = sourceService;
 		this.gnomadConnector = gnomadConnector;
@@ -127,33 +152,111 @@ public class AnfisaConnector implements AutoCloseable {
 //		this.aStorageHttp = aStorageHttp;
 
 		this.dbNSFPConnector = new DbNSFPConnector();
+
+		this.lookupExecutor = lookupExecutor;
 	}
 
 	public AnfisaResult build(
 			AnfisaInput anfisaInput,
 			Variant variant
+	) {
+		try {
+			return buildAsync(anfisaInput, variant).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+	/**
+	 * Запросы ко всем источникам запускаются одновременно (см. AnfisaLookupExecutor),
+	 * результат собирается после завершения последнего из них
+	 */
+	public CompletableFuture<AnfisaResult> buildAsync(
+			AnfisaInput anfisaInput,
+			Variant variant
 	) {
 		Assembly assembly = anfisaInput.mCase.assembly;
 		JSONObject vepJson = (variant instanceof VariantVep) ? ((VariantVep) variant).getVepJson() : null;
 
-		Record record = new Record();
 		AnfisaExecuteContext context = new AnfisaExecuteContext(
 				anfisaInput, variant, vepJson
 		);
 
+		Source source = sourceService.dataSource.getSource(assembly);
+
+		CompletableFuture<GnomadResult> fGnomadResult = lookupExecutor.supply(Lookup.GNOMAD,
+				() -> getGnomadResult(context, variant)
+		);
+		CompletableFuture<SpliceAIResult> fSpliceAIResult = lookupExecutor.supply(Lookup.SPLICEAI,
+				() -> getSpliceAIResult(source, context, variant)
+		);
+		CompletableFuture<HgmdResult> fHgmdResult = lookupExecutor.supply(Lookup.HGMD,
+				() -> getHgmdResult(context)
+		);
+		CompletableFuture<List<ClinvarResult>> fClinvarResults = lookupExecutor.supply(Lookup.CLINVAR,
+				() -> getClinvarResults(context)
+		);
+		CompletableFuture<ClinvarVariantSummary> fClinvarVariantSummary = lookupExecutor.supply(Lookup.CLINVAR,
+				() -> clinvarConnector.getDataVariantSummary(assembly, variant.chromosome, variant.getStart(), variant.end)
+		);
+		CompletableFuture<GtfAnfisaResult> fGtfAnfisaResult = lookupExecutor.supply(Lookup.GTF,
+				() -> gtfAnfisaBuilder.build(variant, context)
+		);
+		CompletableFuture<List<Tissue>> fTissues = lookupExecutor.supply(Lookup.GTEX,
+				() -> getTissues(getGenes((VariantVep) variant))
+		);
+		CompletableFuture<List<DbNSFPItem>> fDbNSFPItems = lookupExecutor.supply(Lookup.DBNSFP,
+				() -> dbNSFPConnector.getAll(source, variant)
+		);
+		CompletableFuture<PharmGKBResult> fPharmGKBResult = lookupExecutor.supply(Lookup.PHARMGKB,
+				() -> getPharmGKBResult(context, source)
+		);
+
+		return CompletableFuture.allOf(
+				fGnomadResult, fSpliceAIResult, fHgmdResult, fClinvarResults, fClinvarVariantSummary,
+				fGtfAnfisaResult, fTissues, fDbNSFPItems, fPharmGKBResult
+		).thenApply(ignore -> build(
+				context, source,
+				fGnomadResult.join(), fSpliceAIResult.join(), fHgmdResult.join(),
+				fClinvarResults.join(), fClinvarVariantSummary.join(),
+				fGtfAnfisaResult.join(), fTissues.join(), fDbNSFPItems.join(), fPharmGKBResult.join()
+		));
+	}
+
+	private AnfisaResult build(
+			AnfisaExecuteContext context,
+			Source source,
+			GnomadResult gnomadResult,
+			SpliceAIResult spliceAIResult,
+			HgmdResult hgmdResult,
+			List<ClinvarResult> clinvarResults,
+			ClinvarVariantSummary clinvarVariantSummary,
+			GtfAnfisaResult gtfAnfisaResult,
+			List<Tissue> tissues,
+			List<DbNSFPItem> dbNSFPItems,
+			PharmGKBResult pharmGKBResult
+	) {
+		AnfisaInput anfisaInput = context.anfisaInput;
+		Variant variant = context.variant;
+		JSONObject vepJson = context.vepJson;
+
+		Record record = new Record();
+
 		AnfisaResultFilters filters = new AnfisaResultFilters();
 		AnfisaResultData data = new AnfisaResultData();
 		AnfisaResultView view = new AnfisaResultView();
 
 		data.version = AppVersion.getVersionFormat();
 
-		Source source = sourceService.dataSource.getSource(assembly);
-
-		callGnomAD(context, variant, anfisaInput.mCase, filters);
-		callSpliceai(source, context, data, filters, variant);
-		callHgmd(record, context, filters, data);
-		callClinvar(context, record, variant.chromosome.getChar(), filters, data, view, vepJson);
-		GtfAnfisaResult gtfAnfisaResult = gtfAnfisaBuilder.build(variant, context);
+		callGnomAD(gnomadResult, context, variant, anfisaInput.mCase, filters);
+		callSpliceai(spliceAIResult, data, filters);
+		callHgmd(hgmdResult, record, filters, data);
+		callClinvar(clinvarResults, clinvarVariantSummary, context, record, filters, data, view);
 		callQuality(filters, variant);
 
 		Sample proband = anfisaInput.mCase.proband;
@@ -225,13 +328,13 @@ public class AnfisaConnector implements AutoCloseable {
 					variantCNV.getGenotype(anfisaInput.mCase.proband.id).lo;
 		}
 
-		createGeneralTab(context, data, filters, view, variant, anfisaInput.mCase);
+		createGeneralTab(tissues, data, filters, view, variant, anfisaInput.mCase);
 		createQualityTab(view, variant, anfisaInput.mCase);
-		createGnomadTab(context, variant, anfisaInput.mCase, view);
+		createGnomadTab(gnomadResult, context, variant, anfisaInput.mCase, view);
 		createDatabasesTab(record, data, view);
-		createPredictionsTab(source, context, variant, view);
+		createPredictionsTab(dbNSFPItems, variant, view);
 		createBioinformaticsTab(gtfAnfisaResult, context, filters, data, view);
-		createPharmacogenomicsTab(context, view, filters, variant, source);
+		createPharmacogenomicsTab(pharmGKBResult, view, filters);
 		countCohorts(view, filters, anfisaInput.mCase, variant);
 
 		return new AnfisaResult(filters, data, view, context);
@@ -303,16 +406,28 @@ public class AnfisaConnector implements AutoCloseable {
 		return variant.getRef() + "/" + variant.getStrAlt();
 	}
 
-	private void callHgmd(Record record, AnfisaExecuteContext context, AnfisaResultFilters filters, AnfisaResultData data) {
+	private HgmdResult getHgmdResult(AnfisaExecuteContext context) {
 		Assembly assembly = context.anfisaInput.mCase.assembly;
 		Variant variant = context.variant;
 		List<String> accNums = hgmdConnector.getAccNum(assembly, variant.chromosome.getChar(), variant.getStart(), variant.end);
+		if (accNums.isEmpty()) {
+			return new HgmdResult(accNums, null, Collections.emptyList());
+		}
+		return new HgmdResult(
+				accNums,
+				hgmdConnector.getDataForAccessionNumbers(accNums),
+				hgmdConnector.getHg38(accNums)
+		);
+	}
+
+	private void callHgmd(HgmdResult hgmdResult, Record record, AnfisaResultFilters filters, AnfisaResultData data) {
+		List<String> accNums = hgmdResult.accNums;
 		if (accNums.size() > 0) {
-			HgmdConnector.Data hgmdData = hgmdConnector.getDataForAccessionNumbers(accNums);
+			HgmdConnector.Data hgmdData = hgmdResult.data;
 			record.hgmdData = hgmdData;
 
 			data.hgmd = String.join(",", accNums);
-			List<Long[]> hg38 = hgmdConnector.getHg38(accNums);
+			List<Long[]> hg38 = hgmdResult.hg38;
 
 			data.hgmdHg38 = hg38.stream().map(longs -> String.format("%s-%s", longs[0], longs[1])).collect(Collectors.joining(", "));
 			List<String> tags = hgmdData.hgmdPmidRows.stream().map(hgmdPmidRow -> hgmdPmidRow.tag).collect(Collectors.toList());
@@ -320,17 +435,20 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 	}
 
-	private void callClinvar(AnfisaExecuteContext context, Record record, String _chromosome, AnfisaResultFilters filters, AnfisaResultData data, AnfisaResultView view, JSONObject json) {
+	private List<ClinvarResult> getClinvarResults(AnfisaExecuteContext context) {
 		Assembly assembly = context.anfisaInput.mCase.assembly;
 		Variant variant = context.variant;
-		Chromosome chromosome = variant.chromosome;
-
-		List<ClinvarResult> clinvarResults;
 		if (isSnv(variant)) {
-			clinvarResults = clinvarConnector.getData(assembly, _chromosome, variant.getStart(), variant.end, variant.getStrAlt());
+			return clinvarConnector.getData(assembly, variant.chromosome.getChar(), variant.getStart(), variant.end, variant.getStrAlt());
 		} else {
-			clinvarResults = clinvarConnector.getExpandedData(assembly, variant);
+			return clinvarConnector.getExpandedData(assembly, variant);
 		}
+	}
+
+	private void callClinvar(List<ClinvarResult> clinvarResults, ClinvarVariantSummary clinvarVariantSummary, AnfisaExecuteContext context, Record record, AnfisaResultFilters filters, AnfisaResultData data, AnfisaResultView view) {
+		Variant variant = context.variant;
+		Chromosome chromosome = variant.chromosome;
+
 		record.clinvarResults = clinvarResults;
 		if (!clinvarResults.isEmpty()) {
 
@@ -419,7 +537,6 @@ public class AnfisaConnector implements AutoCloseable {
 			filters.clinvarTrustedBenign = Optional.ofNullable(benign);
 		}
 
-		ClinvarVariantSummary clinvarVariantSummary = clinvarConnector.getDataVariantSummary(assembly, chromosome, variant.getStart(), variant.end);
 		if (clinvarVariantSummary != null) {
 			view.databases.clinvarReviewStatus = clinvarVariantSummary.reviewStatus.text;
 			filters.clinvarReviewStatus = clinvarVariantSummary.reviewStatus;
@@ -443,7 +560,7 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 	}
 
-	private void callGnomAD(AnfisaExecuteContext context, Variant variant, MCase samples, AnfisaResultFilters filters) {
+	private void callGnomAD(GnomadResult gnomadResult, AnfisaExecuteContext context, Variant variant, MCase samples, AnfisaResultFilters filters) {
 		Double af = null;
 		Double _af = null;
 		Double emAf = null;
@@ -458,7 +575,6 @@ public class AnfisaConnector implements AutoCloseable {
 		Long hom = null;
 		Long hem = null;
 
-		GnomadResult gnomadResult = getGnomadResult(context, variant);
 		if (gnomadResult == null) {
 			return;
 		}
@@ -532,10 +648,10 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 	}
 
-	private void callSpliceai(Source source, AnfisaExecuteContext context, AnfisaResultData data, AnfisaResultFilters filters, Variant variant) {
+	private SpliceAIResult getSpliceAIResult(Source source, AnfisaExecuteContext context, Variant variant) {
 		Assembly assembly = context.anfisaInput.mCase.assembly;
 
-		SpliceAIResult spliceAIResult = spliceAIConnector.getAll(
+		return spliceAIConnector.getAll(
 				source,
 				context,
 				assembly,
@@ -544,12 +660,15 @@ public class AnfisaConnector implements AutoCloseable {
 				variant.getRef(),
 				variant.getAlt()
 		);
+	}
+
+	private void callSpliceai(SpliceAIResult spliceAIResult, AnfisaResultData data, AnfisaResultFilters filters) {
 		data.spliceAI = spliceAIResult.dict_sql;
 		filters.spliceAltering = spliceAIResult.cases;
 		filters.spliceAiDsmax = spliceAIResult.max_ds;
 	}
 
-	private void createGeneralTab(AnfisaExecuteContext context, AnfisaResultData data, AnfisaResultFilters filters, AnfisaResultView view, Variant variant, MCase samples) {
+	private void createGeneralTab(List<Tissue> tissues, AnfisaResultData data, AnfisaResultFilters filters, AnfisaResultView view, Variant variant, MCase samples) {
 		view.general.genes = getGenes((VariantVep) variant).stream().toArray(String[]::new);
 
 		//Особенность связанна с удобством визуального отображением
@@ -610,7 +729,6 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 
 		//Собираем на какие органы может максимально повлияет этот вариант
-		List<Tissue> tissues = getTissues(getGenes((VariantVep) variant));
 		view.general.mostlyExpressed = tissues.stream()
 				.map(tissue -> tissue.toJSON()).collect(Collectors.toList());
 		filters.topTissue = tissues.stream().map(tissue -> tissue.name).findFirst().orElse(null);
@@ -816,7 +934,7 @@ public class AnfisaConnector implements AutoCloseable {
 		return result;
 	}
 
-	private void createGnomadTab(AnfisaExecuteContext context, Variant variant, MCase samples, AnfisaResultView view) {
+	private void createGnomadTab(GnomadResult gnomadResult, AnfisaExecuteContext context, Variant variant, MCase samples, AnfisaResultView view) {
 		Double gnomadAf = context.gnomadAfFam;
 		if (gnomadAf != null && Math.abs(gnomadAf) > 0.000001D) {
 			AnfisaResultView.GnomAD gnomAD = new AnfisaResultView.GnomAD();
@@ -826,7 +944,6 @@ public class AnfisaConnector implements AutoCloseable {
 			gnomAD.pli = getPLIByAllele((VariantVep) variant);
 			gnomAD.proband = (isProbandHasAllele(variant, samples)) ? "Yes" : "No";
 
-			GnomadResult gnomadResult = getGnomadResult(context, variant);
 			if (gnomadResult != null) {
 				if (gnomadResult.exomes != null) {
 					gnomAD.exomeAn = gnomadResult.exomes.an;
@@ -941,7 +1058,7 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 	}
 
-	private void createPredictionsTab(Source source, AnfisaExecuteContext context, Variant variant, AnfisaResultView view) {
+	private void createPredictionsTab(List<DbNSFPItem> items, Variant variant, AnfisaResultView view) {
 		if (variant instanceof VariantVep) {
 			VariantVep variantVep = (VariantVep) variant;
 
@@ -960,8 +1077,6 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 
 
-		List<DbNSFPItem> items = dbNSFPConnector.getAll(source, variant);
-
 		view.predictions.caddRaw = items.stream().map(item -> item.caddRaw).filter(Objects::nonNull).collect(Collectors.toList());
 		view.predictions.caddPhred = items.stream().map(item -> item.caddPhred).filter(Objects::nonNull).collect(Collectors.toList());
 
@@ -1110,29 +1225,41 @@ public class AnfisaConnector implements AutoCloseable {
 		}
 	}
 
-	private void createPharmacogenomicsTab(AnfisaExecuteContext context, AnfisaResultView view, AnfisaResultFilters filters, Variant variant, Source source) {
+	private PharmGKBResult getPharmGKBResult(AnfisaExecuteContext context, Source source) {
 		List<String> variantIds = context.getVariantIds(source);
 		if (variantIds.isEmpty()) {
+			return null;
+		}
+		return new PharmGKBResult(
+				variantIds.stream()
+						.flatMap(variantId -> pharmGKBConnector.getNotes(variantId).stream())
+						.collect(Collectors.toList()),
+				variantIds.stream()
+						.flatMap(variantId -> pharmGKBConnector.getPmids(variantId).stream())
+						.collect(Collectors.toList()),
+				variantIds.stream()
+						.flatMap(variantId -> pharmGKBConnector.getDiseases(variantId).stream())
+						.collect(Collectors.toList()),
+				variantIds.stream()
+						.flatMap(variantId -> pharmGKBConnector.getChemicals(variantId).stream())
+						.collect(Collectors.toList())
+		);
+	}
+
+	private void createPharmacogenomicsTab(PharmGKBResult pharmGKBResult, AnfisaResultView view, AnfisaResultFilters filters) {
+		if (pharmGKBResult == null) {
 			return;
 		}
 
-		view.pharmacogenomics.notes = variantIds.stream()
-				.flatMap(variantId -> pharmGKBConnector.getNotes(variantId).stream())
-				.collect(Collectors.toList());
+		view.pharmacogenomics.notes = pharmGKBResult.notes;
 
-		List<AnfisaResultView.Pharmacogenomics.Item> pmids = variantIds.stream()
-				.flatMap(variantId -> pharmGKBConnector.getPmids(variantId).stream())
-				.collect(Collectors.toList());
+		List<AnfisaResultView.Pharmacogenomics.Item> pmids = pharmGKBResult.pmids;
 		view.pharmacogenomics.pmids = pmids;
 
-		List<AnfisaResultView.Pharmacogenomics.Item> diseases = variantIds.stream()
-				.flatMap(variantId -> pharmGKBConnector.getDiseases(variantId).stream())
-				.collect(Collectors.toList());
+		List<AnfisaResultView.Pharmacogenomics.Item> diseases = pharmGKBResult.diseases;
 		view.pharmacogenomics.diseases = diseases;
 
-		List<AnfisaResultView.Pharmacogenomics.Item> chemicals = variantIds.stream()
-				.flatMap(variantId -> pharmGKBConnector.getChemicals(variantId).stream())
-				.collect(Collectors.toList());
+		List<AnfisaResultView.Pharmacogenomics.Item> chemicals = pharmGKBResult.chemicals;
 		view.pharmacogenomics.chemicals = chemicals;
 
 		//Add filters
@@ -1815,8 +1942,41 @@ public class AnfisaConnector implements AutoCloseable {
 		return result;
 	}
 
+	private static class HgmdResult {
+
+		private final List<String> accNums;
+		private final HgmdConnector.Data data;
+		private final List<Long[]> hg38;
+
+		private HgmdResult(List<String> accNums, HgmdConnector.Data data, List<Long[]> hg38) {
+			this.accNums = accNums;
+			this.data = data;
+			this.hg38 = hg38;
+		}
+	}
+
+	private static class PharmGKBResult {
+
+		private final List<AnfisaResultView.Pharmacogenomics.Item> notes;
+		private final List<AnfisaResultView.Pharmacogenomics.Item> pmids;
+		private final List<AnfisaResultView.Pharmacogenomics.Item> diseases;
+		private final List<AnfisaResultView.Pharmacogenomics.Item> chemicals;
+
+		private PharmGKBResult(
+				List<AnfisaResultView.Pharmacogenomics.Item> notes,
+				List<AnfisaResultView.Pharmacogenomics.Item> pmids,
+				List<AnfisaResultView.Pharmacogenomics.Item> diseases,
+				List<AnfisaResultView.Pharmacogenomics.Item> chemicals
+		) {
+			this.notes = notes;
+			this.pmids = pmids;
+			this.diseases = diseases;
+			this.chemicals = chemicals;
+		}
+	}
+
 	@Override
 	public void close() {
-
+		lookupExecutor.close();
 	}
 }
@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.anfisa;
+
+import org.forome.annotation.utils.DefaultThreadFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение запросов к источникам данных, необходимых для построения аннотации варианта.
+ * При threads > 0 независимые запросы выполняются параллельно в общем пуле,
+ * иначе - последовательно в вызывающем потоке.
+ * Кол-во одновременно выполняющихся запросов к одному источнику может быть ограничено (maxPerSource).
+ * Очередь пула ограничена, при ее переполнении запрос выполняется в вызывающем потоке, а разрешение
+ * на запрос к источнику берется до постановки в очередь - так перегрузка тормозит потоки аннотации,
+ * а не накапливает задачи и не занимает потоки пула ожиданием.
+ */
+public class AnfisaLookupExecutor implements AutoCloseable {
+
+	public enum Lookup {
+		GNOMAD,
+		SPLICEAI,
+		HGMD,
+		CLINVAR,
+		GTF,
+		GTEX,
+		DBNSFP,
+		PHARMGKB
+	}
+
+	private final ExecutorService threadPoolLookupExecutor;
+	private final Executor executor;
+
+	private final Map<Lookup, Semaphore> limits;
+
+	/**
+	 * Последовательное выполнение, без ограничений
+	 */
+	public AnfisaLookupExecutor() {
+		this(0, 0, null);
+	}
+
+	public AnfisaLookupExecutor(int threads, int maxPerSource, Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+		if (threads < 0) throw new IllegalArgumentException();
+		if (maxPerSource < 0) throw new IllegalArgumentException();
+
+		if (threads > 0) {
+			threadPoolLookupExecutor = new ThreadPoolExecutor(
+					threads,
+					threads,
+					0L,
+					TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(threads * Lookup.values().length),
+					new DefaultThreadFactory("AnfisaLookupExecutor", uncaughtExceptionHandler),
+					(r, pool) -> {
+						if (pool.isShutdown()) {
+							throw new RejectedExecutionException("AnfisaLookupExecutor is shut down");
+						}
+						r.run();
+					}
+			);
+			executor = threadPoolLookupExecutor;
+		} else {
+			threadPoolLookupExecutor = null;
+			executor = Runnable::run;
+		}
+
+		limits = new EnumMap<>(Lookup.class);
+		if (maxPerSource > 0) {
+			for (Lookup lookup : Lookup.values()) {
+				limits.put(lookup, new Semaphore(maxPerSource));
+			}
+		}
+	}
+
+	public <T> CompletableFuture<T> supply(Lookup lookup, Supplier<T> supplier) {
+		Semaphore limit = limits.get(lookup);
+		if (limit == null) {
+			return CompletableFuture.supplyAsync(supplier, executor);
+		}
+
+		limit.acquireUninterruptibly();
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return supplier.get();
+				} finally {
+					limit.release();
+				}
+			}, executor);
+		} catch (Throwable e) {
+			limit.release();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (threadPoolLookupExecutor != null) {
+			threadPoolLookupExecutor.shutdownNow();
+		}
+	}
+}
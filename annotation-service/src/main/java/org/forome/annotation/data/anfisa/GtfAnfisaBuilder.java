@@ -111,14 +111,14 @@ public class GtfAnfisaBuilder {
 	}
 
 	public GtfAnfisaResult buildVep(AnfisaExecuteContext context, VariantVep variant) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 			return new GtfAnfisaResult(
 					getRegion(context, variant, Kind.CANONICAL),
 					getRegion(context, variant, Kind.WORST)
 			);
 		} finally {
-			statisticGtfs.addTime(System.currentTimeMillis() - t1);
+			statisticGtfs.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
@@ -27,10 +27,10 @@ import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Interval;
 import org.forome.core.struct.sequence.Sequence;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class AnfisaExecuteContext {
 
@@ -45,6 +45,9 @@ public class AnfisaExecuteContext {
 
 	public Double gnomadAfFam;
 
+	/**
+	 * Запросы к источникам выполняются параллельно (см. AnfisaLookupExecutor), поэтому кеш общий для потоков
+	 */
 	private final Map<String, Object> cache;
 
 	public AnfisaExecuteContext(
@@ -57,7 +60,7 @@ public class AnfisaExecuteContext {
 		this.variant = variant;
 		this.vepJson = vepJson;
 
-		this.cache = new HashMap<>();
+		this.cache = new ConcurrentHashMap<>();
 	}
 
 	public List<String> getVariantIds(Source source) {
@@ -25,6 +25,7 @@ import org.forome.annotation.struct.variant.Variant;
 import org.forome.annotation.utils.Statistics;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
 
 import java.util.List;
 
@@ -32,6 +33,12 @@ public interface ClinvarConnector extends AutoCloseable {
 
 	List<SourceMetadata> getSourceMetadata();
 
+	/**
+	 * Предварительная загрузка данных для окна следующих вариантов vcf-файла
+	 */
+	default void prefetch(Assembly assembly, List<Interval> intervals) {
+	}
+
 	List<ClinvarResult> getExpandedData(Assembly assembly, Variant variant);
 
 	List<ClinvarResult> getData(Assembly assembly, String chromosome, long qStart, long qEnd, String alt);
@@ -18,12 +18,18 @@
 
 package org.forome.annotation.data.clinvar.mysql;
 
+import com.google.common.collect.Lists;
 import org.forome.annotation.config.connector.ForomeConfigConnector;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.clinvar.ClinvarConnector;
 import org.forome.annotation.data.clinvar.struct.ClinvarResult;
 import org.forome.annotation.data.clinvar.struct.ClinvarVariantSummary;
 import org.forome.annotation.data.clinvar.struct.Row;
+import org.forome.annotation.data.query.BatchLoader;
+import org.forome.annotation.data.query.InClause;
+import org.forome.annotation.data.query.LocusIndex;
+import org.forome.annotation.data.query.QueryStatistics;
+import org.forome.annotation.data.query.RegionCache;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.struct.SourceMetadata;
@@ -33,25 +39,27 @@ import org.forome.annotation.utils.Statistics;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Все строки ClinVar региона хромосомы (и submitters для них) загружаются одним запросом по диапазону
+ * при первом обращении к региону, запросы по отдельным вариантам обслуживаются из памяти
+ */
 public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 
 	private static final Logger log = LoggerFactory.getLogger(ClinvarConnectorMysql.class);
 
-	private static final String SUBMITTER_QUERY = "SELECT SubmitterName, ClinicalSignificance FROM `forome`.`ClinVar_Submitters` NATURAL JOIN `forome`.`ClinVar2Sub_Sig` WHERE RCVaccession IN (%s)";
+	private static final String SUBMITTER_QUERY = "SELECT RCVaccession, SubmitterName, ClinicalSignificance FROM `forome`.`ClinVar_Submitters` NATURAL JOIN `forome`.`ClinVar2Sub_Sig` WHERE RCVaccession IN (%s)";
 
-	private static final String QUERY_BASE = "SELECT " +
+	private static final String QUERY_REGION = "SELECT " +
+			"`Assembly`," +
 			"`Start`," +
 			"`Stop`," +
 			"`AlternateAllele`," +
@@ -62,19 +70,16 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 			"OtherIDs, " +
 			"RCVaccession, " +
 			"ReferenceAllele, " +
-			"VariationID " +
+			"VariationID, " +
+			"ReviewStatus, " +
+			"NumberSubmitters, " +
+			"Guidelines " +
 			"FROM `forome`.ClinVar_variant_summary AS v " +
-			"WHERE " +
-			"Assembly = 'GRCh37' AND " +
-			"Chromosome='%s' AND " +
-			"Start = %s ";
+			"WHERE Chromosome = ? AND Start BETWEEN ? AND ?";
 
-	private static final String QUERY_0 = QUERY_BASE + " AND Stop = %s ";
-	private static final String QUERY_EXACT = QUERY_0 + " AND AlternateAllele = '%s'";
-	private static final String QUERY_NA = QUERY_0 + " AND AlternateAllele = 'na'";
+	private static final String ASSEMBLY_GRCH37 = "GRCh37";
 
-	private static final String QUERY_VARIANT_SUMMARY =
-			"select ReviewStatus, NumberSubmitters, Guidelines from `forome`.ClinVar_variant_summary where Chromosome='%s' AND Start = %s and Stop = %s";
+	private static final String ALTERNATE_ALLELE_NA = "na";
 
 	private static final String CLINVAR_TYPE_SNV = "single nucleotide variant";
 	private static final String CLINVAR_TYPE_DELETION = "deletion";
@@ -82,6 +87,8 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 	private final LiftoverConnector liftoverConnector;
 	private final DatabaseConnector databaseConnector;
 
+	private final RegionCache<ClinvarRegion> regionCache;
+
 	public final Statistics statisticClinvarSubmitters = new Statistics();
 	public final Statistics statisticClinvarData = new Statistics();
 	public final Statistics statisticClinvarExpandedData = new Statistics();
@@ -90,6 +97,8 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 	public ClinvarConnectorMysql(DatabaseConnectService databaseConnectService, LiftoverConnector liftoverConnector, ForomeConfigConnector foromeConfigConnector) {
 		this.liftoverConnector = liftoverConnector;
 		this.databaseConnector = new DatabaseConnector(databaseConnectService, foromeConfigConnector);
+
+		this.regionCache = new RegionCache<>(this::loadRegion);
 	}
 
 	@Override
@@ -98,23 +107,24 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 		return Collections.emptyList();
 	}
 
-	private ClinvarResult getSubmitters(Row row) {
-		long t1 = System.currentTimeMillis();
-		try {
-			String[] rcvAccessions = row.rcvAccession.split(";");
-			String args = String.join(",", Stream.of(rcvAccessions).map(s -> "'" + s + "'").collect(Collectors.toList()));
+	@Override
+	public void prefetch(Assembly assembly, List<Interval> intervals) {
+		for (Interval interval : intervals) {
+			Position pStart = liftoverConnector.toHG37(assembly,
+					new Position(interval.chromosome, interval.start)
+			);
+			if (pStart != null) {
+				regionCache.get(interval.chromosome.getChar(), pStart.value);
+			}
+		}
+	}
 
+	private ClinvarResult getSubmitters(ClinvarRegion region, Row row) {
+		long t1 = System.nanoTime();
+		try {
 			Map<String, String> submitters = new HashMap<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(String.format(SUBMITTER_QUERY, args))) {
-						while (resultSet.next()) {
-							submitters.put(resultSet.getString(1), resultSet.getString(2));
-						}
-					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
+			for (String rcvAccession : row.rcvAccession.split(";")) {
+				submitters.putAll(region.getSubmitters(rcvAccession));
 			}
 
 			return new ClinvarResult(
@@ -126,21 +136,21 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 					submitters
 			);
 		} finally {
-			statisticClinvarSubmitters.addTime(System.currentTimeMillis() - t1);
+			statisticClinvarSubmitters.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
-	private List<ClinvarResult> addSubmittersToRows(List<Row> rows) {
+	private List<ClinvarResult> addSubmittersToRows(ClinvarRegion region, List<Row> rows) {
 		List<ClinvarResult> results = new ArrayList<>();
 		for (Row row : rows) {
-			results.add(getSubmitters(row));
+			results.add(getSubmitters(region, row));
 		}
 		return results;
 	}
 
 	@Override
 	public List<ClinvarResult> getExpandedData(Assembly assembly, Variant variant) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 			Position pStart = liftoverConnector.toHG37(assembly,
 					new Position(variant.chromosome, variant.getStart())
@@ -149,41 +159,31 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 				return Collections.emptyList();
 			}
 
+			ClinvarRegion region = regionCache.get(variant.chromosome.getChar(), pStart.value);
 			List<Row> rows = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(String.format(
-							QUERY_BASE, variant.chromosome.getChar(), pStart.value
-					))) {
-						while (resultSet.next()) {
-							Row row = _build(resultSet);
-							//TODO Ulitin V. Необходим комплексный подход - сейчас проверяем только на SNV //и Deletion
-							if (variant.getVariantType() != VariantType.INDEL && variant.getVariantType() != VariantType.SEQUENCE_ALTERATION) {
-								if (CLINVAR_TYPE_SNV.equals(row.type) && variant.getVariantType() != VariantType.SNV) {
-									continue;
-								}
+			for (Row row : region.rows.get(pStart.value)) {
+				//TODO Ulitin V. Необходим комплексный подход - сейчас проверяем только на SNV //и Deletion
+				if (variant.getVariantType() != VariantType.INDEL && variant.getVariantType() != VariantType.SEQUENCE_ALTERATION) {
+					if (CLINVAR_TYPE_SNV.equals(row.type) && variant.getVariantType() != VariantType.SNV) {
+						continue;
+					}
 //						else if (CLINVAR_TYPE_DELETION.equals(row.type) && variant.getVariantType() != VariantType.DEL) {
 //							continue;
 //						}
 
-							}
-
-							rows.add(row);
-						}
-					}
 				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
+
+				rows.add(row);
 			}
-			return addSubmittersToRows(rows);
+			return addSubmittersToRows(region, rows);
 		} finally {
-			statisticClinvarExpandedData.addTime(System.currentTimeMillis() - t1);
+			statisticClinvarExpandedData.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
 	@Override
 	public List<ClinvarResult> getData(Assembly assembly, String chromosome, long qStart, long qEnd, String alt) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 
 			Position pStart = liftoverConnector.toHG37(assembly,
@@ -196,30 +196,84 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 				return Collections.emptyList();
 			}
 
-			List<Row> rows = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(String.format(QUERY_EXACT, chromosome, pStart.value, pEnd.value, alt))) {
-						while (resultSet.next()) {
-							rows.add(_build(resultSet));
-						}
-					}
+			//Точное совпадение alt (или 'na') выбираем среди строк локуса
+			ClinvarRegion region = regionCache.get(chromosome, pStart.value);
+			List<Row> locusRows = region.rows.get(pStart.value, pEnd.value);
+			List<Row> rows = filterAlternateAllele(locusRows, alt);
+			if (rows.isEmpty()) {
+				rows = filterAlternateAllele(locusRows, ALTERNATE_ALLELE_NA);
+			}
+			return addSubmittersToRows(region, rows);
+		} finally {
+			statisticClinvarData.addTimeNanos(System.nanoTime() - t1);
+		}
+	}
 
-					if (rows.isEmpty()) {
-						try (ResultSet resultSet = statement.executeQuery(String.format(QUERY_NA, chromosome, pStart.value, pEnd.value))) {
-							while (resultSet.next()) {
-								rows.add(_build(resultSet));
-							}
+	private static List<Row> filterAlternateAllele(List<Row> rows, String alt) {
+		List<Row> result = new ArrayList<>();
+		for (Row row : rows) {
+			if (alt.equalsIgnoreCase(row.alternateAllele)) {
+				result.add(row);
+			}
+		}
+		return result;
+	}
+
+	private ClinvarRegion loadRegion(String chromosome, int start, int end) {
+		LocusIndex.Builder<Row> rows = new LocusIndex.Builder<>();
+		LocusIndex.Builder<ClinvarVariantSummary> variantSummaries = new LocusIndex.Builder<>();
+		Set<String> rcvAccessions = new HashSet<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("clinvar_region"),
+					QUERY_REGION,
+					statement -> {
+						statement.setString(1, chromosome);
+						statement.setInt(2, start);
+						statement.setInt(3, end);
+					},
+					resultSet -> {
+						int rowStart = (int) resultSet.getLong("Start");
+						int rowEnd = (int) resultSet.getLong("Stop");
+
+						String reviewStatus = resultSet.getString("ReviewStatus");
+						Integer numberSubmitters = resultSet.getInt("NumberSubmitters");
+						String guidelines = resultSet.getString("Guidelines");
+						variantSummaries.add(rowStart, rowEnd, new ClinvarVariantSummary(reviewStatus, numberSubmitters, guidelines));
+
+						if (ASSEMBLY_GRCH37.equals(resultSet.getString("Assembly"))) {
+							Row row = _build(resultSet);
+							rows.add(rowStart, rowEnd, row);
+							rcvAccessions.addAll(Arrays.asList(row.rcvAccession.split(";")));
 						}
 					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
-			}
-			return addSubmittersToRows(rows);
-		} finally {
-			statisticClinvarData.addTime(System.currentTimeMillis() - t1);
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		}
+
+		Map<String, Map<String, String>> submitters = new HashMap<>();
+		for (List<String> items : Lists.partition(new ArrayList<>(rcvAccessions), BatchLoader.DEFAULT_MAX_BATCH_SIZE)) {
+			submitters.putAll(loadSubmitters(items));
+		}
+		return new ClinvarRegion(rows.build(), variantSummaries.build(), submitters);
+	}
+
+	private Map<String, Map<String, String>> loadSubmitters(List<String> rcvAccessions) {
+		Map<String, Map<String, String>> result = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("clinvar_submitters"),
+					String.format(SUBMITTER_QUERY, InClause.build(rcvAccessions.size(), "?")),
+					rcvAccessions.size(),
+					statement -> InClause.bindStrings(statement, 1, rcvAccessions),
+					resultSet -> result.computeIfAbsent(resultSet.getString(1), k -> new HashMap<>())
+							.put(resultSet.getString(2), resultSet.getString(3))
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
+		return result;
 	}
 
 	private static Row _build(ResultSet resultSet) throws SQLException {
@@ -246,7 +300,7 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 
 	@Override
 	public ClinvarVariantSummary getDataVariantSummary(Assembly assembly, Chromosome chromosome, long start, long end) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 
 			Position pStart = liftoverConnector.toHG37(assembly,
@@ -259,43 +313,25 @@ public class ClinvarConnectorMysql implements ClinvarConnector, AutoCloseable {
 				return null;
 			}
 
-			String sql = String.format(QUERY_VARIANT_SUMMARY, chromosome.getChar(), pStart.value, pEnd.value);
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-
-						List<ClinvarVariantSummary> results = new ArrayList<>();
-						while (resultSet.next()) {
-							String reviewStatus = resultSet.getString("ReviewStatus");
-							Integer numberSubmitters = resultSet.getInt("NumberSubmitters");
-							String guidelines = resultSet.getString("Guidelines");
-
-							results.add(new ClinvarVariantSummary(reviewStatus, numberSubmitters, guidelines));
-						}
-
-						if (results.isEmpty()) {
-							return null;
-						} else if (results.size() == 1) {
-							return results.get(0);
-						} else {
-							//TODO Пока не найденно решение пытаемся найти "лучше", исходим: что лучше добавить неправильную, чем пропустить правильную.
-							results.sort((o1, o2) -> {
-								int i1 = (o1.reviewStatus.conflicts == null) ? 0 : (o1.reviewStatus.conflicts) ? 1 : 2;
-								int i2 = (o2.reviewStatus.conflicts == null) ? 0 : (o2.reviewStatus.conflicts) ? 1 : 2;
-								return i2 - i1;
-							});
-							ClinvarVariantSummary result = results.get(0);
-							log.warn("WARNING!!! Many record({}), sql: {}, select: {}", results.size(), sql, result.reviewStatus.text);
-							return result;
-						}
-					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex, "query: " + sql);
+			List<ClinvarVariantSummary> results = regionCache.get(chromosome.getChar(), pStart.value)
+					.variantSummaries.get(pStart.value, pEnd.value);
+			if (results.isEmpty()) {
+				return null;
+			} else if (results.size() == 1) {
+				return results.get(0);
+			} else {
+				//TODO Пока не найденно решение пытаемся найти "лучше", исходим: что лучше добавить неправильную, чем пропустить правильную.
+				results.sort((o1, o2) -> {
+					int i1 = (o1.reviewStatus.conflicts == null) ? 0 : (o1.reviewStatus.conflicts) ? 1 : 2;
+					int i2 = (o2.reviewStatus.conflicts == null) ? 0 : (o2.reviewStatus.conflicts) ? 1 : 2;
+					return i2 - i1;
+				});
+				ClinvarVariantSummary result = results.get(0);
+				log.warn("WARNING!!! Many record({}), locus: {}:{}-{}, select: {}", results.size(), chromosome.getChar(), pStart.value, pEnd.value, result.reviewStatus.text);
+				return result;
 			}
-
 		} finally {
-			statisticClinvarVariantSummary.addTime(System.currentTimeMillis() - t1);
+			statisticClinvarVariantSummary.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
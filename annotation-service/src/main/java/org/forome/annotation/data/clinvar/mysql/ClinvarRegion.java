@@ -0,0 +1,58 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.clinvar.mysql;
+
+import org.forome.annotation.data.clinvar.struct.ClinvarVariantSummary;
+import org.forome.annotation.data.clinvar.struct.Row;
+import org.forome.annotation.data.query.LocusIndex;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Данные ClinVar одного региона хромосомы (координаты GRCh37)
+ */
+class ClinvarRegion {
+
+	/**
+	 * Строки сборки GRCh37
+	 */
+	final LocusIndex<Row> rows;
+
+	/**
+	 * Сводки по всем сборкам - как и в исходном запросе по локусу
+	 */
+	final LocusIndex<ClinvarVariantSummary> variantSummaries;
+
+	/**
+	 * RCVaccession -> (SubmitterName -> ClinicalSignificance) для всех строк региона
+	 */
+	final Map<String, Map<String, String>> submitters;
+
+	ClinvarRegion(LocusIndex<Row> rows, LocusIndex<ClinvarVariantSummary> variantSummaries, Map<String, Map<String, String>> submitters) {
+		this.rows = rows;
+		this.variantSummaries = variantSummaries;
+		this.submitters = submitters;
+	}
+
+	Map<String, String> getSubmitters(String rcvAccession) {
+		Map<String, String> value = submitters.get(rcvAccession);
+		return (value != null) ? value : Collections.emptyMap();
+	}
+}
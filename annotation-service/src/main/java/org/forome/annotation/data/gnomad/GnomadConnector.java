@@ -32,6 +32,12 @@ public interface GnomadConnector extends AutoCloseable {
 
     CompletableFuture<GnomadResult> request(AnfisaExecuteContext context, Assembly assembly, Variant variant, Chromosome chromosome, int position, String reference, String alternative);
 
+    /**
+     * Предварительная загрузка данных для окна следующих вариантов vcf-файла
+     */
+    default void prefetch(Assembly assembly, List<Variant> variants) {
+    }
+
     List<SourceMetadata> getSourceMetadata();
 
     void close();
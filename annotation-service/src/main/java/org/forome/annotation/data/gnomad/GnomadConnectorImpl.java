@@ -18,158 +18,164 @@
 
 package org.forome.annotation.data.gnomad;
 
-import com.google.common.collect.ImmutableList;
+import org.forome.annotation.config.executor.ExecutorConfig;
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
 import org.forome.annotation.data.gnomad.datasource.GnomadDataSource;
 import org.forome.annotation.data.gnomad.struct.GnamadGroup;
+import org.forome.annotation.data.gnomad.struct.GnomadRecord;
 import org.forome.annotation.data.gnomad.struct.GnomadResult;
 import org.forome.annotation.matcher.SequenceMatcher;
-import org.forome.annotation.service.source.tmp.GnomadDataResponse;
 import org.forome.annotation.struct.SourceMetadata;
 import org.forome.annotation.struct.variant.Variant;
-import org.forome.annotation.utils.DefaultThreadPoolExecutor;
+import org.forome.annotation.utils.BoundedThreadPoolExecutor;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 public class GnomadConnectorImpl implements GnomadConnector {
 
 	private final static Logger log = LoggerFactory.getLogger(GnomadConnectorImpl.class);
 
-	private static final int MAX_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+	private static final GnamadGroup[] GROUPS_GENERAL = GnamadGroup.getByType(GnamadGroup.Type.GENERAL);
+	private static final GnamadGroup[] GROUPS_ALL = GnamadGroup.values();
 
 	private final GnomadDataSource gnomadDataSource;
 
-	private final ExecutorService threadPoolGnomadExecutor;
+	private final BoundedThreadPoolExecutor threadPoolGnomadExecutor;
 
 	public GnomadConnectorImpl(
 			GnomadDataSource gnomadDataSource,
 			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
+	) throws Exception {
+		this(gnomadDataSource, new ExecutorConfig(), uncaughtExceptionHandler);
+	}
+
+	public GnomadConnectorImpl(
+			GnomadDataSource gnomadDataSource,
+			ExecutorConfig executorConfig,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
 	) throws Exception {
 		this.gnomadDataSource = gnomadDataSource;
 //		databaseConnector = new DatabaseConnector(databaseConnectService, gnomadConfigConnector);
 //		gnomadDataConnector = new GnomadDataConnector(databaseConnector);
-		threadPoolGnomadExecutor = new DefaultThreadPoolExecutor(
-				MAX_THREAD_COUNT,
-				MAX_THREAD_COUNT,
-				0L,
-				TimeUnit.MILLISECONDS,
-				new LinkedBlockingQueue<>(),
-				"GnomadExecutorQueue",
+		threadPoolGnomadExecutor = new BoundedThreadPoolExecutor(
+				"GnomadExecutor",
+				executorConfig.threads,
+				executorConfig.queue,
+				executorConfig.overflow,
+				executorConfig.virtual,
 				uncaughtExceptionHandler
 		);
 	}
 
 	public CompletableFuture<GnomadResult> request(AnfisaExecuteContext context, Assembly assembly, Variant variant, Chromosome chromosome, int position, String reference, String alternative) {
 		CompletableFuture<GnomadResult> future = new CompletableFuture();
-		threadPoolGnomadExecutor.submit(() -> {
-			try {
-				GnomadResult result = syncRequest(context, assembly, variant, chromosome, position, reference, alternative);
-				future.complete(result);
-			} catch (Throwable e) {
-				future.completeExceptionally(e);
-			}
-		});
+		try {
+			threadPoolGnomadExecutor.submit(() -> {
+				try {
+					GnomadResult result = syncRequest(context, assembly, variant, chromosome, position, reference, alternative);
+					future.complete(result);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (Throwable e) {
+			//Очередь пула переполнена (overflow: reject)
+			future.completeExceptionally(e);
+		}
 		return future;
 	}
 
+	@Override
+	public void prefetch(Assembly assembly, List<Variant> variants) {
+		gnomadDataSource.prefetch(assembly, variants);
+	}
+
 	public List<SourceMetadata> getSourceMetadata() {
 		return gnomadDataSource.getSourceMetadata();
 	}
 
 	private GnomadResult syncRequest(AnfisaExecuteContext context, Assembly assembly, Variant variant, Chromosome chromosome, int position, String reference, String alternative) throws Exception {
-		List<GnomadDataResponse> exomes = gnomadDataSource.getData(
-				context, assembly, variant, chromosome, position, reference, alternative, "e"
-		);
-		List<GnomadDataResponse> genomes = gnomadDataSource.getData(
-				context, assembly, variant, chromosome, position, reference, alternative, "g"
+		List<GnomadRecord> records = gnomadDataSource.getRecords(
+				context, assembly, variant, chromosome, position, reference, alternative
 		);
+		return build(records);
+	}
 
-		List<GnomadDataResponse> overall = new ImmutableList.Builder().addAll(exomes).addAll(genomes).build();
-		if (overall.isEmpty()) {
+	/**
+	 * Суммы по экзомам, геномам и общая, popmax и ссылки - за один проход по записям
+	 */
+	static GnomadResult build(List<GnomadRecord> records) {
+		if (records.isEmpty()) {
 			return null;
 		}
 
-		GnomadResult.Sum sumExomes = null;
-		if (!exomes.isEmpty()) {
-			long an = countAN(exomes, null);
-			long ac = countAC(exomes, null);
-			double af = countAF(an, ac);
-			long hom = countHom(exomes);
-			Long hem = countHem(exomes);
-			sumExomes = new GnomadResult.Sum(an, ac, af, hom, hem);
-		}
-
-		GnomadResult.Sum sumGenomes = null;
-		if (!genomes.isEmpty()) {
-			long an = countAN(genomes, null);
-			long ac = countAC(genomes, null);
-			double af = countAF(an, ac);
-			long hom = countHom(genomes);
-			Long hem = countHem(genomes);
-			sumGenomes = new GnomadResult.Sum(an, ac, af, hom, hem);
+		Counter exomes = new Counter();
+		Counter genomes = new Counter();
+		Counter overall = new Counter();
+		Set<GnomadResult.Url> urls = new HashSet<>();
+		for (GnomadRecord record : records) {
+			if (record.exomes) {
+				exomes.add(record);
+			} else {
+				genomes.add(record);
+			}
+			overall.add(record);
+			urls.add(buildUrl(record));
 		}
 
-		GnomadResult.Sum sumOverall = null;
-		if (!overall.isEmpty()) {
-			long an = countAN(overall, null);
-			long ac = countAC(overall, null);
-			double af = countAF(an, ac);
-			long hom = countHom(overall);
-			Long hem = countHem(overall);
-			sumOverall = new GnomadResult.Sum(an, ac, af, hom, hem);
-		}
+		return new GnomadResult(
+				exomes.toSum(), genomes.toSum(), overall.toSum(),
+				overall.popmax(GROUPS_GENERAL), overall.popmax(GROUPS_ALL),
+				urls
+		);
+	}
 
-		GnomadResult.Popmax popmax = countPopmaxFromRows(overall, GnamadGroup.Type.GENERAL);
-		GnomadResult.Popmax widePopmax = countPopmaxFromRows(overall, null);
+	private static GnomadResult.Url buildUrl(GnomadRecord record) {
+		String ref = record.reference;
+		String alt = record.alternative;
 
-		Set<GnomadResult.Url> urls = new HashSet<>();
-		for (GnomadDataResponse item : overall) {
-			String chrom = item.getValue("CHROM");
-			long pos = ((Number) item.getValue("POS")).longValue();
-			String ref = item.getValue("REF");
-			String alt = item.getValue("ALT");
-
-			SequenceMatcher matcher = new SequenceMatcher(ref, alt);
-			List<SequenceMatcher.Tuple3<Integer, Integer, Integer>> matches = matcher.getMatchingBlocks();
-			List<String> a = new ArrayList<>();
-			List<String> b = new ArrayList<>();
-			int apos = 0;
-			int bpos = 0;
-			for (SequenceMatcher.Tuple3<Integer, Integer, Integer> match : matches) {
-				a.add(ref.substring(apos, match.value0));
-				apos = match.value0 + match.value2;
-				b.add(alt.substring(bpos, match.value1));
-				bpos = match.value1 + match.value2;
-			}
+		//У SNV общих блоков нет - ref/alt не меняются
+		if (ref.length() == 1 && alt.length() == 1 && ref.charAt(0) != alt.charAt(0)) {
+			return new GnomadResult.Url(record.chromosome, record.position, ref, alt);
+		}
 
-			String newRef = String.join("", a);
-			String newAlt = String.join("", b);
+		SequenceMatcher matcher = new SequenceMatcher(ref, alt);
+		List<SequenceMatcher.Tuple3<Integer, Integer, Integer>> matches = matcher.getMatchingBlocks();
+		StringBuilder a = new StringBuilder();
+		StringBuilder b = new StringBuilder();
+		int apos = 0;
+		int bpos = 0;
+		for (SequenceMatcher.Tuple3<Integer, Integer, Integer> match : matches) {
+			a.append(ref, apos, match.value0);
+			apos = match.value0 + match.value2;
+			b.append(alt, bpos, match.value1);
+			bpos = match.value1 + match.value2;
+		}
 
-			if (newRef.isEmpty() || newAlt.isEmpty()) {
-				String firstMatch = String.valueOf(ref.charAt(0));
-				newRef = firstMatch + newRef;
-				newAlt = firstMatch + newAlt;
-			}
+		String newRef = a.toString();
+		String newAlt = b.toString();
 
-			urls.add(new GnomadResult.Url(chrom, pos, newRef, newAlt));
+		if (newRef.isEmpty() || newAlt.isEmpty()) {
+			String firstMatch = String.valueOf(ref.charAt(0));
+			newRef = firstMatch + newRef;
+			newAlt = firstMatch + newAlt;
 		}
 
-		return new GnomadResult(
-				sumExomes, sumGenomes, sumOverall,
-				popmax, widePopmax,
-				urls
-		);
+		return new GnomadResult.Url(record.chromosome, record.position, newRef, newAlt);
+	}
+
+	/**
+	 * Пул запросов (для метрик: размер очереди, активные потоки)
+	 */
+	public BoundedThreadPoolExecutor getExecutor() {
+		return threadPoolGnomadExecutor;
 	}
 
 	@Override
@@ -177,101 +183,67 @@ public class GnomadConnectorImpl implements GnomadConnector {
 		gnomadDataSource.close();
 	}
 
-	private static long countAN(List<GnomadDataResponse> items, GnamadGroup group) {
-		long an = 0;
-		String anColumn;
-		if (group == null) {
-			anColumn = "AN";
-		} else {
-			anColumn = "AN_" + group.name();
-		}
-		for (GnomadDataResponse item : items) {
-			Number value = item.getValue(anColumn);
-			if (value == null) continue;
-			an += value.longValue();
-		}
-		return an;
-	}
+	private static class Counter {
 
-	private static long countAC(List<GnomadDataResponse> items, GnamadGroup group) {
-		long ac = 0;
-		String acColumn;
-		if (group == null) {
-			acColumn = "AC";
-		} else {
-			acColumn = "AC_" + group;
-		}
-		for (GnomadDataResponse item : items) {
-			Number value = item.getValue(acColumn);
-			if (value == null) continue;
-			ac += value.longValue();
-		}
-		return ac;
-	}
+		private int count;
 
-	private static double countAF(long an, long ac) {
-		double af;
-		if (an > 0) {
-			af = (double) ac / (double) an;
-		} else {
-			af = 0;
-		}
-		return af;
-	}
+		private long an;
+		private long ac;
+		private long hom;
+		private boolean hasHem;
+		private long hem;
+
+		private final long[] groupAn = GnomadRecord.newGroupArray();
+		private final long[] groupAc = GnomadRecord.newGroupArray();
 
-	private static GnomadResult.Popmax countPopmaxFromRows(List<GnomadDataResponse> overall, GnamadGroup.Type type) {
-		GnamadGroup group = null;
-		Double popmaxAF = null;
-		long popmaxAN = 0;
-
-		GnamadGroup[] groups = (type == null) ? GnamadGroup.values() : GnamadGroup.getByType(type);
-		for (GnamadGroup iGroup : groups) {
-			long an = countAN(overall, iGroup);
-			long ac = countAC(overall, iGroup);
-			if (an == 0) {
-				continue;
+		private void add(GnomadRecord record) {
+			count++;
+			an += record.an;
+			ac += record.ac;
+			hom += record.hom;
+			if (record.hasHem) {
+				hasHem = true;
+				hem += record.hem;
 			}
-			double af = (double) ac / ((double) an);
-			if (popmaxAF == null || af > popmaxAF) {
-				group = iGroup;
-				popmaxAF = af;
-				popmaxAN = an;
+			for (int i = 0; i < groupAn.length; i++) {
+				groupAn[i] += record.groupAn[i];
+				groupAc[i] += record.groupAc[i];
 			}
 		}
 
-		if (group == null) {
-			return null;
-		} else {
-			return new GnomadResult.Popmax(
-					group, popmaxAF, popmaxAN
-			);
+		private GnomadResult.Sum toSum() {
+			if (count == 0) {
+				return null;
+			}
+			double af = (an > 0) ? (double) ac / (double) an : 0;
+			return new GnomadResult.Sum(an, ac, af, hom, (hasHem) ? hem : null);
 		}
-	}
 
-	private static long countHom(List<GnomadDataResponse> items) {
-		long hom = 0;
-		String column = "nhomalt";
-		for (GnomadDataResponse item : items) {
-			Number value = item.getValue(column);
-			if (value == null) continue;
-			hom += value.longValue();
-		}
-		return hom;
-	}
+		private GnomadResult.Popmax popmax(GnamadGroup[] groups) {
+			GnamadGroup group = null;
+			double popmaxAF = 0;
+			long popmaxAN = 0;
+			for (GnamadGroup iGroup : groups) {
+				long an = groupAn[iGroup.ordinal()];
+				if (an == 0) {
+					continue;
+				}
+				double af = (double) groupAc[iGroup.ordinal()] / ((double) an);
+				if (group == null || af > popmaxAF) {
+					group = iGroup;
+					popmaxAF = af;
+					popmaxAN = an;
+				}
+			}
 
-	private static Long countHem(List<GnomadDataResponse> items) {
-		Long hem = null;
-		String column = "hem";
-		for (GnomadDataResponse item : items) {
-			Number value = item.getValue(column);
-			if (value == null) continue;
-			if (hem == null) {
-				hem = value.longValue();
+			if (group == null) {
+				return null;
 			} else {
-				hem += value.longValue();
+				return new GnomadResult.Popmax(
+						group, popmaxAF, popmaxAN
+				);
 			}
 		}
-		return hem;
 	}
 
 //    private static Long countHem(String chromosome, List<GnomadDataConnector.Result> items) {
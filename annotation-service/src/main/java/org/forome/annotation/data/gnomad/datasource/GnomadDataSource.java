@@ -19,6 +19,7 @@
 package org.forome.annotation.data.gnomad.datasource;
 
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
+import org.forome.annotation.data.gnomad.struct.GnomadRecord;
 import org.forome.annotation.service.source.tmp.GnomadDataResponse;
 import org.forome.annotation.struct.SourceMetadata;
 import org.forome.annotation.struct.variant.Variant;
@@ -26,6 +27,7 @@ import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
 
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.List;
 
 public interface GnomadDataSource {
@@ -41,6 +43,34 @@ public interface GnomadDataSource {
 			String fromWhat
 	) throws URISyntaxException;
 
+	/**
+	 * Записи экзомов и геномов для варианта, источник может получить их за одно обращение к локусу
+	 */
+	default List<GnomadRecord> getRecords(
+			AnfisaExecuteContext context,
+			Assembly assembly,
+			Variant variant,
+			Chromosome chromosome,
+			int position,
+			String ref,
+			String alt
+	) throws URISyntaxException {
+		List<GnomadRecord> records = new ArrayList<>();
+		for (GnomadDataResponse item : getData(context, assembly, variant, chromosome, position, ref, alt, GnomadRecord.SOURCE_EXOMES)) {
+			records.add(GnomadRecord.of(item, true));
+		}
+		for (GnomadDataResponse item : getData(context, assembly, variant, chromosome, position, ref, alt, GnomadRecord.SOURCE_GENOMES)) {
+			records.add(GnomadRecord.of(item, false));
+		}
+		return records;
+	}
+
+	/**
+	 * Предварительная загрузка данных для окна следующих вариантов vcf-файла
+	 */
+	default void prefetch(Assembly assembly, List<Variant> variants) {
+	}
+
 	List<SourceMetadata> getSourceMetadata();
 
 	void close();
@@ -22,6 +22,8 @@ import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
 import org.forome.annotation.data.gnomad.datasource.GnomadDataSource;
+import org.forome.annotation.data.gnomad.struct.GnamadGroup;
+import org.forome.annotation.data.gnomad.struct.GnomadRecord;
 import org.forome.annotation.data.gnomad.utils.GnomadUtils;
 import org.forome.annotation.data.gnomad.utils.СollapseNucleotideSequence;
 import org.forome.annotation.exception.AnnotatorException;
@@ -40,7 +42,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class GnomadDataSourceHttp implements GnomadDataSource {
 
@@ -57,6 +58,22 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 		this.dataSource = dataSource;
 	}
 
+	/**
+	 * Запись источника, подходящая под вариант
+	 */
+	private static class Match {
+
+		private final Position position;
+		private final JSONObject record;
+		private final boolean revert;
+
+		private Match(Position position, JSONObject record, boolean revert) {
+			this.position = position;
+			this.record = record;
+			this.revert = revert;
+		}
+	}
+
 	@Override
 	public List<GnomadDataResponse> getData(
 			AnfisaExecuteContext context,
@@ -73,11 +90,91 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 		);
 		Position pos37 = liftoverConnector.toHG37(assembly, sequence.position);
 
+		List<GnomadDataResponse> dataResponses = new ArrayList<>();
+		for (Match match : lookup(context, assembly, variant, sequence, pos37, fromWhat, new HashMap<>())) {
+			dataResponses.add(match.revert ? buildRevert(match.position, match.record) : build(match.position, match.record));
+		}
+		return dataResponses;
+	}
+
+	/**
+	 * Локусы, которые запросит lookup (позиция свернутой последовательности и, для не-SNV, предыдущая),
+	 * загружаются одним пакетом. Локусы поиска для hg38-особенности (tryFindRefertData) не загружаются -
+	 * они нужны редко и зависят от fasta
+	 */
+	@Override
+	public void prefetch(Assembly assembly, List<Variant> variants) {
+		Set<String> keys = new HashSet<>();
+		List<Position> positions = new ArrayList<>();
+		for (Variant variant : variants) {
+			СollapseNucleotideSequence.Sequence sequence = СollapseNucleotideSequence.collapseRight(
+					new Position(variant.chromosome, Math.min(variant.getStart(), variant.end)), variant.getRef(), variant.getStrAlt()
+			);
+			Position pos37 = liftoverConnector.toHG37(assembly, sequence.position);
+			if (pos37 == null) {
+				continue;
+			}
+			if (keys.add(pos37.chromosome.getChar() + ":" + pos37.value)) {
+				positions.add(pos37);
+			}
+			boolean isSNV = (sequence.ref.length() == 1 && sequence.alt.length() == 1);
+			if (!isSNV && keys.add(pos37.chromosome.getChar() + ":" + (pos37.value - 1))) {
+				positions.add(new Position(pos37.chromosome, pos37.value - 1));
+			}
+		}
+		if (positions.isEmpty()) {
+			return;
+		}
+		dataSource.getSource(Assembly.GRCh37).getGnomad(positions);
+	}
+
+	/**
+	 * Экзомы и геномы за один проход: сворачивание последовательности и liftover выполняются один раз,
+	 * записи каждого локуса запрашиваются один раз, счетчики разбираются сразу в примитивы
+	 */
+	@Override
+	public List<GnomadRecord> getRecords(
+			AnfisaExecuteContext context,
+			Assembly assembly,
+			Variant variant,
+			Chromosome chromosome,
+			int sPosition,
+			String sRef,
+			String sAlt
+	) {
+		СollapseNucleotideSequence.Sequence sequence = СollapseNucleotideSequence.collapseRight(
+				new Position(chromosome, sPosition), sRef, sAlt
+		);
+		Position pos37 = liftoverConnector.toHG37(assembly, sequence.position);
+
+		Map<String, List<JSONObject>> fetched = new HashMap<>();
+		List<GnomadRecord> records = new ArrayList<>();
+		for (Match match : lookup(context, assembly, variant, sequence, pos37, GnomadRecord.SOURCE_EXOMES, fetched)) {
+			records.add(decode(match, true));
+		}
+		for (Match match : lookup(context, assembly, variant, sequence, pos37, GnomadRecord.SOURCE_GENOMES, fetched)) {
+			records.add(decode(match, false));
+		}
+		return records;
+	}
+
+	/**
+	 * @param fetched - записи уже запрошенных локусов (в пределах одного варианта), ключ - chromosome:position
+	 */
+	private List<Match> lookup(
+			AnfisaExecuteContext context,
+			Assembly assembly,
+			Variant variant,
+			СollapseNucleotideSequence.Sequence sequence,
+			Position pos37,
+			String fromWhat,
+			Map<String, List<JSONObject>> fetched
+	) {
 		boolean isSNV = (sequence.ref.length() == 1 && sequence.alt.length() == 1);
 
 		if (pos37 == null) {
 			if (assembly == Assembly.GRCh38) {
-				return tryFindRefertData(context, variant, fromWhat);
+				return tryFindRefertData(context, variant, fromWhat, fetched);
 			} else {
 				return Collections.emptyList();
 			}
@@ -86,10 +183,10 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 		List<JSONObject> records = getRecord(
 				pos37,
 				sequence.ref, sequence.alt,
-				fromWhat, isSNV
+				fromWhat, isSNV, fetched
 		);
 		if (records.isEmpty() && assembly == Assembly.GRCh38) {
-			List<GnomadDataResponse> resultTryFindRefertData = tryFindRefertData(context, variant, fromWhat);
+			List<Match> resultTryFindRefertData = tryFindRefertData(context, variant, fromWhat, fetched);
 			if (!resultTryFindRefertData.isEmpty()) {
 				return resultTryFindRefertData;
 			}
@@ -100,27 +197,30 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 			records = getRecord(
 					pos37,
 					sequence.ref, sequence.alt,
-					fromWhat, isSNV
+					fromWhat, isSNV, fetched
 			);
 			if (records.isEmpty() && assembly == Assembly.GRCh38) {
-				List<GnomadDataResponse> resultTryFindRefertData = tryFindRefertData(context, variant, fromWhat);
+				List<Match> resultTryFindRefertData = tryFindRefertData(context, variant, fromWhat, fetched);
 				if (!resultTryFindRefertData.isEmpty()) {
 					return resultTryFindRefertData;
 				}
 			}
 		}
 
-		List<GnomadDataResponse> dataResponses = new ArrayList<>();
+		List<Match> matches = new ArrayList<>();
+		if (records.isEmpty()) {
+			return matches;
+		}
+		String diff_ref_alt = GnomadUtils.diff(sequence.ref, sequence.alt);
 		for (JSONObject record : records) {
-			String diff_ref_alt = GnomadUtils.diff(sequence.ref, sequence.alt);
 			if (Objects.equals(diff_ref_alt, GnomadUtils.diff(record.getAsString("REF"), record.getAsString("ALT")))
 					||
 					GnomadUtils.diff3(record.getAsString("REF"), record.getAsString("ALT"), diff_ref_alt)
 			) {
-				dataResponses.add(build(pos37, record));
+				matches.add(new Match(pos37, record, false));
 			}
 		}
-		return dataResponses;
+		return matches;
 	}
 
 	private List<JSONObject> getRecord(
@@ -128,35 +228,38 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 			String ref,
 			String alt,
 			String fromWhat,
-			boolean isSNV
+			boolean isSNV,
+			Map<String, List<JSONObject>> fetched
 	) {
-		List<JSONObject> jRecords = getData(pos37);
-		if (jRecords == null) {
-			return Collections.emptyList();
+		if (fromWhat != null) {
+			if (!(fromWhat.equals(GnomadRecord.SOURCE_EXOMES) || fromWhat.equals(GnomadRecord.SOURCE_GENOMES))) {
+				throw new RuntimeException("Not support many fromWhat");
+			}
 		}
 
-		List<JSONObject> records;
-		if (isSNV) {
-			records = jRecords.stream()
-					.filter(item ->
-							item.getAsString("REF").equals(ref) && item.getAsString("ALT").equals(alt)
-					).collect(Collectors.toList());
-		} else {
-			records = jRecords.stream()
-					.filter(item ->
-							item.getAsString("REF").contains(ref) && item.getAsString("ALT").contains(alt)
-					).collect(Collectors.toList());
+		List<JSONObject> jRecords = fetched.computeIfAbsent(
+				pos37.chromosome.getChar() + ":" + pos37.value,
+				key -> getData(pos37)
+		);
+		if (jRecords == null) {
+			return Collections.emptyList();
 		}
 
-		if (fromWhat != null) {
-			if (!(fromWhat.equals("e") || fromWhat.equals("g"))) {
-				throw new RuntimeException("Not support many fromWhat");
+		List<JSONObject> records = new ArrayList<>();
+		for (JSONObject item : jRecords) {
+			String itemRef = item.getAsString("REF");
+			String itemAlt = item.getAsString("ALT");
+			boolean match = (isSNV)
+					? itemRef.equals(ref) && itemAlt.equals(alt)
+					: itemRef.contains(ref) && itemAlt.contains(alt);
+			if (!match) {
+				continue;
 			}
-			records = records.stream()
-					.filter(item -> item.getAsString("SOURCE").equals(fromWhat))
-					.collect(Collectors.toList());
+			if (fromWhat != null && !item.getAsString("SOURCE").equals(fromWhat)) {
+				continue;
+			}
+			records.add(item);
 		}
-
 		return records;
 	}
 
@@ -180,8 +283,8 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 	 *
 	 * @return
 	 */
-	private List<GnomadDataResponse> tryFindRefertData(
-			AnfisaExecuteContext context, Variant variant, String fromWhat
+	private List<Match> tryFindRefertData(
+			AnfisaExecuteContext context, Variant variant, String fromWhat, Map<String, List<JSONObject>> fetched
 	) {
 		Assembly assembly = context.anfisaInput.mCase.assembly;
 		if (assembly != Assembly.GRCh38) throw new IllegalArgumentException();
@@ -230,12 +333,15 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 					variant.getStrAlt(),
 					variant.getRef(),
 					fromWhat,
-					false
+					false,
+					fetched
 			);
 			if (!jRecords.isEmpty()) {
-				return jRecords.stream()
-						.map(jsonObject -> buildRevert(iPosition, jsonObject))
-						.collect(Collectors.toList());
+				List<Match> matches = new ArrayList<>(jRecords.size());
+				for (JSONObject jRecord : jRecords) {
+					matches.add(new Match(iPosition, jRecord, true));
+				}
+				return matches;
 			}
 		}
 
@@ -248,9 +354,11 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 		if (jRecords == null) {
 			return null;
 		}
-		return jRecords.stream()
-				.map(o -> (JSONObject) o)
-				.collect(Collectors.toList());
+		List<JSONObject> records = new ArrayList<>(jRecords.size());
+		for (Object item : jRecords) {
+			records.add((JSONObject) item);
+		}
+		return records;
 	}
 
 	@Override
@@ -364,4 +472,53 @@ public class GnomadDataSourceHttp implements GnomadDataSource {
 		}
 	}
 
+	/**
+	 * Группы, которые передаются в GnomadDataResponse (см. build)
+	 */
+	private static final GnamadGroup[] RECORD_GROUPS = {
+			GnamadGroup.OTH, GnamadGroup.AMR, GnamadGroup.RAW, GnamadGroup.FIN,
+			GnamadGroup.AFR, GnamadGroup.NFE, GnamadGroup.EAS, GnamadGroup.ASJ
+	};
+
+	/**
+	 * Разбор записи в примитивы - те же значения, что и через build/buildRevert и GnomadRecord.of
+	 */
+	private static GnomadRecord decode(Match match, boolean exomes) {
+		JSONObject record = match.record;
+		long[] groupAn = GnomadRecord.newGroupArray();
+		long[] groupAc = GnomadRecord.newGroupArray();
+		for (GnamadGroup group : RECORD_GROUPS) {
+			JSONObject jGroup = (JSONObject) record.get(group.name().toLowerCase());
+			if (jGroup == null) continue;
+			groupAn[group.ordinal()] = decodeAN(jGroup);
+			groupAc[group.ordinal()] = decodeAC(jGroup, match.revert);
+		}
+
+		Number hem = (match.revert) ? null : record.getAsNumber("hem");
+		return new GnomadRecord(
+				exomes,
+				match.position.chromosome.getChar(),
+				match.position.value,
+				record.getAsString("REF"),
+				record.getAsString("ALT"),
+				decodeAN(record),
+				decodeAC(record, match.revert),
+				groupAn, groupAc,
+				(match.revert) ? 0 : GnomadRecord.toLong(record.getAsNumber("nhomalt")),
+				hem != null, GnomadRecord.toLong(hem)
+		);
+	}
+
+	private static long decodeAN(JSONObject record) {
+		return GnomadRecord.toLong(record.getAsNumber("AN"));
+	}
+
+	private static long decodeAC(JSONObject record, boolean revert) {
+		Number nAC = record.getAsNumber("AC");
+		if (!revert) {
+			return GnomadRecord.toLong(nAC);
+		}
+		Number nAN = record.getAsNumber("AN");
+		return (nAN != null && nAC != null) ? nAN.longValue() - nAC.longValue() : 0;
+	}
 }
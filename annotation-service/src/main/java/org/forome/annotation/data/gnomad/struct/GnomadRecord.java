@@ -0,0 +1,112 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gnomad.struct;
+
+import org.forome.annotation.service.source.tmp.GnomadDataResponse;
+
+/**
+ * Запись gnomAD (экзом или геном), счетчики разобраны в примитивы:
+ * AN/AC по группам - массивы с индексом GnamadGroup.ordinal(), отсутствующее значение - 0
+ */
+public class GnomadRecord {
+
+	public static final String SOURCE_EXOMES = "e";
+	public static final String SOURCE_GENOMES = "g";
+
+	private static final GnamadGroup[] GROUPS = GnamadGroup.values();
+
+	private static final String[] AN_COLUMNS = new String[GROUPS.length];
+	private static final String[] AC_COLUMNS = new String[GROUPS.length];
+
+	static {
+		for (GnamadGroup group : GROUPS) {
+			AN_COLUMNS[group.ordinal()] = "AN_" + group.name();
+			AC_COLUMNS[group.ordinal()] = "AC_" + group.name();
+		}
+	}
+
+	public final boolean exomes;
+
+	public final String chromosome;
+	public final long position;
+	public final String reference;
+	public final String alternative;
+
+	public final long an;
+	public final long ac;
+	public final long[] groupAn;
+	public final long[] groupAc;
+
+	public final long hom;
+	public final boolean hasHem;
+	public final long hem;
+
+	public GnomadRecord(
+			boolean exomes,
+			String chromosome, long position, String reference, String alternative,
+			long an, long ac, long[] groupAn, long[] groupAc,
+			long hom, boolean hasHem, long hem
+	) {
+		if (groupAn.length != GROUPS.length || groupAc.length != GROUPS.length) {
+			throw new IllegalArgumentException();
+		}
+		this.exomes = exomes;
+		this.chromosome = chromosome;
+		this.position = position;
+		this.reference = reference;
+		this.alternative = alternative;
+		this.an = an;
+		this.ac = ac;
+		this.groupAn = groupAn;
+		this.groupAc = groupAc;
+		this.hom = hom;
+		this.hasHem = hasHem;
+		this.hem = hem;
+	}
+
+	public static long[] newGroupArray() {
+		return new long[GROUPS.length];
+	}
+
+	public static GnomadRecord of(GnomadDataResponse item, boolean exomes) {
+		long[] groupAn = newGroupArray();
+		long[] groupAc = newGroupArray();
+		for (int i = 0; i < GROUPS.length; i++) {
+			groupAn[i] = toLong(item.getValue(AN_COLUMNS[i]));
+			groupAc[i] = toLong(item.getValue(AC_COLUMNS[i]));
+		}
+		Number hem = item.getValue("hem");
+		return new GnomadRecord(
+				exomes,
+				item.getValue("CHROM"),
+				((Number) item.getValue("POS")).longValue(),
+				item.getValue("REF"),
+				item.getValue("ALT"),
+				toLong(item.getValue("AN")),
+				toLong(item.getValue("AC")),
+				groupAn, groupAc,
+				toLong(item.getValue("nhomalt")),
+				hem != null, toLong(hem)
+		);
+	}
+
+	public static long toLong(Object value) {
+		return (value == null) ? 0 : ((Number) value).longValue();
+	}
+}
@@ -24,6 +24,7 @@ import org.forome.annotation.config.connector.ForomeConfigConnector;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.gtex.GTEXConnector;
 import org.forome.annotation.data.gtex.struct.Tissue;
+import org.forome.annotation.data.query.QueryStatistics;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.struct.SourceMetadata;
@@ -31,10 +32,7 @@ import org.forome.annotation.utils.Statistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 
@@ -89,19 +87,20 @@ public class GTEXConnectorMysql implements GTEXConnector, AutoCloseable {
 	}
 
 	private List<Tissue> loadTissues(String gene) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 			String sql = String.format(
-					"select TissueNo, Expression, RelExp from %s.GTexGENE2TISSUE where GeneName = (select GeneName from %s.GTexGENE where Description='%s')",
+					"select TissueNo, Expression, RelExp from %s.GTexGENE2TISSUE where GeneName = (select GeneName from %s.GTexGENE where Description = ?)",
 					databaseConnector.getDatabase(),
-					databaseConnector.getDatabase(),
-					gene
+					databaseConnector.getDatabase()
 			);
 			List<Tissue> tissues = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-						while (resultSet.next()) {
+			try {
+				databaseConnector.query(
+						QueryStatistics.get("gtex_tissues"),
+						sql,
+						statement -> statement.setString(1, gene),
+						resultSet -> {
 							String tissueName = tissueTypes.get(resultSet.getInt("TissueNo"));
 							Tissue tissue = new Tissue(
 									tissueName,
@@ -110,8 +109,7 @@ public class GTEXConnectorMysql implements GTEXConnector, AutoCloseable {
 							);
 							tissues.add(tissue);
 						}
-					}
-				}
+				);
 			} catch (SQLException ex) {
 				log.debug("Ошибка в логике. необходимо врочно исправить", ex);
 				//TODO Ulitin V. временное решение. после исправление базы gtex - вернуть кидание ошибки
@@ -122,7 +120,7 @@ public class GTEXConnectorMysql implements GTEXConnector, AutoCloseable {
 			}
 			return tissues;
 		} finally {
-			statistic.addTime(System.currentTimeMillis() - t1);
+			statistic.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
@@ -132,17 +130,17 @@ public class GTEXConnectorMysql implements GTEXConnector, AutoCloseable {
 				"SELECT TissueNo, Name FROM %s.GTexTISSUE", databaseConnector.getDatabase()
 		);
 		Map<Integer, String> tissueTypes = new HashMap<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					while (resultSet.next()) {
-						tissueTypes.put(
-								resultSet.getInt("TissueNo"),
-								resultSet.getString("Name")
-						);
-					}
-				}
-			}
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtex_tissue_types"),
+					sql,
+					statement -> {
+					},
+					resultSet -> tissueTypes.put(
+							resultSet.getInt("TissueNo"),
+							resultSet.getString("Name")
+					)
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
@@ -18,15 +18,16 @@
 
 package org.forome.annotation.data.gtf;
 
+import org.forome.annotation.config.executor.ExecutorConfig;
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
 import org.forome.annotation.data.gtf.datasource.GTFDataSource;
-import org.forome.annotation.data.gtf.datasource.mysql.GTFDataConnector;
+import org.forome.annotation.data.gtf.datasource.GTFIndexedDataSource;
 import org.forome.annotation.data.gtf.mysql.struct.GTFRegion;
 import org.forome.annotation.data.gtf.mysql.struct.GTFResult;
 import org.forome.annotation.data.gtf.mysql.struct.GTFResultLookup;
 import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
 import org.forome.annotation.struct.variant.Variant;
-import org.forome.annotation.utils.DefaultThreadPoolExecutor;
+import org.forome.annotation.utils.BoundedThreadPoolExecutor;
 import org.forome.annotation.utils.Statistics;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
@@ -37,22 +38,19 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
 
 public class GTFConnectorImpl implements GTFConnector {
 
-	private static final int MAX_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
-
 	private final GTFDataSource gtfDataSource;
 
-	//	private final DatabaseConnector databaseConnector;
-	private final GTFDataConnector gtfDataConnector;
+	/**
+	 * Поиск гена и транскриптов по позиции, null - источник их не поддерживает (http)
+	 */
+	private final GTFIndexedDataSource gtfIndexedDataSource;
 
 //	private final LiftoverConnector liftoverConnector;
 
-	private final ExecutorService threadPoolGTFExecutor;
+	private final BoundedThreadPoolExecutor threadPoolGTFExecutor;
 
 	public final Statistics statisticCds = new Statistics();
 
@@ -63,21 +61,26 @@ public class GTFConnectorImpl implements GTFConnector {
 			LiftoverConnector liftoverConnector,
 			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
 	) throws Exception {
-		this.gtfDataSource = gtfDataSource;
+		this(gtfDataSource, liftoverConnector, new ExecutorConfig(), uncaughtExceptionHandler);
+	}
 
-//        this.databaseConnector = new DatabaseConnector(databaseConnectService, gtfConfigConnector);
-//		this.gtfDataConnector = new GTFDataConnector(databaseConnector);
-		gtfDataConnector = (GTFDataConnector) gtfDataSource;
+	public GTFConnectorImpl(
+			GTFDataSource gtfDataSource,
+			LiftoverConnector liftoverConnector,
+			ExecutorConfig executorConfig,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
+	) throws Exception {
+		this.gtfDataSource = gtfDataSource;
+		this.gtfIndexedDataSource = (gtfDataSource instanceof GTFIndexedDataSource) ? (GTFIndexedDataSource) gtfDataSource : null;
 
 //		this.liftoverConnector = liftoverConnector;
 
-		threadPoolGTFExecutor = new DefaultThreadPoolExecutor(
-				MAX_THREAD_COUNT,
-				MAX_THREAD_COUNT,
-				0L,
-				TimeUnit.MILLISECONDS,
-				new LinkedBlockingQueue<>(),
-				"GnomadExecutorQueue",
+		threadPoolGTFExecutor = new BoundedThreadPoolExecutor(
+				"GTFExecutor",
+				executorConfig.threads,
+				executorConfig.queue,
+				executorConfig.overflow,
+				executorConfig.virtual,
 				uncaughtExceptionHandler
 		);
 	}
@@ -85,48 +88,63 @@ public class GTFConnectorImpl implements GTFConnector {
 	@Override
 	public CompletableFuture<GTFResult> request(Assembly assembly, String chromosome, long position) {
 		CompletableFuture<GTFResult> future = new CompletableFuture();
-		threadPoolGTFExecutor.submit(() -> {
-			try {
-				GTFResult result = gtfDataConnector.getGene(assembly, chromosome, position);
-				future.complete(result);
-			} catch (Throwable e) {
-				future.completeExceptionally(e);
-			}
-		});
+		try {
+			threadPoolGTFExecutor.submit(() -> {
+				try {
+					GTFResult result = getIndexedDataSource().getGene(assembly, chromosome, position);
+					future.complete(result);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (Throwable e) {
+			//Очередь пула переполнена (overflow: reject)
+			future.completeExceptionally(e);
+		}
 		return future;
 	}
 
 	@Override
 	public CompletableFuture<GTFRegion> getRegion(AnfisaExecuteContext context, Assembly assembly, Position position, String transcript) {
 		CompletableFuture<GTFRegion> future = new CompletableFuture();
-		threadPoolGTFExecutor.submit(() -> {
-			try {
-				Object[] result = lookup(context, assembly, position, transcript);
-				future.complete((GTFRegion) result[1]);
-			} catch (Throwable e) {
-				future.completeExceptionally(e);
-			}
-		});
+		try {
+			threadPoolGTFExecutor.submit(() -> {
+				try {
+					Object[] result = lookup(context, assembly, position, transcript);
+					future.complete((GTFRegion) result[1]);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (Throwable e) {
+			//Очередь пула переполнена (overflow: reject)
+			future.completeExceptionally(e);
+		}
 		return future;
 	}
 
 	@Override
 	public CompletableFuture<List<GTFResultLookup>> getRegionByChromosomeAndPositions(AnfisaExecuteContext context, String chromosome, long[] positions) {
 		CompletableFuture<List<GTFResultLookup>> future = new CompletableFuture();
-		threadPoolGTFExecutor.submit(() -> {
-			try {
-				List<GTFResultLookup> result = lookupByChromosomeAndPositions(context, chromosome, positions);
-				future.complete(result);
-			} catch (Throwable e) {
-				future.completeExceptionally(e);
-			}
-		});
+		try {
+			threadPoolGTFExecutor.submit(() -> {
+				try {
+					List<GTFResultLookup> result = lookupByChromosomeAndPositions(context, chromosome, positions);
+					future.complete(result);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (Throwable e) {
+			//Очередь пула переполнена (overflow: reject)
+			future.completeExceptionally(e);
+		}
 		return future;
 	}
 
 	@Override
 	public List<GTFTranscriptRow> getTranscriptRows(Assembly assembly, String transcript) {
-		return gtfDataConnector.getTranscriptRows(assembly, transcript);
+		return getIndexedDataSource().getTranscriptRows(assembly, transcript);
 	}
 
 	@Override
@@ -135,23 +153,24 @@ public class GTFConnectorImpl implements GTFConnector {
 //		if (rows == null) return null;
 //		return lookup(position.value, rows);
 
-		List<GTFTranscriptRow> rows = gtfDataConnector.getTranscriptRows(assembly, transcript);
+		List<GTFTranscriptRow> rows = getIndexedDataSource().getTranscriptRows(assembly, transcript);
 		if (rows.isEmpty()) return null;
 
 		return lookup(position, rows);
 	}
 
 	public List<GTFResultLookup> lookupByChromosomeAndPositions(AnfisaExecuteContext context, String chromosome, long[] positions) {
-		Assembly assembly = context.anfisaInput.mCase.assembly;
+		Assembly assembly = (context != null) ? context.anfisaInput.mCase.assembly : Assembly.GRCh37;
 		List<GTFResultLookup> result = new ArrayList<>();
 
-		List<String> transcripts = gtfDataConnector.getTranscriptsByChromosomeAndPositions(assembly, chromosome, positions);
+		List<String> transcripts = getIndexedDataSource().getTranscriptsByChromosomeAndPositions(assembly, chromosome, positions);
 		for (String transcript : transcripts) {
-			for (long position : positions) {
-				List<GTFTranscriptRow> rows = gtfDataConnector.getTranscriptRows(assembly, transcript);
-				if (rows.isEmpty()) continue;
+			//Экзоны транскрипта запрашиваются один раз для всех позиций
+			List<GTFTranscriptRow> rows = getIndexedDataSource().getTranscriptRows(assembly, transcript);
+			if (rows.isEmpty()) continue;
 
-				Object[] iResult = lookup(context, context.anfisaInput.mCase.assembly, new Position(Chromosome.of(chromosome), (int) position), transcript);
+			for (long position : positions) {
+				Object[] iResult = lookup(new Position(Chromosome.of(chromosome), (int) position), rows);
 				GTFRegion region = (GTFRegion) iResult[1];
 				result.add(new GTFResultLookup(transcript, rows.get(0).gene, position, region.region, region.indexRegion));
 			}
@@ -213,12 +232,26 @@ public class GTFConnectorImpl implements GTFConnector {
 	}
 
 	public Set<String> getCdsTranscript(Assembly assembly, Variant variant) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
 			return gtfDataSource.getCdsTranscript(assembly, variant);
 		} finally {
-			statisticCds.addTime(System.currentTimeMillis() - t1);
+			statisticCds.addTimeNanos(System.nanoTime() - t1);
+		}
+	}
+
+	private GTFIndexedDataSource getIndexedDataSource() {
+		if (gtfIndexedDataSource == null) {
+			throw new RuntimeException("not support gene/transcript queries: " + gtfDataSource.getClass().getSimpleName());
 		}
+		return gtfIndexedDataSource;
+	}
+
+	/**
+	 * Пул запросов (для метрик: размер очереди, активные потоки)
+	 */
+	public BoundedThreadPoolExecutor getExecutor() {
+		return threadPoolGTFExecutor;
 	}
 
 	@Override
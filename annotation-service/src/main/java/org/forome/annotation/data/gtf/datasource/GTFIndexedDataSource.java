@@ -0,0 +1,38 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gtf.datasource;
+
+import org.forome.annotation.data.gtf.mysql.struct.GTFResult;
+import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
+import org.forome.core.struct.Assembly;
+
+import java.util.List;
+
+/**
+ * Источник с локальной копией gtf: поиск гена и транскриптов по позиции, экзоны транскрипта
+ */
+public interface GTFIndexedDataSource extends GTFDataSource {
+
+	GTFResult getGene(Assembly assembly, String chromosome, long position);
+
+	List<GTFTranscriptRow> getTranscriptRows(Assembly assembly, String transcript);
+
+	List<String> getTranscriptsByChromosomeAndPositions(Assembly assembly, String chromosome, long[] positions);
+
+}
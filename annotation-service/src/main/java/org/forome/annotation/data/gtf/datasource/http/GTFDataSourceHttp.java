@@ -22,16 +22,10 @@ import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
-import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.util.EntityUtils;
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
 import org.forome.annotation.data.gnomad.datasource.http.GnomadDataSourceHttp;
@@ -40,6 +34,7 @@ import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.source.DataSource;
 import org.forome.annotation.service.source.external.ExternalDataSource;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
 import org.forome.annotation.struct.variant.Variant;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
@@ -47,7 +42,6 @@ import org.forome.core.struct.Position;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.util.List;
@@ -67,15 +61,14 @@ public class GTFDataSourceHttp implements GTFDataSource {
 	private final LiftoverConnector liftoverConnector;
 
 	private final RequestConfig requestConfig;
-	private final PoolingNHttpClientConnectionManager connectionManager;
-	private final HttpHost httpHost;
+	private final HttpClientPool httpClientPool;
 
 	private final URL url;
 
 	public GTFDataSourceHttp(
 			LiftoverConnector liftoverConnector,
 			DataSource dataSource
-	) throws IOReactorException {
+	) {
 		this.liftoverConnector = liftoverConnector;
 
 		requestConfig = RequestConfig.custom()
@@ -84,13 +77,9 @@ public class GTFDataSourceHttp implements GTFDataSource {
 				.setConnectionRequestTimeout(10 * 60 * 1000)//Таймаут на ответ
 				.build();
 
-		connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
-		connectionManager.setMaxTotal(100);
-		connectionManager.setDefaultMaxPerRoute(100);
-
 		url = ((ExternalDataSource)dataSource).url;
 
-		httpHost = new HttpHost(url.getHost(), url.getPort(), "http");
+		httpClientPool = HttpClientPool.get(url);
 	}
 
 
@@ -143,14 +132,9 @@ public class GTFDataSourceHttp implements GTFDataSource {
 	private JSONObject request(String url) {
 		CompletableFuture<JSONObject> future = new CompletableFuture<>();
 		try {
-			CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom()
-					.setDefaultRequestConfig(requestConfig)
-					.build();
-			httpclient.start();
-
 			HttpPost httpPostRequest = new HttpPost(new URI(url));
 
-			httpclient.execute(httpHost, httpPostRequest, new FutureCallback<HttpResponse>() {
+			httpClientPool.execute(httpPostRequest, requestConfig, new FutureCallback<HttpResponse>() {
 				@Override
 				public void completed(HttpResponse response) {
 					try {
@@ -174,36 +158,20 @@ public class GTFDataSourceHttp implements GTFDataSource {
 					} catch (Throwable ex) {
 						future.completeExceptionally(ex);
 					}
-
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void failed(Exception ex) {
 					future.completeExceptionally(ex);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void cancelled() {
 					future.cancel(true);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 			});
 		} catch (Throwable t) {
-			log.error("Exception close connect", t);
+			log.error("Exception execute request", t);
 			future.completeExceptionally(t);
 		}
 
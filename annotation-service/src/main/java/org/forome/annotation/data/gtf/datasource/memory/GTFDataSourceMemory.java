@@ -0,0 +1,206 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gtf.datasource.memory;
+
+import org.forome.annotation.data.DatabaseConnector;
+import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
+import org.forome.annotation.data.gtf.datasource.GTFIndexedDataSource;
+import org.forome.annotation.data.gtf.mysql.struct.GTFResult;
+import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
+import org.forome.annotation.exception.ExceptionBuilder;
+import org.forome.annotation.struct.variant.Variant;
+import org.forome.core.struct.Assembly;
+import org.forome.core.struct.Position;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * GTF целиком в памяти: при первом обращении к сборке таблицы GTF и GTF_gene читаются из MySQL один раз
+ * и превращаются в снапшот с интервальными деревьями, дальше все запросы выполняются без обращения к БД.
+ * Если задан каталог снапшотов, то снапшот сохраняется в файл и при следующем старте только отображается в память.
+ * Файл снапшота не отслеживает изменения в БД - после обновления GTF его нужно удалить.
+ */
+public class GTFDataSourceMemory implements GTFIndexedDataSource {
+
+	private final static Logger log = LoggerFactory.getLogger(GTFDataSourceMemory.class);
+
+	private final DatabaseConnector databaseConnector;
+	private final Path snapshotDirectory;
+
+	private final ConcurrentMap<Assembly, GTFSnapshot> snapshots;
+
+	/**
+	 * @param snapshotDirectory - каталог файлов снапшотов, null - снапшот строится в памяти при каждом старте
+	 */
+	public GTFDataSourceMemory(DatabaseConnector databaseConnector, Path snapshotDirectory) {
+		this.databaseConnector = databaseConnector;
+		this.snapshotDirectory = snapshotDirectory;
+		this.snapshots = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public GTFResult getGene(Assembly assembly, String chromosome, long position) {
+		if (position > Integer.MAX_VALUE) {
+			return new GTFResult(null);
+		}
+		return new GTFResult(getSnapshot(assembly).getGene(chromosome, (int) position));
+	}
+
+	@Override
+	public List<GTFTranscriptRow> getTranscriptRows(Assembly assembly, String transcript) {
+		return getSnapshot(assembly).getTranscriptRows(transcript);
+	}
+
+	@Override
+	public List<String> getTranscriptsByChromosomeAndPositions(Assembly assembly, String chromosome, long[] positions) {
+		return getSnapshot(assembly).getTranscripts(chromosome, positions);
+	}
+
+	@Override
+	public List<GTFTranscriptRow> lookup(AnfisaExecuteContext context, Assembly assembly, Position position, String transcript) {
+		List<GTFTranscriptRow> rows = getTranscriptRows(assembly, transcript);
+		return rows.isEmpty() ? null : rows;
+	}
+
+	@Override
+	public Set<String> getCdsTranscript(Assembly assembly, Variant variant) {
+		int start = Math.min(variant.getStart(), variant.end);
+		int end = Math.max(variant.getStart(), variant.end);
+		return getSnapshot(assembly).getCdsTranscripts(variant.chromosome.getChar(), start, end);
+	}
+
+	private GTFSnapshot getSnapshot(Assembly assembly) {
+		return snapshots.computeIfAbsent(assembly, this::loadSnapshot);
+	}
+
+	private GTFSnapshot loadSnapshot(Assembly assembly) {
+		try {
+			Path file = (snapshotDirectory != null) ? getSnapshotPath(snapshotDirectory, assembly) : null;
+			if (file != null && Files.exists(file)) {
+				log.info("Load GTF snapshot: {}", file);
+				return GTFSnapshot.read(file);
+			}
+
+			long t1 = System.currentTimeMillis();
+			GTFSnapshot.Builder builder = readDatabase(assembly);
+			GTFSnapshot snapshot;
+			if (file != null) {
+				Files.createDirectories(snapshotDirectory);
+				builder.write(file);
+				snapshot = GTFSnapshot.read(file);
+			} else {
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				builder.write(os);
+				snapshot = GTFSnapshot.read(ByteBuffer.wrap(os.toByteArray()));
+			}
+			log.info("Build GTF snapshot: {}, time: {} ms", assembly, System.currentTimeMillis() - t1);
+			return snapshot;
+		} catch (IOException e) {
+			throw new RuntimeException("Exception build GTF snapshot: " + assembly, e);
+		}
+	}
+
+	private GTFSnapshot.Builder readDatabase(Assembly assembly) {
+		GTFSnapshot.Builder builder = new GTFSnapshot.Builder();
+
+		String sqlFeatures = String.format(
+				"SELECT `chromosome`, `transcript`, `gene`, `start`, `end`, `feature` from %s.GTF WHERE feature IN ('%s', '%s', '%s')",
+				getDatabase(assembly),
+				GTFSnapshot.FEATURE_EXON, GTFSnapshot.FEATURE_CDS, GTFSnapshot.FEATURE_TRANSCRIPT
+		);
+		String sqlGenes = String.format(
+				"SELECT `chromosome`, `start`, `end`, `gene` from %s.GTF_gene",
+				getDatabase(assembly)
+		);
+
+		try (Connection connection = databaseConnector.createConnection()) {
+			try (Statement statement = createStreamingStatement(connection)) {
+				try (ResultSet resultSet = statement.executeQuery(sqlFeatures)) {
+					while (resultSet.next()) {
+						builder.addFeature(
+								resultSet.getString("chromosome"),
+								resultSet.getString("transcript"),
+								resultSet.getString("gene"),
+								resultSet.getInt("start"),
+								resultSet.getInt("end"),
+								resultSet.getString("feature")
+						);
+					}
+				}
+			}
+			try (Statement statement = createStreamingStatement(connection)) {
+				try (ResultSet resultSet = statement.executeQuery(sqlGenes)) {
+					while (resultSet.next()) {
+						builder.addGene(
+								resultSet.getString("chromosome"),
+								resultSet.getInt("start"),
+								resultSet.getInt("end"),
+								resultSet.getString("gene")
+						);
+					}
+				}
+			}
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		}
+		return builder;
+	}
+
+	/**
+	 * Построчное чтение результата (mysql-connector без этого загружает весь результат в память)
+	 */
+	private static Statement createStreamingStatement(Connection connection) throws SQLException {
+		Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		statement.setFetchSize(Integer.MIN_VALUE);
+		return statement;
+	}
+
+	public static Path getSnapshotPath(Path snapshotDirectory, Assembly assembly) {
+		return snapshotDirectory.resolve("gtf_" + assembly.name().toLowerCase() + ".snapshot");
+	}
+
+	@Override
+	public void close() {
+		databaseConnector.close();
+	}
+
+	private static String getDatabase(Assembly assembly) {
+		if (assembly == Assembly.GRCh37) {
+			return "ensembl";
+		} else if (assembly == Assembly.GRCh38) {
+			return "ensembl_hg38";
+		} else {
+			throw new RuntimeException("Unknown assembly: " + assembly);
+		}
+	}
+}
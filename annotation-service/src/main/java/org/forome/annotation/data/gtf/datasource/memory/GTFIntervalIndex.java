@@ -0,0 +1,233 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gtf.datasource.memory;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Неявное интервальное дерево (как в cgranges): интервалы [start, end] (включительно) отсортированы по (start, end),
+ * узлы дерева - элементы отсортированного массива, в каждом узле хранится максимальный end его поддерева.
+ * Все данные - int-массивы, которые читаются напрямую из буфера снапшота (в т.ч. memory-mapped) без копирования.
+ */
+class GTFIntervalIndex {
+
+	/**
+	 * Поддерево такого уровня и меньше проверяется линейным проходом
+	 */
+	private static final int LINEAR_SCAN_LEVEL = 3;
+
+	private final int size;
+	private final int maxLevel;
+
+	private final IntBuffer starts;
+	private final IntBuffer ends;
+	private final IntBuffer maxEnds;
+	private final IntBuffer values;
+
+	private GTFIntervalIndex(int size, int maxLevel, IntBuffer starts, IntBuffer ends, IntBuffer maxEnds, IntBuffer values) {
+		this.size = size;
+		this.maxLevel = maxLevel;
+		this.starts = starts;
+		this.ends = ends;
+		this.maxEnds = maxEnds;
+		this.values = values;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int getStart(int index) {
+		return starts.get(index);
+	}
+
+	int getEnd(int index) {
+		return ends.get(index);
+	}
+
+	int getValue(int index) {
+		return values.get(index);
+	}
+
+	/**
+	 * Индексы интервалов, пересекающихся с [start, end], в порядке (start, end)
+	 */
+	int[] query(int start, int end) {
+		if (size == 0) {
+			return new int[0];
+		}
+
+		int[] result = new int[16];
+		int count = 0;
+
+		int[] stackLevel = new int[64];
+		int[] stackNode = new int[64];
+		boolean[] stackLeftDone = new boolean[64];
+		int t = 0;
+
+		stackLevel[t] = maxLevel;
+		stackNode[t] = (1 << maxLevel) - 1;
+		stackLeftDone[t] = false;
+		t++;
+		while (t > 0) {
+			t--;
+			int level = stackLevel[t];
+			int node = stackNode[t];
+			boolean leftDone = stackLeftDone[t];
+
+			if (level <= LINEAR_SCAN_LEVEL) {
+				int i0 = node >> level << level;
+				int i1 = Math.min(size, i0 + (1 << (level + 1)) - 1);
+				for (int i = i0; i < i1 && starts.get(i) <= end; i++) {
+					if (start <= ends.get(i)) {
+						if (count == result.length) {
+							result = Arrays.copyOf(result, count * 2);
+						}
+						result[count++] = i;
+					}
+				}
+			} else if (!leftDone) {
+				int left = node - (1 << (level - 1));
+				//Возвращаемся к узлу после обработки левого поддерева
+				stackLevel[t] = level;
+				stackNode[t] = node;
+				stackLeftDone[t] = true;
+				t++;
+				//Левый потомок может отсутствовать (за пределами массива) - тогда спускаемся дальше
+				if (left >= size || maxEnds.get(left) >= start) {
+					stackLevel[t] = level - 1;
+					stackNode[t] = left;
+					stackLeftDone[t] = false;
+					t++;
+				}
+			} else if (node < size && starts.get(node) <= end) {
+				if (start <= ends.get(node)) {
+					if (count == result.length) {
+						result = Arrays.copyOf(result, count * 2);
+					}
+					result[count++] = node;
+				}
+				stackLevel[t] = level - 1;
+				stackNode[t] = node + (1 << (level - 1));
+				stackLeftDone[t] = false;
+				t++;
+			}
+		}
+
+		int[] indexes = Arrays.copyOf(result, count);
+		Arrays.sort(indexes);
+		return indexes;
+	}
+
+	/**
+	 * Сортировка интервалов, построение дерева и запись в снапшот (выравнивание по 4 байта - на стороне вызывающего)
+	 */
+	static void write(DataOutputStream os, int[] starts, int[] ends, int[] values, int size) throws IOException {
+		Integer[] order = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i1, i2) -> {
+			int c = Integer.compare(starts[i1], starts[i2]);
+			return (c != 0) ? c : Integer.compare(ends[i1], ends[i2]);
+		});
+
+		int[] sStarts = new int[size];
+		int[] sEnds = new int[size];
+		int[] sValues = new int[size];
+		for (int i = 0; i < size; i++) {
+			sStarts[i] = starts[order[i]];
+			sEnds[i] = ends[order[i]];
+			sValues[i] = values[order[i]];
+		}
+
+		int[] maxEnds = new int[size];
+		int maxLevel = buildMaxEnds(sEnds, maxEnds, size);
+
+		os.writeInt(size);
+		os.writeInt(maxLevel);
+		writeInts(os, sStarts, size);
+		writeInts(os, sEnds, size);
+		writeInts(os, maxEnds, size);
+		writeInts(os, sValues, size);
+	}
+
+	/**
+	 * Чтение с текущей позиции буфера, позиция сдвигается за конец индекса
+	 */
+	static GTFIntervalIndex read(ByteBuffer buffer) {
+		int size = buffer.getInt();
+		int maxLevel = buffer.getInt();
+		IntBuffer starts = readInts(buffer, size);
+		IntBuffer ends = readInts(buffer, size);
+		IntBuffer maxEnds = readInts(buffer, size);
+		IntBuffer values = readInts(buffer, size);
+		return new GTFIntervalIndex(size, maxLevel, starts, ends, maxEnds, values);
+	}
+
+	/**
+	 * Заполнение максимальных end по уровням дерева, возвращает уровень корня (-1 - пустое дерево)
+	 */
+	private static int buildMaxEnds(int[] ends, int[] maxEnds, int size) {
+		if (size == 0) {
+			return -1;
+		}
+		int lastIndex = 0;
+		int last = 0;
+		for (int i = 0; i < size; i += 2) {
+			lastIndex = i;
+			last = maxEnds[i] = ends[i];
+		}
+		int level = 1;
+		for (; (1L << level) <= size; level++) {
+			int x = 1 << (level - 1);
+			int i0 = (x << 1) - 1;
+			long step = (long) x << 2;
+			for (long i = i0; i < size; i += step) {
+				int node = (int) i;
+				int el = maxEnds[node - x];
+				int er = (node + x < size) ? maxEnds[node + x] : last;
+				maxEnds[node] = Math.max(ends[node], Math.max(el, er));
+			}
+			lastIndex = ((lastIndex >> level & 1) != 0) ? lastIndex - x : lastIndex + x;
+			if (lastIndex < size && maxEnds[lastIndex] > last) {
+				last = maxEnds[lastIndex];
+			}
+		}
+		return level - 1;
+	}
+
+	static void writeInts(DataOutputStream os, int[] values, int size) throws IOException {
+		for (int i = 0; i < size; i++) {
+			os.writeInt(values[i]);
+		}
+	}
+
+	static IntBuffer readInts(ByteBuffer buffer, int size) {
+		ByteBuffer slice = buffer.slice();
+		slice.order(buffer.order());
+		slice.limit(size * Integer.BYTES);
+		buffer.position(buffer.position() + size * Integer.BYTES);
+		return slice.asIntBuffer();
+	}
+}
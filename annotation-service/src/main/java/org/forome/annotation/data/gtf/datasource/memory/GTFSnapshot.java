@@ -0,0 +1,399 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gtf.datasource.memory;
+
+import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Снапшот GTF одной сборки: для каждой хромосомы интервальные деревья генов (GTF_gene), транскриптов и CDS,
+ * плюс экзоны, сгруппированные по транскриптам. Все числовые данные хранятся в int-массивах внутри одного буфера,
+ * при чтении из файла буфер отображается в память (mmap), поэтому старт не требует разбора и копирования данных.
+ *
+ * Формат (big-endian): заголовок, таблица строк, хромосомы (3 индекса на хромосому), таблица экзонов.
+ * Массивы выровнены по 4 байта.
+ */
+public class GTFSnapshot {
+
+	private static final int MAGIC = 0x47544653;//GTFS
+	private static final int VERSION = 1;
+
+	public static final String FEATURE_EXON = "exon";
+	public static final String FEATURE_CDS = "CDS";
+	public static final String FEATURE_TRANSCRIPT = "transcript";
+
+	private static class Contig {
+
+		private final GTFIntervalIndex genes;
+		private final GTFIntervalIndex transcripts;
+		private final GTFIntervalIndex cds;
+
+		private Contig(GTFIntervalIndex genes, GTFIntervalIndex transcripts, GTFIntervalIndex cds) {
+			this.genes = genes;
+			this.transcripts = transcripts;
+			this.cds = cds;
+		}
+	}
+
+	private final String[] strings;
+	private final Map<String, Contig> contigs;
+
+	/**
+	 * Транскрипт -> номер в таблице экзонов
+	 */
+	private final Map<String, Integer> exonTranscripts;
+	private final IntBuffer exonOffsets;
+	private final IntBuffer exonGenes;
+	private final IntBuffer exonStarts;
+	private final IntBuffer exonEnds;
+
+	private GTFSnapshot(ByteBuffer buffer) {
+		if (buffer.getInt() != MAGIC) {
+			throw new RuntimeException("Not a GTF snapshot");
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new RuntimeException("Unsupported GTF snapshot version: " + version);
+		}
+
+		int stringCount = buffer.getInt();
+		strings = new String[stringCount];
+		for (int i = 0; i < stringCount; i++) {
+			byte[] bytes = new byte[buffer.getShort() & 0xffff];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		buffer.position(align(buffer.position()));
+
+		int contigCount = buffer.getInt();
+		contigs = new HashMap<>(contigCount * 2);
+		for (int i = 0; i < contigCount; i++) {
+			String chromosome = strings[buffer.getInt()];
+			GTFIntervalIndex genes = GTFIntervalIndex.read(buffer);
+			GTFIntervalIndex transcripts = GTFIntervalIndex.read(buffer);
+			GTFIntervalIndex cds = GTFIntervalIndex.read(buffer);
+			contigs.put(chromosome, new Contig(genes, transcripts, cds));
+		}
+
+		int transcriptCount = buffer.getInt();
+		int exonCount = buffer.getInt();
+		IntBuffer transcriptIds = GTFIntervalIndex.readInts(buffer, transcriptCount);
+		exonOffsets = GTFIntervalIndex.readInts(buffer, transcriptCount + 1);
+		exonGenes = GTFIntervalIndex.readInts(buffer, transcriptCount);
+		exonStarts = GTFIntervalIndex.readInts(buffer, exonCount);
+		exonEnds = GTFIntervalIndex.readInts(buffer, exonCount);
+
+		exonTranscripts = new HashMap<>(transcriptCount * 2);
+		for (int i = 0; i < transcriptCount; i++) {
+			exonTranscripts.put(strings[transcriptIds.get(i)], i);
+		}
+	}
+
+	/**
+	 * Ген, содержащий позицию (при нескольких - с наименьшим началом)
+	 */
+	public String getGene(String chromosome, int position) {
+		Contig contig = contigs.get(chromosome);
+		if (contig == null) {
+			return null;
+		}
+		int[] indexes = contig.genes.query(position, position);
+		if (indexes.length == 0) {
+			return null;
+		}
+		return strings[contig.genes.getValue(indexes[0])];
+	}
+
+	/**
+	 * Экзоны транскрипта, отсортированные по (start, end)
+	 */
+	public List<GTFTranscriptRow> getTranscriptRows(String transcript) {
+		Integer index = exonTranscripts.get(transcript);
+		if (index == null) {
+			return new ArrayList<>();
+		}
+		String gene = getString(exonGenes.get(index));
+		int from = exonOffsets.get(index);
+		int to = exonOffsets.get(index + 1);
+		List<GTFTranscriptRow> rows = new ArrayList<>(to - from);
+		for (int i = from; i < to; i++) {
+			rows.add(new GTFTranscriptRow(gene, exonStarts.get(i), exonEnds.get(i), FEATURE_EXON));
+		}
+		return rows;
+	}
+
+	/**
+	 * Транскрипты, строго содержащие хотя бы одну из позиций (start < position < end), в порядке (start, end)
+	 */
+	public List<String> getTranscripts(String chromosome, long[] positions) {
+		Contig contig = contigs.get(chromosome);
+		if (contig == null) {
+			return new ArrayList<>();
+		}
+		GTFIntervalIndex index = contig.transcripts;
+
+		int[] hits = new int[0];
+		for (long position : positions) {
+			if (position <= Integer.MIN_VALUE || position >= Integer.MAX_VALUE) {
+				continue;
+			}
+			int pos = (int) position;
+			int[] indexes = index.query(pos, pos);
+			int count = 0;
+			for (int i : indexes) {
+				if (index.getStart(i) < pos && pos < index.getEnd(i)) {
+					indexes[count++] = i;
+				}
+			}
+			int size = hits.length;
+			hits = Arrays.copyOf(hits, size + count);
+			System.arraycopy(indexes, 0, hits, size, count);
+		}
+		Arrays.sort(hits);
+
+		LinkedHashSet<String> transcripts = new LinkedHashSet<>();
+		for (int i : hits) {
+			transcripts.add(strings[index.getValue(i)]);
+		}
+		return new ArrayList<>(transcripts);
+	}
+
+	/**
+	 * Транскрипты, CDS которых содержит start или end
+	 */
+	public Set<String> getCdsTranscripts(String chromosome, int start, int end) {
+		Set<String> transcripts = new HashSet<>();
+		Contig contig = contigs.get(chromosome);
+		if (contig == null) {
+			return transcripts;
+		}
+		for (int i : contig.cds.query(start, start)) {
+			transcripts.add(strings[contig.cds.getValue(i)]);
+		}
+		for (int i : contig.cds.query(end, end)) {
+			transcripts.add(strings[contig.cds.getValue(i)]);
+		}
+		return transcripts;
+	}
+
+	private String getString(int id) {
+		return (id < 0) ? null : strings[id];
+	}
+
+	public static GTFSnapshot read(ByteBuffer buffer) {
+		return new GTFSnapshot(buffer.duplicate());
+	}
+
+	/**
+	 * Файл отображается в память только на чтение, канал после отображения можно закрыть
+	 */
+	public static GTFSnapshot read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	private static int align(int position) {
+		return (position + 3) & ~3;
+	}
+
+	/**
+	 * Накопление записей из БД и запись снапшота
+	 */
+	public static class Builder {
+
+		private static class Intervals {
+
+			private int[] starts = new int[1024];
+			private int[] ends = new int[1024];
+			private int[] values = new int[1024];
+			private int size;
+
+			private void add(int start, int end, int value) {
+				if (size == starts.length) {
+					starts = Arrays.copyOf(starts, size * 2);
+					ends = Arrays.copyOf(ends, size * 2);
+					values = Arrays.copyOf(values, size * 2);
+				}
+				starts[size] = start;
+				ends[size] = end;
+				values[size] = value;
+				size++;
+			}
+		}
+
+		private static class ContigBuilder {
+
+			private final Intervals genes = new Intervals();
+			private final Intervals transcripts = new Intervals();
+			private final Intervals cds = new Intervals();
+		}
+
+		private final List<String> strings = new ArrayList<>();
+		private final Map<String, Integer> stringIds = new HashMap<>();
+
+		private final Map<Integer, ContigBuilder> contigs = new LinkedHashMap<>();
+
+		/**
+		 * Экзоны: start, end - интервалы, value - транскрипт; ген транскрипта - отдельно
+		 */
+		private final Intervals exons = new Intervals();
+		private final Map<Integer, Integer> transcriptGenes = new HashMap<>();
+
+		public Builder addGene(String chromosome, int start, int end, String gene) {
+			if (gene == null) {
+				return this;
+			}
+			getContig(chromosome).genes.add(start, end, getStringId(gene));
+			return this;
+		}
+
+		public Builder addFeature(String chromosome, String transcript, String gene, int start, int end, String feature) {
+			if (transcript == null) {
+				return this;
+			}
+			int transcriptId = getStringId(transcript);
+			if (FEATURE_EXON.equals(feature)) {
+				exons.add(start, end, transcriptId);
+				if (gene != null) {
+					transcriptGenes.putIfAbsent(transcriptId, getStringId(gene));
+				}
+			} else if (FEATURE_CDS.equals(feature)) {
+				getContig(chromosome).cds.add(start, end, transcriptId);
+			} else if (FEATURE_TRANSCRIPT.equals(feature)) {
+				getContig(chromosome).transcripts.add(start, end, transcriptId);
+			}
+			return this;
+		}
+
+		public void write(OutputStream outputStream) throws IOException {
+			DataOutputStream os = new DataOutputStream(new BufferedOutputStream(outputStream));
+			os.writeInt(MAGIC);
+			os.writeInt(VERSION);
+
+			os.writeInt(strings.size());
+			for (String value : strings) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > 0xffff) {
+					throw new IOException("Too long value: " + value);
+				}
+				os.writeShort(bytes.length);
+				os.write(bytes);
+			}
+			while (os.size() != align(os.size())) {
+				os.writeByte(0);
+			}
+
+			os.writeInt(contigs.size());
+			for (Map.Entry<Integer, ContigBuilder> entry : contigs.entrySet()) {
+				ContigBuilder contig = entry.getValue();
+				os.writeInt(entry.getKey());
+				GTFIntervalIndex.write(os, contig.genes.starts, contig.genes.ends, contig.genes.values, contig.genes.size);
+				GTFIntervalIndex.write(os, contig.transcripts.starts, contig.transcripts.ends, contig.transcripts.values, contig.transcripts.size);
+				GTFIntervalIndex.write(os, contig.cds.starts, contig.cds.ends, contig.cds.values, contig.cds.size);
+			}
+
+			writeExons(os);
+			os.flush();
+		}
+
+		/**
+		 * Атомарная запись в файл: сначала во временный, затем переименование
+		 */
+		public void write(Path file) throws IOException {
+			Path tmp = Paths.get(file.toString() + ".tmp");
+			try (OutputStream os = Files.newOutputStream(tmp)) {
+				write(os);
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+
+		private void writeExons(DataOutputStream os) throws IOException {
+			int size = exons.size;
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (i1, i2) -> {
+				int c = Integer.compare(exons.values[i1], exons.values[i2]);
+				if (c != 0) return c;
+				c = Integer.compare(exons.starts[i1], exons.starts[i2]);
+				return (c != 0) ? c : Integer.compare(exons.ends[i1], exons.ends[i2]);
+			});
+
+			int[] transcriptIds = new int[transcriptGenes.size() + 1];
+			int[] offsets = new int[transcriptIds.length + 1];
+			int[] genes = new int[transcriptIds.length];
+			int[] starts = new int[size];
+			int[] ends = new int[size];
+			int transcriptCount = 0;
+			for (int i = 0; i < size; i++) {
+				int index = order[i];
+				int transcriptId = exons.values[index];
+				if (transcriptCount == 0 || transcriptIds[transcriptCount - 1] != transcriptId) {
+					if (transcriptCount + 1 >= offsets.length) {
+						transcriptIds = Arrays.copyOf(transcriptIds, transcriptCount * 2 + 1);
+						offsets = Arrays.copyOf(offsets, transcriptCount * 2 + 2);
+						genes = Arrays.copyOf(genes, transcriptCount * 2 + 1);
+					}
+					transcriptIds[transcriptCount] = transcriptId;
+					offsets[transcriptCount] = i;
+					genes[transcriptCount] = transcriptGenes.getOrDefault(transcriptId, -1);
+					transcriptCount++;
+				}
+				starts[i] = exons.starts[index];
+				ends[i] = exons.ends[index];
+			}
+			offsets[transcriptCount] = size;
+
+			os.writeInt(transcriptCount);
+			os.writeInt(size);
+			GTFIntervalIndex.writeInts(os, transcriptIds, transcriptCount);
+			GTFIntervalIndex.writeInts(os, offsets, transcriptCount + 1);
+			GTFIntervalIndex.writeInts(os, genes, transcriptCount);
+			GTFIntervalIndex.writeInts(os, starts, size);
+			GTFIntervalIndex.writeInts(os, ends, size);
+		}
+
+		private ContigBuilder getContig(String chromosome) {
+			return contigs.computeIfAbsent(getStringId(chromosome), id -> new ContigBuilder());
+		}
+
+		private int getStringId(String value) {
+			Integer id = stringIds.get(value);
+			if (id == null) {
+				id = strings.size();
+				strings.add(value);
+				stringIds.put(value, id);
+			}
+			return id;
+		}
+	}
+}
@@ -20,81 +20,101 @@ package org.forome.annotation.data.gtf.datasource.mysql;
 
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.anfisa.struct.AnfisaExecuteContext;
-import org.forome.annotation.data.gtf.datasource.GTFDataSource;
+import org.forome.annotation.data.gtf.datasource.GTFIndexedDataSource;
 import org.forome.annotation.data.gtf.mysql.struct.GTFResult;
 import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
 import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRowExternal;
+import org.forome.annotation.data.query.BatchLoader;
+import org.forome.annotation.data.query.InClause;
+import org.forome.annotation.data.query.QueryStatistics;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.struct.variant.Variant;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Position;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.*;
-import java.util.stream.Collectors;
 
-public class GTFDataConnector implements GTFDataSource {
+public class GTFDataConnector implements GTFIndexedDataSource {
 
 	private static final long GENE_BUCKET_SIZE = 1000000L;
 
+	private static final String WHERE_POSITION = "(`start` < ? and ? < `end`)";
+
 	private final DatabaseConnector databaseConnector;
 
+	private final Map<Assembly, BatchLoader<String, List<GTFTranscriptRow>>> transcriptRowsLoaders;
+
 	public GTFDataConnector(DatabaseConnector databaseConnector) {
 		this.databaseConnector = databaseConnector;
+
+		this.transcriptRowsLoaders = new EnumMap<>(Assembly.class);
+		for (Assembly assembly : Assembly.values()) {
+			transcriptRowsLoaders.put(assembly, new BatchLoader<>(
+					transcripts -> loadTranscriptRows(assembly, transcripts),
+					Collections.emptyList()
+			));
+		}
 	}
 
+	@Override
 	public GTFResult getGene(Assembly assembly, String chromosome, long position) {
 		long bucket = (position / GENE_BUCKET_SIZE) * GENE_BUCKET_SIZE;
 
 		String sql = String.format(
-				"SELECT gene FROM %s.GTF_gene WHERE chromosome = %s AND bucket = %s AND %s between `start` and `end`",
-				getDatabase(assembly),
-				chromosome, bucket, position
+				"SELECT gene FROM %s.GTF_gene WHERE chromosome = ? AND bucket = ? AND ? between `start` and `end` LIMIT 1",
+				getDatabase(assembly)
 		);
 
-		String symbol = null;
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					if (resultSet.next()) {
-						symbol = resultSet.getString(1);
-					}
-				}
-			}
+		String[] symbol = new String[1];
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtf_gene"),
+					sql,
+					statement -> {
+						statement.setString(1, chromosome);
+						statement.setLong(2, bucket);
+						statement.setLong(3, position);
+					},
+					resultSet -> symbol[0] = resultSet.getString(1)
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
-		return new GTFResult(symbol);
+		return new GTFResult(symbol[0]);
 	}
 
+	/**
+	 * Экзоны транскриптов параллельно обрабатываемых вариантов запрашиваются одним пакетом
+	 */
+	@Override
 	public List<GTFTranscriptRow> getTranscriptRows(Assembly assembly, String transcript) {
+		return new ArrayList<>(transcriptRowsLoaders.get(assembly).get(transcript));
+	}
+
+	private Map<String, List<GTFTranscriptRow>> loadTranscriptRows(Assembly assembly, List<String> transcripts) {
 		String sql = String.format(
-				"SELECT `gene`, `start`, `end`, `feature` from %s.GTF WHERE transcript = '%s' AND feature = 'exon' ORDER BY `start`, `end`",
+				"SELECT `transcript`, `gene`, `start`, `end`, `feature` from %s.GTF WHERE transcript IN (%s) AND feature = 'exon' ORDER BY `transcript`, `start`, `end`",
 				getDatabase(assembly),
-				transcript
+				InClause.build(transcripts.size(), "?")
 		);
 
-		List<GTFTranscriptRow> rows = new ArrayList<GTFTranscriptRow>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					while (resultSet.next()) {
-						String gene = resultSet.getString("gene");
-						int start = resultSet.getInt("start");
-						int end = resultSet.getInt("end");
-						String feature = resultSet.getString("feature");
-						rows.add(new GTFTranscriptRow(
-								gene,
-								start,
-								end,
-								feature
-						));
-					}
-				}
-			}
+		Map<String, List<GTFTranscriptRow>> rows = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtf_transcript_rows"),
+					sql,
+					transcripts.size(),
+					statement -> InClause.bindStrings(statement, 1, transcripts),
+					resultSet -> rows.computeIfAbsent(resultSet.getString("transcript"), k -> new ArrayList<>())
+							.add(new GTFTranscriptRow(
+									resultSet.getString("gene"),
+									resultSet.getInt("start"),
+									resultSet.getInt("end"),
+									resultSet.getString("feature")
+							))
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
@@ -102,74 +122,82 @@ public class GTFDataConnector implements GTFDataSource {
 	}
 
 	public List<GTFTranscriptRowExternal> getTranscriptRowsByChromosomeAndPositions(Assembly assembly, String chromosome, long[] positions) {
-
-		String sqlWherePosition = Arrays.stream(positions)
-				.mapToObj(position -> String.format("(`start` < %s and %s < `end`)", position, position))
-				.collect(Collectors.joining(" or ", "(", ")"));
-
 		String sql = String.format(
-				"SELECT `transcript`, `gene`, `approved`, `start`, `end`, `feature` from %s.GTF WHERE feature IN ('transcript') and chromosome = '%s' and %s" +
+				"SELECT `transcript`, `gene`, `approved`, `start`, `end`, `feature` from %s.GTF WHERE feature IN ('transcript') and chromosome = ? and (%s)" +
 						" ORDER BY `start`, `end`",
 				getDatabase(assembly),
-				chromosome, sqlWherePosition
+				buildWherePositions(positions)
 		);
 
 		List<GTFTranscriptRowExternal> rows = new ArrayList<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					while (resultSet.next()) {
-						String transcript = resultSet.getString("transcript");
-						String gene = resultSet.getString("gene");
-						String approved = resultSet.getString("approved");
-						int start = resultSet.getInt("start");
-						int end = resultSet.getInt("end");
-						String feature = resultSet.getString("feature");
-						rows.add(new GTFTranscriptRowExternal(
-								transcript, gene, approved,
-								start, end, feature
-						));
-					}
-				}
-			}
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtf_transcript_rows_by_positions"),
+					sql,
+					positions.length,
+					statement -> bindPositions(statement, chromosome, positions),
+					resultSet -> rows.add(new GTFTranscriptRowExternal(
+							resultSet.getString("transcript"),
+							resultSet.getString("gene"),
+							resultSet.getString("approved"),
+							resultSet.getInt("start"),
+							resultSet.getInt("end"),
+							resultSet.getString("feature")
+					))
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
 		return rows;
 	}
 
-
+	@Override
 	public List<String> getTranscriptsByChromosomeAndPositions(Assembly assembly, String chromosome, long[] positions) {
-		String sqlWherePosition = Arrays.stream(positions)
-				.mapToObj(position -> String.format("(`start` < %s and %s < `end`)", position, position))
-				.collect(Collectors.joining(" or ", "(", ")"));
-
 		String sql = String.format(
-				"SELECT `transcript` from %s.GTF WHERE feature IN ('transcript') and chromosome = '%s' and %s" +
+				"SELECT `transcript` from %s.GTF WHERE feature IN ('transcript') and chromosome = ? and (%s)" +
 						" ORDER BY `start`, `end`",
 				getDatabase(assembly),
-				chromosome, sqlWherePosition
+				buildWherePositions(positions)
 		);
 
 		List<String> transcripts = new ArrayList<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					while (resultSet.next()) {
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtf_transcripts_by_positions"),
+					sql,
+					positions.length,
+					statement -> bindPositions(statement, chromosome, positions),
+					resultSet -> {
 						String transcript = resultSet.getString("transcript");
 
 						if (!transcripts.contains(transcript)) {
 							transcripts.add(transcript);
 						}
 					}
-				}
-			}
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
 		return transcripts;
 	}
 
+	private static String buildWherePositions(long[] positions) {
+		return InClause.build(positions.length, WHERE_POSITION).replace(", ", " or ");
+	}
+
+	private static void bindPositions(PreparedStatement statement, String chromosome, long[] positions) throws SQLException {
+		statement.setString(1, chromosome);
+		List<Long> values = new ArrayList<>(positions.length);
+		for (long position : positions) {
+			values.add(position);
+		}
+		InClause.bind(statement, 2, values, (s, i, position) -> {
+			s.setLong(i, position);
+			s.setLong(i + 1, position);
+			return i + 2;
+		});
+	}
+
 	@Override
 	public List<GTFTranscriptRow> lookup(AnfisaExecuteContext context, Assembly assembly, Position position, String transcript) {
 		throw new RuntimeException("Not implemented");
@@ -181,24 +209,25 @@ public class GTFDataConnector implements GTFDataSource {
 		int end = Math.max(variant.getStart(), variant.end);
 		String sql = String.format(
 				"select transcript from %s.GTF where feature = 'CDS' and " +
-						"chromosome = '%s' and " +
-						"((`start` <= %s and %s <= `end`) or (`start` <= %s and %s <= `end`))",
-				getDatabase(assembly),
-				variant.chromosome.getChar(),
-				start, start,
-				end, end
+						"chromosome = ? and " +
+						"((`start` <= ? and ? <= `end`) or (`start` <= ? and ? <= `end`))",
+				getDatabase(assembly)
 		);
 
 		Set<String> transcripts = new HashSet<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(sql)) {
-					while (resultSet.next()) {
-						String transcript = resultSet.getString("transcript");
-						transcripts.add(transcript);
-					}
-				}
-			}
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("gtf_cds_transcripts"),
+					sql,
+					statement -> {
+						statement.setString(1, variant.chromosome.getChar());
+						statement.setInt(2, start);
+						statement.setInt(3, start);
+						statement.setInt(4, end);
+						statement.setInt(5, end);
+					},
+					resultSet -> transcripts.add(resultSet.getString("transcript"))
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
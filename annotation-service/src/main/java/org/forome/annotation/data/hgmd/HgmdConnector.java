@@ -22,6 +22,7 @@ import org.forome.annotation.data.hgmd.mysql.HgmdConnectorMysql;
 import org.forome.annotation.data.hgmd.struct.HgmdPmidRow;
 import org.forome.annotation.struct.SourceMetadata;
 import org.forome.core.struct.Assembly;
+import org.forome.core.struct.Interval;
 
 import java.util.List;
 
@@ -39,6 +40,12 @@ public interface HgmdConnector extends AutoCloseable {
 
 	List<SourceMetadata> getSourceMetadata();
 
+	/**
+	 * Предварительная загрузка данных для окна следующих вариантов vcf-файла
+	 */
+	default void prefetch(Assembly assembly, List<Interval> intervals) {
+	}
+
 	List<String> getAccNum(Assembly assembly, String chromosome, long start, long end);
 
 	HgmdConnectorMysql.Data getDataForAccessionNumbers(List<String> accNums);
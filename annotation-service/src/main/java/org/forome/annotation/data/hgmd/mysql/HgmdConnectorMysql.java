@@ -18,10 +18,16 @@
 
 package org.forome.annotation.data.hgmd.mysql;
 
+import com.google.common.collect.Lists;
 import org.forome.annotation.config.connector.HgmdConfigConnector;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.hgmd.HgmdConnector;
 import org.forome.annotation.data.hgmd.struct.HgmdPmidRow;
+import org.forome.annotation.data.query.BatchLoader;
+import org.forome.annotation.data.query.InClause;
+import org.forome.annotation.data.query.LocusIndex;
+import org.forome.annotation.data.query.QueryStatistics;
+import org.forome.annotation.data.query.RegionCache;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.struct.SourceMetadata;
@@ -30,29 +36,42 @@ import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Chromosome;
 import org.forome.core.struct.Interval;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 
+/**
+ * Координаты HGMD региона хромосомы и все связанные с ними данные загружаются при первом обращении к региону
+ * (запрос по диапазону и несколько пакетных IN), запросы по отдельным вариантам обслуживаются из памяти
+ */
 public class HgmdConnectorMysql implements HgmdConnector {
 
-	private static final String SQL_ACC_NUM = "select acc_num from `hgmd_pro`.`hg19_coords` where chromosome = '%s' and coordSTART = %s and coordEND = %s";
-	private static final String SQL_PMID = "SELECT distinct disease, PMID, Tag from `hgmd_pro`.`mutation` where acc_num = '%s'";
-	private static final String SQL_PHEN = "SELECT distinct phenotype " +
+	private static final String SQL_REGION = "select coordSTART, coordEND, acc_num from `hgmd_pro`.`hg19_coords` where chromosome = ? and coordSTART between ? and ?";
+	private static final String SQL_PMID = "SELECT distinct acc_num, disease, PMID, Tag from `hgmd_pro`.`mutation` where acc_num IN (%s)";
+	private static final String SQL_PHEN = "SELECT distinct m.acc_num, phenotype " +
 			"FROM `hgmd_phenbase`.`hgmd_mutation` as m join `hgmd_phenbase`.`hgmd_phenotype` as p on p.phen_id = m.phen_id " +
-			"WHERE acc_num = '%s'";
-	private static final String SQL_HG38 = "SELECT coordSTART, coordEND FROM `hgmd_pro`.`hg38_coords` WHERE acc_num = '%s'";
+			"WHERE m.acc_num IN (%s)";
+	private static final String SQL_HG38 = "SELECT acc_num, coordSTART, coordEND FROM `hgmd_pro`.`hg38_coords` WHERE acc_num IN (%s)";
 
 	private final LiftoverConnector liftoverConnector;
 	private final DatabaseConnector databaseConnector;
 
+	private final RegionCache<HgmdRegion> regionCache;
+
+	private final BatchLoader<String, List<HgmdPmidRow>> pmidLoader;
+	private final BatchLoader<String, List<String>> phenotypeLoader;
+	private final BatchLoader<String, List<Long[]>> hg38Loader;
+
 	public HgmdConnectorMysql(DatabaseConnectService databaseConnectService, LiftoverConnector liftoverConnector, HgmdConfigConnector hgmdConfigConnector) throws Exception {
 		this.liftoverConnector = liftoverConnector;
 		this.databaseConnector = new DatabaseConnector(databaseConnectService, hgmdConfigConnector);
+
+		this.regionCache = new RegionCache<>(this::loadRegion);
+
+		//Запросы по acc_num вне загруженных регионов
+		this.pmidLoader = new BatchLoader<>(this::loadPmids, Collections.emptyList());
+		this.phenotypeLoader = new BatchLoader<>(this::loadPhenotypes, Collections.emptyList());
+		this.hg38Loader = new BatchLoader<>(this::loadHg38, Collections.emptyList());
 	}
 
 	@Override
@@ -61,6 +80,16 @@ public class HgmdConnectorMysql implements HgmdConnector {
 //		return databaseConnector.getSourceMetadata();
 	}
 
+	@Override
+	public void prefetch(Assembly assembly, List<Interval> intervals) {
+		for (Interval interval : intervals) {
+			Interval pInterval37 = liftoverConnector.toHG37(assembly, interval);
+			if (pInterval37 != null) {
+				regionCache.get(interval.chromosome.getChar(), pInterval37.start);
+			}
+		}
+	}
+
 	@Override
 	public List<String> getAccNum(Assembly assembly, String chromosome, long start, long end) {
 		Interval pInterval37 = liftoverConnector.toHG37(
@@ -71,49 +100,17 @@ public class HgmdConnectorMysql implements HgmdConnector {
 			return Collections.emptyList();
 		}
 
-		List<String> accNums = new ArrayList<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				try (ResultSet resultSet = statement.executeQuery(String.format(SQL_ACC_NUM, chromosome, pInterval37.start, pInterval37.end))) {
-					while (resultSet.next()) {
-						String accNum = resultSet.getString("acc_num");
-						accNums.add(accNum);
-					}
-				}
-			}
-		} catch (SQLException ex) {
-			throw ExceptionBuilder.buildExternalDatabaseException(ex);
-		}
-		return accNums;
+		return regionCache.get(chromosome, pInterval37.start).accNums.get(pInterval37.start, pInterval37.end);
 	}
 
 	@Override
 	public Data getDataForAccessionNumbers(List<String> accNums) {
 		List<HgmdPmidRow> hgmdPmidRows = new ArrayList<>();
 		List<String> phenotypes = new ArrayList<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				for (String accNum : accNums) {
-					try (ResultSet resultSet = statement.executeQuery(String.format(SQL_PMID, accNum))) {
-						while (resultSet.next()) {
-							String disease = resultSet.getString("disease");
-							String pMID = resultSet.getString("PMID");
-							String tag = resultSet.getString("Tag");
-							hgmdPmidRows.add(new HgmdPmidRow(
-									disease, pMID, tag
-							));
-						}
-					}
-					try (ResultSet resultSet = statement.executeQuery(String.format(SQL_PHEN, accNum))) {
-						while (resultSet.next()) {
-							String phenotype = resultSet.getString("phenotype");
-							phenotypes.add(phenotype);
-						}
-					}
-				}
-			}
-		} catch (SQLException ex) {
-			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		if (!accNums.isEmpty()) {
+			List<HgmdRegion> regions = regionCache.getResident();
+			hgmdPmidRows = collect(regions, accNums, region -> region.pmids, pmidLoader);
+			phenotypes = collect(regions, accNums, region -> region.phenotypes, phenotypeLoader);
 		}
 		return new Data(hgmdPmidRows, phenotypes);
 	}
@@ -121,23 +118,139 @@ public class HgmdConnectorMysql implements HgmdConnector {
 	@Override
 	public List<Long[]> getHg38(List<String> accNums) {
 		List<Long[]> hg38s = new ArrayList<>();
-		try (Connection connection = databaseConnector.createConnection()) {
-			try (Statement statement = connection.createStatement()) {
-				for (String accNum : accNums) {
-					try (ResultSet resultSet = statement.executeQuery(String.format(SQL_HG38, accNum))) {
-						while (resultSet.next()) {
-							Long coordSTART = resultSet.getLong("coordSTART");
-							Long coordEND = resultSet.getLong("coordEND");
-							hg38s.add(new Long[]{ coordSTART, coordEND });
-						}
-					}
-				}
+		if (!accNums.isEmpty()) {
+			hg38s = collect(regionCache.getResident(), accNums, region -> region.hg38, hg38Loader);
+		}
+		return hg38s;
+	}
 
+	/**
+	 * acc_num, как правило, получены из только что загруженного региона - данные берутся из него,
+	 * для остальных выполняется пакетный запрос
+	 */
+	private static <T> List<T> collect(List<HgmdRegion> regions, List<String> accNums,
+									   Function<HgmdRegion, Map<String, List<T>>> data, BatchLoader<String, List<T>> loader) {
+		Map<String, List<T>> values = new HashMap<>();
+		List<String> missing = new ArrayList<>();
+		for (String accNum : accNums) {
+			HgmdRegion region = null;
+			for (HgmdRegion item : regions) {
+				if (item.contains(accNum)) {
+					region = item;
+					break;
+				}
+			}
+			if (region != null) {
+				values.put(accNum, data.apply(region).getOrDefault(accNum, Collections.emptyList()));
+			} else {
+				missing.add(accNum);
 			}
+		}
+		if (!missing.isEmpty()) {
+			List<List<T>> loaded = loader.getAll(missing);
+			for (int i = 0; i < missing.size(); i++) {
+				values.put(missing.get(i), loaded.get(i));
+			}
+		}
+
+		List<T> result = new ArrayList<>();
+		for (String accNum : accNums) {
+			result.addAll(values.get(accNum));
+		}
+		return result;
+	}
+
+	private HgmdRegion loadRegion(String chromosome, int start, int end) {
+		LocusIndex.Builder<String> accNums = new LocusIndex.Builder<>();
+		Set<String> accNumSet = new HashSet<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("hgmd_region"),
+					SQL_REGION,
+					statement -> {
+						statement.setString(1, chromosome);
+						statement.setInt(2, start);
+						statement.setInt(3, end);
+					},
+					resultSet -> {
+						String accNum = resultSet.getString("acc_num");
+						accNums.add(resultSet.getInt("coordSTART"), resultSet.getInt("coordEND"), accNum);
+						accNumSet.add(accNum);
+					}
+			);
 		} catch (SQLException ex) {
 			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
-		return hg38s;
+
+		Map<String, List<HgmdPmidRow>> pmids = new HashMap<>();
+		Map<String, List<String>> phenotypes = new HashMap<>();
+		Map<String, List<Long[]>> hg38 = new HashMap<>();
+		for (List<String> items : Lists.partition(new ArrayList<>(accNumSet), BatchLoader.DEFAULT_MAX_BATCH_SIZE)) {
+			pmids.putAll(loadPmids(items));
+			phenotypes.putAll(loadPhenotypes(items));
+			hg38.putAll(loadHg38(items));
+		}
+		return new HgmdRegion(accNums.build(), accNumSet, pmids, phenotypes, hg38);
+	}
+
+	private Map<String, List<HgmdPmidRow>> loadPmids(List<String> accNums) {
+		Map<String, List<HgmdPmidRow>> result = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("hgmd_pmid"),
+					String.format(SQL_PMID, InClause.build(accNums.size(), "?")),
+					accNums.size(),
+					statement -> InClause.bindStrings(statement, 1, accNums),
+					resultSet -> {
+						String disease = resultSet.getString("disease");
+						String pMID = resultSet.getString("PMID");
+						String tag = resultSet.getString("Tag");
+						result.computeIfAbsent(resultSet.getString("acc_num"), k -> new ArrayList<>())
+								.add(new HgmdPmidRow(disease, pMID, tag));
+					}
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		}
+		return result;
+	}
+
+	private Map<String, List<String>> loadPhenotypes(List<String> accNums) {
+		Map<String, List<String>> result = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("hgmd_phenotype"),
+					String.format(SQL_PHEN, InClause.build(accNums.size(), "?")),
+					accNums.size(),
+					statement -> InClause.bindStrings(statement, 1, accNums),
+					resultSet -> result.computeIfAbsent(resultSet.getString("acc_num"), k -> new ArrayList<>())
+							.add(resultSet.getString("phenotype"))
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		}
+		return result;
+	}
+
+	private Map<String, List<Long[]>> loadHg38(List<String> accNums) {
+		Map<String, List<Long[]>> result = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get("hgmd_hg38"),
+					String.format(SQL_HG38, InClause.build(accNums.size(), "?")),
+					accNums.size(),
+					statement -> InClause.bindStrings(statement, 1, accNums),
+					resultSet -> {
+						Long coordSTART = resultSet.getLong("coordSTART");
+						Long coordEND = resultSet.getLong("coordEND");
+						result.computeIfAbsent(resultSet.getString("acc_num"), k -> new ArrayList<>())
+								.add(new Long[]{ coordSTART, coordEND });
+					}
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
+		}
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,52 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.hgmd.mysql;
+
+import org.forome.annotation.data.hgmd.struct.HgmdPmidRow;
+import org.forome.annotation.data.query.LocusIndex;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Данные HGMD одного региона хромосомы (координаты hg19): acc_num по координатам
+ * и связанные с ними PMID, фенотипы и координаты hg38
+ */
+class HgmdRegion {
+
+	final LocusIndex<String> accNums;
+	private final Set<String> accNumSet;
+
+	final Map<String, List<HgmdPmidRow>> pmids;
+	final Map<String, List<String>> phenotypes;
+	final Map<String, List<Long[]>> hg38;
+
+	HgmdRegion(LocusIndex<String> accNums, Set<String> accNumSet, Map<String, List<HgmdPmidRow>> pmids, Map<String, List<String>> phenotypes, Map<String, List<Long[]>> hg38) {
+		this.accNums = accNums;
+		this.accNumSet = accNumSet;
+		this.pmids = pmids;
+		this.phenotypes = phenotypes;
+		this.hg38 = hg38;
+	}
+
+	boolean contains(String accNum) {
+		return accNumSet.contains(accNum);
+	}
+}
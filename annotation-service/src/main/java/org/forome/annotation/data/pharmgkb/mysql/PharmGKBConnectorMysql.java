@@ -22,23 +22,26 @@ import org.forome.annotation.config.connector.ForomeConfigConnector;
 import org.forome.annotation.data.DatabaseConnector;
 import org.forome.annotation.data.anfisa.struct.AnfisaResultView;
 import org.forome.annotation.data.pharmgkb.PharmGKBConnector;
+import org.forome.annotation.data.query.BatchLoader;
+import org.forome.annotation.data.query.InClause;
+import org.forome.annotation.data.query.QueryStatistics;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.service.database.DatabaseConnectService;
 import org.forome.annotation.struct.SourceMetadata;
 import org.forome.annotation.utils.Statistics;
 
-import java.sql.Connection;
-import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 public class PharmGKBConnectorMysql implements PharmGKBConnector, AutoCloseable {
 
 	private final DatabaseConnector databaseConnector;
 
+	private final BatchLoader<String, List<AnfisaResultView.Pharmacogenomics.Item>> notesLoader;
+	private final BatchLoader<String, List<AnfisaResultView.Pharmacogenomics.Item>> pmidsLoader;
+	private final BatchLoader<String, List<AnfisaResultView.Pharmacogenomics.Item>> diseasesLoader;
+	private final BatchLoader<String, List<AnfisaResultView.Pharmacogenomics.Item>> chemicalsLoader;
+
 	public final Statistics statisticNotes = new Statistics();
 	public final Statistics statisticPmids = new Statistics();
 	public final Statistics statisticDiseases = new Statistics();
@@ -49,6 +52,23 @@ public class PharmGKBConnectorMysql implements PharmGKBConnector, AutoCloseable
 			ForomeConfigConnector foromeConfigConnector
 	) throws Exception {
 		this.databaseConnector = new DatabaseConnector(databaseConnectService, foromeConfigConnector);
+
+		this.notesLoader = new BatchLoader<>(
+				variantIds -> loadItems("pharmgkb_notes", "PharmNOTES", "Note", false, variantIds),
+				Collections.emptyList()
+		);
+		this.pmidsLoader = new BatchLoader<>(
+				variantIds -> loadItems("pharmgkb_pmids", "PharmPMIDS", "PMID", false, variantIds),
+				Collections.emptyList()
+		);
+		this.diseasesLoader = new BatchLoader<>(
+				variantIds -> loadItems("pharmgkb_diseases", "PharmDISEASES", "DisTitle", true, variantIds),
+				Collections.emptyList()
+		);
+		this.chemicalsLoader = new BatchLoader<>(
+				variantIds -> loadItems("pharmgkb_chemicals", "PharmCHEMICALS", "ChTitle", true, variantIds),
+				Collections.emptyList()
+		);
 	}
 
 	@Override
@@ -59,142 +79,88 @@ public class PharmGKBConnectorMysql implements PharmGKBConnector, AutoCloseable
 
 	@Override
 	public List<AnfisaResultView.Pharmacogenomics.Item> getNotes(String variantId) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
-			String sql = String.format(
-					"select AssocKind, Note from %s.PharmNOTES where Variant = '%s'",
-					databaseConnector.getDatabase(),
-					variantId
-			);
-
-			List<AnfisaResultView.Pharmacogenomics.Item> items = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-						while (resultSet.next()) {
-							AnfisaResultView.Pharmacogenomics.Item item = new AnfisaResultView.Pharmacogenomics.Item(
-									resultSet.getString("AssocKind"),
-									resultSet.getString("Note")
-							);
-							items.add(item);
-						}
-					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
-			}
-			return items;
+			return new ArrayList<>(notesLoader.get(variantId));
 		} finally {
-			statisticNotes.addTime(System.currentTimeMillis() - t1);
+			statisticNotes.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
 	@Override
 	public List<AnfisaResultView.Pharmacogenomics.Item> getPmids(String variantId) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
-			String sql = String.format(
-					"select AssocKind, PMID from %s.PharmPMIDS where Variant = '%s'",
-					databaseConnector.getDatabase(),
-					variantId
-			);
-
-			List<AnfisaResultView.Pharmacogenomics.Item> items = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-						while (resultSet.next()) {
-							AnfisaResultView.Pharmacogenomics.Item item = new AnfisaResultView.Pharmacogenomics.Item(
-									resultSet.getString("AssocKind"),
-									resultSet.getString("PMID")
-							);
-							items.add(item);
-						}
-					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
-			}
-			return items;
+			return new ArrayList<>(pmidsLoader.get(variantId));
 		} finally {
-			statisticPmids.addTime(System.currentTimeMillis() - t1);
+			statisticPmids.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
 	@Override
 	public List<AnfisaResultView.Pharmacogenomics.Item> getDiseases(String variantId) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
-			String sql = String.format(
-					"select AssocKind, DisTitle from %s.PharmDISEASES where Variant = '%s'",
-					databaseConnector.getDatabase(),
-					variantId
-			);
-
-			List<AnfisaResultView.Pharmacogenomics.Item> items = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-						while (resultSet.next()) {
-							String association = resultSet.getString("AssocKind");
-							String values = resultSet.getString("DisTitle");
-							for (String value : values.split(";")) {//Режем по символу ';'
-								String tValue = value.trim();
-								if (tValue.isEmpty()) continue;
-
-								AnfisaResultView.Pharmacogenomics.Item item = new AnfisaResultView.Pharmacogenomics.Item(
-										association, tValue
-								);
-								items.add(item);
-							}
-						}
-					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
-			}
-			return items;
+			return new ArrayList<>(diseasesLoader.get(variantId));
 		} finally {
-			statisticDiseases.addTime(System.currentTimeMillis() - t1);
+			statisticDiseases.addTimeNanos(System.nanoTime() - t1);
 		}
 	}
 
 	@Override
 	public List<AnfisaResultView.Pharmacogenomics.Item> getChemicals(String variantId) {
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		try {
-			String sql = String.format(
-					"select AssocKind, ChTitle from %s.PharmCHEMICALS where Variant = '%s'",
-					databaseConnector.getDatabase(),
-					variantId
-			);
+			return new ArrayList<>(chemicalsLoader.get(variantId));
+		} finally {
+			statisticChemicals.addTimeNanos(System.nanoTime() - t1);
+		}
+	}
 
-			List<AnfisaResultView.Pharmacogenomics.Item> items = new ArrayList<>();
-			try (Connection connection = databaseConnector.createConnection()) {
-				try (Statement statement = connection.createStatement()) {
-					try (ResultSet resultSet = statement.executeQuery(sql)) {
-						while (resultSet.next()) {
-							String association = resultSet.getString("AssocKind");
-							String values = resultSet.getString("ChTitle");
-							for (String value : values.split(";")) {//Режем по символу ';'
-								String tValue = value.trim();
-								if (tValue.isEmpty()) continue;
-
-								AnfisaResultView.Pharmacogenomics.Item item = new AnfisaResultView.Pharmacogenomics.Item(
-										association, tValue
-								);
-								items.add(item);
-							}
+	/**
+	 * Пакетная выборка по вариантам из таблицы вида (Variant, AssocKind, column)
+	 *
+	 * @param split - значение содержит список через ';'
+	 */
+	private Map<String, List<AnfisaResultView.Pharmacogenomics.Item>> loadItems(
+			String queryName, String table, String column, boolean split, List<String> variantIds
+	) {
+		String sql = String.format(
+				"select Variant, AssocKind, %s from %s.%s where Variant IN (%s)",
+				column,
+				databaseConnector.getDatabase(), table,
+				InClause.build(variantIds.size(), "?")
+		);
+
+		Map<String, List<AnfisaResultView.Pharmacogenomics.Item>> result = new HashMap<>();
+		try {
+			databaseConnector.query(
+					QueryStatistics.get(queryName),
+					sql,
+					variantIds.size(),
+					statement -> InClause.bindStrings(statement, 1, variantIds),
+					resultSet -> {
+						List<AnfisaResultView.Pharmacogenomics.Item> items = result.computeIfAbsent(
+								resultSet.getString("Variant"), k -> new ArrayList<>()
+						);
+						String association = resultSet.getString("AssocKind");
+						String values = resultSet.getString(column);
+						if (!split) {
+							items.add(new AnfisaResultView.Pharmacogenomics.Item(association, values));
+							return;
+						}
+						for (String value : values.split(";")) {//Режем по символу ';'
+							String tValue = value.trim();
+							if (tValue.isEmpty()) continue;
+
+							items.add(new AnfisaResultView.Pharmacogenomics.Item(association, tValue));
 						}
 					}
-				}
-			} catch (SQLException ex) {
-				throw ExceptionBuilder.buildExternalDatabaseException(ex);
-			}
-			return items;
-		} finally {
-			statisticChemicals.addTime(System.currentTimeMillis() - t1);
+			);
+		} catch (SQLException ex) {
+			throw ExceptionBuilder.buildExternalDatabaseException(ex);
 		}
+		return result;
 	}
 
 	@Override
@@ -0,0 +1,173 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Объединение одиночных запросов из параллельно обрабатываемых вариантов в пакетные (IN (...)).
+ * Первый поток, открывший пакет, выполняет его, остальные добавляют свои ключи и ждут результат.
+ * Пакет выполняется сразу, если в работе меньше maxInFlight пакетов, иначе он копит ключи
+ * (до maxBatchSize), пока не освободится место - искусственной задержки при низкой нагрузке нет.
+ *
+ * @param <K> - ключ, результаты пакета разбираются обратно по ключам
+ */
+public class BatchLoader<K, V> {
+
+	/**
+	 * Ограничение размера пакета - и кол-ва параметров запроса
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+	public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+	@FunctionalInterface
+	public interface Loader<K, V> {
+
+		/**
+		 * Результат для ключей, отсутствующих в ответе - defaultValue
+		 */
+		Map<K, V> load(List<K> keys);
+	}
+
+	private static class Batch<K, V> {
+
+		private final Map<K, CompletableFuture<V>> futures = new LinkedHashMap<>();
+	}
+
+	private final Loader<K, V> loader;
+	private final V defaultValue;
+
+	private final int maxBatchSize;
+	private final int maxInFlight;
+
+	private final Object lock = new Object();
+	private Batch<K, V> current;
+	private int inFlight;
+
+	public BatchLoader(Loader<K, V> loader, V defaultValue) {
+		this(loader, defaultValue, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT);
+	}
+
+	public BatchLoader(Loader<K, V> loader, V defaultValue, int maxBatchSize, int maxInFlight) {
+		if (maxBatchSize < 1) throw new IllegalArgumentException();
+		if (maxInFlight < 1) throw new IllegalArgumentException();
+
+		this.loader = loader;
+		this.defaultValue = defaultValue;
+		this.maxBatchSize = maxBatchSize;
+		this.maxInFlight = maxInFlight;
+	}
+
+	public V get(K key) {
+		return getAll(Collections.singletonList(key)).get(0);
+	}
+
+	/**
+	 * Результаты в порядке ключей
+	 */
+	public List<V> getAll(Collection<K> keys) {
+		List<CompletableFuture<V>> futures = new ArrayList<>(keys.size());
+		//Пакеты, открытые этим потоком, - их выполняет он же
+		List<Batch<K, V>> batches = new ArrayList<>(1);
+		synchronized (lock) {
+			for (K key : keys) {
+				if (current == null) {
+					current = new Batch<>();
+					batches.add(current);
+				}
+				Batch<K, V> batch = current;
+				futures.add(batch.futures.computeIfAbsent(key, k -> new CompletableFuture<>()));
+				if (batch.futures.size() >= maxBatchSize) {
+					current = null;
+				}
+			}
+		}
+		for (Batch<K, V> batch : batches) {
+			execute(batch);
+		}
+
+		List<V> result = new ArrayList<>(futures.size());
+		for (CompletableFuture<V> future : futures) {
+			result.add(join(future));
+		}
+		return result;
+	}
+
+	private void execute(Batch<K, V> batch) {
+		synchronized (lock) {
+			boolean interrupted = false;
+			while (inFlight >= maxInFlight) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					//Ключи других потоков уже в пакете - он должен быть выполнен
+					interrupted = true;
+					break;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			if (current == batch) {
+				current = null;
+			}
+			inFlight++;
+		}
+
+		try {
+			List<K> keys = new ArrayList<>(batch.futures.keySet());
+			Map<K, V> values;
+			try {
+				values = loader.load(keys);
+			} catch (Throwable e) {
+				for (CompletableFuture<V> future : batch.futures.values()) {
+					future.completeExceptionally(e);
+				}
+				return;
+			}
+			for (Map.Entry<K, CompletableFuture<V>> entry : batch.futures.entrySet()) {
+				V value = values.get(entry.getKey());
+				entry.getValue().complete((value != null) ? value : defaultValue);
+			}
+		} finally {
+			synchronized (lock) {
+				inFlight--;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	private static <V> V join(CompletableFuture<V> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Параметры для IN (...) в подготовленных запросах. Кол-во параметров округляется вверх до степени двойки,
+ * недостающие заполняются последним значением - так разных текстов запроса (и prepared statements
+ * в кеше драйвера) немного, а результат не меняется.
+ */
+public class InClause {
+
+	@FunctionalInterface
+	public interface ValueBinder<T> {
+
+		/**
+		 * @return индекс следующего параметра
+		 */
+		int bind(PreparedStatement statement, int index, T value) throws SQLException;
+	}
+
+	public static int size(int count) {
+		if (count < 1) throw new IllegalArgumentException();
+		return (count == 1) ? 1 : Integer.highestOneBit(count - 1) << 1;
+	}
+
+	/**
+	 * @param placeholder - "?" или кортеж, например "(?, ?)"
+	 */
+	public static String build(int count, String placeholder) {
+		int size = size(count);
+		StringBuilder builder = new StringBuilder(size * (placeholder.length() + 2));
+		for (int i = 0; i < size; i++) {
+			if (i > 0) builder.append(", ");
+			builder.append(placeholder);
+		}
+		return builder.toString();
+	}
+
+	public static <T> int bind(PreparedStatement statement, int index, List<T> values, ValueBinder<T> binder) throws SQLException {
+		int size = size(values.size());
+		for (int i = 0; i < size; i++) {
+			index = binder.bind(statement, index, values.get(Math.min(i, values.size() - 1)));
+		}
+		return index;
+	}
+
+	public static int bindStrings(PreparedStatement statement, int index, List<String> values) throws SQLException {
+		return bind(statement, index, values, (s, i, value) -> {
+			s.setString(i, value);
+			return i + 1;
+		});
+	}
+
+	public static int bindLoci(PreparedStatement statement, int index, List<Locus> values) throws SQLException {
+		return bind(statement, index, values, (s, i, value) -> {
+			s.setString(i, value.chromosome);
+			s.setInt(i + 1, value.start);
+			s.setInt(i + 2, value.end);
+			return i + 3;
+		});
+	}
+}
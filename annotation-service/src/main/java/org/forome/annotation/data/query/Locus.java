@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import java.util.Objects;
+
+/**
+ * Ключ пакетных запросов по координатам: хромосома (как в БД) и интервал
+ */
+public class Locus {
+
+	public final String chromosome;
+	public final int start;
+	public final int end;
+
+	public Locus(String chromosome, int start, int end) {
+		this.chromosome = chromosome;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Точка (для запросов только по началу)
+	 */
+	public static Locus of(String chromosome, int position) {
+		return new Locus(chromosome, position, position);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		Locus locus = (Locus) o;
+		return start == locus.start && end == locus.end && Objects.equals(chromosome, locus.chromosome);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(chromosome, start, end);
+	}
+
+	@Override
+	public String toString() {
+		return chromosome + ':' + start + '-' + end;
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Неизменяемый набор значений, привязанных к координатам [start, end] одной хромосомы:
+ * массивы отсортированы по (start, end), поиск - бинарный.
+ */
+public class LocusIndex<T> {
+
+	public static class Builder<T> {
+
+		private int[] starts = new int[16];
+		private int[] ends = new int[16];
+		private final List<T> values = new ArrayList<>();
+
+		public Builder<T> add(int start, int end, T value) {
+			int size = values.size();
+			if (size == starts.length) {
+				starts = Arrays.copyOf(starts, size * 2);
+				ends = Arrays.copyOf(ends, size * 2);
+			}
+			starts[size] = start;
+			ends[size] = end;
+			values.add(value);
+			return this;
+		}
+
+		public LocusIndex<T> build() {
+			int size = values.size();
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			//Сортировка устойчивая - значения с одинаковыми координатами остаются в порядке добавления
+			Arrays.sort(order, (i1, i2) -> {
+				int c = Integer.compare(starts[i1], starts[i2]);
+				return (c != 0) ? c : Integer.compare(ends[i1], ends[i2]);
+			});
+
+			int[] sStarts = new int[size];
+			int[] sEnds = new int[size];
+			Object[] sValues = new Object[size];
+			for (int i = 0; i < size; i++) {
+				sStarts[i] = starts[order[i]];
+				sEnds[i] = ends[order[i]];
+				sValues[i] = values.get(order[i]);
+			}
+			return new LocusIndex<>(sStarts, sEnds, sValues);
+		}
+	}
+
+	private final int[] starts;
+	private final int[] ends;
+	private final Object[] values;
+
+	private LocusIndex(int[] starts, int[] ends, Object[] values) {
+		this.starts = starts;
+		this.ends = ends;
+		this.values = values;
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * Значения с заданным start
+	 */
+	public List<T> get(int start) {
+		return get(start, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Значения с точно совпадающими start и end
+	 */
+	public List<T> get(int start, int end) {
+		return get(start, end, end);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<T> get(int start, int minEnd, int maxEnd) {
+		int i = lowerBound(start, minEnd);
+		if (i == values.length || starts[i] != start || ends[i] > maxEnd) {
+			return Collections.emptyList();
+		}
+		List<T> result = new ArrayList<>();
+		for (; i < values.length && starts[i] == start && ends[i] <= maxEnd; i++) {
+			result.add((T) values[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Первый индекс с (start, end) не меньше заданных
+	 */
+	private int lowerBound(int start, int end) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (starts[mid] < start || (starts[mid] == start && ends[mid] < end)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
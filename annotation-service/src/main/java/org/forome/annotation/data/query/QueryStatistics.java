@@ -0,0 +1,78 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.utils.Statistics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика запросов к БД по имени запроса: время выполнения (обращение к БД), кол-во строк и ключей
+ * (для пакетных запросов) на одно обращение. Экземпляры общие для всех коннекторов, доступны для метрик.
+ */
+public class QueryStatistics {
+
+	private static final ConcurrentMap<String, QueryStatistics> queries = new ConcurrentHashMap<>();
+
+	public final String name;
+
+	private final Statistics statistics;
+	private final LongAdder rows;
+	private final LongAdder keys;
+
+	private QueryStatistics(String name) {
+		this.name = name;
+		this.statistics = new Statistics();
+		this.rows = new LongAdder();
+		this.keys = new LongAdder();
+	}
+
+	public static QueryStatistics get(String name) {
+		return queries.computeIfAbsent(name, QueryStatistics::new);
+	}
+
+	public static Map<String, QueryStatistics> getQueries() {
+		return new TreeMap<>(queries);
+	}
+
+	public void add(long timeNanos, int rowCount, int keyCount) {
+		if (!Statistics.isEnabled()) return;
+		statistics.addTimeNanos(timeNanos);
+		rows.add(rowCount);
+		keys.add(keyCount);
+	}
+
+	public Statistics getStatistics() {
+		return statistics;
+	}
+
+	public JSONObject toJSON() {
+		long count = statistics.getCount();
+		JSONObject out = statistics.getStat().toJSON();
+		out.put("rows", rows.sum());
+		out.put("rows_per_query", (count == 0) ? 0 : rows.sum() / (double) count);
+		out.put("keys_per_query", (count == 0) ? 0 : keys.sum() / (double) count);
+		return out;
+	}
+}
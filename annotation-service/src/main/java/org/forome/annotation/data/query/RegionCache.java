@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Данные источника, загруженные целиком по регионам хромосомы (одним запросом по диапазону на регион).
+ * Отсортированный vcf-файл последовательно проходит регионы, поэтому каждый регион загружается один раз,
+ * а одиночные запросы по вариантам обслуживаются из памяти. Кол-во регионов в памяти ограничено (LRU).
+ * Регион, который в этот момент загружается другим потоком, не загружается повторно - ожидается результат.
+ */
+public class RegionCache<T> {
+
+	public static final int DEFAULT_REGION_SIZE = 1000000;
+
+	public static final int DEFAULT_MAX_REGIONS = 64;
+
+	@FunctionalInterface
+	public interface Loader<T> {
+
+		/**
+		 * @param end - включительно
+		 */
+		T load(String chromosome, int start, int end);
+	}
+
+	private static class Region {
+
+		private final String chromosome;
+		private final int index;
+
+		private Region(String chromosome, int index) {
+			this.chromosome = chromosome;
+			this.index = index;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+			Region region = (Region) o;
+			return index == region.index && chromosome.equals(region.chromosome);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(chromosome, index);
+		}
+	}
+
+	private final Loader<T> loader;
+	private final int regionSize;
+
+	private final LinkedHashMap<Region, CompletableFuture<T>> regions;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong loads = new AtomicLong();
+
+	public RegionCache(Loader<T> loader) {
+		this(loader, DEFAULT_REGION_SIZE, DEFAULT_MAX_REGIONS);
+	}
+
+	public RegionCache(Loader<T> loader, int regionSize, int maxRegions) {
+		if (regionSize < 1) throw new IllegalArgumentException();
+		if (maxRegions < 1) throw new IllegalArgumentException();
+
+		this.loader = loader;
+		this.regionSize = regionSize;
+		this.regions = new LinkedHashMap<Region, CompletableFuture<T>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Region, CompletableFuture<T>> eldest) {
+				return size() > maxRegions;
+			}
+		};
+	}
+
+	/**
+	 * Данные региона, в который попадает позиция
+	 */
+	public T get(String chromosome, int position) {
+		if (position < 0) throw new IllegalArgumentException();
+
+		Region key = new Region(chromosome, position / regionSize);
+		CompletableFuture<T> future;
+		boolean owner = false;
+		synchronized (regions) {
+			future = regions.get(key);
+			if (future == null) {
+				future = new CompletableFuture<>();
+				regions.put(key, future);
+				owner = true;
+			}
+		}
+
+		if (owner) {
+			loads.incrementAndGet();
+			int start = key.index * regionSize;
+			int end = (int) Math.min((long) start + regionSize - 1, Integer.MAX_VALUE);
+			try {
+				future.complete(loader.load(chromosome, start, end));
+			} catch (Throwable e) {
+				//Неудачная загрузка не кешируется - следующий запрос повторит ее
+				synchronized (regions) {
+					regions.remove(key, future);
+				}
+				future.completeExceptionally(e);
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+		return join(future);
+	}
+
+	/**
+	 * Уже загруженные регионы
+	 */
+	public List<T> getResident() {
+		List<CompletableFuture<T>> futures;
+		synchronized (regions) {
+			futures = new ArrayList<>(regions.values());
+		}
+		List<T> result = new ArrayList<>(futures.size());
+		for (CompletableFuture<T> future : futures) {
+			if (future.isDone() && !future.isCompletedExceptionally()) {
+				result.add(future.join());
+			}
+		}
+		return result;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getLoads() {
+		return loads.get();
+	}
+
+	private static <T> T join(CompletableFuture<T> future) {
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+}
@@ -187,6 +187,20 @@ public class ExceptionBuilder {
 		return EXCEPTION_FACTORY.build("server_overloaded");
 	}
 
+	/**
+	 * @param retryAfter - через сколько секунд имеет смысл повторить запрос
+	 */
+	public static AnnotatorException buildServerOverloadedException(int retryAfter) {
+		return EXCEPTION_FACTORY.build("server_overloaded", Collections.singletonMap("retry_after", retryAfter));
+	}
+
+	/**
+	 * Непредвиденная ошибка, когда ее нужно передать клиенту (детали только в логе)
+	 */
+	public static AnnotatorException buildInternalException(Throwable cause) {
+		return EXCEPTION_FACTORY.build("internal_error", cause);
+	}
+
 	public static AnnotatorException buildServerShutsDownException() {
 		return EXCEPTION_FACTORY.build("server_shuts_down");
 	}
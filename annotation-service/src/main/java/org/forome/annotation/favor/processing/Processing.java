@@ -21,20 +21,17 @@ package org.forome.annotation.favor.processing;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
-import graphql.annotations.AnnotationsSchemaCreator;
-import graphql.schema.GraphQLSchema;
 import net.minidev.json.JSONObject;
-import org.apache.commons.io.IOUtils;
 import org.forome.annotation.data.hgmd.HgmdConnector;
-import org.forome.annotation.favor.processing.graphql.record.GRecord;
 import org.forome.annotation.favor.processing.struct.GContext;
 import org.forome.annotation.favor.utils.struct.table.Row;
+import org.forome.annotation.processing.PreparsedQuery;
+import org.forome.annotation.processing.TypeQuery;
 import org.forome.annotation.processing.struct.ProcessingResult;
 import org.forome.core.struct.Assembly;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.InputStream;
 import java.util.Collections;
 
 public class Processing {
@@ -50,19 +47,14 @@ public class Processing {
 	public Processing(HgmdConnector hgmdConnector) {
 		this.hgmdConnector = hgmdConnector;
 
-		GraphQLSchema graphQLSchema = AnnotationsSchemaCreator.newAnnotationsSchema()
-				.query(GRecord.class)
-				.build();
+		PreparsedQuery preparsedQuery = PreparsedQuery.get(TypeQuery.FAVOR);
 
 		graphQL = GraphQL
-				.newGraphQL(graphQLSchema)
+				.newGraphQL(preparsedQuery.schema)
+				.preparsedDocumentProvider(preparsedQuery)
 				.build();
 
-		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("graphql/annotator/favor.graphql")) {
-			graphQLQuery = IOUtils.toString(inputStream, "utf8");
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
-		}
+		graphQLQuery = preparsedQuery.query;
 	}
 
 	public ProcessingResult exec(Row row) {
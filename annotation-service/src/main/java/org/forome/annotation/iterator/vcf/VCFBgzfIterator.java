@@ -0,0 +1,414 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.iterator.vcf;
+
+import htsjdk.tribble.readers.LineIterator;
+import htsjdk.tribble.readers.LineIteratorImpl;
+import htsjdk.tribble.readers.SynchronousLineReader;
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFHeader;
+import org.forome.annotation.exception.ExceptionBuilder;
+import org.forome.annotation.utils.compression.BgzfBlockScanner;
+import org.forome.annotation.utils.compression.BgzfInputStream;
+import org.forome.annotation.utils.compression.BgzfLineReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Чтение сжатого vcf-файла (*.vcf.gz) без распаковки на диск.
+ * Файл в формате BGZF при нескольких потоках делится на части по границам блоков (индекс не нужен):
+ * части распаковываются и разбираются в пуле потоков наперед, а записи отдаются строго в порядке файла.
+ * Запись принадлежит части, в которой начинается ее строка: часть дочитывает свою последнюю строку
+ * из следующей, а следующая часть начинается с последнего байта предыдущего блока - по нему видно,
+ * начинается ли с первого блока части новая строка или ее надо пропустить.
+ * Файл, сжатый обычным gzip, читается последовательно.
+ * Для BGZF известно виртуальное смещение записи, следующей за прочитанной (см. getVirtualOffset) -
+ * с него чтение можно продолжить, например, при восстановлении по контрольной точке.
+ */
+class VCFBgzfIterator implements Iterator<VariantContext>, AutoCloseable {
+
+	private final static Logger log = LoggerFactory.getLogger(VCFBgzfIterator.class);
+
+	/**
+	 * Кол-во BGZF-блоков в части (до 64 КБ распакованных данных в блоке)
+	 */
+	static final int CHUNK_BLOCKS = 16;
+
+	/**
+	 * Кол-во частей, читаемых наперед, на один поток
+	 */
+	private static final int CHUNKS_PER_THREAD = 2;
+
+	/**
+	 * Разобранная запись и виртуальное смещение следующей за ней
+	 */
+	static class Record {
+
+		final VariantContext variantContext;
+		final long nextOffset;
+
+		private Record(VariantContext variantContext, long nextOffset) {
+			this.variantContext = variantContext;
+			this.nextOffset = nextOffset;
+		}
+	}
+
+	/**
+	 * Часть файла: строки, начинающиеся с виртуального смещения start и до end (не включительно)
+	 */
+	static class Chunk {
+
+		final long start;
+		final long end;
+
+		/**
+		 * start - последний байт предыдущего блока, а не начало строки: первая (возможно, пустая)
+		 * строка принадлежит предыдущей части
+		 */
+		final boolean align;
+
+		Chunk(long start, long end, boolean align) {
+			this.start = start;
+			this.end = end;
+			this.align = align;
+		}
+	}
+
+	private final VCFHeader header;
+
+	//Последовательное чтение: BGZF - со смещениями строк, gzip - без смещений
+	private final BgzfLineReader lineReader;
+	private final InputStream inputStream;
+	private final LineIterator lineIterator;
+	private final VCFCodec codec;
+
+	//Параллельное чтение по частям
+	private final Path pathVcf;
+	private final ExecutorService executor;
+	private final ThreadLocal<VCFCodec> codecs;
+	private final BgzfBlockScanner blockScanner;
+	private final int chunkBlocks;
+	private final ArrayDeque<Future<List<Record>>> chunks;
+	private final int maxChunks;
+	private long chunkStart;
+	private boolean chunkAlign;
+	private int chunkScanned;
+	private long chunkLastByte;
+	private List<Record> activeChunk;
+	private int activeRecord;
+
+	private VariantContext nextVariantContext;
+	private long nextVariantContextOffset;
+
+	/**
+	 * Виртуальное смещение записи, следующей за последней возвращенной next()
+	 */
+	private long virtualOffset;
+
+	public VCFBgzfIterator(Path pathVcf, int threads) throws IOException {
+		this(pathVcf, -1, threads);
+	}
+
+	/**
+	 * @param virtualOffset - виртуальное смещение (BGZF) первой читаемой записи, -1 - с начала файла
+	 */
+	public VCFBgzfIterator(Path pathVcf, long virtualOffset, int threads) throws IOException {
+		this(pathVcf, virtualOffset, threads, CHUNK_BLOCKS);
+	}
+
+	VCFBgzfIterator(Path pathVcf, long virtualOffset, int threads, int chunkBlocks) throws IOException {
+		if (threads < 1) throw new IllegalArgumentException();
+		if (chunkBlocks < 1) throw new IllegalArgumentException();
+
+		boolean bgzf = BgzfInputStream.isBgzf(pathVcf);
+		if (virtualOffset >= 0 && !bgzf) {
+			throw new IllegalArgumentException("Virtual offset is supported only for bgzf file: " + pathVcf);
+		}
+		this.pathVcf = pathVcf;
+		this.chunkBlocks = chunkBlocks;
+
+		if (bgzf && threads > 1) {
+			log.debug("Read vcf file: {}, virtual offset: {}, threads: {}, chunk blocks: {}",
+					pathVcf, virtualOffset, threads, chunkBlocks);
+			//Заголовок читается с начала файла, записи - со смещения (строки заголовка пропускаются при чтении)
+			String headerText = readHeaderText(pathVcf);
+			this.header = buildCodec(headerText).header;
+
+			this.lineReader = null;
+			this.inputStream = null;
+			this.lineIterator = null;
+			this.codec = null;
+
+			//Кодек не потокобезопасен - у каждого потока свой экземпляр
+			this.codecs = ThreadLocal.withInitial(() -> buildCodec(headerText).codec);
+			this.executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "VCFChunkReader");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.chunkStart = Math.max(virtualOffset, 0);
+			this.chunkAlign = false;
+			this.chunkLastByte = -1;
+			this.blockScanner = new BgzfBlockScanner(pathVcf, chunkStart >>> 16);
+			this.chunks = new ArrayDeque<>();
+			this.maxChunks = threads * CHUNKS_PER_THREAD;
+		} else {
+			this.codecs = null;
+			this.executor = null;
+			this.blockScanner = null;
+			this.chunks = null;
+			this.maxChunks = 0;
+
+			if (bgzf) {
+				log.debug("Read vcf file: {}, virtual offset: {}", pathVcf, virtualOffset);
+				HeaderCodec headerCodec = buildCodec(readHeaderText(pathVcf));
+				this.lineReader = new BgzfLineReader(new BgzfInputStream(pathVcf, Math.max(virtualOffset, 0), threads));
+				this.inputStream = null;
+				this.lineIterator = null;
+				this.codec = headerCodec.codec;
+				this.header = headerCodec.header;
+			} else {
+				log.debug("Read vcf file: {}, bgzf: false", pathVcf);
+				this.lineReader = null;
+				this.inputStream = new GZIPInputStream(Files.newInputStream(pathVcf), 64 * 1024);
+				this.lineIterator = buildLineIterator(inputStream);
+				this.codec = new VCFCodec();
+				this.header = (VCFHeader) codec.readActualHeader(lineIterator);
+			}
+		}
+		this.virtualOffset = virtualOffset;
+	}
+
+	public VCFHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * @return виртуальное смещение (BGZF) записи, следующей за последней возвращенной next(),
+	 * -1 - неизвестно (файл сжат обычным gzip или записи еще не читались)
+	 */
+	public long getVirtualOffset() {
+		return virtualOffset;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextVariantContext == null) {
+			try {
+				nextVariantContext = (executor != null) ? nextFromChunks() : nextFromStream();
+			} catch (IOException e) {
+				throw ExceptionBuilder.buildIOErrorException(e);
+			}
+		}
+		return nextVariantContext != null;
+	}
+
+	@Override
+	public VariantContext next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		VariantContext value = nextVariantContext;
+		nextVariantContext = null;
+		virtualOffset = nextVariantContextOffset;
+		return value;
+	}
+
+	private VariantContext nextFromStream() throws IOException {
+		if (lineReader == null) {
+			while (lineIterator.hasNext()) {
+				String line = lineIterator.next();
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				nextVariantContextOffset = -1;
+				return codec.decode(line);
+			}
+			return null;
+		}
+
+		String line;
+		while ((line = lineReader.readLine()) != null) {
+			if (line.isEmpty() || line.charAt(0) == '#') {
+				continue;
+			}
+			nextVariantContextOffset = lineReader.getNextOffset();
+			return codec.decode(line);
+		}
+		return null;
+	}
+
+	private VariantContext nextFromChunks() throws IOException {
+		while (true) {
+			if (activeChunk != null && activeRecord < activeChunk.size()) {
+				Record record = activeChunk.get(activeRecord++);
+				nextVariantContextOffset = record.nextOffset;
+				return record.variantContext;
+			}
+			activeChunk = null;
+
+			//Пул выполняет части в порядке добавления, поэтому ожидаемая часть всегда читается первой
+			while (chunks.size() < maxChunks) {
+				Chunk chunk = nextChunk();
+				if (chunk == null) {
+					break;
+				}
+				chunks.add(executor.submit(() -> readChunk(pathVcf, codecs.get(), chunk)));
+			}
+			if (chunks.isEmpty()) {
+				return null;
+			}
+			activeChunk = take(chunks.poll());
+			activeRecord = 0;
+		}
+	}
+
+	/**
+	 * Следующая часть: от текущей границы до первого блока, отстоящего от нее не менее чем на chunkBlocks блоков
+	 * и следующего за непустым блоком (у части должен быть последний байт предыдущего блока)
+	 *
+	 * @return null - файл закончился
+	 */
+	private Chunk nextChunk() throws IOException {
+		if (chunkStart < 0) {
+			return null;
+		}
+		while (blockScanner.next()) {
+			if (chunkScanned >= chunkBlocks && chunkLastByte >= 0) {
+				Chunk chunk = new Chunk(chunkStart, blockScanner.getAddress() << 16, chunkAlign);
+				chunkStart = chunkLastByte;
+				chunkAlign = true;
+				chunkScanned = 0;
+				//Текущий блок - первый блок следующей части
+				onScanBlock();
+				return chunk;
+			}
+			onScanBlock();
+		}
+		Chunk chunk = new Chunk(chunkStart, Long.MAX_VALUE, chunkAlign);
+		chunkStart = -1;
+		return chunk;
+	}
+
+	/**
+	 * Последний байт блока нужен, только если следующий блок может стать границей части
+	 */
+	private void onScanBlock() throws IOException {
+		chunkScanned++;
+		chunkLastByte = -1;
+		if (chunkScanned >= chunkBlocks) {
+			int dataSize = blockScanner.getDataSize();
+			if (dataSize > 0) {
+				chunkLastByte = (blockScanner.getAddress() << 16) | (dataSize - 1);
+			}
+		}
+	}
+
+	static List<Record> readChunk(Path pathVcf, VCFCodec codec, Chunk chunk) throws IOException {
+		List<Record> records = new ArrayList<>();
+		try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(pathVcf, chunk.start, 1))) {
+			if (chunk.align) {
+				reader.readLine();
+			}
+			String line;
+			while ((line = reader.readLine()) != null && reader.getLineOffset() < chunk.end) {
+				if (line.isEmpty() || line.charAt(0) == '#') {
+					continue;
+				}
+				records.add(new Record(codec.decode(line), reader.getNextOffset()));
+			}
+		}
+		return records;
+	}
+
+	private static List<Record> take(Future<List<Record>> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException("Exception read vcf file", e.getCause());
+		}
+	}
+
+	static String readHeaderText(Path pathVcf) throws IOException {
+		StringBuilder headerText = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new BgzfInputStream(pathVcf, 1), StandardCharsets.UTF_8)
+		)) {
+			String line;
+			while ((line = reader.readLine()) != null && line.startsWith("#")) {
+				headerText.append(line).append('\n');
+			}
+		}
+		return headerText.toString();
+	}
+
+	static class HeaderCodec {
+
+		final VCFCodec codec;
+		final VCFHeader header;
+
+		private HeaderCodec(VCFCodec codec, VCFHeader header) {
+			this.codec = codec;
+			this.header = header;
+		}
+	}
+
+	static HeaderCodec buildCodec(String headerText) {
+		VCFCodec codec = new VCFCodec();
+		VCFHeader header = (VCFHeader) codec.readActualHeader(
+				buildLineIterator(new ByteArrayInputStream(headerText.getBytes(StandardCharsets.UTF_8)))
+		);
+		return new HeaderCodec(codec, header);
+	}
+
+	private static LineIterator buildLineIterator(InputStream inputStream) {
+		return new LineIteratorImpl(new SynchronousLineReader(
+				new InputStreamReader(inputStream, StandardCharsets.UTF_8)
+		));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (executor != null) {
+			executor.shutdownNow();
+			blockScanner.close();
+		}
+		if (lineReader != null) {
+			lineReader.close();
+		}
+		if (inputStream != null) {
+			inputStream.close();
+		}
+	}
+}
@@ -21,6 +21,7 @@ package org.forome.annotation.iterator.vcf;
 import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCFFileReader;
+import htsjdk.variant.vcf.VCFHeader;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.forome.annotation.iterator.cnv.CNVFileIterator;
 import org.forome.annotation.struct.mavariant.MAVariantVCF;
@@ -29,7 +30,9 @@ import org.forome.core.struct.Chromosome;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -40,21 +43,64 @@ public class VCFFileIterator implements AutoCloseable {
 	private final VCFFileReader vcfFileReader;
 	private final CloseableIterator<VariantContext> vcfFileReaderIterator;
 
+	private final VCFBgzfIterator vcfBgzfIterator;
+
+	private final Iterator<VariantContext> variantContextIterator;
+
 	private final CNVFileIterator cnvFileIterator;
 
+	private long virtualOffset;
+
 	public VCFFileIterator(Path pathVcf) {
 		this(pathVcf, null);
 	}
 
 	public VCFFileIterator(Path pathVcf, Path cnvFile) {
-		this.vcfFileReader = new VCFFileReader(pathVcf, false);
-		this.vcfFileReaderIterator = vcfFileReader.iterator();
+		this(pathVcf, cnvFile, 1);
+	}
+
+	/**
+	 * @param threads - кол-во потоков чтения сжатого vcf-файла (*.vcf.gz)
+	 */
+	public VCFFileIterator(Path pathVcf, Path cnvFile, int threads) {
+		this(pathVcf, cnvFile, threads, -1);
+	}
+
+	/**
+	 * @param threads       - кол-во потоков чтения сжатого vcf-файла (*.vcf.gz)
+	 * @param virtualOffset - виртуальное смещение (BGZF) первой читаемой записи, -1 - с начала файла.
+	 *                      Поддерживается только для файлов в формате BGZF
+	 */
+	public VCFFileIterator(Path pathVcf, Path cnvFile, int threads, long virtualOffset) {
+		this.virtualOffset = -1;
+		VCFHeader vcfHeader;
+		if (pathVcf.getFileName().toString().endsWith(".gz")) {
+			//Сжатый файл читаем напрямую, без распаковки на диск
+			this.vcfFileReader = null;
+			this.vcfFileReaderIterator = null;
+			try {
+				this.vcfBgzfIterator = new VCFBgzfIterator(pathVcf, virtualOffset, threads);
+			} catch (IOException e) {
+				throw ExceptionBuilder.buildIOErrorException(e);
+			}
+			this.variantContextIterator = vcfBgzfIterator;
+			vcfHeader = vcfBgzfIterator.getHeader();
+		} else {
+			if (virtualOffset >= 0) {
+				throw new IllegalArgumentException("Virtual offset is supported only for bgzf file: " + pathVcf);
+			}
+			this.vcfFileReader = new VCFFileReader(pathVcf, false);
+			this.vcfFileReaderIterator = vcfFileReader.iterator();
+			this.vcfBgzfIterator = null;
+			this.variantContextIterator = vcfFileReaderIterator;
+			vcfHeader = vcfFileReader.getFileHeader();
+		}
 
 		if (cnvFile != null) {
 			cnvFileIterator = new CNVFileIterator(cnvFile);
 
 			//Validation equals samples
-			List<String> vcfSamples = vcfFileReader.getFileHeader().getGenotypeSamples();
+			List<String> vcfSamples = vcfHeader.getGenotypeSamples();
 			List<String> cnvSamples = cnvFileIterator.getSamples();
 			if (vcfSamples.size() != cnvSamples.size() || !vcfSamples.containsAll(cnvSamples)) {
 				throw ExceptionBuilder.buildNotEqualSamplesVcfAndCnvFile();
@@ -66,13 +112,15 @@ public class VCFFileIterator implements AutoCloseable {
 
 	public MAVariantVep next() throws NoSuchElementException {
 		while (true) {
-			if (vcfFileReaderIterator.hasNext()) {
-				VariantContext variantContext = vcfFileReaderIterator.next();
+			if (variantContextIterator.hasNext()) {
+				VariantContext variantContext = variantContextIterator.next();
 				if (!Chromosome.isSupportChromosome(variantContext.getContig())) {
 					continue;//Игнорируем непонятные хромосомы
 				}
+				virtualOffset = (vcfBgzfIterator != null) ? vcfBgzfIterator.getVirtualOffset() : -1;
 				return new MAVariantVCF(variantContext);
 			} else if (cnvFileIterator != null && cnvFileIterator.hasNext()) {
+				virtualOffset = -1;
 				return cnvFileIterator.next();
 			} else {
 				throw new NoSuchElementException();
@@ -80,9 +128,25 @@ public class VCFFileIterator implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * @return виртуальное смещение (BGZF) записи vcf-файла, следующей за последней возвращенной next(),
+	 * -1 - неизвестно (файл не в формате BGZF или последней возвращена запись cnv-файла)
+	 */
+	public long getVirtualOffset() {
+		return virtualOffset;
+	}
+
 	@Override
 	public void close() {
-		this.vcfFileReaderIterator.close();
-		this.vcfFileReader.close();
+		if (vcfBgzfIterator != null) {
+			try {
+				vcfBgzfIterator.close();
+			} catch (IOException e) {
+				log.error("Exception close vcf file", e);
+			}
+		} else {
+			this.vcfFileReaderIterator.close();
+			this.vcfFileReader.close();
+		}
 	}
 }
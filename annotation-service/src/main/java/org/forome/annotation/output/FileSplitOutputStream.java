@@ -18,6 +18,7 @@
 
 package org.forome.annotation.output;
 
+import org.forome.annotation.utils.compression.BgzfOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,15 +29,22 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.ExecutorService;
 
 public class FileSplitOutputStream implements Closeable {
 
 	private final static Logger log = LoggerFactory.getLogger(FileSplitOutputStream.class);
 
+	private static final int OUTPUT_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
 	private final Path target;
 	private final int limit;
 
+	/**
+	 * Общий пул сжатия для всех частей файла
+	 */
+	private final ExecutorService executor;
+
 	private int index;
 	private BufferedOutputStream activeOutputStream;
 	private int countLimit;
@@ -48,9 +56,15 @@ public class FileSplitOutputStream implements Closeable {
 
 		this.target = target;
 		this.limit = limit;
+		this.executor = BgzfOutputStream.buildExecutor(OUTPUT_THREADS);
 
 		this.index = 0;
-		this.activeOutputStream = buildOutputStream(target, index);
+		try {
+			this.activeOutputStream = buildOutputStream(target, index);
+		} catch (IOException | RuntimeException e) {
+			executor.shutdownNow();
+			throw e;
+		}
 		this.countLimit = 0;
 	}
 
@@ -70,7 +84,7 @@ public class FileSplitOutputStream implements Closeable {
 		activeOutputStream.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
 	}
 
-	private static BufferedOutputStream buildOutputStream(Path target, int index) throws IOException {
+	private BufferedOutputStream buildOutputStream(Path target, int index) throws IOException {
 		Path path;
 		if (index == 0) {
 			path = target;
@@ -82,9 +96,9 @@ public class FileSplitOutputStream implements Closeable {
 			path = target.getParent().resolve(fileName);
 		}
 
-		log.debug("Build new output file: {}" + path);
+		log.debug("Build new output file: {}", path);
 
-		OutputStream os = new GZIPOutputStream(Files.newOutputStream(path));
+		OutputStream os = new BgzfOutputStream(Files.newOutputStream(path), executor, OUTPUT_THREADS);
 		return new BufferedOutputStream(os);
 	}
 
@@ -95,7 +109,11 @@ public class FileSplitOutputStream implements Closeable {
 
 	@Override
 	public void close() throws IOException {
-		close(activeOutputStream);
-		activeOutputStream = null;
+		try {
+			close(activeOutputStream);
+			activeOutputStream = null;
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 }
@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.processing;
+
+import graphql.ExecutionInput;
+import graphql.annotations.AnnotationsSchemaCreator;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.schema.GraphQLSchema;
+import graphql.validation.ValidationError;
+import graphql.validation.Validator;
+import org.apache.commons.io.IOUtils;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Схема и разобранный, провалидированный запрос graphql.
+ * Разбор и валидация выполняются один раз на TypeQuery, документ переиспользуется при выполнении запроса для каждого варианта.
+ */
+public class PreparsedQuery implements PreparsedDocumentProvider {
+
+	private static final ConcurrentMap<TypeQuery, PreparsedQuery> cache = new ConcurrentHashMap<>();
+
+	public final TypeQuery typeQuery;
+	public final GraphQLSchema schema;
+	public final String query;
+
+	private final PreparsedDocumentEntry documentEntry;
+
+	private PreparsedQuery(TypeQuery typeQuery) {
+		this.typeQuery = typeQuery;
+
+		this.schema = AnnotationsSchemaCreator.newAnnotationsSchema()
+				.query(typeQuery.queryClass)
+				.build();
+
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("graphql/annotator/" + typeQuery.fileNameGraphQLQuery)) {
+			this.query = IOUtils.toString(inputStream, "utf8");
+		} catch (Throwable e) {
+			throw new RuntimeException(e);
+		}
+
+		Document document = new Parser().parseDocument(query);
+		List<ValidationError> errors = new Validator().validateDocument(schema, document);
+		if (!errors.isEmpty()) {
+			throw new RuntimeException("Exception validate graphql query " + typeQuery.fileNameGraphQLQuery + ": " + errors);
+		}
+		this.documentEntry = new PreparsedDocumentEntry(document);
+	}
+
+	public static PreparsedQuery get(TypeQuery typeQuery) {
+		return cache.computeIfAbsent(typeQuery, PreparsedQuery::new);
+	}
+
+	/**
+	 * Для запроса, отличного от закешированного (сравнение по ссылке), выполняется обычный разбор
+	 */
+	@Override
+	public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+		if (executionInput.getQuery() == query) {
+			return documentEntry;
+		}
+		return parseAndValidateFunction.apply(executionInput);
+	}
+}
@@ -21,21 +21,16 @@ package org.forome.annotation.processing;
 import graphql.ExecutionInput;
 import graphql.ExecutionResult;
 import graphql.GraphQL;
-import graphql.annotations.AnnotationsSchemaCreator;
-import graphql.schema.GraphQLSchema;
 import net.minidev.json.JSONObject;
-import net.minidev.json.JSONStyle;
-import net.minidev.json.parser.JSONParser;
-import net.minidev.json.parser.ParseException;
-import org.apache.commons.io.IOUtils;
 import org.forome.annotation.data.anfisa.AnfisaConnector;
 import org.forome.annotation.data.anfisa.struct.AnfisaInput;
 import org.forome.annotation.data.anfisa.struct.AnfisaResult;
-import org.forome.annotation.processing.graphql.record.GRecord;
 import org.forome.annotation.processing.smavariant.SplitMAVariant;
 import org.forome.annotation.processing.statistics.StatisticsInstrumentation;
 import org.forome.annotation.processing.struct.GContext;
 import org.forome.annotation.processing.struct.ProcessingResult;
+import org.forome.annotation.processing.utils.GraphQLDataUtils;
+import org.forome.annotation.service.metrics.Throughput;
 import org.forome.annotation.service.source.struct.Source;
 import org.forome.annotation.struct.mavariant.MAVariant;
 import org.forome.annotation.struct.mcase.MCase;
@@ -49,7 +44,6 @@ import org.forome.core.struct.sequence.Sequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -66,6 +60,11 @@ public class Processing {
 
 	private final String graphQLQuery;
 
+	/**
+	 * Общая для всех экземпляров пропускная способность обработки вариантов
+	 */
+	public static final Throughput throughput = new Throughput();
+
 	public final Statistics graphqlStatistics = new Statistics();
 	public final Statistics anfisaStatistics = new Statistics();
 	public final StatisticsInstrumentation statisticsInstrumentation = new StatisticsInstrumentation();
@@ -79,20 +78,15 @@ public class Processing {
 
 		this.anfisaConnector = anfisaConnector;
 
-		GraphQLSchema graphQLSchema = AnnotationsSchemaCreator.newAnnotationsSchema()
-				.query(GRecord.class)
-				.build();
+		PreparsedQuery preparsedQuery = PreparsedQuery.get(typeQuery);
 
 		graphQL = GraphQL
-				.newGraphQL(graphQLSchema)
+				.newGraphQL(preparsedQuery.schema)
 				.instrumentation(statisticsInstrumentation)
+				.preparsedDocumentProvider(preparsedQuery)
 				.build();
 
-		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("graphql/annotator/" + typeQuery.fileNameGraphQLQuery)) {
-			graphQLQuery = IOUtils.toString(inputStream, "utf8");
-		} catch (Throwable e) {
-			throw new RuntimeException(e);
-		}
+		graphQLQuery = preparsedQuery.query;
 	}
 
 	public AnfisaConnector getAnfisaConnector() {
@@ -115,10 +109,38 @@ public class Processing {
 		return results;
 	}
 
+	/**
+	 * Пакетная предварительная загрузка данных источников для окна следующих записей (в порядке vcf-файла),
+	 * последующие одиночные запросы при обработке этих записей обслуживаются из кеша источника
+	 */
+	public void prefetch(Assembly assembly, List<MAVariant> maVariants) {
+		List<Variant> variants = new ArrayList<>();
+		List<Interval> intervals = new ArrayList<>();
+		for (MAVariant maVariant : maVariants) {
+			for (Variant variant : SplitMAVariant.build(maVariant).split()) {
+				variants.add(variant);
+				intervals.add(variant.getInterval());
+			}
+		}
+		if (intervals.isEmpty()) {
+			return;
+		}
+
+		source.getDbSNP(intervals);
+		source.getDbNSFP(intervals);
+		source.getSpliceAI(intervals);
+		anfisaConnector.gnomadConnector.prefetch(assembly, variants);
+
+		//Регионы ClinVar и HGMD, в которые входит окно
+		anfisaConnector.clinvarConnector.prefetch(assembly, intervals);
+		anfisaConnector.hgmdConnector.prefetch(assembly, intervals);
+	}
+
 	public ProcessingResult exec(
 			MCase mCase,
 			Variant variant
 	) {
+		throughput.start();
 		try {
 
 			if (mCase == null) throw new IllegalArgumentException();
@@ -126,16 +148,16 @@ public class Processing {
 
 			JSONObject result = new JSONObject();
 
-			long t1 = System.currentTimeMillis();
+			long t1 = System.nanoTime();
 			AnfisaResult anfisaResult = anfisaConnector.build(
 					new AnfisaInput.Builder(mCase.assembly).withSamples(mCase).build(),
 					variant
 			);
-			anfisaStatistics.addTime(System.currentTimeMillis() - t1);
+			anfisaStatistics.addTimeNanos(System.nanoTime() - t1);
 
 			result.merge(anfisaResult.toJSON());
 
-			t1 = System.currentTimeMillis();
+			t1 = System.nanoTime();
 			ExecutionResult graphQLExecutionResult = graphQL.execute(
 					ExecutionInput.newExecutionInput()
 							.query(graphQLQuery)
@@ -153,17 +175,9 @@ public class Processing {
 				log.error("exception: " + graphQLExecutionResult.getErrors());
 				throw new RuntimeException();
 			}
-			graphqlStatistics.addTime(System.currentTimeMillis() - t1);
+			graphqlStatistics.addTimeNanos(System.nanoTime() - t1);
 
-			//TODO Ulitin V. удалить временный костыль, введен из-за проблем мержинга данных
-			JSONObject graphQLResult;
-			try {
-				graphQLResult = (JSONObject) new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(
-						new JSONObject(graphQLExecutionResult.getData()).toJSONString(JSONStyle.NO_COMPRESS)
-				);
-			} catch (ParseException e) {
-				throw new RuntimeException(e);
-			}
+			JSONObject graphQLResult = GraphQLDataUtils.toJSON(graphQLExecutionResult.getData());
 
 			result.merge(graphQLResult);
 
@@ -173,6 +187,8 @@ public class Processing {
 			);
 		} catch (Throwable e) {
 			throw new RuntimeException("Exception build variant: " + variant.toString(), e);
+		} finally {
+			throughput.complete();
 		}
 	}
 
@@ -18,15 +18,25 @@
 
 package org.forome.annotation.processing;
 
+import org.forome.annotation.processing.graphql.record.GRecord;
+
 public enum TypeQuery {
 
-	PATIENT_HG19("patient.hg19.graphql"),
+	PATIENT_HG19("patient.hg19.graphql", GRecord.class),
+
+	WIDE_HG19("wide.hg19.graphql", GRecord.class),
 
-	WIDE_HG19("wide.hg19.graphql");
+	FAVOR("favor.graphql", org.forome.annotation.favor.processing.graphql.record.GRecord.class);
 
 	public final String fileNameGraphQLQuery;
 
-	TypeQuery(String fileNameGraphQLQuery) {
+	/**
+	 * Корневой тип схемы, по которой выполняется запрос
+	 */
+	public final Class<?> queryClass;
+
+	TypeQuery(String fileNameGraphQLQuery, Class<?> queryClass) {
 		this.fileNameGraphQLQuery = fileNameGraphQLQuery;
+		this.queryClass = queryClass;
 	}
 }
@@ -186,9 +186,7 @@ public class GRecordFilters {
 	@GraphQLField
 	@GraphQLName("primate_ai_pred")
 	public List<String> getPrimateAiPred() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -201,9 +199,7 @@ public class GRecordFilters {
 	@GraphQLField
 	@GraphQLName("eqtl_gene")
 	public List<String> getEqtlGene() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.map(item -> item.geuvadisEQtlTargetGene)
@@ -20,12 +20,8 @@ package org.forome.annotation.processing.graphql.record.view;
 
 import graphql.annotations.annotationTypes.GraphQLField;
 import graphql.annotations.annotationTypes.GraphQLName;
-import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
-import org.forome.annotation.data.anfisa.GtfAnfisaBuilder;
-import org.forome.annotation.data.anfisa.struct.GtfAnfisaResult;
 import org.forome.annotation.data.dbnsfp.struct.DbNSFPItem;
-import org.forome.annotation.data.dbnsfp.struct.DbNSFPItemFacetTranscript;
 import org.forome.annotation.processing.graphql.record.view.bioinformatics.GRecordViewBioinformatics;
 import org.forome.annotation.processing.graphql.record.view.facets.GRecordViewFacet;
 import org.forome.annotation.processing.graphql.record.view.general.GRecordViewGeneral;
@@ -35,12 +31,9 @@ import org.forome.annotation.processing.struct.GContext;
 import org.forome.annotation.struct.mcase.MCase;
 import org.forome.annotation.struct.variant.Variant;
 import org.forome.annotation.struct.variant.vep.VariantVep;
-import org.forome.core.struct.Interval;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 @GraphQLName("record_view")
@@ -77,9 +70,7 @@ public class GRecordView {
 	@GraphQLField
 	@GraphQLName("facets")
 	public List<GRecordViewFacet> getFacets() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		List<GRecordViewFacet> facets = items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -93,56 +84,20 @@ public class GRecordView {
 	@GraphQLField
 	@GraphQLName("transcripts")
 	public List<GRecordViewTranscript> getTranscripts() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
-
-		if (variant instanceof VariantVep) {
-			VariantVep variantVep = (VariantVep) variant;
-			JSONArray joTranscripts = (JSONArray) variantVep.getVepJson().get("transcript_consequences");
-			if (joTranscripts == null) {
-				return null;
-			}
-
-			Set<String> uniqueTranscriptIds = new HashSet<>();
-			List<JSONObject> jTranscripts = joTranscripts.stream()
-					.map(o -> (JSONObject) o)
-					.filter(item -> uniqueTranscriptIds.add(item.getAsString("transcript_id")))
-					.collect(Collectors.toList());
-
-			List<GRecordViewTranscript> transcripts = new ArrayList<>();
-			for (JSONObject jTranscript : jTranscripts) {
-				String transcriptId = jTranscript.getAsString("transcript_id");
-
-				List<DbNSFPItemFacetTranscript> findTranscripts = items.stream()
-						.flatMap(dbNSFPItem -> dbNSFPItem.facets.stream())
-						.flatMap(dbNSFPItemFacet -> dbNSFPItemFacet.transcripts.stream())
-						.filter(dbNSFPItemFacetTranscript -> transcriptId.equals(dbNSFPItemFacetTranscript.ensemblTranscriptId))
-						.collect(Collectors.toList());
-				if (findTranscripts.size() > 1) {
-					throw new RuntimeException("Not unique transcriptId:" + transcriptId + ", variant: " + variant);
-				}
-				DbNSFPItemFacetTranscript dbNSFPTranscript = (findTranscripts.isEmpty()) ? null : findTranscripts.get(0);
-
-
-				GtfAnfisaBuilder gtfAnfisaBuilder = gContext.anfisaConnector.gtfAnfisaBuilder;
-				GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary = gtfAnfisaBuilder.getDistanceFromBoundary(
-						gContext.context,
-						transcriptId,
-						Interval.ofWithoutValidation(
-								variantVep.chromosome,
-								variantVep.getStart(), variantVep.end
-						)
-				);
-
-
-				transcripts.add(new GRecordViewTranscript(
-						gContext, transcriptId, variantVep, jTranscript, dbNSFPTranscript, distanceFromBoundary
-				));
-			}
-			return transcripts;
-		} else {
+		List<JSONObject> jTranscripts = gContext.executeContext.getVepTranscripts();
+		if (jTranscripts == null) {
 			return null;
 		}
+		VariantVep variantVep = (VariantVep) variant;
+
+		//Данные dbNSFP и расстояние до границы экзона вычисляются в транскрипте только при запросе соответствующих полей
+		List<GRecordViewTranscript> transcripts = new ArrayList<>(jTranscripts.size());
+		for (JSONObject jTranscript : jTranscripts) {
+			String transcriptId = jTranscript.getAsString("transcript_id");
+			transcripts.add(new GRecordViewTranscript(
+					gContext, transcriptId, variantVep, jTranscript
+			));
+		}
+		return transcripts;
 	}
 }
@@ -91,9 +91,7 @@ public class GRecordViewBioinformatics {
 	@GraphQLField
 	@GraphQLName("refcodon")
 	public List<String> getRefcodons() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -107,9 +105,7 @@ public class GRecordViewBioinformatics {
 	@GraphQLField
 	@GraphQLName("eqtl_gene")
 	public List<String> getEqtlGene() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.map(item -> item.geuvadisEQtlTargetGene)
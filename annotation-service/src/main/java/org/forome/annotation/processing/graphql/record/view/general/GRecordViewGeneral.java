@@ -21,7 +21,6 @@ package org.forome.annotation.processing.graphql.record.view.general;
 import graphql.annotations.annotationTypes.GraphQLDescription;
 import graphql.annotations.annotationTypes.GraphQLField;
 import graphql.annotations.annotationTypes.GraphQLName;
-import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import org.forome.annotation.processing.graphql.record.view.general.transcript.GRecordViewGeneralTranscript;
 import org.forome.annotation.processing.struct.GContext;
@@ -34,10 +33,7 @@ import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Interval;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @GraphQLName("record_view_general")
 public class GRecordViewGeneral {
@@ -115,31 +111,20 @@ public class GRecordViewGeneral {
 	@GraphQLField
 	@GraphQLName("transcripts")
 	public List<GRecordViewGeneralTranscript> getTranscripts() {
-		if (variant instanceof VariantVep) {
-			VariantVep variantVep = (VariantVep) variant;
-			JSONArray joTranscripts = (JSONArray) variantVep.getVepJson().get("transcript_consequences");
-			if (joTranscripts == null) {
-				return null;
-			}
-
-			Set<String> uniqueTranscriptIds = new HashSet<>();
-			List<JSONObject> jTranscripts = joTranscripts.stream()
-					.map(o -> (JSONObject) o)
-					.filter(item -> uniqueTranscriptIds.add(item.getAsString("transcript_id")))
-					.collect(Collectors.toList());
-
-			List<GRecordViewGeneralTranscript> transcripts = new ArrayList<>();
-			for (JSONObject jTranscript : jTranscripts) {
-				String transcriptId = jTranscript.getAsString("transcript_id");
-
-				transcripts.add(new GRecordViewGeneralTranscript(
-						transcriptId, variantVep, jTranscript
-				));
-			}
-			return transcripts;
-		} else {
+		List<JSONObject> jTranscripts = gContext.executeContext.getVepTranscripts();
+		if (jTranscripts == null) {
 			return null;
 		}
+		VariantVep variantVep = (VariantVep) variant;
+
+		List<GRecordViewGeneralTranscript> transcripts = new ArrayList<>(jTranscripts.size());
+		for (JSONObject jTranscript : jTranscripts) {
+			String transcriptId = jTranscript.getAsString("transcript_id");
+			transcripts.add(new GRecordViewGeneralTranscript(
+					transcriptId, variantVep, jTranscript
+			));
+		}
+		return transcripts;
 	}
 
 }
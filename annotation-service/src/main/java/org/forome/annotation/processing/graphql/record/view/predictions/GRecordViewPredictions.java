@@ -42,9 +42,7 @@ public class GRecordViewPredictions {
 	@GraphQLField
 	@GraphQLName("mutation_assessor_predictions")
 	public List<String> getmutationAssessorPredictions() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -57,9 +55,7 @@ public class GRecordViewPredictions {
 	@GraphQLField
 	@GraphQLName("mutation_assessor_scores")
 	public List<Double> getMutationAssessorScores() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -72,9 +68,7 @@ public class GRecordViewPredictions {
 	@GraphQLField
 	@GraphQLName("primate_ai_pred")
 	public List<String> getPrimateAiPred() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.flatMap(item -> item.facets.stream())
@@ -87,9 +81,7 @@ public class GRecordViewPredictions {
 	@GraphQLField
 	@GraphQLName("dann_score")
 	public List<Double> getDannScore() {
-		List<DbNSFPItem> items = gContext.anfisaConnector.dbNSFPConnector.getAll(
-				gContext.source, variant
-		);
+		List<DbNSFPItem> items = gContext.executeContext.getDbNSFPItems();
 
 		return items.stream()
 				.map(item -> item.dannScore)
@@ -21,35 +21,59 @@ package org.forome.annotation.processing.graphql.record.view.transcripts;
 import graphql.annotations.annotationTypes.GraphQLField;
 import graphql.annotations.annotationTypes.GraphQLName;
 import net.minidev.json.JSONObject;
+import org.forome.annotation.data.anfisa.GtfAnfisaBuilder;
 import org.forome.annotation.data.anfisa.struct.GtfAnfisaResult;
 import org.forome.annotation.data.dbnsfp.struct.DbNSFPItemFacetTranscript;
 import org.forome.annotation.processing.graphql.record.view.general.transcript.GRecordViewGeneralTranscript;
 import org.forome.annotation.processing.struct.GContext;
 import org.forome.annotation.struct.variant.vep.VariantVep;
+import org.forome.core.struct.Interval;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @GraphQLName("record_view_transcript")
 public class GRecordViewTranscript extends GRecordViewGeneralTranscript {
 
 	private final GContext gContext;
-	private final DbNSFPItemFacetTranscript dbNSFPTranscript;
-	private final GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary;
+
+	private boolean distanceFromBoundaryResolved;
+	private GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary;
 
 	public GRecordViewTranscript(
 			GContext gContext,
 			String transcriptId,
-			VariantVep variantVep, JSONObject jTranscript,
-			DbNSFPItemFacetTranscript dbNSFPTranscript,
-			GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary
+			VariantVep variantVep, JSONObject jTranscript
 	) {
 		super(transcriptId, variantVep, jTranscript);
 
 		this.gContext = gContext;
+	}
 
-		this.dbNSFPTranscript = dbNSFPTranscript;
-		this.distanceFromBoundary = distanceFromBoundary;
+	/**
+	 * Значение из транскрипта dbNSFP, транскрипт ищется (один раз на вариант) только при запросе
+	 * полей, которые от него зависят
+	 */
+	private <T> T getDbNSFPValue(Function<DbNSFPItemFacetTranscript, T> getter) {
+		DbNSFPItemFacetTranscript dbNSFPTranscript = gContext.executeContext.getDbNSFPTranscript(transcriptId);
+		return (dbNSFPTranscript == null) ? null : getter.apply(dbNSFPTranscript);
+	}
+
+	private GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary getDistanceFromBoundary() {
+		if (!distanceFromBoundaryResolved) {
+			GtfAnfisaBuilder gtfAnfisaBuilder = gContext.anfisaConnector.gtfAnfisaBuilder;
+			distanceFromBoundary = gtfAnfisaBuilder.getDistanceFromBoundary(
+					gContext.context,
+					transcriptId,
+					Interval.ofWithoutValidation(
+							variantVep.chromosome,
+							variantVep.getStart(), variantVep.end
+					)
+			);
+			distanceFromBoundaryResolved = true;
+		}
+		return distanceFromBoundary;
 	}
 
 	@GraphQLField
@@ -140,144 +164,145 @@ public class GRecordViewTranscript extends GRecordViewGeneralTranscript {
 	@GraphQLField
 	@GraphQLName("ensembl_gene_id")
 	public String getEnsemblGeneId() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.ensemblGeneId;
+		return getDbNSFPValue(t -> t.ensemblGeneId);
 	}
 
 	@GraphQLField
 	@GraphQLName("ensembl_protein_id")
 	public String getEnsemblProteinId() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.ensemblProteinId;
+		return getDbNSFPValue(t -> t.ensemblProteinId);
 	}
 
 	@GraphQLField
 	@GraphQLName("uniprot_acc")
 	public String getUniprotAcc() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.uniprotAcc;
+		return getDbNSFPValue(t -> t.uniprotAcc);
 	}
 
 	@GraphQLField
 	@GraphQLName("hgvs_c_annovar")
 	public String getHgvsCAnnovar() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.hgvsCAnnovar;
+		return getDbNSFPValue(t -> t.hgvsCAnnovar);
 	}
 
 	@GraphQLField
 	@GraphQLName("hgvs_p_annovar")
 	public String getHgvsPAnnovar() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.hgvsPAnnovar;
+		return getDbNSFPValue(t -> t.hgvsPAnnovar);
 	}
 
 	@GraphQLField
 	@GraphQLName("hgvs_c_snp_eff")
 	public String getHgvsCSnpEff() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.hgvsCSnpEff;
+		return getDbNSFPValue(t -> t.hgvsCSnpEff);
 	}
 
 	@GraphQLField
 	@GraphQLName("hgvs_p_snp_eff")
 	public String getHgvsPSnpEff() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.hgvsPSnpEff;
+		return getDbNSFPValue(t -> t.hgvsPSnpEff);
 	}
 
 	@GraphQLField
 	@GraphQLName("gencode_basic")
 	public Boolean getGencodeBasic() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.gencodeBasic;
+		return getDbNSFPValue(t -> t.gencodeBasic);
 	}
 
 	@GraphQLField
 	@GraphQLName("sift_score")
 	public Double getSiftScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.siftScore;
+		return getDbNSFPValue(t -> t.siftScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("sift_prediction")
 	public String getSiftPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.siftPrediction;
+		return getDbNSFPValue(t -> t.siftPrediction);
 	}
 
 	@GraphQLField
 	@GraphQLName("sift_4g_score")
 	public Double getSift4GScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.sift4GScore;
+		return getDbNSFPValue(t -> t.sift4GScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("sift_4g_prediction")
 	public String getSift4GPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.sift4GPrediction;
+		return getDbNSFPValue(t -> t.sift4GPrediction);
 	}
 
 	@GraphQLField
 	@GraphQLName("polyphen2_hdiv_score")
 	public Double getPolyphen2HdivScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.polyphen2HDIVScore;
+		return getDbNSFPValue(t -> t.polyphen2HDIVScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("polyphen2_hdiv_prediction")
 	public String getPolyphen2HdivPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.polyphen2HDIVPred;
+		return getDbNSFPValue(t -> t.polyphen2HDIVPred);
 	}
 
 	@GraphQLField
 	@GraphQLName("polyphen2_hvar_score")
 	public Double getPolyphen2HvarScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.polyphen2HVARScore;
+		return getDbNSFPValue(t -> t.polyphen2HVARScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("polyphen2_hvar_prediction")
 	public String getPolyphen2HvarPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.polyphen2HVARPred;
+		return getDbNSFPValue(t -> t.polyphen2HVARPred);
 	}
 
 	@GraphQLField
 	@GraphQLName("mutation_assessor_prediction")
 	public String getmutationAssessorPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.mutationAssessorPred;
+		return getDbNSFPValue(t -> t.mutationAssessorPred);
 	}
 
 	@GraphQLField
 	@GraphQLName("mutation_assessor_score")
 	public Double getMutationAssessorScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.mutationAssessorScore;
+		return getDbNSFPValue(t -> t.mutationAssessorScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("fathmm_prediction")
 	public String getFathmmPrediction() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.fathmmPrediction;
+		return getDbNSFPValue(t -> t.fathmmPrediction);
 	}
 
 	@GraphQLField
 	@GraphQLName("fathmm_score")
 	public Double getFathmmScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.fathmmScore;
+		return getDbNSFPValue(t -> t.fathmmScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("mpc_score")
 	public Double getMpcScore() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.mpcScore;
+		return getDbNSFPValue(t -> t.mpcScore);
 	}
 
 	@GraphQLField
 	@GraphQLName("refcodon")
 	public String getRefcodon() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.refcodon;
+		return getDbNSFPValue(t -> t.refcodon);
 	}
 
 	@GraphQLField
 	@GraphQLName("codonpos")
 	public String getCodonpos() {
-		return (dbNSFPTranscript == null) ? null : dbNSFPTranscript.codonpos;
+		return getDbNSFPValue(t -> t.codonpos);
 	}
 
 	@GraphQLField
 	@GraphQLName("dist_from_exon")
 	public Long getDistFromExon() {
+		GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary = getDistanceFromBoundary();
 		if (distanceFromBoundary != null) {
 			return distanceFromBoundary.dist;
 		} else {
@@ -288,6 +313,7 @@ public class GRecordViewTranscript extends GRecordViewGeneralTranscript {
 	@GraphQLField
 	@GraphQLName("region")
 	public String getRegion() {
+		GtfAnfisaResult.RegionAndBoundary.DistanceFromBoundary distanceFromBoundary = getDistanceFromBoundary();
 		if (distanceFromBoundary != null) {
 			return distanceFromBoundary.region;
 		} else {
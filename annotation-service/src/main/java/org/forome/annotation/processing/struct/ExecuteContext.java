@@ -18,35 +18,125 @@
 
 package org.forome.annotation.processing.struct;
 
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
 import org.forome.annotation.data.conservation.ConservationData;
+import org.forome.annotation.data.dbnsfp.struct.DbNSFPItem;
+import org.forome.annotation.data.dbnsfp.struct.DbNSFPItemFacetTranscript;
 import org.forome.annotation.struct.variant.Variant;
+import org.forome.annotation.struct.variant.vep.VariantVep;
 import org.forome.astorage.core.data.Conservation;
 
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+/**
+ * Кеш данных, вычисляемых в рамках обработки одного варианта.
+ * Данные вычисляются при первом обращении, т.е. только если они нужны полям, которые запрошены в query.
+ */
 public class ExecuteContext {
 
-	private final String CACHE_CONSERVATION = "conservation";
+	private final Supplier<Conservation> conservationLoader;
+	private final Supplier<List<DbNSFPItem>> dbNSFPLoader;
+	private final Supplier<Variant> variantLoader;
+
+	private boolean conservationResolved;
+	private Conservation conservation;
+
+	private List<DbNSFPItem> dbNSFPItems;
+
+	private Map<String, List<DbNSFPItemFacetTranscript>> dbNSFPTranscripts;
 
-	private final GContext gContext;
-	private final Map<String, Object> cache;
+	private boolean vepTranscriptsResolved;
+	private List<JSONObject> vepTranscripts;
 
 	public ExecuteContext(GContext gContext) {
-		this.gContext = gContext;
-		this.cache = new HashMap<>();
+		this(
+				() -> {
+					Variant variant = gContext.variant;
+					return new ConservationData(gContext.source)
+							.getConservation(variant.getInterval(), variant.getRef(), variant.getStrAlt());
+				},
+				() -> gContext.anfisaConnector.dbNSFPConnector.getAll(gContext.source, gContext.variant),
+				() -> gContext.variant
+		);
+	}
+
+	ExecuteContext(
+			Supplier<Conservation> conservationLoader,
+			Supplier<List<DbNSFPItem>> dbNSFPLoader,
+			Supplier<Variant> variantLoader
+	) {
+		this.conservationLoader = conservationLoader;
+		this.dbNSFPLoader = dbNSFPLoader;
+		this.variantLoader = variantLoader;
 	}
 
 	public Conservation getConservation() {
-		Optional<Conservation> oConservation = (Optional<Conservation>) cache.computeIfAbsent(CACHE_CONSERVATION, s -> {
-			Variant variant = gContext.variant;
-			String ref = variant.getRef();
-			String alt = variant.getStrAlt();
-			Conservation conservation = new ConservationData(gContext.source)
-					.getConservation(variant.getInterval(), ref, alt);
-			return Optional.ofNullable(conservation);
-		});
-		return oConservation.orElse(null);
+		if (!conservationResolved) {
+			conservation = conservationLoader.get();
+			conservationResolved = true;
+		}
+		return conservation;
+	}
+
+	public List<DbNSFPItem> getDbNSFPItems() {
+		if (dbNSFPItems == null) {
+			dbNSFPItems = dbNSFPLoader.get();
+		}
+		return dbNSFPItems;
+	}
+
+	/**
+	 * Транскрипт из dbNSFP по ensembl transcript id, null - если его нет.
+	 * Индекс по всем транскриптам строится один раз на вариант
+	 */
+	public DbNSFPItemFacetTranscript getDbNSFPTranscript(String transcriptId) {
+		if (dbNSFPTranscripts == null) {
+			dbNSFPTranscripts = getDbNSFPItems().stream()
+					.flatMap(dbNSFPItem -> dbNSFPItem.facets.stream())
+					.flatMap(dbNSFPItemFacet -> dbNSFPItemFacet.transcripts.stream())
+					.filter(dbNSFPItemFacetTranscript -> dbNSFPItemFacetTranscript.ensemblTranscriptId != null)
+					.collect(Collectors.groupingBy(dbNSFPItemFacetTranscript -> dbNSFPItemFacetTranscript.ensemblTranscriptId));
+		}
+		List<DbNSFPItemFacetTranscript> findTranscripts = dbNSFPTranscripts.get(transcriptId);
+		if (findTranscripts == null) {
+			return null;
+		}
+		if (findTranscripts.size() > 1) {
+			throw new RuntimeException("Not unique transcriptId:" + transcriptId + ", variant: " + variantLoader.get());
+		}
+		return findTranscripts.get(0);
+	}
+
+	/**
+	 * Транскрипты из ответа vep (без повторов по transcript_id), null - если транскриптов нет
+	 */
+	public List<JSONObject> getVepTranscripts() {
+		if (!vepTranscriptsResolved) {
+			vepTranscripts = buildVepTranscripts(variantLoader.get());
+			vepTranscriptsResolved = true;
+		}
+		return vepTranscripts;
+	}
+
+	private static List<JSONObject> buildVepTranscripts(Variant variant) {
+		if (!(variant instanceof VariantVep)) {
+			return null;
+		}
+		JSONArray joTranscripts = (JSONArray) ((VariantVep) variant).getVepJson().get("transcript_consequences");
+		if (joTranscripts == null) {
+			return null;
+		}
+
+		Set<String> uniqueTranscriptIds = new HashSet<>();
+		return joTranscripts.stream()
+				.map(o -> (JSONObject) o)
+				.filter(item -> uniqueTranscriptIds.add(item.getAsString("transcript_id")))
+				.collect(Collectors.toList());
 	}
 }
@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.processing.utils;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+public class GraphQLDataUtils {
+
+	/**
+	 * Длина записи дробного числа, начиная с которой json-smart при разборе возвращает BigDecimal
+	 */
+	private static final int MAX_DOUBLE_LENGTH = 18;
+
+	/**
+	 * Перевод результата graphql (дерево Map/List) в JSONObject без сериализации в строку и повторного разбора.
+	 * Дробные числа приводятся к тому же представлению, которое раньше получалось после разбора строки
+	 * (Double, для длинных записей - BigDecimal), поэтому итоговый json не меняется.
+	 */
+	public static JSONObject toJSON(Map<String, Object> data) {
+		return (JSONObject) toJSONValue(data);
+	}
+
+	private static Object toJSONValue(Object value) {
+		if (value instanceof Map) {
+			JSONObject out = new JSONObject();
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				out.put(String.valueOf(entry.getKey()), toJSONValue(entry.getValue()));
+			}
+			return out;
+		} else if (value instanceof List) {
+			List<?> items = (List<?>) value;
+			JSONArray out = new JSONArray();
+			for (Object item : items) {
+				out.add(toJSONValue(item));
+			}
+			return out;
+		} else if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			if (Double.isNaN(number) || Double.isInfinite(number)) {
+				return value;
+			}
+			String token = value.toString();
+			if (token.length() > MAX_DOUBLE_LENGTH) {
+				return new BigDecimal(token);
+			} else {
+				return Double.parseDouble(token);
+			}
+		} else {
+			return value;
+		}
+	}
+}
@@ -49,6 +49,9 @@ public class DatabaseConnectService implements AutoCloseable {
 
 	private final static Logger log = LoggerFactory.getLogger(DatabaseConnectService.class);
 
+	private static final int PREPARED_STATEMENT_CACHE_SIZE = 512;
+	private static final int PREPARED_STATEMENT_SQL_LIMIT = 16384;
+
 	private final FavorDatabase favorDatabase;
 
 	private final SSHConnectService sshTunnelService;
@@ -103,7 +106,11 @@ public class DatabaseConnectService implements AutoCloseable {
 			}
 			jdbcUrl.append(mysqlUrlPort).append('/').append(databaseConfigConnector.mysqlDatabase)
 					.append("?user=").append(databaseConfigConnector.mysqlUser)
-					.append("&password=").append(databaseConfigConnector.mysqlPassword);
+					.append("&password=").append(databaseConfigConnector.mysqlPassword)
+					//Подготовленные запросы на стороне сервера с кешем на соединении
+					.append("&useServerPrepStmts=true&cachePrepStmts=true")
+					.append("&prepStmtCacheSize=").append(PREPARED_STATEMENT_CACHE_SIZE)
+					.append("&prepStmtCacheSqlLimit=").append(PREPARED_STATEMENT_SQL_LIMIT);
 
 			String driverName = "com.mysql.jdbc.Driver";
 			Class.forName(driverName).newInstance();
@@ -148,6 +155,15 @@ public class DatabaseConnectService implements AutoCloseable {
 		}
 	}
 
+	/**
+	 * Пулы соединений (ключ - хост, порт и пользователь)
+	 */
+	public Map<String, ComboPooledDataSource> getDataSources() {
+		synchronized (dataSources) {
+			return new HashMap<>(dataSources);
+		}
+	}
+
 	public FavorDatabase getFavorDatabase() {
 		return favorDatabase;
 	}
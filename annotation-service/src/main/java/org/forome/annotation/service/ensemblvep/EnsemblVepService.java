@@ -19,6 +19,7 @@
 package org.forome.annotation.service.ensemblvep;
 
 import net.minidev.json.JSONObject;
+import org.forome.annotation.struct.mavariant.MAVariantVCF;
 import org.forome.annotation.struct.variant.Variant;
 import org.forome.core.struct.Chromosome;
 
@@ -29,8 +30,18 @@ public interface EnsemblVepService extends Closeable {
 
 	CompletableFuture<JSONObject> getVepJson(Variant variant);
 
+	/**
+	 * Аннотация всей записи vcf-файла (со всеми альтернативными аллелями) - аналог строки vep.json
+	 */
+	CompletableFuture<JSONObject> getVepJson(MAVariantVCF maVariantVCF);
+
 	CompletableFuture<JSONObject> getVepJson(Chromosome chromosome, int start, int end, String alternative);
 
+	/**
+	 * @param reference - референсный аллель интервала start-end, у вставки (start = end + 1) - пустой
+	 */
+	CompletableFuture<JSONObject> getVepJson(Chromosome chromosome, int start, int end, String reference, String alternative);
+
 	CompletableFuture<JSONObject> getVepJson(String id);
 
 	void close();
@@ -18,40 +18,128 @@
 
 package org.forome.annotation.service.ensemblvep.external;
 
+import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.VariantContext;
 import net.minidev.json.JSONObject;
 import org.forome.annotation.service.ensemblvep.EnsemblVepService;
+import org.forome.annotation.struct.mavariant.MAVariantVCF;
 import org.forome.annotation.struct.variant.Variant;
+import org.forome.annotation.struct.variant.vcf.VariantVCF;
 import org.forome.core.struct.Chromosome;
 
 import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 public class EnsemblVepExternalService implements EnsemblVepService {
 
+	private static final String OPTIONS = "hgvs=true&canonical=true&merged=true&protein=true&variant_class=true";
+
+	private static final EnsemblVepHttpClient.BatchEndpoint BATCH_REGION = new EnsemblVepHttpClient.BatchEndpoint(
+			"/vep/human/region?" + OPTIONS, "variants"
+	);
+	private static final EnsemblVepHttpClient.BatchEndpoint BATCH_ID = new EnsemblVepHttpClient.BatchEndpoint(
+			"/vep/human/id?" + OPTIONS, "ids"
+	);
+
 	private final EnsemblVepHttpClient ensemblVepHttpClient;
 
 	public EnsemblVepExternalService(Thread.UncaughtExceptionHandler uncaughtExceptionHandler) throws IOException {
-		this.ensemblVepHttpClient = new EnsemblVepHttpClient(uncaughtExceptionHandler);
+		this(new EnsemblVepHttpClient(uncaughtExceptionHandler));
 	}
 
+	protected EnsemblVepExternalService(EnsemblVepHttpClient ensemblVepHttpClient) {
+		this.ensemblVepHttpClient = ensemblVepHttpClient;
+	}
+
+	/**
+	 * Варианты из vcf запрашиваются пакетно, в формате Ensembl: "chr start end ref/alt strand"
+	 */
 	@Override
 	public CompletableFuture<JSONObject> getVepJson(Variant variant) {
-		String region = String.format("%s:%s:%s", variant.chromosome.getChar(), variant.getStart(), variant.end);
-		String endpoint = String.format("/vep/human/region/%s/%s?hgvs=true&canonical=true&merged=true&protein=true&variant_class=true", region, variant.getStrAlt());
-		return ensemblVepHttpClient.request(endpoint).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
+		if (!(variant instanceof VariantVCF)) {
+			return getVepJson(variant.chromosome, variant.getStart(), variant.end, variant.getStrAlt());
+		}
+		//У indel аллели содержат опорный нуклеотид, а start/end - уже без него,
+		// поэтому позиция первого нуклеотида ref вычисляется от end
+		String ref = variant.variantStruct.ref.getBaseString();
+		String input = toEnsemblInput(
+				variant.chromosome.getChar(), variant.end - ref.length() + 1,
+				ref, variant.getStrAlt()
+		);
+		return ensemblVepHttpClient.request(BATCH_REGION, input).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
+	}
+
+	/**
+	 * Запись передается в формате vcf - ответ, как и строка vep.json, содержит все альтернативные аллели
+	 */
+	@Override
+	public CompletableFuture<JSONObject> getVepJson(MAVariantVCF maVariantVCF) {
+		String input = toVcfInput(maVariantVCF.variantContext);
+		return ensemblVepHttpClient.request(BATCH_REGION, input).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
+	}
+
+	@Override
+	public CompletableFuture<JSONObject> getVepJson(Chromosome chromosome, int start, int end, String reference, String alternative) {
+		String input = String.format("%s %s %s %s/%s +",
+				chromosome.getChar(), start, end,
+				toEnsemblAllele(reference), toEnsemblAllele(alternative)
+		);
+		return ensemblVepHttpClient.request(BATCH_REGION, input).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
 	}
 
 	@Override
 	public CompletableFuture<JSONObject> getVepJson(Chromosome chromosome, int start, int end, String alternative) {
 		String region = String.format("%s:%s:%s", chromosome.getChar(), start, end);
-		String endpoint = String.format("/vep/human/region/%s/%s?hgvs=true&canonical=true&merged=true&protein=true&variant_class=true", region, alternative);
+		String endpoint = String.format("/vep/human/region/%s/%s?%s", region, alternative, OPTIONS);
 		return ensemblVepHttpClient.request(endpoint).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
 	}
 
 	@Override
 	public CompletableFuture<JSONObject> getVepJson(String id) {
-		String endpoint = String.format("/vep/human/id/%s?hgvs=true&canonical=true&merged=true&protein=true&variant_class=true", id);
-		return ensemblVepHttpClient.request(endpoint).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
+		return ensemblVepHttpClient.request(BATCH_ID, id).thenApply(jsonArray -> (JSONObject) jsonArray.get(0));
+	}
+
+	/**
+	 * Вариант в формате Ensembl: общий префикс аллелей (опорный нуклеотид vcf) отбрасывается,
+	 * пустой аллель - "-", у вставки start = end + 1, т.е.
+	 * при: position: 100, ref: AT, alt: A
+	 * получаем: 1 101 101 T/- +
+	 * при: position: 100, ref: A, alt: AT
+	 * получаем: 1 101 100 -/T +
+	 *
+	 * @param position - позиция первого нуклеотида ref
+	 */
+	static String toEnsemblInput(String chromosome, int position, String ref, String alt) {
+		int prefix = 0;
+		while (prefix < ref.length() && prefix < alt.length() && ref.charAt(prefix) == alt.charAt(prefix)) {
+			prefix++;
+		}
+		String ensemblRef = ref.substring(prefix);
+		String ensemblAlt = alt.substring(prefix);
+		int start = position + prefix;
+		int end = start + ensemblRef.length() - 1;
+		return String.format("%s %s %s %s/%s +",
+				chromosome, start, end,
+				toEnsemblAllele(ensemblRef), toEnsemblAllele(ensemblAlt)
+		);
+	}
+
+	/**
+	 * Строка vcf без генотипов: chrom pos id ref alt qual filter info
+	 */
+	static String toVcfInput(VariantContext variantContext) {
+		String alts = variantContext.getAlternateAlleles().stream()
+				.map(Allele::getBaseString).collect(Collectors.joining(","));
+		return String.format("%s %s %s %s %s . . .",
+				Chromosome.of(variantContext.getContig()).getChar(), variantContext.getStart(),
+				variantContext.getID(),
+				variantContext.getReference().getBaseString(), alts
+		);
+	}
+
+	private static String toEnsemblAllele(String allele) {
+		return (allele == null || allele.isEmpty()) ? "-" : allele;
 	}
 
 	@Override
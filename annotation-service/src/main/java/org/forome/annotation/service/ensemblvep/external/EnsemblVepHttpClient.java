@@ -21,188 +21,422 @@ package org.forome.annotation.service.ensemblvep.external;
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
-import org.apache.http.HttpEntity;
+import org.apache.http.Header;
 import org.apache.http.HttpHost;
-import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
-import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.util.EntityUtils;
 import org.forome.annotation.exception.ExceptionBuilder;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedDeque;
-
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Клиент Ensembl REST API.
+ * Запросы складываются в очередь, диспетчер собирает однотипные запросы в пакеты (POST),
+ * отправляет их с ограничением частоты (token bucket) и кол-ва одновременных запросов.
+ * При ответе 429 отправка приостанавливается (Retry-After или экспоненциальная задержка), пакет повторяется.
+ */
 public class EnsemblVepHttpClient implements Closeable {
 
 	private final static Logger log = LoggerFactory.getLogger(EnsemblVepHttpClient.class);
 
-	private class QueueRequest {
+	/**
+	 * Пакетный endpoint: значения передаются в теле запроса массивом в поле field,
+	 * в ответе каждый элемент содержит исходное значение в поле input
+	 */
+	protected static class BatchEndpoint {
 
 		public final String endpoint;
-		public final CompletableFuture<JSONArray> future;
+		public final String field;
 
-		public QueueRequest(String endpoint, CompletableFuture<JSONArray> future) {
+		public BatchEndpoint(String endpoint, String field) {
 			this.endpoint = endpoint;
+			this.field = field;
+		}
+	}
+
+	private static class QueueRequest {
+
+		/**
+		 * null - одиночный GET-запрос, value - endpoint
+		 */
+		public final BatchEndpoint batch;
+		public final String value;
+		public final CompletableFuture<JSONArray> future;
+
+		public int attempt;
+
+		/**
+		 * Запрос отправляется отдельно от остальных (пакет, в котором он был, завершился ошибкой)
+		 */
+		public boolean isolated;
+
+		public QueueRequest(BatchEndpoint batch, String value, CompletableFuture<JSONArray> future) {
+			this.batch = batch;
+			this.value = value;
 			this.future = future;
 		}
 	}
 
-	private static String HOST = "grch37.rest.ensembl.org";
+	public static final HttpHost DEFAULT_HOST = new HttpHost("grch37.rest.ensembl.org");
 
-	private static int MAX_REQUEST_IN_SECOND = 10;
-	private static long REQUEST_PAUSE = 1000L / MAX_REQUEST_IN_SECOND;
+	/**
+	 * Ограничение Ensembl REST на кол-во вариантов в одном POST-запросе к vep
+	 */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 200;
+	public static final int DEFAULT_MAX_REQUEST_IN_SECOND = 10;
+	public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
 
-	private final RequestConfig requestConfig;
-	private final PoolingNHttpClientConnectionManager connectionManager;
+	/**
+	 * Сколько ждем наполнения пакета
+	 */
+	private static final long BATCH_LINGER = 50L;
+
+	private static final long BACKOFF_INITIAL = 1000L;
+	private static final long BACKOFF_MAX = 60 * 1000L;
+	private static final int MAX_ATTEMPTS = 10;
 
 	private final HttpHost httpHost;
+	private final int maxBatchSize;
 
-	private final ConcurrentLinkedDeque<QueueRequest> qequeRequests;
+	private final RequestConfig requestConfig;
+	private final HttpClientPool httpClientPool;
+
+	private final LinkedBlockingDeque<QueueRequest> qequeRequests;
+
+	private final TokenBucket rateLimiter;
+	private final Semaphore concurrency;
 
-	private boolean active = true;
+	private final Thread dispatcher;
+	private final ScheduledExecutorService retryScheduler;
 
-	private Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+	private volatile boolean active = true;
+
+	private final Thread.UncaughtExceptionHandler uncaughtExceptionHandler;
+
+	protected EnsemblVepHttpClient(
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
+	) throws IOException {
+		this(
+				DEFAULT_HOST,
+				DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_REQUEST_IN_SECOND, DEFAULT_MAX_CONCURRENT_REQUESTS,
+				uncaughtExceptionHandler
+		);
+	}
 
 	protected EnsemblVepHttpClient(
+			HttpHost httpHost,
+			int maxBatchSize,
+			int maxRequestInSecond,
+			int maxConcurrentRequests,
 			Thread.UncaughtExceptionHandler uncaughtExceptionHandler
 	) throws IOException {
+		if (maxBatchSize < 1) throw new IllegalArgumentException();
+		if (maxConcurrentRequests < 1) throw new IllegalArgumentException();
+
+		this.httpHost = httpHost;
+		this.maxBatchSize = maxBatchSize;
+
 		requestConfig = RequestConfig.custom()
 				.setConnectTimeout(2000)//Таймаут на подключение
 				.setSocketTimeout(1 * 60 * 1000)//Таймаут между пакетами
 				.setConnectionRequestTimeout(1 * 60 * 1000)//Таймаут на ответ
 				.build();
 
-		connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
-		connectionManager.setMaxTotal(100);
-		connectionManager.setDefaultMaxPerRoute(100);
+		httpClientPool = HttpClientPool.get(httpHost, Math.max(maxConcurrentRequests, HttpClientPool.DEFAULT_MAX_PER_ROUTE));
 
-		httpHost = new HttpHost(HOST);
+		qequeRequests = new LinkedBlockingDeque<>();
 
-		qequeRequests = new ConcurrentLinkedDeque<>();
+		rateLimiter = new TokenBucket(maxRequestInSecond, maxRequestInSecond);
+		concurrency = new Semaphore(maxConcurrentRequests);
 
 		this.uncaughtExceptionHandler = uncaughtExceptionHandler;
 
-		Thread thread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				while (active) {
-					execute();
-					try {
-						Thread.sleep(REQUEST_PAUSE);
-					} catch (InterruptedException e) {
-					}
-				}
-			}
+		retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "EnsemblVepHttpClient-retry");
+			thread.setDaemon(true);
+			return thread;
 		});
-		thread.setDaemon(true);
-		thread.start();
+
+		dispatcher = new Thread(this::dispatch, "EnsemblVepHttpClient");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
 	}
 
 	protected CompletableFuture<JSONArray> request(String endpoint) {
 		CompletableFuture<JSONArray> future = new CompletableFuture<>();
-		qequeRequests.add(new QueueRequest(endpoint, future));
+		qequeRequests.add(new QueueRequest(null, endpoint, future));
 		return future;
 	}
 
-	private void execute() {
-		QueueRequest queueRequest = qequeRequests.poll();
-		if (queueRequest == null) return;
+	/**
+	 * @return массив из одного элемента - результат для value
+	 */
+	protected CompletableFuture<JSONArray> request(BatchEndpoint batch, String value) {
+		CompletableFuture<JSONArray> future = new CompletableFuture<>();
+		qequeRequests.add(new QueueRequest(batch, value, future));
+		return future;
+	}
 
-		String endpoint = queueRequest.endpoint;
-		CompletableFuture<JSONArray> future = queueRequest.future;
+	private void dispatch() {
+		while (active) {
+			try {
+				List<QueueRequest> requests = nextRequests();
+				if (requests.isEmpty()) continue;
+
+				concurrency.acquire();
+				try {
+					rateLimiter.acquire();
+				} catch (InterruptedException e) {
+					concurrency.release();
+					throw e;
+				}
+				execute(requests);
+			} catch (InterruptedException e) {
+				break;
+			} catch (Throwable e) {
+				uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), e);
+			}
+		}
+	}
 
+	/**
+	 * Собирает пакет из однотипных запросов, ожидая его наполнения не дольше BATCH_LINGER.
+	 * Запросы других типов возвращаются в начало очереди.
+	 */
+	private List<QueueRequest> nextRequests() throws InterruptedException {
+		QueueRequest first = qequeRequests.pollFirst(1, TimeUnit.SECONDS);
+		if (first == null) {
+			return Collections.emptyList();
+		}
+
+		List<QueueRequest> requests = new ArrayList<>();
+		requests.add(first);
+		if (first.batch == null || first.isolated) {
+			return requests;
+		}
+
+		List<QueueRequest> others = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_LINGER);
+		while (requests.size() < maxBatchSize) {
+			long timeout = deadline - System.nanoTime();
+			QueueRequest next = (timeout > 0) ?
+					qequeRequests.pollFirst(timeout, TimeUnit.NANOSECONDS) : qequeRequests.pollFirst();
+			if (next == null) break;
+
+			if (next.batch == first.batch && !next.isolated) {
+				requests.add(next);
+			} else {
+				others.add(next);
+			}
+		}
+		for (int i = others.size() - 1; i >= 0; i--) {
+			qequeRequests.addFirst(others.get(i));
+		}
+		return requests;
+	}
+
+	private void execute(List<QueueRequest> requests) {
+		QueueRequest first = requests.get(0);
+
+		HttpRequestBase httpRequest;
 		try {
+			if (first.batch == null) {
+				httpRequest = new HttpGet(new URI(httpHost.toURI() + first.value));
+			} else {
+				JSONArray values = new JSONArray();
+				for (QueueRequest request : requests) {
+					values.add(request.value);
+				}
+				JSONObject body = new JSONObject();
+				body.put(first.batch.field, values);
 
-			HttpRequest httpRequest = new HttpGet(new URI("http://" + HOST + endpoint));
+				HttpPost httpPost = new HttpPost(new URI(httpHost.toURI() + first.batch.endpoint));
+				httpPost.setEntity(new StringEntity(body.toJSONString(), ContentType.APPLICATION_JSON));
+				httpRequest = httpPost;
+			}
 			httpRequest.addHeader(new BasicHeader("Content-Type", "application/json"));
+			httpRequest.addHeader(new BasicHeader("Accept", "application/json"));
+		} catch (Throwable ex) {
+			concurrency.release();
+			log.error("Exception build request", ex);
+			fail(requests, ex);
+			return;
+		}
 
-			CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom()
-					.setDefaultRequestConfig(requestConfig)
-//					.setConnectionManager(connectionManager)
-//					.setConnectionManagerShared(true)
-					.build();
-			httpclient.start();
-
-			httpclient.execute(httpHost, httpRequest, new FutureCallback<HttpResponse>() {
+		try {
+			httpClientPool.execute(httpRequest, requestConfig, new FutureCallback<HttpResponse>() {
 				@Override
 				public void completed(HttpResponse response) {
+					concurrency.release();
 					try {
-						HttpEntity entity = response.getEntity();
-						String entityBody = EntityUtils.toString(entity);
-
-						Object rawResponse;
-						try {
-							rawResponse = new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(entityBody);
-						} catch (Exception e) {
-							throw ExceptionBuilder.buildExternalServiceException(e, "Error parse response, endpoint: " + endpoint + " response: '" + entityBody + "'");
-						}
-
-						if (rawResponse instanceof JSONArray) {
-							future.complete((JSONArray) rawResponse);
-						} else if (rawResponse instanceof JSONObject && ((JSONObject) rawResponse).containsKey("error")) {
-							throw ExceptionBuilder.buildExternalServiceException(new RuntimeException(), "Error parse response, endpoint: " + endpoint + " response: '" + entityBody + "'");
-						} else if (response.getStatusLine().getStatusCode() == 429) {
-							//Повторно кладем в очередь на расчет
-							log.warn("External service response: Too many request - to repeat: {}", endpoint);
-							qequeRequests.addFirst(queueRequest);
-						} else {
-							uncaughtExceptionHandler.uncaughtException(
-									Thread.currentThread(),
-									new IOException("Unknown response, endpoint: " + endpoint + " response: '" + entityBody + "'")
-							);
-						}
+						handle(requests, response);
 					} catch (Throwable ex) {
-						future.completeExceptionally(ex);
-					}
-
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
+						fail(requests, ex);
 					}
 				}
 
 				@Override
 				public void failed(Exception ex) {
-					log.warn("External service: exception {} - to repeat: {}", ex.getMessage(), endpoint);
-					qequeRequests.addFirst(queueRequest);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
+					concurrency.release();
+					long delay = getBackoff(first.attempt);
+					log.warn("External service: exception {} - to repeat after {} ms: {}", ex.getMessage(), delay, getDescription(requests));
+					retry(requests, delay, ex);
 				}
 
 				@Override
 				public void cancelled() {
-					future.cancel(true);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
+					concurrency.release();
+					for (QueueRequest request : requests) {
+						request.future.cancel(true);
 					}
 				}
 			});
 		} catch (Throwable ex) {
-			log.error("Exception close connect", ex);
-			future.completeExceptionally(ex);
+			concurrency.release();
+			log.error("Exception execute request", ex);
+			fail(requests, ex);
+		}
+	}
+
+	private void handle(List<QueueRequest> requests, HttpResponse response) throws IOException {
+		QueueRequest first = requests.get(0);
+		String entityBody = EntityUtils.toString(response.getEntity());
+
+		if (response.getStatusLine().getStatusCode() == 429) {
+			long delay = getRetryAfter(response, getBackoff(first.attempt));
+			rateLimiter.pause(delay);
+			log.warn("External service response: Too many request - to repeat after {} ms: {}", delay, getDescription(requests));
+			retry(requests, delay, new IOException("Too many request"));
+			return;
+		}
+
+		Object rawResponse;
+		try {
+			rawResponse = new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(entityBody);
+		} catch (Exception e) {
+			throw ExceptionBuilder.buildExternalServiceException(e, "Error parse response, endpoint: " + getDescription(requests) + " response: '" + entityBody + "'");
+		}
+
+		if (rawResponse instanceof JSONArray) {
+			if (first.batch == null) {
+				first.future.complete((JSONArray) rawResponse);
+			} else {
+				complete(requests, (JSONArray) rawResponse);
+			}
+		} else if (rawResponse instanceof JSONObject && ((JSONObject) rawResponse).containsKey("error")) {
+			if (requests.size() > 1) {
+				//Ошибка могла быть вызвана одним из элементов пакета - повторяем каждый отдельно
+				log.warn("External service response: error in batch - to repeat separately: {}, response: '{}'", getDescription(requests), entityBody);
+				for (int i = requests.size() - 1; i >= 0; i--) {
+					QueueRequest request = requests.get(i);
+					request.isolated = true;
+					qequeRequests.addFirst(request);
+				}
+			} else {
+				throw ExceptionBuilder.buildExternalServiceException(new RuntimeException(), "Error parse response, endpoint: " + getDescription(requests) + " response: '" + entityBody + "'");
+			}
+		} else {
+			IOException exception = new IOException("Unknown response, endpoint: " + getDescription(requests) + " response: '" + entityBody + "'");
+			uncaughtExceptionHandler.uncaughtException(Thread.currentThread(), exception);
+			fail(requests, exception);
+		}
+	}
+
+	private static void complete(List<QueueRequest> requests, JSONArray response) {
+		Map<String, JSONObject> results = new HashMap<>();
+		for (Object item : response) {
+			JSONObject jItem = (JSONObject) item;
+			results.put(jItem.getAsString("input"), jItem);
+		}
+
+		for (QueueRequest request : requests) {
+			JSONObject result = results.get(request.value);
+			if (result == null) {
+				request.future.completeExceptionally(ExceptionBuilder.buildExternalServiceException(
+						new RuntimeException(), "Not found result, endpoint: " + request.batch.endpoint + ", input: " + request.value
+				));
+			} else {
+				JSONArray value = new JSONArray();
+				value.add(result);
+				request.future.complete(value);
+			}
+		}
+	}
+
+	private void retry(List<QueueRequest> requests, long delay, Throwable cause) {
+		List<QueueRequest> repeat = new ArrayList<>();
+		for (QueueRequest request : requests) {
+			request.attempt++;
+			if (request.attempt >= MAX_ATTEMPTS) {
+				request.future.completeExceptionally(ExceptionBuilder.buildExternalServiceException(
+						cause, "Exceeded retry attempts, endpoint: " + getDescription(Collections.singletonList(request))
+				));
+			} else {
+				repeat.add(request);
+			}
+		}
+		if (repeat.isEmpty() || !active) return;
+
+		retryScheduler.schedule(() -> {
+			for (int i = repeat.size() - 1; i >= 0; i--) {
+				qequeRequests.addFirst(repeat.get(i));
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private static void fail(List<QueueRequest> requests, Throwable ex) {
+		for (QueueRequest request : requests) {
+			request.future.completeExceptionally(ex);
+		}
+	}
+
+	private static long getBackoff(int attempt) {
+		return Math.min(BACKOFF_MAX, BACKOFF_INITIAL << Math.min(attempt, 16));
+	}
+
+	/**
+	 * Retry-After передается в секундах (Ensembl присылает дробное значение)
+	 */
+	private static long getRetryAfter(HttpResponse response, long defaultValue) {
+		Header header = response.getFirstHeader("Retry-After");
+		if (header == null) {
+			return defaultValue;
+		}
+		try {
+			return Math.max(0, (long) (Double.parseDouble(header.getValue()) * 1000));
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static String getDescription(List<QueueRequest> requests) {
+		QueueRequest first = requests.get(0);
+		if (first.batch == null) {
+			return first.value;
+		} else {
+			return first.batch.endpoint + " (" + requests.size() + " items)";
 		}
 	}
 
 	@Override
 	public void close() {
 		active = false;
+		dispatcher.interrupt();
+		retryScheduler.shutdownNow();
 	}
 }
@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.ensemblvep.external;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов: токены пополняются с постоянной скоростью,
+ * накапливается не более capacity токенов (допустимый всплеск).
+ */
+class TokenBucket {
+
+	private final double tokensPerNano;
+	private final double capacity;
+
+	private double tokens;
+	private long lastRefillNanos;
+	private long pausedUntilNanos;
+
+	TokenBucket(int permitsPerSecond, int capacity) {
+		if (permitsPerSecond < 1) throw new IllegalArgumentException();
+		if (capacity < 1) throw new IllegalArgumentException();
+
+		this.tokensPerNano = permitsPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefillNanos = System.nanoTime();
+		this.pausedUntilNanos = lastRefillNanos;
+	}
+
+	/**
+	 * Ожидает появления токена и забирает его
+	 */
+	void acquire() throws InterruptedException {
+		while (true) {
+			long waitNanos = tryAcquire();
+			if (waitNanos <= 0) {
+				return;
+			}
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * @return 0 - токен получен, иначе - сколько наносекунд необходимо подождать
+	 */
+	synchronized long tryAcquire() {
+		long now = System.nanoTime();
+		if (now - pausedUntilNanos < 0) {
+			return pausedUntilNanos - now;
+		}
+
+		tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+		lastRefillNanos = now;
+
+		if (tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) ((1 - tokens) / tokensPerNano));
+	}
+
+	/**
+	 * Приостанавливает выдачу токенов (сервер сообщил о превышении лимита)
+	 */
+	synchronized void pause(long millis) {
+		long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+		if (until - pausedUntilNanos > 0) {
+			pausedUntilNanos = until;
+		}
+		tokens = 0;
+		lastRefillNanos = pausedUntilNanos;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.metrics;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import net.minidev.json.JSONObject;
+import org.apache.http.pool.PoolStats;
+import org.forome.annotation.data.anfisa.AnfisaConnector;
+import org.forome.annotation.data.gnomad.GnomadConnector;
+import org.forome.annotation.data.gnomad.GnomadConnectorImpl;
+import org.forome.annotation.data.gtf.GTFConnector;
+import org.forome.annotation.data.gtf.GTFConnectorImpl;
+import org.forome.annotation.data.query.QueryStatistics;
+import org.forome.annotation.processing.Processing;
+import org.forome.annotation.service.database.DatabaseConnectService;
+import org.forome.annotation.service.source.SourceService;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
+import org.forome.annotation.utils.BoundedThreadPoolExecutor;
+import org.forome.annotation.utils.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики работы аннотации: пропускная способность, очереди пулов, пулы соединений с БД,
+ * кеши и время выполнения запросов к источникам.
+ * Снимок строится по запросу (http) или периодически сохраняется в файл.
+ */
+public class MetricsService implements AutoCloseable {
+
+	private final static Logger log = LoggerFactory.getLogger(MetricsService.class);
+
+	private final Map<String, Supplier<Object>> sections;
+
+	private ScheduledExecutorService dumpExecutor;
+
+	public MetricsService() {
+		this.sections = new LinkedHashMap<>();
+	}
+
+	public synchronized MetricsService register(String name, Supplier<Object> section) {
+		sections.put(name, section);
+		return this;
+	}
+
+	/**
+	 * Стандартный набор метрик аннотации
+	 */
+	public MetricsService register(SourceService sourceService, DatabaseConnectService databaseConnectService, AnfisaConnector anfisaConnector) {
+		register("throughput", () -> buildThroughput(Processing.throughput));
+		register("executors", () -> buildExecutors(anfisaConnector.gnomadConnector, anfisaConnector.gtfConnector));
+		register("database", () -> buildDatabase(databaseConnectService));
+		register("http", MetricsService::buildHttp);
+		register("caches", sourceService.dataSource::getMetrics);
+		register("sources", () -> buildSources(anfisaConnector));
+		register("queries", MetricsService::buildQueries);
+		return this;
+	}
+
+	public JSONObject build() {
+		JSONObject out = new JSONObject();
+		out.put("time", Instant.now().toString());
+		out.put("statistics", Statistics.isEnabled());
+
+		Map<String, Supplier<Object>> items;
+		synchronized (this) {
+			items = new LinkedHashMap<>(sections);
+		}
+		for (Map.Entry<String, Supplier<Object>> entry : items.entrySet()) {
+			try {
+				out.put(entry.getKey(), entry.getValue().get());
+			} catch (Throwable e) {
+				log.error("Exception build metrics: " + entry.getKey(), e);
+				out.put(entry.getKey(), null);
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Периодическое сохранение метрик в файл (файл перезаписывается целиком)
+	 */
+	public synchronized void startDump(Path file, int intervalSeconds) {
+		if (intervalSeconds < 1) throw new IllegalArgumentException();
+		if (dumpExecutor != null) throw new IllegalStateException();
+
+		dumpExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "MetricsDump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumpExecutor.scheduleAtFixedRate(() -> {
+			try {
+				dump(file);
+			} catch (Throwable e) {
+				log.error("Exception dump metrics: " + file, e);
+			}
+		}, 0, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	public void dump(Path file) throws IOException {
+		Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(tmpFile, build().toJSONString().getBytes(StandardCharsets.UTF_8));
+		Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public synchronized void close() {
+		if (dumpExecutor != null) {
+			dumpExecutor.shutdownNow();
+			dumpExecutor = null;
+		}
+	}
+
+	public static JSONObject buildThroughput(Throughput throughput) {
+		JSONObject out = new JSONObject();
+		out.put("variants", throughput.getTotal());
+		out.put("variants_per_second", throughput.getRecentRate());
+		out.put("variants_per_second_average", throughput.getAverageRate());
+		out.put("in_flight", throughput.getInFlight());
+		return out;
+	}
+
+	private static JSONObject buildExecutors(GnomadConnector gnomadConnector, GTFConnector gtfConnector) {
+		JSONObject out = new JSONObject();
+		if (gnomadConnector instanceof GnomadConnectorImpl) {
+			out.put("gnomad", buildExecutor(((GnomadConnectorImpl) gnomadConnector).getExecutor()));
+		}
+		if (gtfConnector instanceof GTFConnectorImpl) {
+			out.put("gtf", buildExecutor(((GTFConnectorImpl) gtfConnector).getExecutor()));
+		}
+		return out;
+	}
+
+	public static JSONObject buildExecutor(ThreadPoolExecutor executor) {
+		JSONObject out = new JSONObject();
+		out.put("queue", executor.getQueue().size());
+		out.put("active", executor.getActiveCount());
+		out.put("pool_size", executor.getPoolSize());
+		out.put("max_pool_size", executor.getMaximumPoolSize());
+		out.put("completed", executor.getCompletedTaskCount());
+		if (executor instanceof BoundedThreadPoolExecutor) {
+			BoundedThreadPoolExecutor boundedExecutor = (BoundedThreadPoolExecutor) executor;
+			out.put("name", boundedExecutor.getName());
+			out.put("queue_capacity", boundedExecutor.getQueueCapacity());
+			out.put("queue_peak", boundedExecutor.getPeakQueue());
+			out.put("overflow", boundedExecutor.getOverflow().name().toLowerCase());
+			out.put("virtual", boundedExecutor.isVirtual());
+			out.put("rejected", boundedExecutor.getRejectedTasks());
+			out.put("caller_runs", boundedExecutor.getCallerRunsTasks());
+			out.put("task_time_average_ms", boundedExecutor.getAverageTaskMillis());
+			out.put("wait", boundedExecutor.statisticWait.getStat().toJSON());
+		}
+		return out;
+	}
+
+	private static JSONObject buildDatabase(DatabaseConnectService databaseConnectService) {
+		JSONObject out = new JSONObject();
+		for (Map.Entry<String, ComboPooledDataSource> entry : databaseConnectService.getDataSources().entrySet()) {
+			ComboPooledDataSource dataSource = entry.getValue();
+			JSONObject outDataSource = new JSONObject();
+			try {
+				outDataSource.put("connections", dataSource.getNumConnectionsDefaultUser());
+				outDataSource.put("busy", dataSource.getNumBusyConnectionsDefaultUser());
+				outDataSource.put("idle", dataSource.getNumIdleConnectionsDefaultUser());
+				outDataSource.put("awaiting_checkout", dataSource.getNumThreadsAwaitingCheckoutDefaultUser());
+				outDataSource.put("max", dataSource.getMaxPoolSize());
+			} catch (SQLException e) {
+				log.error("Exception read pool statistics", e);
+			}
+			out.put(entry.getKey(), outDataSource);
+		}
+		return out;
+	}
+
+	private static JSONObject buildHttp() {
+		JSONObject out = new JSONObject();
+		for (HttpClientPool httpClientPool : HttpClientPool.getPools()) {
+			PoolStats stats = httpClientPool.getStats();
+			JSONObject outPool = new JSONObject();
+			outPool.put("leased", stats.getLeased());
+			outPool.put("pending", stats.getPending());
+			outPool.put("available", stats.getAvailable());
+			outPool.put("max", stats.getMax());
+			out.put(httpClientPool.httpHost.toHostString(), outPool);
+		}
+		return out;
+	}
+
+	private static JSONObject buildQueries() {
+		JSONObject out = new JSONObject();
+		for (Map.Entry<String, QueryStatistics> entry : QueryStatistics.getQueries().entrySet()) {
+			out.put(entry.getKey(), entry.getValue().toJSON());
+		}
+		return out;
+	}
+
+	private static JSONObject buildSources(AnfisaConnector anfisaConnector) {
+		JSONObject out = new JSONObject();
+		out.put("gtf", anfisaConnector.gtfAnfisaBuilder.statisticGtfs.getStat().toJSON());
+		if (anfisaConnector.gtfConnector instanceof GTFConnectorImpl) {
+			out.put("gtf_cds", ((GTFConnectorImpl) anfisaConnector.gtfConnector).statisticCds.getStat().toJSON());
+		}
+		out.put("clinvar_submitters", anfisaConnector.clinvarConnector.getStatisticClinvarSubmitters().getStat().toJSON());
+		out.put("clinvar_data", anfisaConnector.clinvarConnector.getStatisticClinvarData().getStat().toJSON());
+		out.put("clinvar_expanded_data", anfisaConnector.clinvarConnector.getStatisticClinvarExpandedData().getStat().toJSON());
+		out.put("clinvar_variant_summary", anfisaConnector.clinvarConnector.getStatisticClinvarVariantSummary().getStat().toJSON());
+		out.put("gtex", anfisaConnector.gtexConnector.getStatistics().getStat().toJSON());
+		out.put("pharmgkb_notes", anfisaConnector.pharmGKBConnector.getStatisticNotes().getStat().toJSON());
+		out.put("pharmgkb_pmids", anfisaConnector.pharmGKBConnector.getStatisticPmids().getStat().toJSON());
+		out.put("pharmgkb_diseases", anfisaConnector.pharmGKBConnector.getStatisticDiseases().getStat().toJSON());
+		out.put("pharmgkb_chemicals", anfisaConnector.pharmGKBConnector.getStatisticChemicals().getStat().toJSON());
+		return out;
+	}
+}
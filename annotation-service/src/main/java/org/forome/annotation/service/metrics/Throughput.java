@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Пропускная способность обработки: общее кол-во, средняя скорость и скорость за последнюю минуту,
+ * кол-во записей в обработке (in-flight).
+ * Скорость за последнюю минуту считается (приблизительно) по кольцу посекундных счетчиков,
+ * секунда и счетчик хранятся в одном long (секунда - старшие 32 бита), поэтому смена секунды
+ * в ячейке не теряет одновременные инкременты.
+ */
+public class Throughput {
+
+	private static final int WINDOW_SECONDS = 60;
+
+	private final LongSupplier nanoTime;
+	private final long startNanos;
+
+	private final LongAdder total;
+	private final AtomicInteger inFlight;
+
+	private final AtomicLongArray buckets;
+
+	public Throughput() {
+		this(System::nanoTime);
+	}
+
+	Throughput(LongSupplier nanoTime) {
+		this.nanoTime = nanoTime;
+		this.startNanos = nanoTime.getAsLong();
+		this.total = new LongAdder();
+		this.inFlight = new AtomicInteger();
+		this.buckets = new AtomicLongArray(WINDOW_SECONDS);
+	}
+
+	public void start() {
+		inFlight.incrementAndGet();
+	}
+
+	public void complete() {
+		inFlight.decrementAndGet();
+		total.increment();
+
+		long second = currentSecond();
+		int index = (int) (second % WINDOW_SECONDS);
+		while (true) {
+			long bucket = buckets.get(index);
+			long next = (bucket >>> 32 == second) ? bucket + 1 : (second << 32) | 1;
+			if (buckets.compareAndSet(index, bucket, next)) {
+				break;
+			}
+		}
+	}
+
+	public long getTotal() {
+		return total.sum();
+	}
+
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * Средняя скорость (в секунду) с момента старта
+	 */
+	public double getAverageRate() {
+		double elapsed = (nanoTime.getAsLong() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+		return (elapsed <= 0) ? 0 : total.sum() / elapsed;
+	}
+
+	/**
+	 * Скорость (в секунду) за последнюю минуту, текущая (неполная) секунда не учитывается
+	 */
+	public double getRecentRate() {
+		long second = currentSecond();
+		long sum = 0;
+		for (int i = 0; i < WINDOW_SECONDS; i++) {
+			long bucket = buckets.get(i);
+			long bucketSecond = bucket >>> 32;
+			if (bucketSecond < second && bucketSecond >= second - WINDOW_SECONDS) {
+				sum += bucket & 0xFFFFFFFFL;
+			}
+		}
+		long window = Math.min(WINDOW_SECONDS, Math.max(1, second - 1));
+		return sum / (double) window;
+	}
+
+	private long currentSecond() {
+		return TimeUnit.NANOSECONDS.toSeconds(nanoTime.getAsLong() - startNanos) + 1;
+	}
+}
@@ -23,27 +23,37 @@ import org.forome.annotation.config.source.SourceConfig;
 import org.forome.annotation.service.source.external.ExternalDataSource;
 import org.forome.annotation.service.source.internal.InternalDataSource;
 import org.forome.annotation.service.source.wrapper.WrapperDataSource;
+import org.forome.astorage.core.liftover.LiftoverConnector;
+
+import java.io.IOException;
 
 public class SourceService {
 
+	public final LiftoverConnector liftoverConnector;
+
 	public final WrapperDataSource dataSource;
 
 	public SourceService(SourceConfig config) {
+		try {
+			liftoverConnector = new LiftoverConnector();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
 
 		DataSource ds;
 		if (config.sourceInternalConfig != null) {
 			try {
-				ds = new InternalDataSource(config.sourceInternalConfig);
+				ds = new InternalDataSource(config.sourceInternalConfig, liftoverConnector);
 			} catch (DatabaseException e) {
 				throw new RuntimeException(e);
 			}
 		} else if (config.sourceExternalConfig != null) {
-			ds = new ExternalDataSource(config.sourceExternalConfig);
+			ds = new ExternalDataSource(config.sourceExternalConfig, liftoverConnector);
 		} else {
 			throw new RuntimeException();
 		}
 
-		dataSource = new WrapperDataSource(ds);
+		dataSource = new WrapperDataSource(ds, config.sourceCacheConfig);
 	}
 
 }
@@ -29,8 +29,9 @@ import org.forome.annotation.service.ssh.struct.SSHConnect;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
 
-import java.io.IOException;
 import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class ExternalDataSource implements DataSource {
 
@@ -40,20 +41,23 @@ public class ExternalDataSource implements DataSource {
 
 	public final LiftoverConnector liftoverConnector;
 
-	public ExternalDataSource(SourceExternalConfig sourceHttpConfig) {
+	private final Map<Assembly, ExternalSource> sources;
+
+	public ExternalDataSource(SourceExternalConfig sourceHttpConfig, LiftoverConnector liftoverConnector) {
 		this.url = buildUrl(sourceHttpConfig);
-		this.httpRequest = new HttpRequest(url);
+		this.httpRequest = new HttpRequest(url, sourceHttpConfig.maxConnectionsPerRoute);
+
+		this.liftoverConnector = liftoverConnector;
 
-		try {
-			this.liftoverConnector = new LiftoverConnector();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		this.sources = new EnumMap<>(Assembly.class);
+		for (Assembly assembly : Assembly.values()) {
+			sources.put(assembly, new ExternalSource(this, assembly));
 		}
 	}
 
 	@Override
-	public Source getSource(Assembly assembly) {
-		return new ExternalSource(this, assembly);
+	public ExternalSource getSource(Assembly assembly) {
+		return sources.get(assembly);
 	}
 
 	private final URL buildUrl(SourceExternalConfig sourceHttpConfig) {
@@ -23,18 +23,13 @@ import com.google.common.cache.CacheBuilder;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
-import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.util.EntityUtils;
 import org.forome.annotation.exception.ExceptionBuilder;
+import org.forome.annotation.service.source.external.httprequest.HttpClientPool;
 import org.forome.annotation.utils.Statistics;
 import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Interval;
@@ -42,7 +37,6 @@ import org.forome.core.struct.sequence.Sequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
 import java.util.Optional;
@@ -60,8 +54,7 @@ public class FastaHttpRequest {
 	private final URL url;
 
 	private final RequestConfig requestConfig;
-	private final PoolingNHttpClientConnectionManager connectionManager;
-	private final HttpHost httpHost;
+	private final HttpClientPool httpClientPool;
 
 	private final Cache cache;
 
@@ -69,7 +62,7 @@ public class FastaHttpRequest {
 
 	public FastaHttpRequest(
 			URL url
-	) throws IOReactorException {
+	) {
 		this.url = url;
 
 		requestConfig = RequestConfig.custom()
@@ -78,11 +71,7 @@ public class FastaHttpRequest {
 				.setConnectionRequestTimeout(10 * 60 * 1000)//Таймаут на ответ
 				.build();
 
-		connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
-		connectionManager.setMaxTotal(100);
-		connectionManager.setDefaultMaxPerRoute(100);
-
-		httpHost = new HttpHost(url.getHost(), url.getPort(), "http");
+		httpClientPool = HttpClientPool.get(url);
 
 		this.cache = CacheBuilder.newBuilder()
 				.maximumSize(1000)
@@ -97,7 +86,7 @@ public class FastaHttpRequest {
 				interval.start, interval.end
 		);
 
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 		String value;
 		try {
 			value = ((Optional<String>) cache.get(key, () -> {
@@ -113,7 +102,7 @@ public class FastaHttpRequest {
 		} catch (ExecutionException e) {
 			throw new RuntimeException(e);
 		} finally {
-			statistics.addTime(System.currentTimeMillis() - t1);
+			statistics.addTimeNanos(System.nanoTime() - t1);
 		}
 
 		if (value == null) {
@@ -126,14 +115,9 @@ public class FastaHttpRequest {
 	private JSONObject request(String url) {
 		CompletableFuture<JSONObject> future = new CompletableFuture<>();
 		try {
-			CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom()
-					.setDefaultRequestConfig(requestConfig)
-					.build();
-			httpclient.start();
-
 			HttpPost httpPostRequest = new HttpPost(new URI(url));
 
-			httpclient.execute(httpHost, httpPostRequest, new FutureCallback<HttpResponse>() {
+			httpClientPool.execute(httpPostRequest, requestConfig, new FutureCallback<HttpResponse>() {
 				@Override
 				public void completed(HttpResponse response) {
 					try {
@@ -157,36 +141,20 @@ public class FastaHttpRequest {
 					} catch (Throwable ex) {
 						future.completeExceptionally(ex);
 					}
-
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void failed(Exception ex) {
 					future.completeExceptionally(ex);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void cancelled() {
 					future.cancel(true);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 			});
 		} catch (Throwable t) {
-			log.error("Exception close connect", t);
+			log.error("Exception execute request", t);
 			future.completeExceptionally(t);
 		}
 
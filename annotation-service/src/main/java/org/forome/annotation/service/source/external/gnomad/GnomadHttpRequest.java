@@ -20,12 +20,19 @@ package org.forome.annotation.service.source.external.gnomad;
 
 import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
+import org.forome.annotation.service.source.external.httprequest.CollectHttpRequest;
 import org.forome.annotation.service.source.external.httprequest.HttpRequest;
 import org.forome.annotation.service.source.external.source.ExternalSource;
 import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
+import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
 /**
  * curl "localhost:8290/get?array=hg19&loc=18:67760501"
  * {"chrom": "chr18", "array": "hg19", "pos": 67760501, "Gerp": {"GerpN": 2.45, "GerpRS": -1.87}, "gnomAD": [{"ALT": "C", "REF": "A", "SOURCE": "g", "AC": 2, "AN": 31248, "AF": 6.4e-05, "nhomalt": 0, "faf95": 1.06e-05, "faf99": 1.096e-05, "male": {"AC": 1, "AN": 17400, "AF": 5.747e-05}, "female": {"AC": 1, "AN": 13848, "AF": 7.221e-05}, "afr": {"AC": 2, "AN": 8692, "AF": 0.0002301}, "amr": {"AC": 0, "AN": 842, "AF": 0}, "asj": {"AC": 0, "AN": 290, "AF": 0}, "eas": {"AC": 0, "AN": 1560, "AF": 0}, "fin": {"AC": 0, "AN": 3408, "AF": 0}, "nfe": {"AC": 0, "AN": 15380, "AF": 0}, "oth": {"AC": 0, "AN": 1076, "AF": 0}, "raw": {"AC": 2, "AN": 31416, "AF": 6.366e-05}, "hem": null}]}
@@ -34,6 +41,7 @@ public class GnomadHttpRequest {
 
 	private final ExternalSource httpSource;
 	private final HttpRequest httpRequest;
+	private final CollectHttpRequest collectHttpRequest;
 
 	private final Assembly assembly;
 	private final LiftoverConnector liftoverConnector;
@@ -41,6 +49,7 @@ public class GnomadHttpRequest {
 	public GnomadHttpRequest(ExternalSource httpSource) {
 		this.httpSource = httpSource;
 		this.httpRequest = httpSource.httpDataSource.httpRequest;
+		this.collectHttpRequest = new CollectHttpRequest(httpRequest);
 		this.assembly = httpSource.assembly;
 		this.liftoverConnector = httpSource.httpDataSource.liftoverConnector;
 	}
@@ -57,4 +66,25 @@ public class GnomadHttpRequest {
 		JSONArray jRecords = (JSONArray) response.get("gnomAD");
 		return jRecords;
 	}
+
+	/**
+	 * Позиции, которые не удалось перевести в hg19, получают пустой (null) результат - как и в одиночном запросе
+	 */
+	public List<JSONArray> get(List<Position> positions) throws URISyntaxException {
+		Position[] liftover = new Position[positions.size()];
+		List<Interval> intervals19 = new ArrayList<>(positions.size());
+		for (int i = 0; i < liftover.length; i++) {
+			liftover[i] = liftoverConnector.toHG37(assembly, positions.get(i));
+			if (liftover[i] != null) {
+				intervals19.add(Interval.of(liftover[i]));
+			}
+		}
+		Iterator<JSONArray> values = collectHttpRequest.collect(Assembly.GRCh37, "gnomAD", intervals19).iterator();
+
+		List<JSONArray> result = new ArrayList<>(liftover.length);
+		for (Position position19 : liftover) {
+			result.add((position19 != null) ? values.next() : null);
+		}
+		return result;
+	}
 }
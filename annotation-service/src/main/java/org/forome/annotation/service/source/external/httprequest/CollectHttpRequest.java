@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.external.httprequest;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.forome.core.struct.Assembly;
+import org.forome.core.struct.Interval;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетный запрос к /collect: в одном запросе передается сразу несколько интервалов,
+ * ответ содержит по записи на каждый интервал в порядке запроса
+ *
+ * curl -d '{"variants":[{"chrom":"chr1","pos":16044572},{"chrom":"chr1","pos":16044580}], "fasta":"hg38", "arrays":["dbNSFP"]}' -H "Content-Type: application/json" -X POST "localhost:8290/collect"
+ */
+public class CollectHttpRequest {
+
+	public static final int BATCH_SIZE = 200;
+
+	private final HttpRequest httpRequest;
+
+	public CollectHttpRequest(HttpRequest httpRequest) {
+		this.httpRequest = httpRequest;
+	}
+
+	public List<JSONArray> collect(Assembly assembly, String array, List<Interval> intervals) throws URISyntaxException {
+		List<JSONArray> result = new ArrayList<>(intervals.size());
+		for (int from = 0; from < intervals.size(); from += BATCH_SIZE) {
+			List<Interval> batch = intervals.subList(from, Math.min(from + BATCH_SIZE, intervals.size()));
+
+			JSONArray jRecords = httpRequest.requestArray(buildRequest(assembly, array, batch));
+			if (jRecords.size() != batch.size()) {
+				throw new RuntimeException("Exception collect response, expected: " + batch.size() + ", actual: " + jRecords.size());
+			}
+			for (Object jRecord : jRecords) {
+				result.add((JSONArray) ((JSONObject) jRecord).get(array));
+			}
+		}
+		return result;
+	}
+
+	private HttpPost buildRequest(Assembly assembly, String array, List<Interval> intervals) throws URISyntaxException {
+		JSONObject params = new JSONObject();
+		JSONArray jVariants = new JSONArray();
+		for (Interval interval : intervals) {
+			JSONObject jVariant = new JSONObject();
+			jVariant.put("chrom", interval.chromosome.getChromosome());
+			jVariant.put("pos", interval.start);
+			jVariant.put("last", (interval.start < interval.end) ? interval.end : interval.start);
+			jVariants.add(jVariant);
+		}
+		params.put("variants", jVariants);
+		if (assembly == Assembly.GRCh37) {
+			params.put("fasta", "hg19");
+		} else if (assembly == Assembly.GRCh38) {
+			params.put("fasta", "hg38");
+		} else {
+			throw new RuntimeException("Unknown assembly: " + assembly);
+		}
+		JSONArray jArrays = new JSONArray();
+		jArrays.add(array);
+		params.put("arrays", jArrays);
+
+		URI uri = new URI(String.format("http://%s:%s/collect", httpRequest.url.getHost(), httpRequest.url.getPort()));
+		HttpPost httpPostRequest = new HttpPost(uri);
+		httpPostRequest.setEntity(new StringEntity(params.toJSONString(), ContentType.APPLICATION_JSON));
+		return httpPostRequest;
+	}
+}
@@ -0,0 +1,148 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.external.httprequest;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+/**
+ * Общий асинхронный http-клиент для всех запросов к одному хосту.
+ * Клиент (и его io-reactor) создается один раз, соединения переиспользуются (keep-alive) из пула.
+ */
+public class HttpClientPool implements Closeable {
+
+	private final static Logger log = LoggerFactory.getLogger(HttpClientPool.class);
+
+	public static final int DEFAULT_MAX_PER_ROUTE = 100;
+
+	private static final ConcurrentMap<HttpHost, HttpClientPool> pools = new ConcurrentHashMap<>();
+
+	public final HttpHost httpHost;
+
+	private final PoolingNHttpClientConnectionManager connectionManager;
+	private final CloseableHttpAsyncClient httpClient;
+
+	private HttpClientPool(HttpHost httpHost, int maxPerRoute) throws IOReactorException {
+		this.httpHost = httpHost;
+
+		connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
+		connectionManager.setMaxTotal(maxPerRoute);
+		connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+
+		httpClient = HttpAsyncClients.custom()
+				.setConnectionManager(connectionManager)
+				.build();
+		httpClient.start();
+	}
+
+	/**
+	 * Хост (вместе со схемой - http или https) берется из адреса источника
+	 */
+	public static HttpClientPool get(URL url) {
+		return get(url, DEFAULT_MAX_PER_ROUTE);
+	}
+
+	public static HttpClientPool get(URL url, int maxPerRoute) {
+		return get(new HttpHost(url.getHost(), url.getPort(), url.getProtocol()), maxPerRoute);
+	}
+
+	public static HttpClientPool get(HttpHost httpHost) {
+		return get(httpHost, DEFAULT_MAX_PER_ROUTE);
+	}
+
+	/**
+	 * Если клиент для хоста уже создан, то размер его пула увеличивается до maxPerRoute (но не уменьшается)
+	 */
+	public static HttpClientPool get(HttpHost httpHost, int maxPerRoute) {
+		if (maxPerRoute < 1) throw new IllegalArgumentException();
+
+		HttpClientPool pool = pools.computeIfAbsent(httpHost, host -> {
+			try {
+				log.debug("Create http client pool: {}, max per route: {}", host, maxPerRoute);
+				return new HttpClientPool(host, maxPerRoute);
+			} catch (IOReactorException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		pool.ensureMaxPerRoute(maxPerRoute);
+		return pool;
+	}
+
+	public static List<HttpClientPool> getPools() {
+		return new ArrayList<>(pools.values());
+	}
+
+	private synchronized void ensureMaxPerRoute(int maxPerRoute) {
+		if (connectionManager.getDefaultMaxPerRoute() < maxPerRoute) {
+			connectionManager.setMaxTotal(maxPerRoute);
+			connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+		}
+	}
+
+	public Future<HttpResponse> execute(HttpRequestBase request, RequestConfig requestConfig, FutureCallback<HttpResponse> callback) {
+		request.setConfig(requestConfig);
+		return httpClient.execute(httpHost, request, callback);
+	}
+
+	/**
+	 * Утилизация пула: leased - занятые соединения, pending - запросы в ожидании соединения,
+	 * available - свободные keep-alive соединения
+	 */
+	public PoolStats getStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	@Override
+	public String toString() {
+		PoolStats stats = getStats();
+		return "HttpClientPool(" +
+				"host: " + httpHost.toHostString() +
+				", leased: " + stats.getLeased() +
+				", pending: " + stats.getPending() +
+				", available: " + stats.getAvailable() +
+				", max: " + stats.getMax() +
+				')';
+	}
+
+	@Override
+	public void close() throws IOException {
+		pools.remove(httpHost, this);
+		httpClient.close();
+	}
+}
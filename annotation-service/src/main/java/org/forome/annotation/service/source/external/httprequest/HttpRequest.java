@@ -22,22 +22,15 @@ import net.minidev.json.JSONArray;
 import net.minidev.json.JSONObject;
 import net.minidev.json.parser.JSONParser;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.concurrent.FutureCallback;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
-import org.apache.http.impl.nio.client.HttpAsyncClients;
-import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
-import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
-import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.util.EntityUtils;
 import org.forome.annotation.exception.ExceptionBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -51,10 +44,13 @@ public class HttpRequest {
 	public final URL url;
 
 	private final RequestConfig requestConfig;
-	private final PoolingNHttpClientConnectionManager connectionManager;
-	private final HttpHost httpHost;
+	private final HttpClientPool httpClientPool;
 
 	public HttpRequest(URL url) {
+		this(url, HttpClientPool.DEFAULT_MAX_PER_ROUTE);
+	}
+
+	public HttpRequest(URL url, int maxPerRoute) {
 		this.url = url;
 
 		requestConfig = RequestConfig.custom()
@@ -63,15 +59,7 @@ public class HttpRequest {
 				.setConnectionRequestTimeout(10 * 60 * 1000)//Таймаут на ответ
 				.build();
 
-		try {
-			connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor());
-			connectionManager.setMaxTotal(100);
-			connectionManager.setDefaultMaxPerRoute(100);
-		} catch (IOReactorException e) {
-			throw new RuntimeException(e);
-		}
-
-		httpHost = new HttpHost(url.getHost(), url.getPort(), "http");
+		httpClientPool = HttpClientPool.get(url, maxPerRoute);
 	}
 
 	public JSONObject request(String url) {
@@ -84,16 +72,34 @@ public class HttpRequest {
 	}
 
 	public JSONObject request(HttpPost httpPostRequest) {
-		CompletableFuture<JSONObject> future = new CompletableFuture<>();
-		try {
-			CloseableHttpAsyncClient httpclient = HttpAsyncClients.custom()
-					.setDefaultRequestConfig(requestConfig)
-					.build();
-			httpclient.start();
+		Object rawResponse = execute(httpPostRequest);
+		if (rawResponse instanceof JSONArray) {
+			return (JSONObject) ((JSONArray) rawResponse).get(0);
+		} else {
+			return (JSONObject) rawResponse;
+		}
+	}
+
+	/**
+	 * Запрос, ответ на который содержит по записи на каждый элемент запроса (например, /collect с несколькими variants)
+	 */
+	public JSONArray requestArray(HttpPost httpPostRequest) {
+		Object rawResponse = execute(httpPostRequest);
+		if (rawResponse instanceof JSONArray) {
+			return (JSONArray) rawResponse;
+		} else {
+			JSONArray jResponse = new JSONArray();
+			jResponse.add(rawResponse);
+			return jResponse;
+		}
+	}
 
+	private Object execute(HttpPost httpPostRequest) {
+		CompletableFuture<Object> future = new CompletableFuture<>();
+		try {
 			URI uri = httpPostRequest.getURI();
 
-			httpclient.execute(httpHost, httpPostRequest, new FutureCallback<HttpResponse>() {
+			httpClientPool.execute(httpPostRequest, requestConfig, new FutureCallback<HttpResponse>() {
 				@Override
 				public void completed(HttpResponse response) {
 					try {
@@ -106,11 +112,8 @@ public class HttpRequest {
 						} catch (Exception e) {
 							throw ExceptionBuilder.buildExternalServiceException(new RuntimeException("Exception parse response external service, response: " + entityBody));
 						}
-						if (rawResponse instanceof JSONArray) {
-							JSONObject jResponse = (JSONObject) ((JSONArray) rawResponse).get(0);
-							future.complete(jResponse);
-						} else if (rawResponse instanceof JSONObject) {
-							future.complete((JSONObject)rawResponse);
+						if (rawResponse instanceof JSONArray || rawResponse instanceof JSONObject) {
+							future.complete(rawResponse);
 						} else {
 							throw ExceptionBuilder.buildExternalServiceException(
 									new RuntimeException("Exception external service(AStorage), request: " + uri
@@ -121,36 +124,20 @@ public class HttpRequest {
 					} catch (Throwable ex) {
 						future.completeExceptionally(ex);
 					}
-
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void failed(Exception ex) {
 					future.completeExceptionally(ex);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 
 				@Override
 				public void cancelled() {
 					future.cancel(true);
-					try {
-						httpclient.close();
-					} catch (IOException ignore) {
-						log.error("Exception close connect");
-					}
 				}
 			});
 		} catch (Throwable t) {
-			log.error("Exception close connect", t);
+			log.error("Exception execute request", t);
 			future.completeExceptionally(t);
 		}
 
@@ -19,7 +19,6 @@
 package org.forome.annotation.service.source.external.source;
 
 import net.minidev.json.JSONArray;
-import org.apache.http.nio.reactor.IOReactorException;
 import org.forome.annotation.service.source.external.ExternalDataSource;
 import org.forome.annotation.service.source.external.conservation.ConservationHttpRequest;
 import org.forome.annotation.service.source.external.dbNSFP.DbNSFPHttpRequest;
@@ -36,15 +35,30 @@ import org.forome.core.struct.Position;
 import org.forome.core.struct.sequence.Sequence;
 
 import java.net.URISyntaxException;
+import java.util.List;
 
 public class ExternalSource implements Source {
 
 	public final ExternalDataSource httpDataSource;
 	public final Assembly assembly;
 
+	private final FastaHttpRequest fastaHttpRequest;
+	private final GnomadHttpRequest gnomadHttpRequest;
+	private final DbSNPHttpRequest dbSNPHttpRequest;
+	private final DbNSFPHttpRequest dbNSFPHttpRequest;
+	private final SpliceAIHttpRequest spliceAIHttpRequest;
+	private final ConservationHttpRequest conservationHttpRequest;
+
 	public ExternalSource(ExternalDataSource httpDataSource, Assembly assembly) {
 		this.httpDataSource = httpDataSource;
 		this.assembly = assembly;
+
+		this.fastaHttpRequest = new FastaHttpRequest(httpDataSource.url);
+		this.gnomadHttpRequest = new GnomadHttpRequest(this);
+		this.dbSNPHttpRequest = new DbSNPHttpRequest(this);
+		this.dbNSFPHttpRequest = new DbNSFPHttpRequest(this);
+		this.spliceAIHttpRequest = new SpliceAIHttpRequest(this);
+		this.conservationHttpRequest = new ConservationHttpRequest(this);
 	}
 
 	@Override
@@ -54,24 +68,17 @@ public class ExternalSource implements Source {
 
 	@Override
 	public Sequence getFastaSequence(Interval interval) {
-		try {
-			FastaHttpRequest fastaSourcePython = new FastaHttpRequest(httpDataSource.url);
-			return fastaSourcePython.getSequence(assembly, interval);
-		} catch (IOReactorException e) {
-			throw new RuntimeException(e);
-		}
+		return fastaHttpRequest.getSequence(assembly, interval);
 	}
 
 	@Override
 	public JSONArray getGnomad(Position position) {
-		GnomadHttpRequest gnomadHttpRequest = new GnomadHttpRequest(this);
 		return gnomadHttpRequest.get(position);
 	}
 
 	@Override
 	public JSONArray getDbSNP(Interval interval) {
 		try {
-			DbSNPHttpRequest dbSNPHttpRequest = new DbSNPHttpRequest(this);
 			return dbSNPHttpRequest.get(interval);
 		} catch (URISyntaxException e) {
 			throw new RuntimeException(e);
@@ -81,7 +88,6 @@ public class ExternalSource implements Source {
 	@Override
 	public JSONArray getDbNSFP(Interval interval) {
 		try {
-			DbNSFPHttpRequest dbNSFPHttpRequest = new DbNSFPHttpRequest(this);
 			return dbNSFPHttpRequest.get(interval);
 		} catch (URISyntaxException e) {
 			throw new RuntimeException(e);
@@ -91,16 +97,50 @@ public class ExternalSource implements Source {
 	@Override
 	public JSONArray getSpliceAI(Interval interval) {
 		try {
-			SpliceAIHttpRequest spliceAIHttpRequest = new SpliceAIHttpRequest(this);
 			return spliceAIHttpRequest.get(interval);
 		} catch (URISyntaxException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	@Override
+	public List<JSONArray> getGnomad(List<Position> positions) {
+		try {
+			return gnomadHttpRequest.get(positions);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public List<JSONArray> getDbSNP(List<Interval> intervals) {
+		try {
+			return dbSNPHttpRequest.get(intervals);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public List<JSONArray> getDbNSFP(List<Interval> intervals) {
+		try {
+			return dbNSFPHttpRequest.get(intervals);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public List<JSONArray> getSpliceAI(List<Interval> intervals) {
+		try {
+			return spliceAIHttpRequest.get(intervals);
+		} catch (URISyntaxException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public Conservation getConservation(Position position) {
-		ConservationHttpRequest conservationHttpRequest = new ConservationHttpRequest(this);
 		return conservationHttpRequest.getConservation(position);
 	}
 }
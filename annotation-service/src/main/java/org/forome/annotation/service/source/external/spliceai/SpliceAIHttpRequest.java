@@ -23,6 +23,7 @@ import net.minidev.json.JSONObject;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.forome.annotation.service.source.external.httprequest.CollectHttpRequest;
 import org.forome.annotation.service.source.external.httprequest.HttpRequest;
 import org.forome.annotation.service.source.external.source.ExternalSource;
 import org.forome.astorage.core.liftover.LiftoverConnector;
@@ -31,6 +32,7 @@ import org.forome.core.struct.Interval;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
 
 /**
  * curl -d '{"variants":[{"chrom":"chr1","pos":16044572}], "fasta":"hg38", "arrays":["SpliceAI"]}' -H "Content-Type: application/json" -X POST "localhost:8290/collect"
@@ -39,6 +41,7 @@ public class SpliceAIHttpRequest {
 
 	private final ExternalSource httpSource;
 	private final HttpRequest httpRequest;
+	private final CollectHttpRequest collectHttpRequest;
 
 	private final Assembly assembly;
 	private final LiftoverConnector liftoverConnector;
@@ -46,6 +49,7 @@ public class SpliceAIHttpRequest {
 	public SpliceAIHttpRequest(ExternalSource httpSource) {
 		this.httpSource = httpSource;
 		this.httpRequest = httpSource.httpDataSource.httpRequest;
+		this.collectHttpRequest = new CollectHttpRequest(httpRequest);
 		this.assembly = httpSource.assembly;
 		this.liftoverConnector = httpSource.httpDataSource.liftoverConnector;
 	}
@@ -78,4 +82,8 @@ public class SpliceAIHttpRequest {
 		JSONArray jRecords = (JSONArray) response.get("SpliceAI");
 		return jRecords;
 	}
+
+	public List<JSONArray> get(List<Interval> intervals) throws URISyntaxException {
+		return collectHttpRequest.collect(assembly, "SpliceAI", intervals);
+	}
 }
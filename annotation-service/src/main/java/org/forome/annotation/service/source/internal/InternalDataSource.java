@@ -22,19 +22,25 @@ import com.infomaximum.database.exception.DatabaseException;
 import org.forome.annotation.config.source.SourceInternalConfig;
 import org.forome.annotation.service.source.DataSource;
 import org.forome.annotation.service.source.external.ExternalDataSource;
-import org.forome.annotation.service.source.external.source.ExternalSource;
+import org.forome.annotation.service.source.internal.fasta.FastaSourceIndexed;
 import org.forome.annotation.service.source.internal.source.InternalSource;
 import org.forome.annotation.service.source.struct.Source;
 import org.forome.astorage.AStorage;
+import org.forome.astorage.core.liftover.LiftoverConnector;
 import org.forome.core.struct.Assembly;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 public class InternalDataSource implements DataSource {
 
 	private final AStorage aStorage;
 
 	private final ExternalDataSource httpDataSource;
 
-	public InternalDataSource(SourceInternalConfig config) throws DatabaseException {
+	private final Map<Assembly, InternalSource> sources;
+
+	public InternalDataSource(SourceInternalConfig config, LiftoverConnector liftoverConnector) throws DatabaseException {
 		AStorage.Builder builder = new AStorage.Builder();
 		if (config.hg37 != null) {
 			builder.withSource(Assembly.GRCh37, config.hg37);
@@ -47,7 +53,19 @@ public class InternalDataSource implements DataSource {
 		}
 		aStorage = builder.build();
 
-		httpDataSource = new ExternalDataSource(config.sourceExternalConfig);
+		httpDataSource = new ExternalDataSource(config.sourceExternalConfig, liftoverConnector);
+
+		sources = new EnumMap<>(Assembly.class);
+		sources.put(Assembly.GRCh37, new InternalSource(
+				Assembly.GRCh37, aStorage.getPaStorage(), aStorage.sourceDatabase37,
+				httpDataSource.getSource(Assembly.GRCh37), httpDataSource.liftoverConnector,
+				(config.fastaHg37 != null) ? new FastaSourceIndexed(config.fastaHg37) : null
+		));
+		sources.put(Assembly.GRCh38, new InternalSource(
+				Assembly.GRCh38, aStorage.getPaStorage(), aStorage.sourceDatabase38,
+				httpDataSource.getSource(Assembly.GRCh38), httpDataSource.liftoverConnector,
+				(config.fastaHg38 != null) ? new FastaSourceIndexed(config.fastaHg38) : null
+		));
 	}
 
 	public AStorage getAStorage() {
@@ -56,14 +74,11 @@ public class InternalDataSource implements DataSource {
 
 	@Override
 	public Source getSource(Assembly assembly) {
-		switch (assembly) {
-			case GRCh37:
-				return new InternalSource(assembly, aStorage.getPaStorage(), aStorage.sourceDatabase37, (ExternalSource)httpDataSource.getSource(assembly));
-			case GRCh38:
-				return new InternalSource(assembly, aStorage.getPaStorage(), aStorage.sourceDatabase38, (ExternalSource)httpDataSource.getSource(assembly));
-			default:
-				throw new RuntimeException();
+		InternalSource source = sources.get(assembly);
+		if (source == null) {
+			throw new RuntimeException();
 		}
+		return source;
 	}
 
 
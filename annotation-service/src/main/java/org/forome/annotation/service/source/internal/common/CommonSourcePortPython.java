@@ -25,6 +25,11 @@ import org.forome.core.struct.Assembly;
 import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 public class CommonSourcePortPython {
 
 	private final PAStorage paStorage;
@@ -42,4 +47,26 @@ public class CommonSourcePortPython {
 		);
 		return jRecords;
 	}
+
+	/**
+	 * Интервалы должны быть отсортированы: соседние позиции читаются из одного блока.
+	 * PAStorage читает только по одной позиции, поэтому пакет - это последовательное чтение,
+	 * в котором повторяющиеся позиции (аллели одной записи vcf-файла) читаются один раз
+	 */
+	public List<JSONArray> get(String schemaName, Assembly assembly, List<Interval> intervals) {
+		SchemaCommon schemaCommon = (SchemaCommon) paStorage.getSchema(schemaName);
+
+		Map<String, JSONArray> records = new HashMap<>();
+		List<JSONArray> result = new ArrayList<>(intervals.size());
+		for (Interval interval : intervals) {
+			result.add(records.computeIfAbsent(
+					interval.chromosome.getChar() + ":" + interval.start,
+					key -> schemaCommon.blocker.getRecord(
+							assembly,
+							new Position(interval.chromosome, interval.start)
+					)
+			));
+		}
+		return result;
+	}
 }
@@ -0,0 +1,234 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.internal.fasta;
+
+import htsjdk.samtools.reference.ReferenceSequence;
+import htsjdk.samtools.reference.ReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
+import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
+import org.forome.core.struct.sequence.Sequence;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Референсная последовательность из локального индексированного fasta (plain или bgzip) файла.
+ * Интервал читается одним запросом по индексу (.fai, для bgzip - еще и .gzi), без обращения к каждому нуклеотиду.
+ * Plain-файл читается позиционным чтением (FileChannel.read(buffer, position)) без общей блокировки,
+ * для bgzip-файла используется пул читателей - каждый поток читает через свой экземпляр.
+ */
+public class FastaSourceIndexed implements Closeable {
+
+	/**
+	 * Нуклеотид, отсутствующий в файле (за концом хромосомы), - так же, как неизвестный нуклеотид в самом fasta
+	 */
+	private static final char NONE = 'N';
+
+	/**
+	 * Строка .fai-индекса
+	 */
+	private static class IndexEntry {
+
+		private final String contig;
+		private final int length;
+		private final long location;
+		private final int basesPerLine;
+		private final int bytesPerLine;
+
+		private IndexEntry(String line) {
+			String[] values = line.split("\t");
+			if (values.length < 5) {
+				throw new RuntimeException("Bad fasta index line: " + line);
+			}
+			this.contig = values[0];
+			this.length = Integer.parseInt(values[1]);
+			this.location = Long.parseLong(values[2]);
+			this.basesPerLine = Integer.parseInt(values[3]);
+			this.bytesPerLine = Integer.parseInt(values[4]);
+		}
+
+		/**
+		 * @param position - позиция в хромосоме, начиная с 1
+		 * @return смещение нуклеотида в файле
+		 */
+		private long offset(int position) {
+			int index = position - 1;
+			return location + (long) (index / basesPerLine) * bytesPerLine + index % basesPerLine;
+		}
+	}
+
+	public final Path path;
+
+	private final Map<String, IndexEntry> index;
+
+	private final ConcurrentMap<Chromosome, IndexEntry> contigs;
+
+	private final FileChannel channel;
+	private final ConcurrentLinkedQueue<ReferenceSequenceFile> bgzipReaders;
+
+	public FastaSourceIndexed(Path path) {
+		this.path = path;
+
+		Path pathIndex = path.resolveSibling(path.getFileName() + ".fai");
+		if (!Files.exists(pathIndex)) {
+			throw new RuntimeException("Fasta index not found: " + path);
+		}
+		try {
+			List<String> lines = Files.readAllLines(pathIndex, StandardCharsets.US_ASCII);
+			this.index = new HashMap<>(lines.size());
+			for (String line : lines) {
+				if (line.isEmpty()) continue;
+				IndexEntry entry = new IndexEntry(line);
+				index.put(entry.contig, entry);
+			}
+
+			String fileName = path.getFileName().toString();
+			if (fileName.endsWith(".gz") || fileName.endsWith(".bgz")) {
+				this.channel = null;
+				this.bgzipReaders = new ConcurrentLinkedQueue<>();
+				//Первый читатель открывается сразу - проверяем наличие .gzi-индекса
+				ReferenceSequenceFile reader = ReferenceSequenceFileFactory.getReferenceSequenceFile(path);
+				if (!reader.isIndexed()) {
+					throw new RuntimeException("Fasta index not found: " + path);
+				}
+				bgzipReaders.offer(reader);
+			} else {
+				this.channel = FileChannel.open(path, StandardOpenOption.READ);
+				this.bgzipReaders = null;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.contigs = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Всегда возвращает последовательность запрошенной длины: позиции за концом хромосомы - NONE ('N')
+	 */
+	public Sequence getSequence(Interval interval) {
+		if (interval.end < interval.start) {
+			return Sequence.build(interval, "");
+		}
+
+		IndexEntry contig = contigs.computeIfAbsent(interval.chromosome, this::findContig);
+		int start = Math.max(interval.start, 1);
+		int end = Math.min(interval.end, contig.length);
+
+		StringBuilder value = new StringBuilder(interval.end - interval.start + 1);
+		for (int i = interval.start; i < start; i++) {
+			value.append(NONE);
+		}
+		if (start <= end) {
+			try {
+				value.append((channel != null) ? read(contig, start, end) : readBgzip(contig, start, end));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		while (value.length() < interval.end - interval.start + 1) {
+			value.append(NONE);
+		}
+		return Sequence.build(interval, value.toString());
+	}
+
+	private String read(IndexEntry contig, int start, int end) throws IOException {
+		long from = contig.offset(start);
+		long to = contig.offset(end) + 1;
+
+		ByteBuffer buffer = ByteBuffer.allocate((int) (to - from));
+		long position = from;
+		while (buffer.hasRemaining()) {
+			int count = channel.read(buffer, position);
+			if (count < 0) {
+				throw new EOFException("Unexpected end of fasta: " + path);
+			}
+			position += count;
+		}
+
+		//Пропускаем переносы строк
+		StringBuilder value = new StringBuilder(end - start + 1);
+		for (byte b : buffer.array()) {
+			if (b != '\n' && b != '\r') {
+				value.append((char) b);
+			}
+		}
+		return value.toString();
+	}
+
+	private String readBgzip(IndexEntry contig, int start, int end) {
+		ReferenceSequenceFile reader = bgzipReaders.poll();
+		if (reader == null) {
+			reader = ReferenceSequenceFileFactory.getReferenceSequenceFile(path);
+		}
+		try {
+			ReferenceSequence referenceSequence = reader.getSubsequenceAt(contig.contig, start, end);
+			return new String(referenceSequence.getBases(), StandardCharsets.US_ASCII);
+		} finally {
+			bgzipReaders.offer(reader);
+		}
+	}
+
+	/**
+	 * Имена контигов в файле могут быть как с префиксом chr, так и без него
+	 */
+	private IndexEntry findContig(Chromosome chromosome) {
+		String name = chromosome.getChar();
+		String[] candidates;
+		if ("M".equals(name) || "MT".equals(name)) {
+			candidates = new String[]{ "chrM", "MT", "chrMT", "M" };
+		} else {
+			candidates = new String[]{ "chr" + name, name };
+		}
+		for (String candidate : candidates) {
+			IndexEntry entry = index.get(candidate);
+			if (entry != null) {
+				return entry;
+			}
+		}
+		throw new RuntimeException("Chromosome " + name + " not found in fasta: " + path);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+		if (bgzipReaders != null) {
+			ReferenceSequenceFile reader;
+			while ((reader = bgzipReaders.poll()) != null) {
+				reader.close();
+			}
+		}
+	}
+}
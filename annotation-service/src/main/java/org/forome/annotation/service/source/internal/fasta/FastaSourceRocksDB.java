@@ -43,7 +43,7 @@ public class FastaSourceRocksDB {
 	public Sequence getSequence(Assembly assembly, Interval interval) {
 		Source source = aStorage.getSource(assembly);
 
-		long t1 = System.currentTimeMillis();
+		long t1 = System.nanoTime();
 
 		Nucleotide[] nucleotides = new Nucleotide[interval.end - interval.start + 1];
 		for (int i = 0; i < nucleotides.length; i++) {
@@ -64,7 +64,7 @@ public class FastaSourceRocksDB {
 
 		Sequence sequence = new Sequence(interval, nucleotides);
 
-		statistics.addTime(System.currentTimeMillis() - t1);
+		statistics.addTimeNanos(System.nanoTime() - t1);
 
 		return sequence;
 	}
@@ -23,6 +23,7 @@ import net.minidev.json.JSONObject;
 import org.forome.annotation.service.source.external.conservation.ConservationHttpRequest;
 import org.forome.annotation.service.source.external.source.ExternalSource;
 import org.forome.annotation.service.source.internal.common.CommonSourcePortPython;
+import org.forome.annotation.service.source.internal.fasta.FastaSourceIndexed;
 import org.forome.annotation.service.source.internal.fasta.FastaSourcePortPython;
 import org.forome.annotation.service.source.struct.Record;
 import org.forome.annotation.service.source.struct.Source;
@@ -35,7 +36,9 @@ import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 import org.forome.core.struct.sequence.Sequence;
 
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 public class InternalSource implements Source {
 
@@ -48,18 +51,29 @@ public class InternalSource implements Source {
 
 	public final ExternalSource externalSource;
 
-	public InternalSource(Assembly assembly, PAStorage paStorage, org.forome.astorage.core.source.Source source, ExternalSource externalSource) {
+	private final FastaSourceIndexed fastaSourceIndexed;
+	private final FastaSourcePortPython fastaSourcePortPython;
+	private final CommonSourcePortPython commonSourcePortPython;
+
+	public InternalSource(
+			Assembly assembly,
+			PAStorage paStorage,
+			org.forome.astorage.core.source.Source source,
+			ExternalSource externalSource,
+			LiftoverConnector liftoverConnector,
+			FastaSourceIndexed fastaSourceIndexed
+	) {
 		this.assembly = assembly;
 		this.paStorage = paStorage;
 		this.source = source;
 
-		try {
-			this.liftoverConnector = new LiftoverConnector();
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		this.liftoverConnector = liftoverConnector;
 
 		this.externalSource = externalSource;
+
+		this.fastaSourceIndexed = fastaSourceIndexed;
+		this.fastaSourcePortPython = new FastaSourcePortPython(paStorage);
+		this.commonSourcePortPython = new CommonSourcePortPython(paStorage);
 	}
 
 	@Override
@@ -69,7 +83,9 @@ public class InternalSource implements Source {
 
 	@Override
 	public Sequence getFastaSequence(Interval interval) {
-		FastaSourcePortPython fastaSourcePortPython = new FastaSourcePortPython(paStorage);
+		if (fastaSourceIndexed != null) {
+			return fastaSourceIndexed.getSequence(interval);
+		}
 		return fastaSourcePortPython.getSequence(assembly, interval);
 	}
 
@@ -80,8 +96,7 @@ public class InternalSource implements Source {
 //		if (position37 == null) {
 //			return new JSONArray();
 //		}
-		CommonSourcePortPython сommonSourcePortPython = new CommonSourcePortPython(paStorage);
-		return сommonSourcePortPython.get(SchemaCommon.SCHEMA_GNOMAD_NAME, Assembly.GRCh37, Interval.of(pos37));
+		return commonSourcePortPython.get(SchemaCommon.SCHEMA_GNOMAD_NAME, Assembly.GRCh37, Interval.of(pos37));
 	}
 
 	@Override
@@ -90,8 +105,7 @@ public class InternalSource implements Source {
 		if (interval38 == null) {
 			return new JSONArray();
 		}
-		CommonSourcePortPython сommonSourcePortPython = new CommonSourcePortPython(paStorage);
-		return сommonSourcePortPython.get(SchemaCommon.SCHEMA_DBSNP_NAME, Assembly.GRCh38, interval38);
+		return commonSourcePortPython.get(SchemaCommon.SCHEMA_DBSNP_NAME, Assembly.GRCh38, interval38);
 	}
 
 	@Override
@@ -100,8 +114,7 @@ public class InternalSource implements Source {
 		if (interval38 == null) {
 			return new JSONArray();
 		}
-		CommonSourcePortPython сommonSourcePortPython = new CommonSourcePortPython(paStorage);
-		return сommonSourcePortPython.get(SchemaCommon.SCHEMA_DBNSFP_NAME, Assembly.GRCh38, interval38);
+		return commonSourcePortPython.get(SchemaCommon.SCHEMA_DBNSFP_NAME, Assembly.GRCh38, interval38);
 	}
 
 	@Override
@@ -110,9 +123,62 @@ public class InternalSource implements Source {
 		if (interval38 == null) {
 			return new JSONArray();
 		}
-		CommonSourcePortPython сommonSourcePortPython = new CommonSourcePortPython(paStorage);
-		JSONArray sources = сommonSourcePortPython.get(SchemaCommon.SCHEMA_SPLICEAI_NAME, Assembly.GRCh38, interval38);
+		JSONArray sources = commonSourcePortPython.get(SchemaCommon.SCHEMA_SPLICEAI_NAME, Assembly.GRCh38, interval38);
+		return flatSpliceAI(sources);
+	}
+
+	@Override
+	public List<JSONArray> getGnomad(List<Position> positions37) {
+		List<Interval> intervals = new ArrayList<>(positions37.size());
+		for (Position pos37 : positions37) {
+			intervals.add(Interval.of(pos37));
+		}
+		return commonSourcePortPython.get(SchemaCommon.SCHEMA_GNOMAD_NAME, Assembly.GRCh37, intervals);
+	}
+
+	@Override
+	public List<JSONArray> getDbSNP(List<Interval> intervals) {
+		return getBatch38(SchemaCommon.SCHEMA_DBSNP_NAME, intervals);
+	}
+
+	@Override
+	public List<JSONArray> getDbNSFP(List<Interval> intervals) {
+		return getBatch38(SchemaCommon.SCHEMA_DBNSFP_NAME, intervals);
+	}
+
+	@Override
+	public List<JSONArray> getSpliceAI(List<Interval> intervals) {
+		List<JSONArray> sources = getBatch38(SchemaCommon.SCHEMA_SPLICEAI_NAME, intervals);
+
+		List<JSONArray> result = new ArrayList<>(sources.size());
+		for (JSONArray source : sources) {
+			result.add(flatSpliceAI(source));
+		}
+		return result;
+	}
+
+	/**
+	 * Пакетное чтение hg38-схемы: интервалы, которые не удалось перевести в hg38, получают пустой результат
+	 */
+	private List<JSONArray> getBatch38(String schemaName, List<Interval> intervals) {
+		Interval[] liftover = new Interval[intervals.size()];
+		List<Interval> intervals38 = new ArrayList<>(intervals.size());
+		for (int i = 0; i < liftover.length; i++) {
+			liftover[i] = liftoverConnector.toHG38(assembly, intervals.get(i));
+			if (liftover[i] != null) {
+				intervals38.add(liftover[i]);
+			}
+		}
+		Iterator<JSONArray> values = commonSourcePortPython.get(schemaName, Assembly.GRCh38, intervals38).iterator();
+
+		List<JSONArray> result = new ArrayList<>(liftover.length);
+		for (Interval interval38 : liftover) {
+			result.add((interval38 != null) ? values.next() : new JSONArray());
+		}
+		return result;
+	}
 
+	private static JSONArray flatSpliceAI(JSONArray sources) {
 		JSONArray result = new JSONArray();
 		for (Object o : sources) {
 			JSONArray item = (JSONArray) o;
@@ -130,8 +196,7 @@ public class InternalSource implements Source {
 			return new Conservation(null, null);
 		}
 
-		CommonSourcePortPython сommonSourcePortPython = new CommonSourcePortPython(paStorage);
-		JSONArray results = сommonSourcePortPython.get(SchemaCommon.SCHEMA_GERP_NAME, Assembly.GRCh37, Interval.of(position37));
+		JSONArray results = commonSourcePortPython.get(SchemaCommon.SCHEMA_GERP_NAME, Assembly.GRCh37, Interval.of(position37));
 
 		if (results.isEmpty()) {
 			return new Conservation(null, null);
@@ -24,6 +24,9 @@ import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 import org.forome.core.struct.sequence.Sequence;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 public interface Source {
 
 	Record getRecord(Position position);
@@ -39,4 +42,25 @@ public interface Source {
 	JSONArray getDbNSFP(Interval interval);
 
 	JSONArray getSpliceAI(Interval interval);
+
+	/**
+	 * Пакетные варианты запросов: позиции (интервалы) передаются отсортированными,
+	 * результат - по элементу на каждую позицию (интервал) в том же порядке.
+	 * По умолчанию - последовательные одиночные запросы.
+	 */
+	default List<JSONArray> getGnomad(List<Position> positions) {
+		return positions.stream().map(position -> getGnomad(position)).collect(Collectors.toList());
+	}
+
+	default List<JSONArray> getDbSNP(List<Interval> intervals) {
+		return intervals.stream().map(interval -> getDbSNP(interval)).collect(Collectors.toList());
+	}
+
+	default List<JSONArray> getDbNSFP(List<Interval> intervals) {
+		return intervals.stream().map(interval -> getDbNSFP(interval)).collect(Collectors.toList());
+	}
+
+	default List<JSONArray> getSpliceAI(List<Interval> intervals) {
+		return intervals.stream().map(interval -> getSpliceAI(interval)).collect(Collectors.toList());
+	}
 }
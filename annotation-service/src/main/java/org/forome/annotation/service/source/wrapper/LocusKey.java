@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.wrapper;
+
+import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
+import org.forome.core.struct.Position;
+
+/**
+ * Ключ кеша источника: хромосома и координаты, без построения строк
+ */
+class LocusKey {
+
+	final Chromosome chromosome;
+	final int start;
+	final int end;
+
+	private final int hash;
+
+	LocusKey(Chromosome chromosome, int start, int end) {
+		this.chromosome = chromosome;
+		this.start = start;
+		this.end = end;
+		this.hash = 31 * (31 * chromosome.hashCode() + start) + end;
+	}
+
+	static LocusKey of(Position position) {
+		return new LocusKey(position.chromosome, position.value, position.value);
+	}
+
+	static LocusKey of(Interval interval) {
+		return new LocusKey(interval.chromosome, interval.start, interval.end);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		LocusKey locusKey = (LocusKey) o;
+		return start == locusKey.start &&
+				end == locusKey.end &&
+				chromosome.equals(locusKey.chromosome);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return chromosome.getChar() + ":" + start + "-" + end;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.wrapper;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Кеш ответов источника одного типа, ограниченный по оценке занимаемой памяти.
+ * Отсутствие значения в источнике тоже кешируется (Optional.empty()).
+ */
+class SourceCache<V> {
+
+	/**
+	 * Накладные расходы на запись в кеше: ключ, Optional, узел кеша
+	 */
+	private static final long ENTRY_OVERHEAD = 96;
+
+	private final Cache<LocusKey, Optional<V>> cache;
+
+	SourceCache(long capacity, ToLongFunction<V> sizeOf) {
+		this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(capacity)
+				.weigher((LocusKey key, Optional<V> value) -> {
+					long size = ENTRY_OVERHEAD + value.map(sizeOf::applyAsLong).orElse(0L);
+					return (int) Math.min(Integer.MAX_VALUE, size);
+				})
+				.recordStats()
+				.build();
+	}
+
+	V get(LocusKey key, Callable<V> loader) {
+		try {
+			return cache.get(key, () -> Optional.ofNullable(loader.call())).orElse(null);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return null - если значения нет в кеше
+	 */
+	Optional<V> getIfPresent(LocusKey key) {
+		return cache.getIfPresent(key);
+	}
+
+	void put(LocusKey key, V value) {
+		cache.put(key, Optional.ofNullable(value));
+	}
+
+	CacheStats stats() {
+		return cache.stats();
+	}
+
+	long size() {
+		return cache.size();
+	}
+}
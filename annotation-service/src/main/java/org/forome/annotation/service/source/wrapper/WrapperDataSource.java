@@ -18,7 +18,9 @@
 
 package org.forome.annotation.service.source.wrapper;
 
+import net.minidev.json.JSONObject;
 import org.forome.annotation.annotator.AnnotationConsole;
+import org.forome.annotation.config.source.SourceCacheConfig;
 import org.forome.annotation.service.source.DataSource;
 import org.forome.annotation.service.source.struct.Source;
 import org.forome.core.struct.Assembly;
@@ -33,10 +35,10 @@ public class WrapperDataSource implements DataSource {
 
 	private final HashMap<Assembly, WrapperSource> sources;
 
-	public WrapperDataSource(DataSource dataSource) {
+	public WrapperDataSource(DataSource dataSource, SourceCacheConfig cacheConfig) {
 		this.sources = new HashMap<>();
 		for (Assembly assembly : Assembly.values()) {
-			sources.put(assembly, new WrapperSource(dataSource.getSource(assembly)));
+			sources.put(assembly, new WrapperSource(dataSource.getSource(assembly), cacheConfig));
 		}
 	}
 
@@ -56,4 +58,13 @@ public class WrapperDataSource implements DataSource {
 		}
 	}
 
+	public JSONObject getMetrics() {
+		JSONObject out = new JSONObject();
+		for (Assembly assembly : Assembly.values()) {
+			WrapperSource wrapperSource = sources.get(assembly);
+			if (wrapperSource.isEmptyStatistics()) continue;
+			out.put(assembly.name().toLowerCase(), wrapperSource.getMetrics());
+		}
+		return out;
+	}
 }
@@ -18,43 +18,68 @@
 
 package org.forome.annotation.service.source.wrapper;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
 import org.forome.annotation.annotator.AnnotationConsole;
+import org.forome.annotation.config.source.SourceCacheConfig;
 import org.forome.annotation.service.source.struct.Record;
 import org.forome.annotation.service.source.struct.Source;
+import org.forome.annotation.utils.MemoryUtils;
 import org.forome.annotation.utils.Statistics;
 import org.forome.astorage.core.data.Conservation;
+import org.forome.core.struct.Chromosome;
 import org.forome.core.struct.Interval;
 import org.forome.core.struct.Position;
 import org.forome.core.struct.sequence.Sequence;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 public class WrapperSource implements Source {
 
 	private final static Logger log = LoggerFactory.getLogger(AnnotationConsole.class);
 
+	/**
+	 * Оценки объема памяти для значений, размер которых не вычисляется
+	 */
+	private static final long RECORD_SIZE = 4 * 1024;
+	private static final long CONSERVATION_SIZE = 64;
+
 	private final Source source;
 
-	private final Cache<String, Object> cache;
+	private final int fastaWindow;
+
+	private final SourceCache<Record> recordCache;
+	private final SourceCache<Sequence> fastaCache;
+	private final SourceCache<Conservation> conservationCache;
+	private final EnumMap<WrapperSourceType, SourceCache<JSONArray>> jsonCaches;
 
 	private final Map<WrapperSourceType, Statistics> statistics;
 
 	public WrapperSource(Source source) {
+		this(source, new SourceCacheConfig());
+	}
+
+	public WrapperSource(Source source, SourceCacheConfig config) {
 		this.source = source;
-		this.cache = CacheBuilder.newBuilder()
-				.maximumSize(100)
-				.build();
+		this.fastaWindow = config.fastaWindow;
+
+		long capacity = config.capacity / WrapperSourceType.values().length;
+		this.recordCache = new SourceCache<>(capacity, record -> RECORD_SIZE);
+		this.fastaCache = new SourceCache<>(capacity, sequence -> 40 + 2L * sequence.getValue().length());
+		this.conservationCache = new SourceCache<>(capacity, conservation -> CONSERVATION_SIZE);
+		this.jsonCaches = new EnumMap<>(WrapperSourceType.class);
+		for (WrapperSourceType type : new WrapperSourceType[]{
+				WrapperSourceType.GNOMAD, WrapperSourceType.DBSNP, WrapperSourceType.DBNSFP, WrapperSourceType.SPLICEAI
+		}) {
+			jsonCaches.put(type, new SourceCache<>(capacity, MemoryUtils::estimateSize));
+		}
 
-		this.statistics = new HashMap<>();
+		this.statistics = new EnumMap<>(WrapperSourceType.class);
 		for (WrapperSourceType type : WrapperSourceType.values()) {
 			statistics.put(type, new Statistics());
 		}
@@ -62,98 +87,161 @@ public class WrapperSource implements Source {
 
 	@Override
 	public Record getRecord(Position position) {
-		try {
-			Optional<Record> value = (Optional<Record>) cache.get(getCacheKey(WrapperSourceType.RECORD, position), () -> callable(WrapperSourceType.RECORD, () -> source.getRecord(position)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return recordCache.get(LocusKey.of(position), callable(WrapperSourceType.RECORD, () -> source.getRecord(position)));
 	}
 
+	/**
+	 * При fastaWindow > 0 из источника читается выровненное окно, содержащее интервал,
+	 * последующие запросы в пределах окна обслуживаются из кеша
+	 */
 	@Override
 	public Sequence getFastaSequence(Interval interval) {
-		try {
-			Optional<Sequence> value = (Optional<Sequence>) cache.get(getCacheKey(WrapperSourceType.FASTA, interval), () -> callable(WrapperSourceType.FASTA, () -> source.getFastaSequence(interval)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
+		if (fastaWindow > 0 && interval.start >= 1 && interval.end >= interval.start) {
+			int windowStart = ((interval.start - 1) / fastaWindow) * fastaWindow + 1;
+			int windowEnd = windowStart + fastaWindow - 1;
+			if (interval.end <= windowEnd) {
+				Sequence window = getFastaWindow(interval.chromosome, windowStart, windowEnd);
+				if (window != null) {
+					String value = window.getValue();
+					int to = interval.end - windowStart + 1;
+					if (value != null && to <= value.length()) {
+						return Sequence.build(interval, value.substring(interval.start - windowStart, to));
+					}
+				}
+			}
 		}
+		return fastaCache.get(LocusKey.of(interval), callable(WrapperSourceType.FASTA, () -> source.getFastaSequence(interval)));
+	}
+
+	/**
+	 * Окно может выходить за границу хромосомы - в этом случае кешируется отсутствие значения
+	 * и запросы обслуживаются точными интервалами
+	 */
+	private Sequence getFastaWindow(Chromosome chromosome, int start, int end) {
+		Interval window = Interval.of(chromosome, start, end);
+		return fastaCache.get(LocusKey.of(window), callable(WrapperSourceType.FASTA, () -> {
+			try {
+				return source.getFastaSequence(window);
+			} catch (RuntimeException e) {
+				log.debug("Exception load fasta window: {}", window, e);
+				return null;
+			}
+		}));
 	}
 
 	@Override
 	public Conservation getConservation(Position position) {
-		try {
-			Optional<Conservation> value = (Optional<Conservation>) cache.get(getCacheKey(WrapperSourceType.CONSERVATION, position), () -> callable(WrapperSourceType.CONSERVATION, () -> source.getConservation(position)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return conservationCache.get(LocusKey.of(position), callable(WrapperSourceType.CONSERVATION, () -> source.getConservation(position)));
 	}
 
 	@Override
 	public JSONArray getGnomad(Position position) {
-		try {
-			Optional<JSONArray> value = (Optional<JSONArray>) cache.get(getCacheKey(WrapperSourceType.GNOMAD, position), () -> callable(WrapperSourceType.GNOMAD, () -> source.getGnomad(position)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return jsonCaches.get(WrapperSourceType.GNOMAD).get(LocusKey.of(position), callable(WrapperSourceType.GNOMAD, () -> source.getGnomad(position)));
 	}
 
 	@Override
 	public JSONArray getDbSNP(Interval interval) {
-		try {
-			Optional<JSONArray> value = (Optional<JSONArray>) cache.get(getCacheKey(WrapperSourceType.DBSNP, interval), () -> callable(WrapperSourceType.DBSNP, () -> source.getDbSNP(interval)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return jsonCaches.get(WrapperSourceType.DBSNP).get(LocusKey.of(interval), callable(WrapperSourceType.DBSNP, () -> source.getDbSNP(interval)));
 	}
 
 	@Override
 	public JSONArray getDbNSFP(Interval interval) {
-		try {
-			Optional<JSONArray> value = (Optional<JSONArray>) cache.get(getCacheKey(WrapperSourceType.DBNSFP, interval), () -> callable(WrapperSourceType.DBNSFP, () -> source.getDbNSFP(interval)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return jsonCaches.get(WrapperSourceType.DBNSFP).get(LocusKey.of(interval), callable(WrapperSourceType.DBNSFP, () -> source.getDbNSFP(interval)));
 	}
 
 	@Override
 	public JSONArray getSpliceAI(Interval interval) {
-		try {
-			Optional<JSONArray> value = (Optional<JSONArray>) cache.get(getCacheKey(WrapperSourceType.SPLICEAI, interval), () -> callable(WrapperSourceType.SPLICEAI, () -> source.getSpliceAI(interval)).call());
-			return value.orElse(null);
-		} catch (ExecutionException e) {
-			throw new RuntimeException(e.getCause());
-		}
+		return jsonCaches.get(WrapperSourceType.SPLICEAI).get(LocusKey.of(interval), callable(WrapperSourceType.SPLICEAI, () -> source.getSpliceAI(interval)));
 	}
 
-	private static String getCacheKey(WrapperSourceType type, Position position){
-		return type.name() + position.toString();
+	@Override
+	public List<JSONArray> getGnomad(List<Position> positions) {
+		return getBatch(WrapperSourceType.GNOMAD, positions, LocusKey::of, source::getGnomad);
 	}
 
-	private static String getCacheKey(WrapperSourceType type, Interval interval){
-		return type.name() + interval.toString();
+	@Override
+	public List<JSONArray> getDbSNP(List<Interval> intervals) {
+		return getBatch(WrapperSourceType.DBSNP, intervals, LocusKey::of, source::getDbSNP);
 	}
 
-	private Callable callable(WrapperSourceType type, Callable callable) {
+	@Override
+	public List<JSONArray> getDbNSFP(List<Interval> intervals) {
+		return getBatch(WrapperSourceType.DBNSFP, intervals, LocusKey::of, source::getDbNSFP);
+	}
+
+	@Override
+	public List<JSONArray> getSpliceAI(List<Interval> intervals) {
+		return getBatch(WrapperSourceType.SPLICEAI, intervals, LocusKey::of, source::getSpliceAI);
+	}
+
+	/**
+	 * Из источника одним пакетом запрашиваются только отсутствующие в кеше локусы,
+	 * полученные значения кладутся в кеш
+	 */
+	private <T> List<JSONArray> getBatch(
+			WrapperSourceType type, List<T> loci,
+			Function<T, LocusKey> keyBuilder, Function<List<T>, List<JSONArray>> batchSource
+	) {
+		SourceCache<JSONArray> cache = jsonCaches.get(type);
+		JSONArray[] result = new JSONArray[loci.size()];
+
+		List<Integer> missIndexes = new ArrayList<>();
+		List<T> missLoci = new ArrayList<>();
+		for (int i = 0; i < result.length; i++) {
+			T locus = loci.get(i);
+			Optional<JSONArray> value = cache.getIfPresent(keyBuilder.apply(locus));
+			if (value != null) {
+				result[i] = value.orElse(null);
+			} else {
+				missIndexes.add(i);
+				missLoci.add(locus);
+			}
+		}
+
+		if (!missLoci.isEmpty()) {
+			long t1 = System.nanoTime();
+			List<JSONArray> values = batchSource.apply(missLoci);
+			statistics.get(type).addTimeNanos(System.nanoTime() - t1);
+
+			for (int i = 0; i < missLoci.size(); i++) {
+				JSONArray value = values.get(i);
+				cache.put(keyBuilder.apply(missLoci.get(i)), value);
+				result[missIndexes.get(i)] = value;
+			}
+		}
+
+		return Arrays.asList(result);
+	}
+
+	private <V> Callable<V> callable(WrapperSourceType type, Callable<V> callable) {
 		return () -> {
-			long t1 = System.currentTimeMillis();
-			Optional result;
+			long t1 = System.nanoTime();
+			V result;
 			try {
-				result = Optional.ofNullable(callable.call());
+				result = callable.call();
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
-			statistics.get(type).addTime(System.currentTimeMillis() - t1);
+			statistics.get(type).addTimeNanos(System.nanoTime() - t1);
 			return result;
 		};
 	}
 
+	private SourceCache<?> getCache(WrapperSourceType type) {
+		switch (type) {
+			case RECORD:
+				return recordCache;
+			case FASTA:
+				return fastaCache;
+			case CONSERVATION:
+				return conservationCache;
+			default:
+				return jsonCaches.get(type);
+		}
+	}
+
 	public boolean isEmptyStatistics() {
-		return (statistics.values().stream().mapToInt(istatistics -> istatistics.count.get()).sum() == 0);
+		return (statistics.values().stream().mapToLong(istatistics -> istatistics.getCount()).sum() == 0);
 	}
 
 	public void printStatistics() {
@@ -161,8 +249,32 @@ public class WrapperSource implements Source {
 			WrapperSourceType type = entry.getKey();
 			Statistics iStatistics = entry.getValue();
 
-			if (iStatistics.count.get() == 0) continue;
-			log.debug("{}: {}", type, iStatistics.getStat());
+			if (iStatistics.getCount() == 0) continue;
+			SourceCache<?> cache = getCache(type);
+			CacheStats cacheStats = cache.stats();
+			log.debug("{}: {}, cache(size: {}, hit: {}, miss: {}, eviction: {})",
+					type, iStatistics.getStat(), cache.size(),
+					cacheStats.hitCount(), cacheStats.missCount(), cacheStats.evictionCount()
+			);
+		}
+	}
+
+	public JSONObject getMetrics() {
+		JSONObject out = new JSONObject();
+		for (Map.Entry<WrapperSourceType, Statistics> entry : statistics.entrySet()) {
+			WrapperSourceType type = entry.getKey();
+			SourceCache<?> cache = getCache(type);
+			CacheStats cacheStats = cache.stats();
+
+			JSONObject outCache = new JSONObject();
+			outCache.put("size", cache.size());
+			outCache.put("hit_rate", cacheStats.hitRate());
+			outCache.put("eviction", cacheStats.evictionCount());
+
+			JSONObject outType = entry.getValue().getStat().toJSON();
+			outType.put("cache", outCache);
+			out.put(type.name().toLowerCase(), outType);
 		}
+		return out;
 	}
 }
@@ -0,0 +1,268 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils;
+
+import org.forome.annotation.exception.ExceptionBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пул фиксированного размера с ограниченной очередью и метриками (глубина очереди, время ожидания задач в очереди).
+ * При переполнении очереди задача либо выполняется в вызывающем потоке (CALLER_RUNS - источник задач
+ * притормаживает сам), либо отклоняется с ошибкой server_overloaded и рекомендуемым временем повтора (REJECT).
+ * Если в JVM есть виртуальные потоки (Java 21+), пул может работать на них.
+ */
+public class BoundedThreadPoolExecutor extends DefaultThreadPoolExecutor {
+
+	private final static Logger log = LoggerFactory.getLogger(BoundedThreadPoolExecutor.class);
+
+	/**
+	 * Верхняя граница рекомендуемого времени повтора (в секундах)
+	 */
+	private static final int MAX_RETRY_AFTER = 60;
+
+	public enum Overflow {
+
+		/**
+		 * Задача выполняется в вызывающем потоке
+		 */
+		CALLER_RUNS,
+
+		/**
+		 * Задача отклоняется с ошибкой server_overloaded
+		 */
+		REJECT;
+
+		public static Overflow of(String value) {
+			for (Overflow item : Overflow.values()) {
+				if (item.name().equalsIgnoreCase(value)) {
+					return item;
+				}
+			}
+			throw new IllegalArgumentException("Unknown executor overflow: " + value);
+		}
+	}
+
+	/**
+	 * Задача с отметками времени постановки в очередь и начала выполнения
+	 */
+	private static class TimedTask<V> extends FutureTask<V> {
+
+		private final long queuedNanos;
+		private long startNanos;
+
+		private TimedTask(Callable<V> callable) {
+			super(callable);
+			this.queuedNanos = System.nanoTime();
+		}
+
+		private TimedTask(Runnable runnable, V result) {
+			super(runnable, result);
+			this.queuedNanos = System.nanoTime();
+		}
+	}
+
+	private static class OverflowHandler implements RejectedExecutionHandler {
+
+		@Override
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+			((BoundedThreadPoolExecutor) executor).overflow(r);
+		}
+	}
+
+	private final String name;
+	private final int queueCapacity;
+	private final Overflow overflow;
+	private final boolean virtual;
+
+	public final Statistics statisticWait = new Statistics();
+
+	private final LongAdder executedTasks = new LongAdder();
+	private final LongAdder executedNanos = new LongAdder();
+	private final LongAdder rejectedTasks = new LongAdder();
+	private final LongAdder callerRunsTasks = new LongAdder();
+	private final LongAccumulator peakQueue = new LongAccumulator(Math::max, 0);
+
+	public BoundedThreadPoolExecutor(
+			String name,
+			int threads,
+			int queueCapacity,
+			Overflow overflow,
+			boolean virtual,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+		this(name, threads, queueCapacity, overflow,
+				(virtual) ? buildVirtualThreadFactory(name, uncaughtExceptionHandler) : null,
+				uncaughtExceptionHandler
+		);
+	}
+
+	private BoundedThreadPoolExecutor(
+			String name,
+			int threads,
+			int queueCapacity,
+			Overflow overflow,
+			ThreadFactory virtualThreadFactory,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+		super(
+				threads, threads,
+				0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				(virtualThreadFactory != null) ? virtualThreadFactory : new DefaultThreadFactory(name, uncaughtExceptionHandler),
+				new OverflowHandler(),
+				uncaughtExceptionHandler
+		);
+		this.name = name;
+		this.queueCapacity = queueCapacity;
+		this.overflow = overflow;
+		this.virtual = (virtualThreadFactory != null);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new TimedTask<>(runnable, value);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+		return new TimedTask<>(callable);
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		//afterExecute ожидает Future, поэтому задачи, переданные напрямую в execute, тоже оборачиваются
+		super.execute((command instanceof TimedTask) ? command : new TimedTask<>(command, null));
+		peakQueue.accumulate(getQueue().size());
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		super.beforeExecute(t, r);
+		if (r instanceof TimedTask) {
+			TimedTask<?> task = (TimedTask<?>) r;
+			task.startNanos = System.nanoTime();
+			statisticWait.addTimeNanos(task.startNanos - task.queuedNanos);
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		if (r instanceof TimedTask) {
+			executedTasks.increment();
+			executedNanos.add(System.nanoTime() - ((TimedTask<?>) r).startNanos);
+		}
+		super.afterExecute(r, t);
+	}
+
+	/**
+	 * Проверка перед постановкой пачки задач (например, всех вариантов одного http-запроса): если места в очереди
+	 * не хватает, то пачка отклоняется целиком - ошибкой server_overloaded с рекомендуемым временем повтора.
+	 * Пачка больше половины очереди принимается только в ненагруженный пул, не поместившееся выполнится
+	 * по правилу переполнения.
+	 */
+	public void checkCapacity(int tasks) {
+		int required = Math.min(tasks, queueCapacity / 2);
+		if (getQueue().remainingCapacity() < required) {
+			rejectedTasks.add(tasks);
+			throw ExceptionBuilder.buildServerOverloadedException(getRetryAfter());
+		}
+	}
+
+	/**
+	 * Оценка времени (в секундах), за которое пул разберет текущую очередь
+	 */
+	public int getRetryAfter() {
+		long count = executedTasks.sum();
+		double averageNanos = (count == 0) ? 0 : (double) executedNanos.sum() / count;
+		double seconds = getQueue().size() * averageNanos / getMaximumPoolSize() / TimeUnit.SECONDS.toNanos(1);
+		return (int) Math.max(1, Math.min(MAX_RETRY_AFTER, Math.ceil(seconds)));
+	}
+
+	private void overflow(Runnable r) {
+		if (isShutdown()) {
+			throw new RejectedExecutionException("Executor " + name + " is shut down");
+		}
+		if (overflow == Overflow.CALLER_RUNS) {
+			callerRunsTasks.increment();
+			r.run();
+		} else {
+			rejectedTasks.increment();
+			throw ExceptionBuilder.buildServerOverloadedException(getRetryAfter());
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public Overflow getOverflow() {
+		return overflow;
+	}
+
+	public boolean isVirtual() {
+		return virtual;
+	}
+
+	public long getPeakQueue() {
+		return peakQueue.get();
+	}
+
+	public long getRejectedTasks() {
+		return rejectedTasks.sum();
+	}
+
+	public long getCallerRunsTasks() {
+		return callerRunsTasks.sum();
+	}
+
+	/**
+	 * Среднее время выполнения задачи в пуле (в миллисекундах)
+	 */
+	public double getAverageTaskMillis() {
+		long count = executedTasks.sum();
+		return (count == 0) ? 0 : (double) executedNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	/**
+	 * Фабрика виртуальных потоков (Thread.ofVirtual()), сборка под Java 8 - поэтому через reflection.
+	 * null - виртуальные потоки в JVM недоступны
+	 */
+	private static ThreadFactory buildVirtualThreadFactory(String name, Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+		try {
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-v-", 1L);
+			if (uncaughtExceptionHandler != null) {
+				builder = builderClass.getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class)
+						.invoke(builder, uncaughtExceptionHandler);
+			}
+			return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException e) {
+			log.warn("Virtual threads are not available, executor {} uses platform threads", name);
+			return null;
+		}
+	}
+}
@@ -36,6 +36,19 @@ public class DefaultThreadPoolExecutor extends ThreadPoolExecutor {
 		this.uncaughtExceptionHandler = uncaughtExceptionHandler;
 	}
 
+	public DefaultThreadPoolExecutor(
+			int corePoolSize,
+			int maximumPoolSize,
+			long keepAliveTime,
+			TimeUnit unit,
+			BlockingQueue<Runnable> workQueue,
+			ThreadFactory threadFactory,
+			RejectedExecutionHandler rejectedExecutionHandler,
+			Thread.UncaughtExceptionHandler uncaughtExceptionHandler) {
+		super(corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue, threadFactory, rejectedExecutionHandler);
+		this.uncaughtExceptionHandler = uncaughtExceptionHandler;
+	}
+
 	@Override
 	protected void afterExecute(Runnable r, Throwable t) {
 		super.afterExecute(r, t);
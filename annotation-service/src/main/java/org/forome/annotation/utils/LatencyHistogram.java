@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма времени выполнения (в наносекундах) с логарифмически-линейными корзинами (как в HdrHistogram):
+ * диапазон [2^k, 2^(k+1)) делится на SUB_BUCKETS равных частей, относительная погрешность перцентилей ~ 1/SUB_BUCKETS.
+ * Запись - без блокировок и аллокаций.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Значения меньше SUB_BUCKETS наносекунд хранятся точно, в первых корзинах
+	 */
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets;
+
+	public LatencyHistogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+	}
+
+	public void record(long nanos) {
+		buckets.incrementAndGet(index(Math.max(0, nanos)));
+	}
+
+	/**
+	 * Значение перцентиля (верхняя граница корзины), percentile - в диапазоне [0, 100]
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] counts = snapshot();
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0d));
+		long accumulated = 0;
+		for (int i = 0; i < counts.length; i++) {
+			accumulated += counts[i];
+			if (accumulated >= rank) {
+				return highestValue(i);
+			}
+		}
+		return highestValue(counts.length - 1);
+	}
+
+	private long[] snapshot() {
+		long[] counts = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = buckets.get(i);
+		}
+		return counts;
+	}
+
+	static int index(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long highestValue(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+		if (shift + SUB_BUCKET_BITS + 1 >= 63) {
+			return Long.MAX_VALUE;
+		}
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils;
+
+import java.util.List;
+import java.util.Map;
+
+public class MemoryUtils {
+
+	/**
+	 * Приблизительный объем памяти (в байтах), занимаемый json-подобной структурой
+	 */
+	public static long estimateSize(Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof String) {
+			return 40 + 2L * ((String) value).length();
+		} else if (value instanceof Map) {
+			long size = 64;
+			for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+				size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+			}
+			return size;
+		} else if (value instanceof List) {
+			long size = 40;
+			for (Object item : (List<?>) value) {
+				size += 8 + estimateSize(item);
+			}
+			return size;
+		} else {
+			return 16;
+		}
+	}
+}
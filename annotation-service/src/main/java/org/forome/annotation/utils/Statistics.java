@@ -18,21 +18,51 @@
 
 package org.forome.annotation.utils;
 
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import net.minidev.json.JSONObject;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика времени выполнения операции: кол-во, суммарное время, перцентили и максимум.
+ * Счетчики "полосатые" (LongAdder) - запись из многих потоков не упирается в один cas.
+ * Сбор можно выключить во время работы (setEnabled), тогда запись ничего не делает.
+ */
 public class Statistics {
 
+	private static volatile boolean enabled = true;
+
 	public class Stat {
 
-		public final int count;
+		public final long count;
+		public final long fullNanoTime;
 		public final long fullMillisTime;
 		public final double averageMillisTime;
 
-		public Stat(int count, long fullMillisTime) {
+		public final long p50NanoTime;
+		public final long p99NanoTime;
+		public final long maxNanoTime;
+
+		public Stat(long count, long fullNanoTime, long p50NanoTime, long p99NanoTime, long maxNanoTime) {
 			this.count = count;
-			this.fullMillisTime = fullMillisTime;
-			this.averageMillisTime = fullMillisTime / (float) count;
+			this.fullNanoTime = fullNanoTime;
+			this.fullMillisTime = TimeUnit.NANOSECONDS.toMillis(fullNanoTime);
+			this.averageMillisTime = (count == 0) ? 0 : fullNanoTime / 1_000_000d / count;
+			this.p50NanoTime = p50NanoTime;
+			this.p99NanoTime = p99NanoTime;
+			this.maxNanoTime = maxNanoTime;
+		}
+
+		public JSONObject toJSON() {
+			JSONObject out = new JSONObject();
+			out.put("count", count);
+			out.put("time_ms", fullMillisTime);
+			out.put("average_ms", averageMillisTime);
+			out.put("p50_ms", p50NanoTime / 1_000_000d);
+			out.put("p99_ms", p99NanoTime / 1_000_000d);
+			out.put("max_ms", maxNanoTime / 1_000_000d);
+			return out;
 		}
 
 		@Override
@@ -40,27 +70,55 @@ public class Statistics {
 			return "Stat(" +
 					"count: " + count +
 					", time: " + fullMillisTime + " (millis)" +
-					", average: " + String.format ("%.3f", averageMillisTime) + " (millis)" +
+					", average: " + String.format("%.3f", averageMillisTime) + " (millis)" +
+					", p50: " + String.format("%.3f", p50NanoTime / 1_000_000d) + " (millis)" +
+					", p99: " + String.format("%.3f", p99NanoTime / 1_000_000d) + " (millis)" +
+					", max: " + String.format("%.3f", maxNanoTime / 1_000_000d) + " (millis)" +
 					')';
 		}
 	}
 
-	public final AtomicInteger count;
-	public final AtomicLong time;
+	private final LongAdder count;
+	private final LongAdder time;
+	private final LongAccumulator max;
+	private final LatencyHistogram histogram;
 
 	public Statistics() {
-		this.count = new AtomicInteger();
-		this.time = new AtomicLong();
+		this.count = new LongAdder();
+		this.time = new LongAdder();
+		this.max = new LongAccumulator(Math::max, 0);
+		this.histogram = new LatencyHistogram();
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean value) {
+		enabled = value;
 	}
 
 	public void addTime(long timeMillis) {
-		count.incrementAndGet();
-		time.addAndGet(timeMillis);
+		addTimeNanos(TimeUnit.MILLISECONDS.toNanos(timeMillis));
+	}
+
+	public void addTimeNanos(long timeNanos) {
+		if (!enabled) return;
+		count.increment();
+		time.add(timeNanos);
+		max.accumulate(timeNanos);
+		histogram.record(timeNanos);
+	}
+
+	public long getCount() {
+		return count.sum();
 	}
 
 	public Stat getStat() {
 		return new Stat(
-				count.get(), time.get()
+				count.sum(), time.sum(),
+				histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(99),
+				max.get()
 		);
 	}
 }
@@ -0,0 +1,121 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Последовательный обход блоков BGZF-файла по заголовкам, без чтения и распаковки данных.
+ * Размер распакованных данных блока читается из его окончания только по запросу.
+ */
+public class BgzfBlockScanner implements Closeable {
+
+	private static final int BLOCK_HEADER_SIZE = 18;
+
+	private final Path file;
+	private final FileChannel channel;
+
+	private final ByteBuffer header;
+	private final ByteBuffer footer;
+
+	private long nextAddress;
+
+	private long address;
+	private int blockSize;
+	private int dataSize;
+
+	/**
+	 * @param address - адрес блока, с которого начинается обход
+	 */
+	public BgzfBlockScanner(Path file, long address) throws IOException {
+		this.file = file;
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+		this.header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		this.footer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+		this.nextAddress = address;
+		this.address = -1;
+	}
+
+	/**
+	 * Переход к следующему блоку
+	 *
+	 * @return false - блоки закончились
+	 */
+	public boolean next() throws IOException {
+		header.clear();
+		int read = readFully(header, nextAddress);
+		if (read == 0) {
+			address = -1;
+			return false;
+		}
+		if (read < BLOCK_HEADER_SIZE || (header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b
+				|| header.get(12) != 'B' || header.get(13) != 'C') {
+			throw new IOException("Not a BGZF block at offset " + nextAddress + ", file: " + file);
+		}
+		address = nextAddress;
+		blockSize = (header.getShort(16) & 0xffff) + 1;
+		dataSize = -1;
+		nextAddress = address + blockSize;
+		return true;
+	}
+
+	/**
+	 * Адрес текущего блока
+	 */
+	public long getAddress() {
+		return address;
+	}
+
+	/**
+	 * Размер распакованных данных текущего блока
+	 */
+	public int getDataSize() throws IOException {
+		if (dataSize < 0) {
+			footer.clear();
+			if (readFully(footer, address + blockSize - 4) < 4) {
+				throw new IOException("Truncated BGZF block at offset " + address + ", file: " + file);
+			}
+			dataSize = footer.getInt(0);
+		}
+		return dataSize;
+	}
+
+	private int readFully(ByteBuffer buffer, long offset) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
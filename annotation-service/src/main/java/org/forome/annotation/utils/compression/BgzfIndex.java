@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Индекс блоков BGZF-файла в формате bgzip (.gzi): для каждого блока, кроме первого,
+ * пара (смещение в сжатом файле, смещение в распакованных данных), little-endian uint64.
+ * Позволяет перейти к произвольной позиции распакованных данных без распаковки начала файла.
+ */
+public class BgzfIndex {
+
+	public static final String EXTENSION = ".gzi";
+
+	private long[] compressedOffsets;
+	private long[] uncompressedOffsets;
+	private int size;
+
+	public BgzfIndex() {
+		this.compressedOffsets = new long[1024];
+		this.uncompressedOffsets = new long[1024];
+		this.size = 0;
+	}
+
+	public static Path getPath(Path bgzfFile) {
+		return Paths.get(bgzfFile.toString() + EXTENSION);
+	}
+
+	/**
+	 * Блоки добавляются в порядке следования в файле
+	 */
+	public void add(long compressedOffset, long uncompressedOffset) {
+		if (size > 0 && uncompressedOffset < uncompressedOffsets[size - 1]) {
+			throw new IllegalArgumentException();
+		}
+		if (size == compressedOffsets.length) {
+			compressedOffsets = Arrays.copyOf(compressedOffsets, size * 2);
+			uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, size * 2);
+		}
+		compressedOffsets[size] = compressedOffset;
+		uncompressedOffsets[size] = uncompressedOffset;
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Виртуальное смещение (как в htsjdk/samtools: смещение блока << 16 | смещение внутри блока)
+	 * для позиции в распакованных данных
+	 */
+	public long getVirtualOffset(long uncompressedOffset) {
+		if (uncompressedOffset < 0) throw new IllegalArgumentException();
+
+		int index = Arrays.binarySearch(uncompressedOffsets, 0, size, uncompressedOffset);
+		if (index < 0) {
+			index = -index - 2;
+		}
+
+		long blockCompressedOffset;
+		long blockUncompressedOffset;
+		if (index < 0) {
+			//Первый блок в индекс не входит
+			blockCompressedOffset = 0;
+			blockUncompressedOffset = 0;
+		} else {
+			blockCompressedOffset = compressedOffsets[index];
+			blockUncompressedOffset = uncompressedOffsets[index];
+		}
+		return (blockCompressedOffset << 16) | (uncompressedOffset - blockUncompressedOffset);
+	}
+
+	public void write(Path file) throws IOException {
+		try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(file))) {
+			ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * 2).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putLong((long) size);
+			os.write(buffer.array(), 0, Long.BYTES);
+			for (int i = 0; i < size; i++) {
+				buffer.clear();
+				buffer.putLong(compressedOffsets[i]);
+				buffer.putLong(uncompressedOffsets[i]);
+				os.write(buffer.array());
+			}
+		}
+	}
+
+	public static BgzfIndex read(Path file) throws IOException {
+		BgzfIndex index = new BgzfIndex();
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			byte[] bytes = new byte[Long.BYTES * 2];
+			ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+			is.readFully(bytes, 0, Long.BYTES);
+			long count = buffer.getLong(0);
+			for (long i = 0; i < count; i++) {
+				is.readFully(bytes);
+				index.add(buffer.getLong(0), buffer.getLong(Long.BYTES));
+			}
+		}
+		return index;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Чтение файла в формате BGZF (bgzip, tabix) с распаковкой блоков наперед в пуле потоков.
+ * Чтение может начинаться с виртуального смещения (смещение блока << 16 | смещение внутри блока),
+ * например, полученного из индекса tabix.
+ * Экземпляр не потокобезопасен - чтение ведется из одного потока.
+ */
+public class BgzfInputStream extends InputStream {
+
+	private static final int BLOCK_HEADER_SIZE = 18;
+	private static final int BLOCK_FOOTER_SIZE = 8;
+
+	/**
+	 * Блок, ожидающий распаковки
+	 */
+	private static class PendingBlock {
+
+		private final long address;
+		private final Future<byte[]> data;
+
+		private PendingBlock(long address, Future<byte[]> data) {
+			this.address = address;
+			this.data = data;
+		}
+	}
+
+	private final FileChannel channel;
+
+	private final ExecutorService executor;
+	private final ArrayDeque<PendingBlock> pending;
+	private final int maxPending;
+
+	private long compressedOffset;
+	private boolean eof;
+
+	private byte[] buffer;
+	private long bufferAddress;
+	private int position;
+	private int skip;
+
+	private boolean closed;
+
+	public BgzfInputStream(Path file, int threads) throws IOException {
+		this(file, 0, threads);
+	}
+
+	/**
+	 * @param threads - кол-во потоков распаковки, 1 - распаковка в потоке чтения
+	 */
+	public BgzfInputStream(Path file, long virtualOffset, int threads) throws IOException {
+		if (threads < 1) throw new IllegalArgumentException();
+		if (virtualOffset < 0) throw new IllegalArgumentException();
+
+		this.channel = FileChannel.open(file, StandardOpenOption.READ);
+
+		if (threads > 1) {
+			this.executor = Executors.newFixedThreadPool(threads, r -> {
+				Thread thread = new Thread(r, "BgzfInputStream");
+				thread.setDaemon(true);
+				return thread;
+			});
+		} else {
+			this.executor = null;
+		}
+		this.pending = new ArrayDeque<>();
+		this.maxPending = threads * 2;
+
+		this.compressedOffset = virtualOffset >>> 16;
+		this.skip = (int) (virtualOffset & 0xffff);
+	}
+
+	/**
+	 * Проверка, что файл сжат в формате BGZF (а не обычным gzip)
+	 */
+	public static boolean isBgzf(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					return false;
+				}
+			}
+			return isBlockHeader(header.array());
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureBuffer()) {
+			return -1;
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	/**
+	 * Данные возвращаются в пределах одного блока, поэтому виртуальное смещение i-го прочитанного байта -
+	 * getVirtualOffset() перед чтением плюс i
+	 */
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!ensureBuffer()) {
+			return -1;
+		}
+		int size = Math.min(len, buffer.length - position);
+		System.arraycopy(buffer, position, b, off, size);
+		position += size;
+		return size;
+	}
+
+	/**
+	 * Виртуальное смещение следующего читаемого байта (смещение блока << 16 | смещение внутри блока)
+	 */
+	public long getVirtualOffset() {
+		if (buffer != null && position < buffer.length) {
+			return (bufferAddress << 16) | position;
+		}
+		long address = pending.isEmpty() ? compressedOffset : pending.peek().address;
+		return (address << 16) | skip;
+	}
+
+	@Override
+	public int available() {
+		return (buffer == null) ? 0 : buffer.length - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		channel.close();
+	}
+
+	private boolean ensureBuffer() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (buffer == null || position >= buffer.length) {
+			fill();
+			if (pending.isEmpty()) {
+				return false;
+			}
+			PendingBlock block = pending.poll();
+			buffer = take(block.data);
+			bufferAddress = block.address;
+			position = Math.min(skip, buffer.length);
+			skip = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Читаем сжатые блоки наперед и отдаем их на распаковку
+	 */
+	private void fill() throws IOException {
+		while (!eof && pending.size() < maxPending) {
+			long address = compressedOffset;
+			byte[] block = readBlock();
+			if (block == null) {
+				eof = true;
+				break;
+			}
+			if (executor != null) {
+				pending.add(new PendingBlock(address, executor.submit(() -> inflate(block))));
+			} else {
+				pending.add(new PendingBlock(address, CompletableFuture.completedFuture(inflate(block))));
+			}
+		}
+	}
+
+	private byte[] readBlock() throws IOException {
+		byte[] header = new byte[BLOCK_HEADER_SIZE];
+		int read = readFully(ByteBuffer.wrap(header), compressedOffset);
+		if (read == 0) {
+			return null;
+		}
+		if (read < BLOCK_HEADER_SIZE || !isBlockHeader(header)) {
+			throw new IOException("Not a BGZF block at offset " + compressedOffset);
+		}
+		int blockSize = ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+
+		byte[] block = new byte[blockSize];
+		System.arraycopy(header, 0, block, 0, BLOCK_HEADER_SIZE);
+		ByteBuffer body = ByteBuffer.wrap(block, BLOCK_HEADER_SIZE, blockSize - BLOCK_HEADER_SIZE);
+		if (readFully(body, compressedOffset + BLOCK_HEADER_SIZE) < blockSize - BLOCK_HEADER_SIZE) {
+			throw new IOException("Truncated BGZF block at offset " + compressedOffset);
+		}
+		compressedOffset += blockSize;
+		return block;
+	}
+
+	private int readFully(ByteBuffer buffer, long offset) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, offset + total);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	private static byte[] take(Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	static byte[] inflate(byte[] block) throws IOException {
+		int footer = block.length - BLOCK_FOOTER_SIZE;
+		int crc = readInt(block, footer);
+		int size = readInt(block, footer + 4);
+
+		byte[] data = new byte[size];
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(block, BLOCK_HEADER_SIZE, footer - BLOCK_HEADER_SIZE);
+			int length = 0;
+			while (length < size) {
+				int n = inflater.inflate(data, length, size - length);
+				if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+					break;
+				}
+				length += n;
+			}
+			if (length != size) {
+				throw new IOException("Bad BGZF block, expected size: " + size + ", actual: " + length);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Bad BGZF block", e);
+		} finally {
+			inflater.end();
+		}
+
+		CRC32 crc32 = new CRC32();
+		crc32.update(data, 0, size);
+		if ((int) crc32.getValue() != crc) {
+			throw new IOException("Bad BGZF block, crc mismatch");
+		}
+		return data;
+	}
+
+	private static boolean isBlockHeader(byte[] header) {
+		return (header[0] & 0xff) == 0x1f && (header[1] & 0xff) == 0x8b
+				&& (header[3] & 0x04) != 0
+				&& header[12] == 'B' && header[13] == 'C';
+	}
+
+	private static int readInt(byte[] block, int offset) {
+		return (block[offset] & 0xff)
+				| ((block[offset + 1] & 0xff) << 8)
+				| ((block[offset + 2] & 0xff) << 16)
+				| ((block[offset + 3] & 0xff) << 24);
+	}
+}
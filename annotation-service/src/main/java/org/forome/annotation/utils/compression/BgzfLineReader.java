@@ -0,0 +1,136 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Построчное чтение BGZF-файла с виртуальными смещениями строк: после readLine() известны
+ * смещение начала прочитанной строки и смещение следующей за ней - с него можно продолжить чтение,
+ * открыв BgzfInputStream заново.
+ * Экземпляр не потокобезопасен.
+ */
+public class BgzfLineReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final BgzfInputStream inputStream;
+
+	private final byte[] buffer;
+	private int length;
+	private int position;
+
+	/**
+	 * Виртуальное смещение buffer[0]: буфер заполняется одним чтением, которое не выходит за границу блока
+	 */
+	private long bufferOffset;
+
+	private byte[] line;
+	private int lineLength;
+
+	private long lineOffset;
+	private long nextOffset;
+
+	public BgzfLineReader(BgzfInputStream inputStream) {
+		this.inputStream = inputStream;
+		this.buffer = new byte[BUFFER_SIZE];
+		this.line = new byte[1024];
+		this.lineOffset = -1;
+		this.nextOffset = inputStream.getVirtualOffset();
+	}
+
+	/**
+	 * @return строка без перевода строки, null - конец файла
+	 */
+	public String readLine() throws IOException {
+		lineLength = 0;
+		lineOffset = -1;
+		while (true) {
+			if (position >= length) {
+				bufferOffset = inputStream.getVirtualOffset();
+				int n = inputStream.read(buffer);
+				if (n == -1) {
+					length = 0;
+					position = 0;
+					if (lineOffset < 0) {
+						return null;
+					}
+					//Последняя строка без перевода строки
+					nextOffset = inputStream.getVirtualOffset();
+					return buildLine();
+				}
+				length = n;
+				position = 0;
+			}
+			if (lineOffset < 0) {
+				lineOffset = bufferOffset + position;
+			}
+
+			int start = position;
+			while (position < length && buffer[position] != '\n') {
+				position++;
+			}
+			append(start, position - start);
+			if (position < length) {
+				position++;
+				//Конец буфера - конец блока: смещение следующей строки берем у потока (начало следующего блока)
+				nextOffset = (position < length) ? bufferOffset + position : inputStream.getVirtualOffset();
+				return buildLine();
+			}
+		}
+	}
+
+	/**
+	 * Виртуальное смещение начала последней прочитанной строки
+	 */
+	public long getLineOffset() {
+		return lineOffset;
+	}
+
+	/**
+	 * Виртуальное смещение строки, следующей за последней прочитанной
+	 */
+	public long getNextOffset() {
+		return nextOffset;
+	}
+
+	private void append(int start, int size) {
+		if (lineLength + size > line.length) {
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + size));
+		}
+		System.arraycopy(buffer, start, line, lineLength, size);
+		lineLength += size;
+	}
+
+	private String buildLine() {
+		int size = lineLength;
+		if (size > 0 && line[size - 1] == '\r') {
+			size--;
+		}
+		return new String(line, 0, size, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+}
@@ -0,0 +1,378 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Сжатие в формате BGZF (blocked gzip, как bgzip/htsjdk): данные делятся на независимые блоки до 64kb,
+ * каждый блок - отдельный gzip-member, поэтому результат читается обычным gunzip/GZIPInputStream.
+ * Блоки сжимаются параллельно в пуле потоков и записываются в исходном порядке, пул может быть
+ * общим для нескольких потоков записи (например, для частей одного файла), тогда он не закрывается вместе с потоком.
+ * Смещения блоков сохраняются в индекс (.gzi), что позволяет читать файл с произвольной позиции.
+ * Экземпляр не потокобезопасен - запись ведется из одного потока.
+ */
+public class BgzfOutputStream extends OutputStream {
+
+	/**
+	 * Размер несжатых данных в блоке (как в bgzip), сжатый блок при этом гарантированно меньше 64kb
+	 */
+	public static final int BLOCK_DATA_SIZE = 0xff00;
+
+	private static final int MAX_BLOCK_SIZE = 0x10000;
+	private static final int BLOCK_HEADER_SIZE = 18;
+	private static final int BLOCK_FOOTER_SIZE = 8;
+
+	private static final byte[] EMPTY_BLOCK = new byte[]{
+			0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+			0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
+	};
+
+	private static class Block {
+
+		private final Future<byte[]> future;
+		private final int length;
+
+		private Block(Future<byte[]> future, int length) {
+			this.future = future;
+			this.length = length;
+		}
+	}
+
+	private final OutputStream out;
+	private final Path indexFile;
+	private final int compressionLevel;
+
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final ArrayDeque<Block> pending;
+	private final int maxPending;
+
+	private final BgzfIndex index;
+
+	private byte[] buffer;
+	private int count;
+
+	private long compressedOffset;
+	private long uncompressedOffset;
+
+	private boolean closed;
+
+	public BgzfOutputStream(OutputStream out, int threads) {
+		this(out, threads, null, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param indexFile - файл индекса блоков (.gzi), null - индекс не сохраняется
+	 */
+	public BgzfOutputStream(OutputStream out, int threads, Path indexFile, int compressionLevel) {
+		this(out, buildExecutor(threads), true, threads, indexFile, compressionLevel, new BgzfIndex(), 0, 0);
+	}
+
+	/**
+	 * Сжатие в общем пуле (см. buildExecutor), пул закрывает владелец
+	 *
+	 * @param threads - кол-во потоков пула, определяет очередь сжимаемых блоков
+	 */
+	public BgzfOutputStream(OutputStream out, ExecutorService executor, int threads) {
+		this(out, executor, false, threads, null, Deflater.DEFAULT_COMPRESSION, new BgzfIndex(), 0, 0);
+	}
+
+	private BgzfOutputStream(OutputStream out, ExecutorService executor, boolean ownExecutor, int threads,
+							 Path indexFile, int compressionLevel,
+							 BgzfIndex index, long compressedOffset, long uncompressedOffset) {
+		if (threads < 1) throw new IllegalArgumentException();
+
+		this.out = out;
+		this.indexFile = indexFile;
+		this.compressionLevel = compressionLevel;
+
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+		this.pending = new ArrayDeque<>();
+		this.maxPending = threads * 2;
+
+		this.index = index;
+		this.compressedOffset = compressedOffset;
+		this.uncompressedOffset = uncompressedOffset;
+
+		this.buffer = new byte[BLOCK_DATA_SIZE];
+		this.count = 0;
+	}
+
+	/**
+	 * Продолжение записи в существующий файл: файл обрезается до length (граница блока, например
+	 * размер файла после flush), индекс восстанавливается по заголовкам блоков без распаковки данных
+	 */
+	public static BgzfOutputStream append(Path file, long length, int threads, Path indexFile, int compressionLevel) throws IOException {
+		BgzfIndex index = new BgzfIndex();
+		long compressedOffset = 0;
+		long uncompressedOffset = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			if (channel.size() < length) {
+				throw new IOException("File " + file + " is shorter than " + length);
+			}
+			channel.truncate(length);
+
+			ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer footer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+			while (compressedOffset < length) {
+				header.clear();
+				readFully(channel, header, compressedOffset);
+				if ((header.get(0) & 0xff) != 0x1f || (header.get(1) & 0xff) != 0x8b
+						|| header.get(12) != 'B' || header.get(13) != 'C') {
+					throw new IOException("Not a BGZF block at offset " + compressedOffset + ", file: " + file);
+				}
+				int blockSize = (header.getShort(16) & 0xffff) + 1;
+				if (compressedOffset + blockSize > length) {
+					throw new IOException("Truncated BGZF block at offset " + compressedOffset + ", file: " + file);
+				}
+				footer.clear();
+				readFully(channel, footer, compressedOffset + blockSize - 4);
+				long dataSize = footer.getInt(0) & 0xffffffffL;
+
+				if (compressedOffset > 0) {
+					index.add(compressedOffset, uncompressedOffset);
+				}
+				compressedOffset += blockSize;
+				uncompressedOffset += dataSize;
+			}
+		}
+
+		OutputStream out = Files.newOutputStream(file, StandardOpenOption.APPEND);
+		return new BgzfOutputStream(
+				out, buildExecutor(threads), true, threads,
+				indexFile, compressionLevel,
+				index, compressedOffset, uncompressedOffset
+		);
+	}
+
+	/**
+	 * Пул потоков сжатия, который можно передать нескольким BgzfOutputStream
+	 */
+	public static ExecutorService buildExecutor(int threads) {
+		if (threads < 1) throw new IllegalArgumentException();
+		return Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "BgzfOutputStream");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		buffer[count++] = (byte) b;
+		if (count == BLOCK_DATA_SIZE) {
+			submitBlock();
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			int size = Math.min(len, BLOCK_DATA_SIZE - count);
+			System.arraycopy(b, off, buffer, count, size);
+			count += size;
+			off += size;
+			len -= size;
+			if (count == BLOCK_DATA_SIZE) {
+				submitBlock();
+			}
+		}
+	}
+
+	/**
+	 * Позиция в несжатых данных (кол-во записанных байт)
+	 */
+	public long getPosition() {
+		return uncompressedOffset + count;
+	}
+
+	/**
+	 * Текущий блок закрывается досрочно, все сжатые блоки записываются в выходной поток
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (count > 0) {
+			submitBlock();
+		}
+		while (!pending.isEmpty()) {
+			writeBlock(pending.poll());
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			flush();
+			out.write(EMPTY_BLOCK);
+			out.flush();
+		} finally {
+			closed = true;
+			if (ownExecutor) {
+				executor.shutdownNow();
+			} else {
+				//Блоки этого потока, не дождавшиеся записи из-за ошибки, в общем пуле не нужны
+				for (Block block : pending) {
+					block.future.cancel(false);
+				}
+				pending.clear();
+			}
+			out.close();
+		}
+		if (indexFile != null) {
+			index.write(indexFile);
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		byte[] data = buffer;
+		int length = count;
+		pending.add(new Block(
+				executor.submit(() -> compress(data, length, compressionLevel)),
+				length
+		));
+
+		buffer = new byte[BLOCK_DATA_SIZE];
+		count = 0;
+
+		//Записываем готовые блоки, при переполнении очереди - ждем
+		while (!pending.isEmpty() && (pending.size() > maxPending || pending.peek().future.isDone())) {
+			writeBlock(pending.poll());
+		}
+	}
+
+	private void writeBlock(Block block) throws IOException {
+		byte[] compressed;
+		try {
+			compressed = block.future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException(e.getCause());
+		}
+
+		if (compressedOffset > 0) {
+			index.add(compressedOffset, uncompressedOffset);
+		}
+		out.write(compressed);
+		compressedOffset += compressed.length;
+		uncompressedOffset += block.length;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	static byte[] compress(byte[] data, int length, int compressionLevel) {
+		byte[] block = deflate(data, length, compressionLevel);
+		if (block == null) {
+			//Несжимаемые данные - сохраняем без сжатия
+			block = deflate(data, length, Deflater.NO_COMPRESSION);
+		}
+
+		CRC32 crc32 = new CRC32();
+		crc32.update(data, 0, length);
+
+		int blockSize = block.length;
+		writeHeader(block, blockSize);
+		writeInt(block, blockSize - BLOCK_FOOTER_SIZE, (int) crc32.getValue());
+		writeInt(block, blockSize - BLOCK_FOOTER_SIZE + 4, length);
+		return block;
+	}
+
+	/**
+	 * Сжатие в буфер с местом под заголовок и footer, null - если блок не поместился
+	 */
+	private static byte[] deflate(byte[] data, int length, int compressionLevel) {
+		Deflater deflater = new Deflater(compressionLevel, true);
+		try {
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+
+			byte[] block = new byte[MAX_BLOCK_SIZE];
+			int maxCompressedSize = MAX_BLOCK_SIZE - BLOCK_HEADER_SIZE - BLOCK_FOOTER_SIZE;
+			int compressedSize = deflater.deflate(block, BLOCK_HEADER_SIZE, maxCompressedSize);
+			if (!deflater.finished()) {
+				return null;
+			}
+
+			byte[] result = new byte[BLOCK_HEADER_SIZE + compressedSize + BLOCK_FOOTER_SIZE];
+			System.arraycopy(block, BLOCK_HEADER_SIZE, result, BLOCK_HEADER_SIZE, compressedSize);
+			return result;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeHeader(byte[] block, int blockSize) {
+		block[0] = 0x1f;
+		block[1] = (byte) 0x8b;
+		block[2] = 0x08;//deflate
+		block[3] = 0x04;//FEXTRA
+		//MTIME, XFL - нули
+		block[9] = (byte) 0xff;//OS - unknown
+		block[10] = 0x06;//XLEN
+		block[11] = 0x00;
+		block[12] = 'B';
+		block[13] = 'C';
+		block[14] = 0x02;//SLEN
+		block[15] = 0x00;
+		block[16] = (byte) ((blockSize - 1) & 0xff);
+		block[17] = (byte) (((blockSize - 1) >>> 8) & 0xff);
+	}
+
+	private static void writeInt(byte[] block, int offset, int value) {
+		block[offset] = (byte) value;
+		block[offset + 1] = (byte) (value >>> 8);
+		block[offset + 2] = (byte) (value >>> 16);
+		block[offset + 3] = (byte) (value >>> 24);
+	}
+}
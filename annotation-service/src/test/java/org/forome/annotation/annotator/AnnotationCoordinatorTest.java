@@ -0,0 +1,157 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator;
+
+import org.apache.commons.io.IOUtils;
+import org.forome.annotation.utils.compression.BgzfInputStream;
+import org.forome.annotation.utils.compression.BgzfOutputStream;
+import org.forome.core.struct.Chromosome;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class AnnotationCoordinatorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Процесс шарда: вместо аннотации переписывает свои записи vcf-файла (хромосома:позиция),
+	 * начиная чтение с переданного смещения
+	 */
+	public static class ShardMain {
+
+		public static void main(String[] args) throws IOException {
+			Map<String, String> options = new HashMap<>();
+			for (int i = 0; i + 1 < args.length; i += 2) {
+				options.put(args[i].replaceFirst("^-{1,2}", ""), args[i + 1]);
+			}
+			Path pathVcf = Paths.get(options.get("vcf"));
+			Path pathOutput = Paths.get(options.get("output"));
+			int start = Integer.parseInt(options.getOrDefault("start", "0"));
+			int end = Integer.parseInt(options.getOrDefault("end", "0"));
+			long offset = Long.parseLong(options.getOrDefault("offset", "-1"));
+
+			//Шард должен начинать чтение со смещения, а не с начала файла
+			if (start > 0 && offset < 0) {
+				System.exit(2);
+			}
+			//Vep.json построен координатором один раз, восстановление шардам не передается
+			if (!options.containsKey("vepjson") || !Files.exists(Paths.get(options.get("vepjson")))
+					|| options.containsKey("recovery")) {
+				System.exit(3);
+			}
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new BgzfInputStream(pathVcf, Math.max(offset, 0), 1), StandardCharsets.UTF_8));
+				 BufferedWriter writer = Files.newBufferedWriter(pathOutput, StandardCharsets.UTF_8)
+			) {
+				writer.write("{\"start\": " + start + "}\n");
+				int position = start;
+				String line;
+				while ((line = reader.readLine()) != null && (end == 0 || position < end)) {
+					String[] values = line.split("\t");
+					if (line.startsWith("#") || !Chromosome.isSupportChromosome(values[0])) {
+						continue;
+					}
+					writer.write(values[0] + ":" + values[1] + "\n");
+					position++;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+		Path shard0 = folder.getRoot().toPath().resolve("out.json.shard-0");
+		Path shard1 = folder.getRoot().toPath().resolve("out.json.shard-1");
+		Files.write(shard0, "{\"metadata\": 0}\nA\nB\n".getBytes(StandardCharsets.UTF_8));
+		Files.write(shard1, "{\"metadata\": 1}\nC\n".getBytes(StandardCharsets.UTF_8));
+
+		//Строка метаданных - только из первого шарда
+		Path outFile = folder.getRoot().toPath().resolve("out.json");
+		AnnotationCoordinator.merge(Arrays.asList(shard0, shard1), outFile, 1);
+		Assert.assertEquals("{\"metadata\": 0}\nA\nB\nC\n", new String(Files.readAllBytes(outFile), StandardCharsets.UTF_8));
+
+		Path outGzFile = folder.getRoot().toPath().resolve("out.json.gz");
+		AnnotationCoordinator.merge(Arrays.asList(shard0, shard1), outGzFile, 1);
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(outGzFile))) {
+			Assert.assertEquals("{\"metadata\": 0}\nA\nB\nC\n", IOUtils.toString(is, StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	public void testExecute() throws Exception {
+		List<String> records = new ArrayList<>();
+		StringBuilder builder = new StringBuilder()
+				.append("##fileformat=VCFv4.2\n")
+				.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+		for (String contig : new String[]{"chr1", "GL000220.1", "chr2", "chrX"}) {
+			for (int i = 0; i < 1000; i++) {
+				builder.append(contig).append('\t').append(i + 1).append("\t.\tA\tG\t50\tPASS\t.\n");
+				if (Chromosome.isSupportChromosome(contig)) {
+					records.add(contig + ":" + (i + 1));
+				}
+			}
+		}
+		Path pathVcf = folder.getRoot().toPath().resolve("in.vcf.gz");
+		try (OutputStream os = new BgzfOutputStream(Files.newOutputStream(pathVcf), 2)) {
+			os.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+		}
+
+		Path pathVepJson = folder.getRoot().toPath().resolve("in.vep.json");
+		Files.createFile(pathVepJson);
+
+		//Процессы шардов читают каждый свою часть файла, результаты склеиваются в порядке vcf-файла
+		Path outFile = folder.getRoot().toPath().resolve("out.json");
+		String[] args = {
+				"-vcf", pathVcf.toString(), "-output", outFile.toString(), "-shards", "4",
+				"-recovery", folder.getRoot().toPath().resolve("recovery.json").toString()
+		};
+		new AnnotationCoordinator(
+				pathVcf, pathVepJson, outFile, 4, 1, args,
+				ShardMain.class, Collections.emptyList(), 64
+		).execute();
+
+		List<String> lines = Files.readAllLines(outFile, StandardCharsets.UTF_8);
+		Assert.assertEquals("{\"start\": 0}", lines.get(0));
+		Assert.assertEquals(records, lines.subList(1, lines.size()));
+
+		//Файлы шардов удалены, остались только логи процессов
+		List<String> files;
+		try (Stream<Path> paths = Files.list(folder.getRoot().toPath())) {
+			files = paths
+					.map(path -> path.getFileName().toString())
+					.filter(name -> name.contains(".shard-") && !name.endsWith(".log"))
+					.collect(Collectors.toList());
+		}
+		Assert.assertEquals(Collections.emptyList(), files);
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MemoryBudgetTest {
+
+	@Test
+	public void testLimitBySamples() {
+		long budget = 64L * 1024L * 1024L;
+
+		MemoryBudget trio = new MemoryBudget(budget, 3);
+		MemoryBudget cohort = new MemoryBudget(budget, 2000);
+
+		Assert.assertTrue(trio.getLimit() > cohort.getLimit());
+		Assert.assertTrue(cohort.getLimit() >= 1);
+	}
+
+	@Test
+	public void testAlwaysAdmitOne() throws InterruptedException {
+		MemoryBudget memoryBudget = new MemoryBudget(1, 2000);
+		Assert.assertEquals(1, memoryBudget.getLimit());
+
+		memoryBudget.acquire();
+		Assert.assertEquals(1, memoryBudget.getConcurrency());
+
+		memoryBudget.release();
+		Assert.assertEquals(0, memoryBudget.getConcurrency());
+	}
+
+	@Test
+	public void testAdjustByResultSize() throws InterruptedException {
+		MemoryBudget memoryBudget = new MemoryBudget(64L * 1024L * 1024L, 100);
+		int limit = memoryBudget.getLimit();
+
+		for (int i = 0; i < 100; i++) {
+			memoryBudget.acquire();
+			memoryBudget.release();
+			memoryBudget.observe(1024);
+		}
+		Assert.assertTrue(memoryBudget.getLimit() > limit);
+	}
+
+	@Test
+	public void testTryAcquire() {
+		MemoryBudget memoryBudget = new MemoryBudget(1, 2000);
+
+		Assert.assertTrue(memoryBudget.tryAcquire());
+		Assert.assertFalse(memoryBudget.tryAcquire());
+		Assert.assertEquals(1, memoryBudget.getConcurrency());
+
+		memoryBudget.release();
+		Assert.assertTrue(memoryBudget.tryAcquire());
+	}
+}
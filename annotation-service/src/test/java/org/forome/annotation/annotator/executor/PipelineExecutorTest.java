@@ -0,0 +1,252 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import org.forome.annotation.processing.struct.ProcessingResult;
+import org.forome.annotation.struct.mavariant.MAVariantVep;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class PipelineExecutorTest {
+
+	private static final int RECORDS = 200;
+	private static final int THREADS = 4;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	/**
+	 * Читатель: заранее созданные записи без vcf-файла
+	 */
+	private static class TestSourceReader extends SourceReader {
+
+		private final List<Source> sources;
+		private volatile int index;
+		private volatile boolean closed;
+
+		private TestSourceReader(List<Source> sources) {
+			super(null, null);
+			this.sources = sources;
+		}
+
+		@Override
+		public boolean hasVepJson() {
+			return true;
+		}
+
+		@Override
+		public Source next(int step) throws NoSuchElementException {
+			if (index >= sources.size()) {
+				throw new NoSuchElementException();
+			}
+			return sources.get(index++);
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Обработчик: результат записи - заранее созданный список, время выполнения задается тестом
+	 */
+	private class TestSourceProcessor extends SourceProcessor {
+
+		private final Map<Source, Integer> positions;
+		private final List<List<ProcessingResult>> results;
+
+		/**
+		 * Порядок, в котором завершились записи
+		 */
+		private final List<Integer> completed;
+
+		private final int errorPosition;
+		private final int hangPosition;
+
+		private TestSourceProcessor(List<Source> sources, List<List<ProcessingResult>> results, int errorPosition, int hangPosition) {
+			super(null, null, null, true);
+			this.positions = new IdentityHashMap<>();
+			for (int i = 0; i < sources.size(); i++) {
+				positions.put(sources.get(i), i);
+			}
+			this.results = results;
+			this.completed = Collections.synchronizedList(new ArrayList<>());
+			this.errorPosition = errorPosition;
+			this.hangPosition = hangPosition;
+		}
+
+		@Override
+		public void prefetch(List<Source> sources) {
+		}
+
+		@Override
+		public void process(Source source, CompletableFuture<List<ProcessingResult>> future) {
+			int position = positions.get(source);
+			if (position == errorPosition) {
+				throw new RuntimeException("Test exception, position: " + position);
+			}
+			if (position == hangPosition) {
+				return;
+			}
+			//Каждая THREADS-я запись выполняется дольше следующих за ней
+			long delay = (position % THREADS == 0) ? 20 : 0;
+			scheduler.schedule(() -> {
+				completed.add(position);
+				future.complete(results.get(position));
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@After
+	public void destroy() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testOrder() throws Exception {
+		List<Source> sources = buildSources();
+		List<List<ProcessingResult>> results = buildResults();
+		TestSourceProcessor sourceProcessor = new TestSourceProcessor(sources, results, -1, -1);
+
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		try (PipelineExecutor executor = buildExecutor(new TestSourceReader(sources), sourceProcessor, errors)) {
+			//Результаты выдаются в порядке vcf-файла, независимо от порядка выполнения
+			for (int i = 0; i < RECORDS; i++) {
+				Result result = executor.next();
+				Assert.assertEquals(i, result.position);
+				Assert.assertSame(results.get(i), result.future.get(10, TimeUnit.SECONDS));
+			}
+			Result last = executor.next();
+			Assert.assertEquals(RECORDS, last.position);
+			Assert.assertNull(last.future.get(10, TimeUnit.SECONDS));
+		}
+
+		List<Integer> completed = new ArrayList<>(sourceProcessor.completed);
+		List<Integer> sorted = new ArrayList<>(completed);
+		Collections.sort(sorted);
+		Assert.assertEquals(RECORDS, completed.size());
+		Assert.assertNotEquals(sorted, completed);
+		Assert.assertEquals(Collections.emptyList(), errors);
+	}
+
+	@Test
+	public void testError() throws Exception {
+		int errorPosition = 5;
+		List<Source> sources = buildSources();
+		List<List<ProcessingResult>> results = buildResults();
+		TestSourceProcessor sourceProcessor = new TestSourceProcessor(sources, results, errorPosition, -1);
+
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+		try (PipelineExecutor executor = buildExecutor(new TestSourceReader(sources), sourceProcessor, errors)) {
+			//Ошибка завершает только свою запись, остальные выдаются в прежнем порядке
+			for (int i = 0; i < RECORDS; i++) {
+				Result result = executor.next();
+				Assert.assertEquals(i, result.position);
+				if (i == errorPosition) {
+					try {
+						result.future.get(10, TimeUnit.SECONDS);
+						Assert.fail();
+					} catch (ExecutionException e) {
+						Assert.assertTrue(e.getCause().getMessage().contains("position: " + errorPosition));
+					}
+				} else {
+					Assert.assertSame(results.get(i), result.future.get(10, TimeUnit.SECONDS));
+				}
+			}
+			Assert.assertNull(executor.next().future.get(10, TimeUnit.SECONDS));
+		}
+
+		Assert.assertEquals(1, errors.size());
+	}
+
+	@Test
+	public void testBudget() throws Exception {
+		List<Source> sources = buildSources();
+		TestSourceReader sourceReader = new TestSourceReader(sources);
+		TestSourceProcessor sourceProcessor = new TestSourceProcessor(sources, buildResults(), -1, -1);
+
+		//Бюджет на одну запись: следующая запись не читается (и не попадает в пакет предзагрузки),
+		//пока не забран результат предыдущей
+		MemoryBudget memoryBudget = new MemoryBudget(1, 0);
+		try (PipelineExecutor executor = new PipelineExecutor(
+				sourceReader, sourceProcessor,
+				0, 0, THREADS, THREADS * 4,
+				memoryBudget,
+				(t, e) -> Assert.fail(e.toString())
+		)) {
+			for (int i = 0; i < RECORDS; i++) {
+				Result result = executor.next();
+				Assert.assertEquals(i, result.position);
+				result.future.get(10, TimeUnit.SECONDS);
+				Assert.assertTrue(sourceReader.index <= i + 1);
+				Assert.assertEquals(1, memoryBudget.getConcurrency());
+			}
+			Assert.assertNull(executor.next().future.get(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void testClose() throws Exception {
+		List<Source> sources = buildSources();
+		TestSourceReader sourceReader = new TestSourceReader(sources);
+		TestSourceProcessor sourceProcessor = new TestSourceProcessor(sources, buildResults(), -1, 1);
+
+		PipelineExecutor executor = buildExecutor(sourceReader, sourceProcessor, new ArrayList<>());
+		Assert.assertEquals(0, executor.next().position);
+		Result result = executor.next();
+		Assert.assertEquals(1, result.position);
+		Assert.assertFalse(result.future.isDone());
+
+		//Обработчик ждет незавершенную запись, читатель - места в очереди: close дожидается остановки обоих
+		executor.close();
+		Assert.assertTrue(sourceReader.closed);
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			Assert.assertFalse(thread.getName(), thread.getName().startsWith("PipelineExecutor-t-"));
+		}
+	}
+
+	private static PipelineExecutor buildExecutor(SourceReader sourceReader, SourceProcessor sourceProcessor, List<Throwable> errors) {
+		return new PipelineExecutor(
+				sourceReader, sourceProcessor,
+				0, 0, THREADS, THREADS * 4,
+				new MemoryBudget(64L * 1024L * 1024L, 0),
+				(t, e) -> errors.add(e)
+		);
+	}
+
+	private static List<Source> buildSources() {
+		List<Source> sources = new ArrayList<>();
+		for (int i = 0; i < RECORDS; i++) {
+			sources.add(new Source(new MAVariantVep(), null));
+		}
+		return sources;
+	}
+
+	private static List<List<ProcessingResult>> buildResults() {
+		List<List<ProcessingResult>> results = new ArrayList<>();
+		for (int i = 0; i < RECORDS; i++) {
+			results.add(new ArrayList<>());
+		}
+		return results;
+	}
+}
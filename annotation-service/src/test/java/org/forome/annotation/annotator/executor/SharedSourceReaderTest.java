@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.executor;
+
+import org.forome.annotation.struct.mavariant.MAVariantVep;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+public class SharedSourceReaderTest {
+
+	private static final int RECORDS = 100;
+	private static final int STEP = 3;
+	private static final int PREFETCH_SIZE = 8;
+
+	private static class TestSourceReader extends SourceReader {
+
+		private final Iterator<Source> sources;
+
+		private TestSourceReader(List<Source> sources) {
+			super(null, null);
+			this.sources = sources.iterator();
+		}
+
+		@Override
+		public boolean hasVepJson() {
+			return true;
+		}
+
+		@Override
+		public synchronized Source next(int step) throws NoSuchElementException {
+			return sources.next();
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	/**
+	 * Запоминает записи, для которых выполнена предзагрузка
+	 */
+	private static class TestSourceProcessor extends SourceProcessor {
+
+		private final Set<Source> prefetched = Collections.newSetFromMap(new ConcurrentHashMap<>());
+		private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+		private TestSourceProcessor() {
+			super(null, null, null, true);
+		}
+
+		@Override
+		public void prefetch(List<Source> sources) {
+			batchSizes.add(sources.size());
+			prefetched.addAll(sources);
+		}
+	}
+
+	@Test
+	public void test() throws Exception {
+		List<Source> sources = new ArrayList<>();
+		for (int i = 0; i < RECORDS; i++) {
+			sources.add(new Source(new MAVariantVep(), null));
+		}
+		TestSourceProcessor sourceProcessor = new TestSourceProcessor();
+		SharedSourceReader sharedSourceReader = new SharedSourceReader(
+				new TestSourceReader(sources), sourceProcessor, STEP, PREFETCH_SIZE
+		);
+
+		ExecutorService executorService = Executors.newFixedThreadPool(STEP);
+		try {
+			List<Future<List<Source>>> partitions = new ArrayList<>();
+			for (int partition = 0; partition < STEP; partition++) {
+				int iPartition = partition;
+				partitions.add(executorService.submit(() -> {
+					List<Source> result = new ArrayList<>();
+					while (true) {
+						Source source;
+						try {
+							source = sharedSourceReader.next(iPartition);
+						} catch (NoSuchElementException e) {
+							return result;
+						}
+						//Запись выдается только после предзагрузки ее пакета
+						Assert.assertTrue(sourceProcessor.prefetched.contains(source));
+						result.add(source);
+					}
+				}));
+			}
+
+			//Поток partition получает записи partition, partition + step, ...
+			for (int partition = 0; partition < STEP; partition++) {
+				List<Source> expected = new ArrayList<>();
+				for (int i = partition; i < RECORDS; i += STEP) {
+					expected.add(sources.get(i));
+				}
+				Assert.assertEquals(expected, partitions.get(partition).get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+
+		Assert.assertEquals(RECORDS, sourceProcessor.prefetched.size());
+		for (int batchSize : sourceProcessor.batchSizes) {
+			Assert.assertTrue(batchSize <= PREFETCH_SIZE);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.recovery;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class CheckpointTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWriteRead() throws IOException {
+		Path file = Checkpoint.getPath(folder.getRoot().toPath().resolve("out.json.gz"));
+		Assert.assertNull(Checkpoint.read(file));
+
+		long vcfOffset = (12345L << 16) | 678;
+		new Checkpoint(100, vcfOffset, 250, 4096).write(file);
+		Checkpoint checkpoint = Checkpoint.read(file);
+		Assert.assertEquals(100, checkpoint.offset);
+		Assert.assertEquals(vcfOffset, checkpoint.vcfOffset);
+		Assert.assertEquals(250, checkpoint.countRecords);
+		Assert.assertEquals(4096, checkpoint.outputSize);
+		Assert.assertFalse(Files.exists(Paths.get(file.toString() + ".tmp")));
+
+		//Перезапись
+		new Checkpoint(200, -1, 500, 8192).write(file);
+		checkpoint = Checkpoint.read(file);
+		Assert.assertEquals(200, checkpoint.offset);
+		Assert.assertEquals(-1, checkpoint.vcfOffset);
+	}
+
+	@Test
+	public void testReadWithoutVcfOffset() throws IOException {
+		Path file = Checkpoint.getPath(folder.getRoot().toPath().resolve("out.json.gz"));
+		Files.write(file, "{\"offset\":100,\"count_records\":250,\"output_size\":4096}".getBytes(StandardCharsets.UTF_8));
+
+		Checkpoint checkpoint = Checkpoint.read(file);
+		Assert.assertEquals(100, checkpoint.offset);
+		Assert.assertEquals(-1, checkpoint.vcfOffset);
+		Assert.assertEquals(250, checkpoint.countRecords);
+		Assert.assertEquals(4096, checkpoint.outputSize);
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadBadFile() throws IOException {
+		Path file = Checkpoint.getPath(folder.getRoot().toPath().resolve("out.json.gz"));
+		Files.write(file, "[1, 2]".getBytes(StandardCharsets.UTF_8));
+		Checkpoint.read(file);
+	}
+}
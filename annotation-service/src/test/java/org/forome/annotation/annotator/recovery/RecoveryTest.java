@@ -0,0 +1,181 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.recovery;
+
+import net.minidev.json.JSONObject;
+import org.apache.commons.io.IOUtils;
+import org.forome.annotation.annotator.writer.AnfisaJsonWriter;
+import org.forome.annotation.utils.compression.BgzfIndex;
+import org.forome.annotation.utils.compression.BgzfOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+public class RecoveryTest {
+
+	private static final int VARIANTS = 60;
+	private static final int INTERVAL = 10;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCheckpointWriter() throws IOException {
+		Path outFile = folder.getRoot().toPath().resolve("out.json.gz");
+		Path checkpointFile = Checkpoint.getPath(outFile);
+		try (OutputStream os = buildOutputStream(outFile, -1)) {
+			AnfisaJsonWriter writer = new AnfisaJsonWriter(os);
+			CheckpointWriter checkpointWriter = new CheckpointWriter(outFile, writer, INTERVAL, 0);
+
+			//Контрольная точка сохраняется не чаще, чем раз в INTERVAL вариантов
+			write(writer, checkpointWriter, 0, INTERVAL - 1);
+			Assert.assertNull(Checkpoint.read(checkpointFile));
+
+			write(writer, checkpointWriter, INTERVAL - 1, INTERVAL + 5);
+			Checkpoint checkpoint = Checkpoint.read(checkpointFile);
+			Assert.assertEquals(INTERVAL, checkpoint.offset);
+			Assert.assertEquals(getVcfOffset(INTERVAL), checkpoint.vcfOffset);
+			Assert.assertEquals(getCountRecords(INTERVAL), checkpoint.countRecords);
+			//Результат сброшен на диск до сохранения контрольной точки
+			Assert.assertTrue(checkpoint.outputSize > 0);
+			Assert.assertTrue(checkpoint.outputSize <= Files.size(outFile));
+
+			checkpointWriter.clear();
+			Assert.assertFalse(Files.exists(checkpointFile));
+		}
+	}
+
+	@Test
+	public void testRestoreFromTruncatedOutput() throws IOException {
+		Path recoveryFile = folder.getRoot().toPath().resolve("recovery.json.gz");
+		Path outFile = folder.getRoot().toPath().resolve("out.json.gz");
+
+		//Прерванная аннотация: после последней контрольной точки записаны (и сброшены на диск) еще несколько вариантов
+		int interrupted = 3 * INTERVAL + 7;
+		try (OutputStream os = buildOutputStream(recoveryFile, -1)) {
+			AnfisaJsonWriter writer = new AnfisaJsonWriter(os);
+			writer.write(buildRecord("metadata", -1, 0));
+			CheckpointWriter checkpointWriter = new CheckpointWriter(recoveryFile, writer, INTERVAL, 0);
+			write(writer, checkpointWriter, 0, interrupted);
+			writer.flush();
+		}
+
+		Checkpoint checkpoint = Recovery.restore(recoveryFile, outFile);
+		Assert.assertEquals(3 * INTERVAL, checkpoint.offset);
+		Assert.assertEquals(getVcfOffset(3 * INTERVAL), checkpoint.vcfOffset);
+		Assert.assertEquals(getCountRecords(3 * INTERVAL), checkpoint.countRecords);
+		Assert.assertFalse(Files.exists(recoveryFile));
+		Assert.assertFalse(Files.exists(Checkpoint.getPath(recoveryFile)));
+		Assert.assertEquals(checkpoint.offset, Checkpoint.read(Checkpoint.getPath(outFile)).offset);
+
+		//Продолжение: хвост после контрольной точки отбрасывается, варианты с checkpoint.offset записываются заново
+		try (OutputStream os = buildOutputStream(outFile, checkpoint.outputSize)) {
+			AnfisaJsonWriter writer = new AnfisaJsonWriter(os);
+			CheckpointWriter checkpointWriter = new CheckpointWriter(outFile, writer, INTERVAL, checkpoint.offset);
+			write(writer, checkpointWriter, checkpoint.offset, VARIANTS);
+			writer.flush();
+		}
+
+		List<String> expected = new ArrayList<>();
+		expected.add(buildRecord("metadata", -1, 0).toJSONString());
+		for (int i = 0; i < VARIANTS; i++) {
+			for (int j = 0; j < getCountRecords(i + 1) - getCountRecords(i); j++) {
+				expected.add(buildRecord("variant", i, j).toJSONString());
+			}
+		}
+		Assert.assertEquals(expected, readLines(outFile));
+	}
+
+	@Test
+	public void testRestoreWithoutCheckpoint() throws IOException {
+		Path recoveryFile = folder.getRoot().toPath().resolve("recovery.json.gz");
+		Path outFile = folder.getRoot().toPath().resolve("out.json.gz");
+		Files.write(recoveryFile, new byte[0]);
+
+		Assert.assertNull(Recovery.restore(recoveryFile, outFile));
+		Assert.assertTrue(Files.exists(recoveryFile));
+		Assert.assertFalse(Files.exists(outFile));
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testRestoreShorterThanCheckpoint() throws IOException {
+		Path recoveryFile = folder.getRoot().toPath().resolve("recovery.json.gz");
+		Path outFile = folder.getRoot().toPath().resolve("out.json.gz");
+		Files.write(recoveryFile, new byte[100]);
+		new Checkpoint(INTERVAL, -1, INTERVAL, 200).write(Checkpoint.getPath(recoveryFile));
+
+		Recovery.restore(recoveryFile, outFile);
+	}
+
+	/**
+	 * Записывает варианты [from, to) так же, как AnnotationConsole: все записи варианта, затем onWrite
+	 */
+	private static void write(AnfisaJsonWriter writer, CheckpointWriter checkpointWriter, int from, int to) throws IOException {
+		for (int i = from; i < to; i++) {
+			for (int j = 0; j < getCountRecords(i + 1) - getCountRecords(i); j++) {
+				writer.write(buildRecord("variant", i, j));
+			}
+			checkpointWriter.onWrite(i + 1, getVcfOffset(i + 1), getCountRecords(i + 1));
+		}
+	}
+
+	/**
+	 * Мультиаллельные варианты: у каждого третьего варианта - две записи
+	 */
+	private static int getCountRecords(int variants) {
+		return variants + (variants + 2) / 3;
+	}
+
+	private static long getVcfOffset(int variant) {
+		return ((long) variant * 1000) << 16 | variant;
+	}
+
+	private static JSONObject buildRecord(String type, int variant, int allele) {
+		JSONObject record = new JSONObject();
+		record.put("record_type", type);
+		record.put("variant", variant);
+		record.put("allele", allele);
+		return record;
+	}
+
+	private static OutputStream buildOutputStream(Path file, long appendSize) throws IOException {
+		if (appendSize >= 0) {
+			return BgzfOutputStream.append(file, appendSize, 2, BgzfIndex.getPath(file), Deflater.DEFAULT_COMPRESSION);
+		}
+		return new BgzfOutputStream(Files.newOutputStream(file), 2, BgzfIndex.getPath(file), Deflater.DEFAULT_COMPRESSION);
+	}
+
+	private static List<String> readLines(Path file) throws IOException {
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+			return IOUtils.readLines(is, StandardCharsets.UTF_8);
+		}
+	}
+}
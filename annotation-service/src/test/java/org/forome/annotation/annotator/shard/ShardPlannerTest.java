@@ -0,0 +1,197 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.annotator.shard;
+
+import org.forome.annotation.utils.compression.BgzfInputStream;
+import org.forome.annotation.utils.compression.BgzfOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+public class ShardPlannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws IOException {
+		List<String> records = new ArrayList<>();
+		String text = buildVcf(records);
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		try (OutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 2)) {
+			os.write(text.getBytes(StandardCharsets.UTF_8));
+		}
+
+		ScanResult scan = ShardPlanner.scan(file, 100);
+		assertCounts(scan);
+		Assert.assertTrue(scan.hasOffsets());
+
+		//С запомненного смещения читается именно запись с этим порядковым номером
+		for (int position = 0; position < records.size(); position += 100) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+					new BgzfInputStream(file, scan.getOffset(position), 1), StandardCharsets.UTF_8
+			))) {
+				Assert.assertEquals(records.get(position), reader.readLine());
+			}
+		}
+		Assert.assertEquals(-1, scan.getOffset(records.size() + 100));
+	}
+
+	@Test
+	public void testScanPlain() throws IOException {
+		String text = buildVcf(new ArrayList<>());
+		Path file = folder.getRoot().toPath().resolve("in.vcf");
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+		ScanResult scan = ShardPlanner.scan(file, 100);
+		assertCounts(scan);
+		Assert.assertFalse(scan.hasOffsets());
+		Assert.assertEquals(-1, scan.getOffset(100));
+	}
+
+	@Test
+	public void testSplitOffsets() {
+		LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+		counts.put("chr1", 1000);
+		counts.put("chr2", 1000);
+		long[] offsets = new long[20];
+		for (int i = 0; i < offsets.length; i++) {
+			offsets[i] = (i + 1) * 1000L;
+		}
+
+		//Границы шардов выравниваются на шаг смещений: 666 -> 600, 1333 -> 1300
+		List<Shard> shards = ShardPlanner.split(new ScanResult(counts, 100, offsets), 3);
+		Assert.assertEquals(3, shards.size());
+		Assert.assertEquals(0, shards.get(0).start);
+		Assert.assertEquals(600, shards.get(0).end);
+		Assert.assertEquals(600, shards.get(1).start);
+		Assert.assertEquals(1300, shards.get(1).end);
+		Assert.assertEquals(1300, shards.get(2).start);
+		Assert.assertEquals(0, shards.get(2).end);
+
+		Assert.assertEquals(1000L, shards.get(0).offset);
+		Assert.assertEquals(7000L, shards.get(1).offset);
+		Assert.assertEquals(14000L, shards.get(2).offset);
+
+		Assert.assertEquals("chr2", shards.get(1).lastContig);
+	}
+
+	@Test
+	public void testSplitOffsetsSmall() {
+		LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+		counts.put("chr1", 150);
+
+		//Шарды, ставшие пустыми после выравнивания, не создаются
+		List<Shard> shards = ShardPlanner.split(new ScanResult(counts, 100, new long[]{10L, 20L}), 4);
+		Assert.assertEquals(2, shards.size());
+		Assert.assertEquals(0, shards.get(0).start);
+		Assert.assertEquals(100, shards.get(0).end);
+		Assert.assertEquals(100, shards.get(1).start);
+		Assert.assertEquals(0, shards.get(1).end);
+		Assert.assertEquals(1, shards.get(1).index);
+		Assert.assertEquals(20L, shards.get(1).offset);
+	}
+
+	@Test
+	public void testSplit() {
+		LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+		counts.put("chr1", 500);
+		counts.put("chr2", 300);
+		counts.put("chrX", 201);
+
+		List<Shard> shards = ShardPlanner.split(counts, 3);
+		Assert.assertEquals(3, shards.size());
+
+		//Шарды покрывают все записи без пропусков и пересечений
+		Assert.assertEquals(0, shards.get(0).start);
+		Assert.assertEquals(333, shards.get(0).end);
+		Assert.assertEquals(333, shards.get(1).start);
+		Assert.assertEquals(667, shards.get(1).end);
+		Assert.assertEquals(667, shards.get(2).start);
+		Assert.assertEquals(0, shards.get(2).end);
+
+		Assert.assertEquals("chr1", shards.get(0).firstContig);
+		Assert.assertEquals("chr1", shards.get(0).lastContig);
+		Assert.assertEquals("chr1", shards.get(1).firstContig);
+		Assert.assertEquals("chr2", shards.get(1).lastContig);
+		Assert.assertEquals("chr2", shards.get(2).firstContig);
+		Assert.assertEquals("chrX", shards.get(2).lastContig);
+	}
+
+	@Test
+	public void testSplitSmall() {
+		LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+		counts.put("chr1", 2);
+
+		List<Shard> shards = ShardPlanner.split(counts, 8);
+		Assert.assertEquals(2, shards.size());
+		Assert.assertEquals(1, shards.get(0).end);
+		Assert.assertEquals(1, shards.get(1).start);
+		Assert.assertEquals(0, shards.get(1).end);
+	}
+
+	private static void assertCounts(ScanResult scan) {
+		Assert.assertEquals(3, scan.counts.size());
+		Assert.assertEquals(Integer.valueOf(1000), scan.counts.get("chr1"));
+		Assert.assertEquals(Integer.valueOf(700), scan.counts.get("chr2"));
+		Assert.assertEquals(Integer.valueOf(300), scan.counts.get("chrX"));
+	}
+
+	/**
+	 * Vcf-файл из нескольких BGZF-блоков, записи неподдерживаемой хромосомы в нумерацию не входят
+	 *
+	 * @param records - сюда добавляются записи в порядке нумерации
+	 */
+	private static String buildVcf(List<String> records) {
+		StringBuilder builder = new StringBuilder()
+				.append("##fileformat=VCFv4.2\n")
+				.append("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+		String info = "DP=100;AF=0.5;DESCRIPTION=scan_test_record_with_a_long_info_column";
+		for (int i = 0; i < 1000; i++) {
+			records.add("chr1\t" + (i + 1) + "\t.\tA\tG\t50\tPASS\t" + info);
+		}
+		for (int i = 0; i < 700; i++) {
+			records.add("chr2\t" + (i + 1) + "\t.\tA\tG\t50\tPASS\t" + info);
+		}
+		for (int i = 0; i < 300; i++) {
+			records.add("chrX\t" + (i + 1) + "\t.\tA\tG\t50\tPASS\t" + info);
+		}
+		for (int i = 0; i < records.size(); i++) {
+			builder.append(records.get(i)).append('\n');
+			if (i == 999) {
+				for (int j = 0; j < 5; j++) {
+					builder.append("GL000220.1\t").append(j + 1).append("\t.\tA\tG\t50\tPASS\t").append(info).append('\n');
+				}
+			}
+		}
+		return builder.toString();
+	}
+}
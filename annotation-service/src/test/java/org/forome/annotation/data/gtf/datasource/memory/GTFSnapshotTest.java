@@ -0,0 +1,105 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gtf.datasource.memory;
+
+import org.forome.annotation.data.gtf.mysql.struct.GTFTranscriptRow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+public class GTFSnapshotTest {
+
+	@Test
+	public void testLookup() throws IOException {
+		GTFSnapshot.Builder builder = new GTFSnapshot.Builder();
+		builder.addGene("1", 100, 500, "GENE1");
+		builder.addGene("1", 400, 900, "GENE2");
+		builder.addFeature("1", "T2", "GENE2", 400, 900, GTFSnapshot.FEATURE_TRANSCRIPT);
+		builder.addFeature("1", "T1", "GENE1", 100, 500, GTFSnapshot.FEATURE_TRANSCRIPT);
+		builder.addFeature("1", "T1", "GENE1", 300, 350, GTFSnapshot.FEATURE_EXON);
+		builder.addFeature("1", "T1", "GENE1", 100, 200, GTFSnapshot.FEATURE_EXON);
+		builder.addFeature("1", "T1", "GENE1", 150, 180, GTFSnapshot.FEATURE_CDS);
+		builder.addFeature("1", "T2", "GENE2", 400, 450, GTFSnapshot.FEATURE_EXON);
+		builder.addFeature("1", "T2", "GENE2", 420, 440, GTFSnapshot.FEATURE_CDS);
+
+		GTFSnapshot snapshot = write(builder);
+
+		Assert.assertEquals("GENE1", snapshot.getGene("1", 450));
+		Assert.assertEquals("GENE2", snapshot.getGene("1", 900));
+		Assert.assertEquals(null, snapshot.getGene("1", 901));
+		Assert.assertEquals(null, snapshot.getGene("2", 450));
+
+		List<GTFTranscriptRow> rows = snapshot.getTranscriptRows("T1");
+		Assert.assertEquals(2, rows.size());
+		Assert.assertEquals(100, rows.get(0).start);
+		Assert.assertEquals(200, rows.get(0).end);
+		Assert.assertEquals(300, rows.get(1).start);
+		Assert.assertEquals("GENE1", rows.get(1).gene);
+		Assert.assertEquals("exon", rows.get(1).feature);
+		Assert.assertTrue(snapshot.getTranscriptRows("T3").isEmpty());
+
+		//Границы транскрипта не входят
+		Assert.assertEquals(Arrays.asList("T1", "T2"), snapshot.getTranscripts("1", new long[]{ 450 }));
+		Assert.assertEquals(Collections.singletonList("T2"), snapshot.getTranscripts("1", new long[]{ 500, 600 }));
+		Assert.assertTrue(snapshot.getTranscripts("1", new long[]{ 100 }).isEmpty());
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList("T1", "T2")), snapshot.getCdsTranscripts("1", 180, 420));
+		Assert.assertEquals(Collections.singleton("T1"), snapshot.getCdsTranscripts("1", 150, 150));
+		Assert.assertTrue(snapshot.getCdsTranscripts("1", 181, 419).isEmpty());
+	}
+
+	/**
+	 * Сравнение поиска по дереву с полным перебором
+	 */
+	@Test
+	public void testQueryRandom() throws IOException {
+		Random random = new Random(1);
+		int size = 5000;
+		int[] starts = new int[size];
+		int[] ends = new int[size];
+		GTFSnapshot.Builder builder = new GTFSnapshot.Builder();
+		for (int i = 0; i < size; i++) {
+			starts[i] = random.nextInt(1000000);
+			ends[i] = starts[i] + random.nextInt((i % 10 == 0) ? 100000 : 1000);
+			builder.addFeature("1", "T" + i, "G" + i, starts[i], ends[i], GTFSnapshot.FEATURE_CDS);
+		}
+		GTFSnapshot snapshot = write(builder);
+
+		for (int q = 0; q < 1000; q++) {
+			int position = random.nextInt(1100000);
+			Set<String> expected = new HashSet<>();
+			for (int i = 0; i < size; i++) {
+				if (starts[i] <= position && position <= ends[i]) {
+					expected.add("T" + i);
+				}
+			}
+			Assert.assertEquals(expected, snapshot.getCdsTranscripts("1", position, position));
+		}
+	}
+
+	private static GTFSnapshot write(GTFSnapshot.Builder builder) throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		builder.write(os);
+		return GTFSnapshot.read(ByteBuffer.wrap(os.toByteArray()));
+	}
+}
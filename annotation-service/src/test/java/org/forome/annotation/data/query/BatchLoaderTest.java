@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchLoaderTest {
+
+	@Test
+	public void testGetAll() {
+		List<List<Integer>> calls = new ArrayList<>();
+		BatchLoader<Integer, String> loader = new BatchLoader<>(keys -> {
+			calls.add(keys);
+			Map<Integer, String> values = new HashMap<>();
+			for (Integer key : keys) {
+				if (key % 2 == 0) {
+					values.put(key, "v" + key);
+				}
+			}
+			return values;
+		}, "none", 3, 1);
+
+		List<String> values = loader.getAll(Arrays.asList(1, 2, 2, 4, 5, 6, 8));
+		Assert.assertEquals(Arrays.asList("none", "v2", "v2", "v4", "none", "v6", "v8"), values);
+
+		//Повторяющийся ключ запрашивается один раз, размер пакета ограничен
+		Assert.assertEquals(Arrays.asList(
+				Arrays.asList(1, 2, 4),
+				Arrays.asList(5, 6, 8)
+		), calls);
+
+		Assert.assertEquals("v2", loader.get(2));
+		Assert.assertEquals(3, calls.size());
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		int threads = 8;
+		AtomicInteger loads = new AtomicInteger();
+		AtomicInteger keys = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		BatchLoader<Integer, Integer> loader = new BatchLoader<>(batch -> {
+			loads.incrementAndGet();
+			keys.addAndGet(batch.size());
+			try {
+				//Пока первый пакет выполняется, остальные ключи копятся во втором
+				started.await(10, TimeUnit.SECONDS);
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+			Map<Integer, Integer> values = new HashMap<>();
+			for (Integer key : batch) {
+				values.put(key, key * 10);
+			}
+			return values;
+		}, null, 256, 1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				int key = i;
+				futures.add(executor.submit(() -> loader.get(key)));
+			}
+			started.countDown();
+			for (int i = 0; i < threads; i++) {
+				Assert.assertEquals(Integer.valueOf(i * 10), futures.get(i).get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertEquals(threads, keys.get());
+		Assert.assertTrue(loads.get() < threads);
+	}
+
+	@Test
+	public void testException() {
+		BatchLoader<String, String> loader = new BatchLoader<>(keys -> {
+			throw new IllegalStateException("fail");
+		}, null);
+		try {
+			loader.get("key");
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("fail", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testInClauseSize() {
+		Assert.assertEquals(1, InClause.size(1));
+		Assert.assertEquals(2, InClause.size(2));
+		Assert.assertEquals(4, InClause.size(3));
+		Assert.assertEquals(256, InClause.size(129));
+		Assert.assertEquals("?, ?, ?, ?", InClause.build(3, "?"));
+	}
+}
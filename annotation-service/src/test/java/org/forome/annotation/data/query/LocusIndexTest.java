@@ -0,0 +1,50 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class LocusIndexTest {
+
+	@Test
+	public void testGet() {
+		LocusIndex<String> index = new LocusIndex.Builder<String>()
+				.add(200, 210, "c")
+				.add(100, 100, "a1")
+				.add(100, 105, "b")
+				.add(100, 100, "a2")
+				.add(50, 300, "d")
+				.build();
+
+		Assert.assertEquals(5, index.size());
+		Assert.assertEquals(Arrays.asList("a1", "a2", "b"), index.get(100));
+		Assert.assertEquals(Arrays.asList("a1", "a2"), index.get(100, 100));
+		Assert.assertEquals(Collections.singletonList("b"), index.get(100, 105));
+		Assert.assertEquals(Collections.emptyList(), index.get(100, 101));
+		Assert.assertEquals(Collections.singletonList("c"), index.get(200, 210));
+		Assert.assertEquals(Collections.emptyList(), index.get(150));
+		Assert.assertEquals(Collections.emptyList(), index.get(400));
+
+		Assert.assertEquals(Collections.emptyList(), new LocusIndex.Builder<String>().build().get(1));
+	}
+}
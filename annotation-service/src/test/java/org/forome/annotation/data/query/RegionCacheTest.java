@@ -0,0 +1,71 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.query;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class RegionCacheTest {
+
+	@Test
+	public void testRegions() {
+		List<String> loads = new ArrayList<>();
+		RegionCache<String> cache = new RegionCache<>((chromosome, start, end) -> {
+			String region = chromosome + ":" + start + "-" + end;
+			loads.add(region);
+			return region;
+		}, 1000, 2);
+
+		Assert.assertEquals("1:0-999", cache.get("1", 5));
+		Assert.assertEquals("1:0-999", cache.get("1", 999));
+		Assert.assertEquals("1:1000-1999", cache.get("1", 1000));
+		Assert.assertEquals("2:1000-1999", cache.get("2", 1500));
+		Assert.assertEquals(Arrays.asList("1:0-999", "1:1000-1999", "2:1000-1999"), loads);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.getLoads());
+
+		//Вытеснен давно не использовавшийся регион
+		Assert.assertEquals(Arrays.asList("1:1000-1999", "2:1000-1999"), cache.getResident());
+		cache.get("1", 1);
+		Assert.assertEquals(4, cache.getLoads());
+	}
+
+	@Test
+	public void testLoadException() {
+		int[] attempts = new int[1];
+		RegionCache<String> cache = new RegionCache<>((chromosome, start, end) -> {
+			if (attempts[0]++ == 0) {
+				throw new IllegalStateException("fail");
+			}
+			return "ok";
+		}, 1000, 2);
+
+		try {
+			cache.get("1", 1);
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("fail", e.getMessage());
+		}
+		Assert.assertEquals("ok", cache.get("1", 1));
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.iterator.vcf;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import org.forome.annotation.annotator.shard.ShardPlanner;
+import org.forome.annotation.utils.compression.BgzfBlockScanner;
+import org.forome.annotation.utils.compression.BgzfOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VCFBgzfIteratorTest {
+
+	private static final String[] CONTIGS = {"chr1", "chr2", "chrX"};
+
+	private static final int RECORDS = 5000;
+
+	/**
+	 * Каждая LONG_ID_STEP-я запись длиннее BGZF-блока
+	 */
+	private static final int LONG_ID_STEP = 1777;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRead() throws IOException {
+		Path file = writeVcf();
+
+		//Последовательно и по частям (в том числе по одному блоку) - записи в порядке файла
+		for (int threads : new int[]{1, 4}) {
+			for (int chunkBlocks : new int[]{1, 2, VCFBgzfIterator.CHUNK_BLOCKS}) {
+				try (VCFBgzfIterator iterator = new VCFBgzfIterator(file, -1, threads, chunkBlocks)) {
+					for (int i = 0; i < CONTIGS.length * RECORDS; i++) {
+						Assert.assertTrue(iterator.hasNext());
+						assertRecord(i, iterator.next());
+					}
+					Assert.assertFalse(iterator.hasNext());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testReadChunk() throws IOException {
+		Path file = writeVcf();
+		String headerText = VCFBgzfIterator.readHeaderText(file);
+		long middle = ShardPlanner.scan(file, 50).getOffset(RECORDS);
+
+		//Запись на границе принадлежит части, в которой начинается ее строка
+		List<VCFBgzfIterator.Record> first = VCFBgzfIterator.readChunk(
+				file, VCFBgzfIterator.buildCodec(headerText).codec, new VCFBgzfIterator.Chunk(0, middle, false)
+		);
+		Assert.assertEquals(RECORDS, first.size());
+		for (int i = 0; i < RECORDS; i++) {
+			assertRecord(i, first.get(i).variantContext);
+		}
+		Assert.assertEquals(middle, first.get(RECORDS - 1).nextOffset);
+
+		//Блок закрыт досрочно после записи RECORDS - 1: следующая часть начинается с последнего байта
+		//предыдущего блока - перевода строки, поэтому первая строка ее блока не пропускается
+		Assert.assertEquals(0, middle & 0xffff);
+		long previousByte = -1;
+		try (BgzfBlockScanner scanner = new BgzfBlockScanner(file, 0)) {
+			while (scanner.next() && scanner.getAddress() < middle >>> 16) {
+				previousByte = (scanner.getAddress() << 16) | (scanner.getDataSize() - 1);
+			}
+		}
+		List<VCFBgzfIterator.Record> second = VCFBgzfIterator.readChunk(
+				file, VCFBgzfIterator.buildCodec(headerText).codec, new VCFBgzfIterator.Chunk(previousByte, Long.MAX_VALUE, true)
+		);
+		Assert.assertEquals(CONTIGS.length * RECORDS - RECORDS, second.size());
+		for (int i = 0; i < second.size(); i++) {
+			assertRecord(RECORDS + i, second.get(i).variantContext);
+		}
+	}
+
+	@Test
+	public void testReadFromVirtualOffset() throws IOException {
+		Path file = writeVcf();
+		int position = RECORDS + RECORDS / 2;
+		long virtualOffset = ShardPlanner.scan(file, 50).getOffset(position);
+
+		//Чтение с середины хромосомы: по частям (несколько потоков) и последовательно
+		for (int threads : new int[]{1, 4}) {
+			try (VCFBgzfIterator iterator = new VCFBgzfIterator(file, virtualOffset, threads, 1)) {
+				for (int i = position; i < CONTIGS.length * RECORDS; i++) {
+					Assert.assertTrue(iterator.hasNext());
+					assertRecord(i, iterator.next());
+				}
+				Assert.assertFalse(iterator.hasNext());
+			}
+		}
+	}
+
+	@Test
+	public void testContinueFromVirtualOffset() throws IOException {
+		Path file = writeVcf();
+
+		//Смещение после каждой записи (по частям и последовательно) - начало следующей записи
+		for (int threads : new int[]{1, 4}) {
+			List<Long> virtualOffsets = new ArrayList<>();
+			try (VCFBgzfIterator iterator = new VCFBgzfIterator(file, -1, threads, 1)) {
+				while (iterator.hasNext()) {
+					iterator.next();
+					virtualOffsets.add(iterator.getVirtualOffset());
+				}
+			}
+			Assert.assertEquals(CONTIGS.length * RECORDS, virtualOffsets.size());
+
+			for (int i = 0; i < virtualOffsets.size(); i += 997) {
+				try (VCFBgzfIterator iterator = new VCFBgzfIterator(file, virtualOffsets.get(i), threads, 1)) {
+					for (int j = i + 1; j < CONTIGS.length * RECORDS; j++) {
+						Assert.assertTrue(iterator.hasNext());
+						assertRecord(j, iterator.next());
+					}
+					Assert.assertFalse(iterator.hasNext());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Часть блоков закрывается досрочно на границе строки, остальные - посреди строки
+	 */
+	private Path writeVcf() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		try (OutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 2)) {
+			write(os, "##fileformat=VCFv4.2\n");
+			write(os, "#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\n");
+			for (int i = 0; i < CONTIGS.length * RECORDS; i++) {
+				write(os, CONTIGS[i / RECORDS] + '\t' + getPosition(i % RECORDS) + '\t' + getId(i) + "\tA\tG\t50\tPASS\t.\n");
+				if (i % 1000 == 999) {
+					os.flush();
+				}
+			}
+		}
+		return file;
+	}
+
+	private static void write(OutputStream os, String value) throws IOException {
+		os.write(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void assertRecord(int record, VariantContext variantContext) {
+		Assert.assertEquals(CONTIGS[record / RECORDS], variantContext.getContig());
+		Assert.assertEquals(getPosition(record % RECORDS), variantContext.getStart());
+		Assert.assertEquals(getId(record), variantContext.getID());
+	}
+
+	private static String getId(int record) {
+		if (record % LONG_ID_STEP == LONG_ID_STEP - 1) {
+			StringBuilder id = new StringBuilder("rs").append(record).append('_');
+			while (id.length() < 100_000) {
+				id.append('x');
+			}
+			return id.toString();
+		}
+		return "rs" + record;
+	}
+
+	private static int getPosition(int record) {
+		return (record + 1) * 10;
+	}
+}
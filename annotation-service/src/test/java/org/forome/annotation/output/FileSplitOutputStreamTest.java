@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.output;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class FileSplitOutputStreamTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSplit() throws IOException {
+		Path target = folder.getRoot().toPath().resolve("out.json.gz");
+		try (FileSplitOutputStream os = new FileSplitOutputStream(target, 3)) {
+			os.writeLineWithIgnoreLimit(bytes("header"));
+			for (int i = 0; i < 7; i++) {
+				os.writeLine(bytes("line" + i));
+			}
+		}
+
+		//Части пишутся в общем пуле сжатия, каждая часть - самостоятельный gzip
+		Assert.assertEquals(Arrays.asList("header", "line0", "line1", "line2"), read(target));
+		Assert.assertEquals(Arrays.asList("line3", "line4", "line5"), read(target.resolveSibling("out.1.json.gz")));
+		Assert.assertEquals(Arrays.asList("line6"), read(target.resolveSibling("out.2.json.gz")));
+		Assert.assertEquals(3, folder.getRoot().list().length);
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static List<String> read(Path file) throws IOException {
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+			return IOUtils.readLines(is, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.processing.struct;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.forome.annotation.data.dbnsfp.struct.DbNSFPItem;
+import org.forome.annotation.data.dbnsfp.struct.DbNSFPItemFacet;
+import org.forome.annotation.data.dbnsfp.struct.DbNSFPItemFacetTranscript;
+import org.forome.annotation.struct.Allele;
+import org.forome.annotation.struct.variant.custom.VariantCustom;
+import org.forome.annotation.struct.variant.vep.VariantVep;
+import org.forome.core.struct.Chromosome;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+public class ExecuteContextTest {
+
+	private final AtomicInteger conservationLoads = new AtomicInteger();
+	private final AtomicInteger dbNSFPLoads = new AtomicInteger();
+
+	@Test
+	public void testDbNSFPTranscript() {
+		List<DbNSFPItem> items = buildDbNSFPItems();
+		ExecuteContext executeContext = buildExecuteContext(items, null);
+
+		//Ленивый поиск через индекс возвращает те же транскрипты, что и прямой поиск по всем записям
+		for (String transcriptId : Arrays.asList("ENST1", "ENST2", "ENST4", "ENST1")) {
+			Assert.assertSame(findDbNSFPTranscript(items, transcriptId), executeContext.getDbNSFPTranscript(transcriptId));
+		}
+		Assert.assertNull(executeContext.getDbNSFPTranscript(null));
+
+		//Повторяющийся транскрипт - ошибка только при обращении к нему
+		try {
+			executeContext.getDbNSFPTranscript("ENST3");
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage().contains("ENST3"));
+		}
+
+		Assert.assertSame(items, executeContext.getDbNSFPItems());
+		Assert.assertEquals(1, dbNSFPLoads.get());
+		Assert.assertEquals(0, conservationLoads.get());
+	}
+
+	@Test
+	public void testVepTranscripts() {
+		JSONArray jTranscripts = new JSONArray();
+		for (String transcriptId : Arrays.asList("ENST1", "ENST2", "ENST1", "ENST3", "ENST2")) {
+			JSONObject jTranscript = new JSONObject();
+			jTranscript.put("transcript_id", transcriptId);
+			jTranscripts.add(jTranscript);
+		}
+		JSONObject vepJson = new JSONObject();
+		vepJson.put("transcript_consequences", jTranscripts);
+		VariantVep variant = new VariantCustom(Chromosome.of("1"), 100, 100, new Allele("A"), new Allele("G"));
+		variant.setVepJson(vepJson);
+
+		ExecuteContext executeContext = buildExecuteContext(buildDbNSFPItems(), variant);
+
+		//Первый транскрипт с каждым transcript_id, в порядке ответа vep
+		List<JSONObject> expected = Arrays.asList(
+				(JSONObject) jTranscripts.get(0), (JSONObject) jTranscripts.get(1), (JSONObject) jTranscripts.get(3)
+		);
+		List<JSONObject> vepTranscripts = executeContext.getVepTranscripts();
+		Assert.assertEquals(expected, vepTranscripts);
+		Assert.assertSame(vepTranscripts, executeContext.getVepTranscripts());
+
+		//Данные, которые не запрашивались, не вычисляются
+		Assert.assertEquals(0, dbNSFPLoads.get());
+		Assert.assertEquals(0, conservationLoads.get());
+
+		Assert.assertNull(buildExecuteContext(buildDbNSFPItems(), null).getVepTranscripts());
+	}
+
+	@Test
+	public void testConservation() {
+		ExecuteContext executeContext = buildExecuteContext(buildDbNSFPItems(), null);
+
+		//Отсутствие данных тоже запоминается
+		Assert.assertNull(executeContext.getConservation());
+		Assert.assertNull(executeContext.getConservation());
+		Assert.assertEquals(1, conservationLoads.get());
+	}
+
+	private ExecuteContext buildExecuteContext(List<DbNSFPItem> items, VariantVep variant) {
+		return new ExecuteContext(
+				() -> {
+					conservationLoads.incrementAndGet();
+					return null;
+				},
+				() -> {
+					dbNSFPLoads.incrementAndGet();
+					return items;
+				},
+				() -> variant
+		);
+	}
+
+	/**
+	 * Поиск без индекса - так транскрипт искался до перехода на ленивое вычисление
+	 */
+	private static DbNSFPItemFacetTranscript findDbNSFPTranscript(List<DbNSFPItem> items, String transcriptId) {
+		List<DbNSFPItemFacetTranscript> findTranscripts = items.stream()
+				.flatMap(dbNSFPItem -> dbNSFPItem.facets.stream())
+				.flatMap(dbNSFPItemFacet -> dbNSFPItemFacet.transcripts.stream())
+				.filter(dbNSFPItemFacetTranscript -> transcriptId.equals(dbNSFPItemFacetTranscript.ensemblTranscriptId))
+				.collect(Collectors.toList());
+		Assert.assertTrue(findTranscripts.size() <= 1);
+		return (findTranscripts.isEmpty()) ? null : findTranscripts.get(0);
+	}
+
+	private static List<DbNSFPItem> buildDbNSFPItems() {
+		return Arrays.asList(
+				buildDbNSFPItem(
+						buildFacet("ENST1", "ENST3"),
+						buildFacet("ENST2")
+				),
+				buildDbNSFPItem(
+						buildFacet("ENST3")
+				)
+		);
+	}
+
+	private static DbNSFPItem buildDbNSFPItem(DbNSFPItemFacet... facets) {
+		return new DbNSFPItem(null, null, null, Collections.emptyList(), Arrays.asList(facets));
+	}
+
+	private static DbNSFPItemFacet buildFacet(String... transcriptIds) {
+		List<DbNSFPItemFacetTranscript> transcripts = new ArrayList<>();
+		for (String transcriptId : transcriptIds) {
+			transcripts.add(new DbNSFPItemFacetTranscript(
+					transcriptId,
+					null, null, null, null, null, null, null, null, null, null,
+					"gene_" + transcriptId, null, null, null, null, null, null,
+					null, null, null, null, null, null
+			));
+		}
+		return new DbNSFPItemFacet(
+				null, null, null, null, null, null, null, null, null, null, null,
+				null, null, null, null, null, null,
+				transcripts
+		);
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.processing.utils;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONStyle;
+import net.minidev.json.parser.JSONParser;
+import org.forome.annotation.annotator.writer.AnfisaJsonWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Сверка с эталоном - прежним способом построения записи (сериализация результата graphql в строку и повторный разбор):
+ * итоговые байты записи должны совпадать
+ */
+public class GraphQLDataUtilsTest {
+
+	@Test
+	public void test() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			Random random = new Random(i);
+			Map<String, Object> data = buildData(random);
+
+			JSONObject expected = buildAnfisa();
+			expected.merge(legacyToJSON(data));
+
+			JSONObject actual = buildAnfisa();
+			actual.merge(GraphQLDataUtils.toJSON(data));
+
+			Assert.assertEquals(expected.toJSONString(), actual.toJSONString());
+			Assert.assertArrayEquals(legacyWrite(expected), write(actual));
+		}
+	}
+
+	private static JSONObject legacyToJSON(Map<String, Object> data) throws Exception {
+		return (JSONObject) new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(
+				new JSONObject(data).toJSONString(JSONStyle.NO_COMPRESS)
+		);
+	}
+
+	private static byte[] legacyWrite(JSONObject record) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		os.write(record.toJSONString().getBytes(StandardCharsets.UTF_8));
+		os.write(System.lineSeparator().getBytes(StandardCharsets.UTF_8));
+		return os.toByteArray();
+	}
+
+	private static byte[] write(JSONObject record) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (AnfisaJsonWriter writer = new AnfisaJsonWriter(os)) {
+			writer.write(record);
+		}
+		return os.toByteArray();
+	}
+
+	private static JSONObject buildAnfisa() {
+		JSONObject view = new JSONObject();
+		view.put("general", new JSONObject() {{
+			put("alt", "T");
+		}});
+		JSONObject filters = new JSONObject();
+		filters.put("chromosome", "chr1");
+		JSONObject data = new JSONObject();
+		data.put("label", "label \"quoted\" / slash");
+
+		JSONObject out = new JSONObject();
+		out.put("_view", view);
+		out.put("_filters", filters);
+		out.put("__data", data);
+		return out;
+	}
+
+	private static Map<String, Object> buildData(Random random) {
+		Map<String, Object> filters = new LinkedHashMap<>();
+		filters.put("start", random.nextInt(250000000));
+		filters.put("gnomad_total_af", random.nextDouble() / 1000);
+		filters.put("gnomad_af_fam", random.nextDouble());
+		filters.put("gnomad_pop_max_an", random.nextLong());
+		filters.put("small", 1.0E-7 * random.nextDouble());
+		filters.put("round", 0.5);
+		filters.put("float", random.nextFloat());
+		filters.put("has_variant", Arrays.asList("proband", "mother"));
+		filters.put("dist_from_exon", Arrays.asList(random.nextDouble() * 100, 0.0));
+		filters.put("empty", null);
+		filters.put("lof", random.nextBoolean());
+
+		List<Object> transcripts = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			Map<String, Object> transcript = new LinkedHashMap<>();
+			transcript.put("id", "ENST0000" + random.nextInt(1000000));
+			transcript.put("polyphen2_hdiv_score", random.nextDouble());
+			transcript.put("symbol", "Юникод\t\u0001");
+			transcripts.add(transcript);
+		}
+		Map<String, Object> general = new LinkedHashMap<>();
+		general.put("transcripts", transcripts);
+
+		Map<String, Object> view = new LinkedHashMap<>();
+		view.put("general", general);
+
+		Map<String, Object> data = new LinkedHashMap<>();
+		data.put("record_type", "variant");
+		data.put("_filters", filters);
+		data.put("_view", view);
+		data.put("__data", new LinkedHashMap<String, Object>() {{
+			put("version", 1);
+		}});
+		return data;
+	}
+}
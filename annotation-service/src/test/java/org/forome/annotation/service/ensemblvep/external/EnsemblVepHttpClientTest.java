@@ -0,0 +1,203 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.ensemblvep.external;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+import org.apache.http.HttpHost;
+import org.forome.core.struct.Chromosome;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class EnsemblVepHttpClientTest {
+
+	private static final EnsemblVepHttpClient.BatchEndpoint BATCH_ID = new EnsemblVepHttpClient.BatchEndpoint(
+			"/vep/human/id", "ids"
+	);
+
+	private HttpServer server;
+
+	private final AtomicInteger postRequests = new AtomicInteger();
+	private final AtomicInteger tooManyRequests = new AtomicInteger();
+
+	/**
+	 * Сколько раз подряд заглушка отвечает 429
+	 */
+	private volatile int rejectRequests;
+
+	@Before
+	public void init() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/vep/human/id", exchange -> batch(exchange, "ids"));
+		server.createContext("/vep/human/region", exchange -> batch(exchange, "variants"));
+		server.createContext("/vep/human/region/", exchange -> {
+			send(exchange, 200, "[{\"input\": \"" + exchange.getRequestURI().getPath() + "\"}]");
+		});
+		server.start();
+	}
+
+	@After
+	public void destroy() {
+		server.stop(0);
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		EnsemblVepHttpClient client = buildClient();
+		try {
+			List<CompletableFuture<JSONArray>> futures = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				futures.add(client.request(BATCH_ID, "rs" + i));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				JSONArray result = futures.get(i).get(10, TimeUnit.SECONDS);
+				Assert.assertEquals(1, result.size());
+				Assert.assertEquals("rs" + i, ((JSONObject) result.get(0)).getAsString("id"));
+			}
+			//Запросы собраны в пакеты
+			Assert.assertTrue(postRequests.get() < futures.size());
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testTooManyRequests() throws Exception {
+		rejectRequests = 2;
+		EnsemblVepHttpClient client = buildClient();
+		try {
+			JSONArray result = client.request(BATCH_ID, "rs1").get(10, TimeUnit.SECONDS);
+			Assert.assertEquals("rs1", ((JSONObject) result.get(0)).getAsString("id"));
+			Assert.assertEquals(2, tooManyRequests.get());
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testSingle() throws Exception {
+		EnsemblVepHttpClient client = buildClient();
+		try {
+			JSONArray result = client.request("/vep/human/region/1:100:100/A").get(10, TimeUnit.SECONDS);
+			Assert.assertEquals("/vep/human/region/1:100:100/A", ((JSONObject) result.get(0)).getAsString("input"));
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testRegionBatch() throws Exception {
+		EnsemblVepExternalService service = new EnsemblVepExternalService(buildClient());
+		try {
+			List<CompletableFuture<JSONObject>> futures = new ArrayList<>();
+			for (int i = 0; i < 50; i++) {
+				futures.add(service.getVepJson(Chromosome.of("1"), 100 + i, 100 + i, "A", "G"));
+			}
+			//Вставка: пустой референсный аллель
+			futures.add(service.getVepJson(Chromosome.of("X"), 201, 200, "", "T"));
+			for (int i = 0; i < 50; i++) {
+				JSONObject result = futures.get(i).get(10, TimeUnit.SECONDS);
+				Assert.assertEquals(String.format("1 %s %s A/G +", 100 + i, 100 + i), result.getAsString("input"));
+			}
+			Assert.assertEquals("X 201 200 -/T +", futures.get(50).get(10, TimeUnit.SECONDS).getAsString("input"));
+			//Запросы собраны в пакеты, GET /vep/human/region/... не используется
+			Assert.assertTrue(postRequests.get() < futures.size());
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testEnsemblInput() {
+		//snv
+		Assert.assertEquals("1 100 100 A/G +", EnsemblVepExternalService.toEnsemblInput("1", 100, "A", "G"));
+		//Делеция: опорный нуклеотид отбрасывается
+		Assert.assertEquals("1 101 101 T/- +", EnsemblVepExternalService.toEnsemblInput("1", 100, "AT", "A"));
+		Assert.assertEquals("1 101 103 TGC/- +", EnsemblVepExternalService.toEnsemblInput("1", 100, "ATGC", "A"));
+		//Вставка: start = end + 1
+		Assert.assertEquals("1 101 100 -/T +", EnsemblVepExternalService.toEnsemblInput("1", 100, "A", "AT"));
+		Assert.assertEquals("X 101 100 -/TTG +", EnsemblVepExternalService.toEnsemblInput("X", 100, "A", "ATTG"));
+		//Делеция со вставкой
+		Assert.assertEquals("1 101 102 CG/T +", EnsemblVepExternalService.toEnsemblInput("1", 100, "ACG", "AT"));
+	}
+
+	private EnsemblVepHttpClient buildClient() throws IOException {
+		return new EnsemblVepHttpClient(
+				new HttpHost("localhost", server.getAddress().getPort()),
+				20, 100, 2,
+				(t, e) -> Assert.fail(e.getMessage())
+		);
+	}
+
+	/**
+	 * Пакетный endpoint: ответ на каждый элемент поля field, с полем input, как у ensembl-vep
+	 */
+	private void batch(HttpExchange exchange, String field) throws IOException {
+		postRequests.incrementAndGet();
+		if (rejectRequests > 0) {
+			rejectRequests--;
+			tooManyRequests.incrementAndGet();
+			exchange.getResponseHeaders().add("Retry-After", "0.1");
+			send(exchange, 429, "{\"error\": \"Too many requests\"}");
+			return;
+		}
+
+		JSONObject body;
+		try (InputStream is = exchange.getRequestBody()) {
+			body = (JSONObject) new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(is);
+		} catch (Exception e) {
+			send(exchange, 400, "{\"error\": \"Bad request\"}");
+			return;
+		}
+
+		JSONArray response = new JSONArray();
+		for (Object input : (JSONArray) body.get(field)) {
+			JSONObject item = new JSONObject();
+			item.put("input", input);
+			item.put("id", input);
+			response.add(item);
+		}
+		send(exchange, 200, response.toJSONString());
+	}
+
+	private static void send(HttpExchange exchange, int statusCode, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.metrics;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.parser.JSONParser;
+import org.forome.annotation.utils.Statistics;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class MetricsServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testBuild() {
+		MetricsService metricsService = new MetricsService()
+				.register("first", () -> 1)
+				.register("broken", () -> {
+					throw new RuntimeException("Test exception");
+				})
+				.register("last", () -> "value");
+
+		boolean enabled = Statistics.isEnabled();
+		try {
+			Statistics.setEnabled(false);
+			JSONObject metrics = metricsService.build();
+
+			//Ошибка одной секции не мешает остальным
+			Assert.assertEquals(
+					new HashSet<>(Arrays.asList("time", "statistics", "first", "broken", "last")),
+					metrics.keySet()
+			);
+			Assert.assertEquals(false, metrics.get("statistics"));
+			Assert.assertEquals(1, metrics.get("first"));
+			Assert.assertNull(metrics.get("broken"));
+			Assert.assertEquals("value", metrics.get("last"));
+
+			Statistics.setEnabled(true);
+			Assert.assertEquals(true, metricsService.build().get("statistics"));
+		} finally {
+			Statistics.setEnabled(enabled);
+		}
+	}
+
+	@Test
+	public void testBuildThroughput() {
+		Throughput throughput = new Throughput();
+		throughput.start();
+		throughput.start();
+		throughput.complete();
+
+		JSONObject out = MetricsService.buildThroughput(throughput);
+		Assert.assertEquals(1L, out.get("variants"));
+		Assert.assertEquals(1, out.get("in_flight"));
+		Assert.assertTrue(out.containsKey("variants_per_second"));
+		Assert.assertTrue(out.containsKey("variants_per_second_average"));
+	}
+
+	@Test
+	public void testDump() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metrics.json");
+		MetricsService metricsService = new MetricsService().register("section", () -> 42);
+
+		metricsService.dump(file);
+		Assert.assertEquals(42, read(file).get("section"));
+
+		//Файл перезаписывается целиком, временный файл не остается
+		metricsService.register("section", () -> 43);
+		metricsService.dump(file);
+		Assert.assertEquals(43, read(file).get("section"));
+		Assert.assertEquals(1, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testStartDump() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metrics.json");
+		try (MetricsService metricsService = new MetricsService().register("section", () -> 42)) {
+			try {
+				metricsService.startDump(file, 0);
+				Assert.fail();
+			} catch (IllegalArgumentException ignore) {
+			}
+
+			metricsService.startDump(file, 1);
+			try {
+				metricsService.startDump(file, 1);
+				Assert.fail();
+			} catch (IllegalStateException ignore) {
+			}
+
+			//Первое сохранение - сразу после старта
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (!Files.exists(file) && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(42, read(file).get("section"));
+		}
+	}
+
+	private static JSONObject read(Path file) throws Exception {
+		String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		return (JSONObject) new JSONParser(JSONParser.DEFAULT_PERMISSIVE_MODE).parse(content);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ThroughputTest {
+
+	private static final double DELTA = 0.000001;
+
+	private final AtomicLong nanoTime = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+	private final Throughput throughput = new Throughput(nanoTime::get);
+
+	@Test
+	public void testCounters() {
+		throughput.start();
+		throughput.start();
+		throughput.start();
+		throughput.complete();
+		throughput.complete();
+
+		Assert.assertEquals(2, throughput.getTotal());
+		Assert.assertEquals(1, throughput.getInFlight());
+	}
+
+	@Test
+	public void testRate() {
+		advance(500);
+		complete(10);
+		//Текущая (неполная) секунда не учитывается
+		Assert.assertEquals(0, throughput.getRecentRate(), DELTA);
+
+		advance(1000);
+		Assert.assertEquals(10, throughput.getRecentRate(), DELTA);
+		complete(20);
+
+		advance(1000);
+		Assert.assertEquals(15, throughput.getRecentRate(), DELTA);
+		Assert.assertEquals(30 / 2.5, throughput.getAverageRate(), DELTA);
+
+		//Через минуту старые секунды выходят из окна, средняя скорость считается от старта
+		advance(68_000);
+		Assert.assertEquals(0, throughput.getRecentRate(), DELTA);
+		Assert.assertEquals(30 / 70.5, throughput.getAverageRate(), DELTA);
+		Assert.assertEquals(30, throughput.getTotal());
+	}
+
+	@Test
+	public void testRotation() {
+		advance(500);
+		complete(5);
+
+		//Та же ячейка кольца, но следующая минута: старый счетчик сбрасывается
+		advance(60_000);
+		complete(3);
+
+		advance(1000);
+		Assert.assertEquals(3 / 60.0, throughput.getRecentRate(), DELTA);
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		int threads = 8;
+		int iterations = 10_000;
+
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(new Thread(() -> {
+				for (int j = 0; j < iterations; j++) {
+					throughput.start();
+					throughput.complete();
+					//Часть записей попадает в следующую секунду, в новую ячейку кольца
+					if (j == iterations / 2) {
+						nanoTime.compareAndSet(TimeUnit.HOURS.toNanos(1), TimeUnit.HOURS.toNanos(1) + TimeUnit.SECONDS.toNanos(1));
+					}
+				}
+			}));
+		}
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		Assert.assertEquals(threads * iterations, throughput.getTotal());
+		Assert.assertEquals(0, throughput.getInFlight());
+
+		//Ни один инкремент не потерян при смене секунды в ячейке
+		advance(1000);
+		Assert.assertEquals(threads * iterations / 2.0, throughput.getRecentRate(), DELTA);
+	}
+
+	private void complete(int count) {
+		for (int i = 0; i < count; i++) {
+			throughput.start();
+			throughput.complete();
+		}
+	}
+
+	private void advance(long millis) {
+		nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.external.httprequest;
+
+import org.apache.http.HttpHost;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+
+public class HttpClientPoolTest {
+
+	@Test
+	public void testReuse() throws IOException {
+		HttpClientPool pool = HttpClientPool.get(new URL("http://localhost:18290"));
+		try {
+			//Все источники одного хоста используют общий клиент
+			Assert.assertSame(pool, HttpClientPool.get(new URL("http://localhost:18290/get")));
+			Assert.assertSame(pool, HttpClientPool.get(new HttpHost("localhost", 18290, "http")));
+			Assert.assertTrue(HttpClientPool.getPools().contains(pool));
+		} finally {
+			pool.close();
+		}
+
+		//После закрытия клиент для хоста создается заново
+		Assert.assertFalse(HttpClientPool.getPools().contains(pool));
+		HttpClientPool other = HttpClientPool.get(new URL("http://localhost:18290"));
+		try {
+			Assert.assertNotSame(pool, other);
+		} finally {
+			other.close();
+		}
+	}
+
+	@Test
+	public void testScheme() throws IOException {
+		HttpClientPool http = HttpClientPool.get(new URL("http://localhost:18291"));
+		HttpClientPool https = HttpClientPool.get(new URL("https://localhost:18291"));
+		try {
+			Assert.assertNotSame(http, https);
+			Assert.assertEquals("http", http.httpHost.getSchemeName());
+			Assert.assertEquals("https", https.httpHost.getSchemeName());
+		} finally {
+			http.close();
+			https.close();
+		}
+	}
+
+	@Test
+	public void testLimits() throws IOException {
+		HttpClientPool pool = HttpClientPool.get(new URL("http://localhost:18292"), 10);
+		try {
+			Assert.assertEquals(10, pool.getStats().getMax());
+
+			//Размер пула увеличивается до наибольшего из запрошенных, но не уменьшается
+			Assert.assertSame(pool, HttpClientPool.get(new URL("http://localhost:18292"), 20));
+			Assert.assertEquals(20, pool.getStats().getMax());
+
+			Assert.assertSame(pool, HttpClientPool.get(new URL("http://localhost:18292"), 5));
+			Assert.assertEquals(20, pool.getStats().getMax());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testIllegalLimit() throws IOException {
+		HttpClientPool.get(new URL("http://localhost:18293"), 0);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source.internal.fasta;
+
+import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
+import org.forome.core.struct.sequence.Sequence;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class FastaSourceIndexedTest {
+
+	@Test
+	public void test() throws URISyntaxException, IOException {
+		Path path = Paths.get(getClass().getClassLoader().getResource("fasta/reference.fa").toURI());
+		try (FastaSourceIndexed fastaSource = new FastaSourceIndexed(path)) {
+			//Интервал на переносе строки
+			Sequence sequence1 = fastaSource.getSequence(Interval.of(Chromosome.of("1"), 9, 12));
+			Assert.assertEquals("ACGT", sequence1.getValue());
+
+			Sequence sequence2 = fastaSource.getSequence(Interval.of(Chromosome.of("2"), 4, 5));
+			Assert.assertEquals("TG", sequence2.getValue());
+
+			//Позиции за концом хромосомы - неизвестные нуклеотиды, длина последовательности сохраняется
+			Sequence sequence3 = fastaSource.getSequence(Interval.of(Chromosome.of("2"), 7, 20));
+			Assert.assertEquals("GGNNNNNNNNNNNN", sequence3.getValue());
+
+			Sequence sequence4 = fastaSource.getSequence(Interval.of(Chromosome.of("2"), 10, 12));
+			Assert.assertEquals("NNN", sequence4.getValue());
+
+			//Последняя строка хромосомы короче остальных
+			Sequence sequence5 = fastaSource.getSequence(Interval.of(Chromosome.of("1"), 1, 18));
+			Assert.assertEquals("ACGTACGTACGTACGTNN", sequence5.getValue());
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		Path path = Paths.get(getClass().getClassLoader().getResource("fasta/reference.fa").toURI());
+		try (FastaSourceIndexed fastaSource = new FastaSourceIndexed(path)) {
+			String expected = "ACGTACGTACGTACGTNN";
+			ExecutorService executorService = Executors.newFixedThreadPool(8);
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < 8; t++) {
+					futures.add(executorService.submit(() -> {
+						for (int i = 0; i < 1000; i++) {
+							int start = 1 + i % 18;
+							int end = Math.min(18, start + i % 7);
+							Sequence sequence = fastaSource.getSequence(Interval.of(Chromosome.of("1"), start, end));
+							Assert.assertEquals(expected.substring(start - 1, end), sequence.getValue());
+						}
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get(10, TimeUnit.SECONDS);
+				}
+			} finally {
+				executorService.shutdownNow();
+			}
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils;
+
+import org.forome.annotation.exception.AnnotatorException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class BoundedThreadPoolExecutorTest {
+
+	@Test
+	public void testCallerRuns() throws Exception {
+		BoundedThreadPoolExecutor executor = new BoundedThreadPoolExecutor(
+				"TestExecutor", 1, 2, BoundedThreadPoolExecutor.Overflow.CALLER_RUNS, false, null
+		);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			block(executor, release);
+			executor.submit(() -> null);
+			executor.submit(() -> null);
+
+			//Очередь заполнена - задача выполняется в вызывающем потоке
+			Thread caller = Thread.currentThread();
+			Future<Boolean> future = executor.submit(() -> Thread.currentThread() == caller);
+			Assert.assertTrue(future.get());
+			Assert.assertEquals(1, executor.getCallerRunsTasks());
+			Assert.assertEquals(2, executor.getPeakQueue());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+		Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testReject() throws Exception {
+		BoundedThreadPoolExecutor executor = new BoundedThreadPoolExecutor(
+				"TestExecutor", 1, 4, BoundedThreadPoolExecutor.Overflow.REJECT, false, null
+		);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			block(executor, release);
+			executor.checkCapacity(2);
+			for (int i = 0; i < 3; i++) {
+				executor.submit(() -> null);
+			}
+
+			//Пачка не помещается в очередь
+			try {
+				executor.checkCapacity(2);
+				Assert.fail();
+			} catch (AnnotatorException e) {
+				Assert.assertEquals("server_overloaded", e.getCode());
+				Assert.assertTrue((int) e.getParameters().get("retry_after") >= 1);
+			}
+
+			executor.submit(() -> null);
+			try {
+				executor.submit(() -> null);
+				Assert.fail();
+			} catch (AnnotatorException e) {
+				Assert.assertEquals("server_overloaded", e.getCode());
+			}
+			Assert.assertEquals(3, executor.getRejectedTasks());
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+		Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Занимает единственный поток пула до release
+	 */
+	private static void block(BoundedThreadPoolExecutor executor, CountDownLatch release) throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		executor.submit(() -> {
+			started.countDown();
+			release.await();
+			return null;
+		});
+		started.await();
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBucketBounds() {
+		long[] values = { 0, 1, 15, 16, 17, 31, 32, 1000, 999_999, 1_000_000_000L, Long.MAX_VALUE };
+		for (long value : values) {
+			long highest = LatencyHistogram.highestValue(LatencyHistogram.index(value));
+			Assert.assertTrue(highest >= value);
+			//Относительная погрешность - не больше 1/16
+			Assert.assertTrue(highest - value <= value / 16);
+		}
+	}
+
+	@Test
+	public void testPercentile() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		Assert.assertEquals(0, histogram.getValueAtPercentile(50));
+
+		for (int i = 1; i <= 100; i++) {
+			histogram.record(i * 1000L);
+		}
+		long p50 = histogram.getValueAtPercentile(50);
+		long p99 = histogram.getValueAtPercentile(99);
+		Assert.assertTrue(p50 >= 50_000 && p50 <= 50_000 + 50_000 / 16);
+		Assert.assertTrue(p99 >= 99_000 && p99 <= 99_000 + 99_000 / 16);
+		Assert.assertTrue(histogram.getValueAtPercentile(100) >= 100_000);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+public class BgzfInputStreamTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRead() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		byte[] data = buildData();
+		write(file, data);
+
+		Assert.assertTrue(BgzfInputStream.isBgzf(file));
+		for (int threads : new int[]{1, 4}) {
+			try (InputStream is = new BgzfInputStream(file, threads)) {
+				Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+			}
+		}
+	}
+
+	@Test
+	public void testReadFromVirtualOffset() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		byte[] data = buildData();
+		write(file, data);
+
+		BgzfIndex index = BgzfIndex.read(BgzfIndex.getPath(file));
+		int position = data.length / 3 + 11;
+		try (InputStream is = new BgzfInputStream(file, index.getVirtualOffset(position), 2)) {
+			Assert.assertArrayEquals(Arrays.copyOfRange(data, position, data.length), IOUtils.toByteArray(is));
+		}
+	}
+
+	@Test
+	public void testGetVirtualOffset() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		byte[] data = buildData();
+		write(file, data);
+
+		//Чтение возвращает данные одного блока: смещение байта - смещение перед чтением плюс его индекс
+		BgzfIndex index = BgzfIndex.read(BgzfIndex.getPath(file));
+		List<long[]> checks = new ArrayList<>();
+		try (BgzfInputStream is = new BgzfInputStream(file, 2)) {
+			byte[] buffer = new byte[128 * 1024];
+			int position = 0;
+			long virtualOffset = is.getVirtualOffset();
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				int middle = n / 2;
+				Assert.assertEquals(index.getVirtualOffset(position + middle), virtualOffset + middle);
+				checks.add(new long[]{position + middle, virtualOffset + middle});
+				position += n;
+				virtualOffset = is.getVirtualOffset();
+			}
+			Assert.assertEquals(data.length, position);
+		}
+		Assert.assertTrue(checks.size() > 1);
+
+		for (long[] check : checks) {
+			try (InputStream is = new BgzfInputStream(file, check[1], 1)) {
+				Assert.assertArrayEquals(Arrays.copyOfRange(data, (int) check[0], data.length), IOUtils.toByteArray(is));
+			}
+		}
+	}
+
+	@Test
+	public void testGzipIsNotBgzf() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		try (OutputStream os = new GZIPOutputStream(Files.newOutputStream(file))) {
+			os.write(buildData());
+		}
+		Assert.assertFalse(BgzfInputStream.isBgzf(file));
+	}
+
+	private static void write(Path file, byte[] data) throws IOException {
+		try (BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 2, BgzfIndex.getPath(file), 6)) {
+			os.write(data);
+		}
+	}
+
+	private static byte[] buildData() {
+		Random random = new Random(0);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < 20_000; i++) {
+			String line = "chr1\t" + random.nextInt(1_000_000) + "\t.\tA\tG\t50\tPASS\t.\n";
+			baos.write(line.getBytes(StandardCharsets.UTF_8), 0, line.length());
+		}
+		return baos.toByteArray();
+	}
+}
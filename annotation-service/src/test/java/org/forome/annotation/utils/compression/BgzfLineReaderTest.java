@@ -0,0 +1,131 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BgzfLineReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadLine() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		List<String> lines = buildLines();
+		write(file, lines, "\n");
+
+		List<Long> lineOffsets = new ArrayList<>();
+		try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(file, 2))) {
+			long nextOffset = reader.getNextOffset();
+			for (String line : lines) {
+				Assert.assertEquals(line, reader.readLine());
+				Assert.assertTrue(reader.getLineOffset() >= nextOffset);
+				lineOffsets.add(reader.getLineOffset());
+				nextOffset = reader.getNextOffset();
+			}
+			Assert.assertNull(reader.readLine());
+		}
+
+		//Чтение со смещения начала строки начинается с нее
+		for (int i = 0; i < lines.size(); i += 997) {
+			try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(file, lineOffsets.get(i), 1))) {
+				Assert.assertEquals(lines.get(i), reader.readLine());
+			}
+		}
+	}
+
+	@Test
+	public void testContinueFromNextOffset() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		List<String> lines = buildLines();
+		write(file, lines, "\r\n");
+
+		List<Long> nextOffsets = new ArrayList<>();
+		try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(file, 1))) {
+			for (String line : lines) {
+				Assert.assertEquals(line, reader.readLine());
+				nextOffsets.add(reader.getNextOffset());
+			}
+		}
+
+		//Чтение с сохраненного смещения продолжается со следующей строки, в том числе на границе блока
+		for (int i = 0; i < lines.size(); i += 997) {
+			try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(file, nextOffsets.get(i), 2))) {
+				for (int j = i + 1; j < lines.size(); j++) {
+					Assert.assertEquals(lines.get(j), reader.readLine());
+				}
+				Assert.assertNull(reader.readLine());
+			}
+		}
+	}
+
+	@Test
+	public void testLastLineWithoutSeparator() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("in.vcf.gz");
+		try (BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 1)) {
+			os.write("a\nb".getBytes(StandardCharsets.UTF_8));
+		}
+		try (BgzfLineReader reader = new BgzfLineReader(new BgzfInputStream(file, 1))) {
+			Assert.assertEquals("a", reader.readLine());
+			Assert.assertEquals("b", reader.readLine());
+			Assert.assertNull(reader.readLine());
+		}
+	}
+
+	private static byte[] write(Path file, List<String> lines, String separator) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (String line : lines) {
+			builder.append(line).append(separator);
+		}
+		byte[] data = builder.toString().getBytes(StandardCharsets.UTF_8);
+		try (BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 2, BgzfIndex.getPath(file), 6)) {
+			os.write(data);
+		}
+		return data;
+	}
+
+	/**
+	 * Строки разной длины, в том числе длиннее блока
+	 */
+	private static List<String> buildLines() {
+		Random random = new Random(0);
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 20_000; i++) {
+			StringBuilder line = new StringBuilder("chr1\t").append(random.nextInt(1_000_000)).append("\t.\tA\tG\t50\tPASS\t");
+			int info = (i % 5000 == 4999) ? 100_000 : random.nextInt(40);
+			for (int j = 0; j < info; j++) {
+				line.append((char) ('a' + random.nextInt(26)));
+			}
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+}
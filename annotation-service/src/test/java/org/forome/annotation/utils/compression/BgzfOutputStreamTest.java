@@ -0,0 +1,177 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.utils.compression;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class BgzfOutputStreamTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadByGzip() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("out.json.gz");
+		byte[] data = buildData();
+
+		write(file, data);
+
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+			Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+		}
+	}
+
+	@Test
+	public void testIndex() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("out.json.gz");
+		byte[] data = buildData();
+
+		write(file, data);
+
+		BgzfIndex index = BgzfIndex.read(BgzfIndex.getPath(file));
+		Assert.assertTrue(index.size() >= data.length / BgzfOutputStream.BLOCK_DATA_SIZE);
+
+		//Распаковка с произвольной позиции: читаем блок по виртуальному смещению
+		long position = data.length / 2 + 17;
+		long virtualOffset = index.getVirtualOffset(position);
+		long blockOffset = virtualOffset >>> 16;
+		int offsetInBlock = (int) (virtualOffset & 0xffff);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+			raf.seek(blockOffset);
+			byte[] header = new byte[18];
+			raf.readFully(header);
+			int blockSize = ((header[16] & 0xff) | ((header[17] & 0xff) << 8)) + 1;
+
+			byte[] block = new byte[blockSize];
+			raf.seek(blockOffset);
+			raf.readFully(block);
+
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(block))) {
+				byte[] content = IOUtils.toByteArray(is);
+				Assert.assertEquals(data[(int) position], content[offsetInBlock]);
+			}
+		}
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("out.json.gz");
+		byte[] data = buildData();
+		int checkpoint = data.length / 3;
+
+		//Прерванная запись: после flush запоминаем размер файла, далее пишем "мусор" без закрытия потока
+		long size;
+		BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 2, null, 6);
+		os.write(data, 0, checkpoint);
+		os.flush();
+		size = Files.size(file);
+		os.write(new byte[200_000]);
+		os.flush();
+
+		try (BgzfOutputStream appendOs = BgzfOutputStream.append(file, size, 2, BgzfIndex.getPath(file), 6)) {
+			Assert.assertEquals(checkpoint, appendOs.getPosition());
+			appendOs.write(data, checkpoint, data.length - checkpoint);
+		}
+
+		try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+			Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+		}
+		BgzfIndex index = BgzfIndex.read(BgzfIndex.getPath(file));
+		Assert.assertTrue(index.size() >= data.length / BgzfOutputStream.BLOCK_DATA_SIZE);
+	}
+
+	@Test
+	public void testSharedExecutor() throws IOException {
+		byte[] data = buildData();
+
+		//Несколько файлов подряд сжимаются одним пулом: потоки не создаются на каждый файл,
+		//закрытие файла не останавливает пул
+		AtomicInteger threads = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(2, r -> {
+			threads.incrementAndGet();
+			Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			return thread;
+		});
+		try {
+			for (int i = 0; i < 3; i++) {
+				Path file = folder.getRoot().toPath().resolve("out." + i + ".json.gz");
+				try (BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), executor, 2)) {
+					os.write(data);
+				}
+				Assert.assertFalse(executor.isShutdown());
+
+				try (InputStream is = new GZIPInputStream(Files.newInputStream(file))) {
+					Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+				}
+			}
+			Assert.assertEquals(2, threads.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void write(Path file, byte[] data) throws IOException {
+		try (BgzfOutputStream os = new BgzfOutputStream(Files.newOutputStream(file), 4, BgzfIndex.getPath(file), 6)) {
+			int offset = 0;
+			Random random = new Random(1);
+			while (offset < data.length) {
+				int size = Math.min(data.length - offset, random.nextInt(100_000));
+				os.write(data, offset, size);
+				offset += size;
+				if (random.nextInt(10) == 0) {
+					os.flush();
+				}
+			}
+		}
+	}
+
+	private static byte[] buildData() {
+		Random random = new Random(0);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for (int i = 0; i < 20_000; i++) {
+			String line = "{\"_filters\": {\"chromosome\": \"chr1\", \"start\": " + random.nextInt() + "}}\n";
+			baos.write(line.getBytes(StandardCharsets.UTF_8), 0, line.length());
+		}
+		//Несжимаемые данные
+		byte[] noise = new byte[200_000];
+		random.nextBytes(noise);
+		baos.write(noise, 0, noise.length);
+		return baos.toByteArray();
+	}
+}
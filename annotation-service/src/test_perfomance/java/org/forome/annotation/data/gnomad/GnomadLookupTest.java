@@ -0,0 +1,270 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.data.gnomad;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.forome.annotation.data.gnomad.datasource.http.GnomadDataSourceHttp;
+import org.forome.annotation.data.gnomad.struct.GnamadGroup;
+import org.forome.annotation.data.gnomad.struct.GnomadResult;
+import org.forome.annotation.matcher.SequenceMatcher;
+import org.forome.annotation.service.source.struct.Record;
+import org.forome.annotation.service.source.struct.Source;
+import org.forome.annotation.service.source.tmp.GnomadDataResponse;
+import org.forome.astorage.core.data.Conservation;
+import org.forome.astorage.core.liftover.LiftoverConnector;
+import org.forome.core.struct.Assembly;
+import org.forome.core.struct.Chromosome;
+import org.forome.core.struct.Interval;
+import org.forome.core.struct.Position;
+import org.forome.core.struct.sequence.Sequence;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Сравнение получения gnomAD для варианта: два вызова getData ("e" и "g") с подсчетом сумм
+ * по строковым ключам (как было раньше) и однопроходный getRecords с разбором в примитивы.
+ * Источник - заглушка с фиксированным ответом, измеряется только обработка на стороне аннотатора.
+ */
+public class GnomadLookupTest {
+
+	private final static Logger log = LoggerFactory.getLogger(GnomadLookupTest.class);
+
+	private static final int WARMUP = 10000;
+	private static final int ITERATIONS = 200000;
+
+	private static final Chromosome CHROMOSOME = Chromosome.of("1");
+	private static final int POSITION = 1000000;
+
+	@Test
+	public void test() throws Exception {
+		JSONArray jRecords = new JSONArray();
+		jRecords.add(buildRecord("e", "A", "G", 1));
+		jRecords.add(buildRecord("g", "A", "G", 2));
+		jRecords.add(buildRecord("e", "A", "T", 3));
+
+		GnomadDataSourceHttp dataSource = new GnomadDataSourceHttp(
+				new LiftoverConnector(),
+				assembly -> new StubSource(jRecords)
+		);
+
+		Supplier<GnomadResult> legacy = () -> {
+			List<GnomadDataResponse> exomes = dataSource.getData(null, Assembly.GRCh37, null, CHROMOSOME, POSITION, "A", "G", "e");
+			List<GnomadDataResponse> genomes = dataSource.getData(null, Assembly.GRCh37, null, CHROMOSOME, POSITION, "A", "G", "g");
+			return LegacyAggregation.build(exomes, genomes);
+		};
+		Supplier<GnomadResult> singlePass = () -> GnomadConnectorImpl.build(
+				dataSource.getRecords(null, Assembly.GRCh37, null, CHROMOSOME, POSITION, "A", "G")
+		);
+
+		GnomadResult expected = legacy.get();
+		Assert.assertNotNull(expected);
+		Assert.assertEquals(expected, singlePass.get());
+
+		measure("two getData + string keys", legacy);
+		measure("single pass getRecords", singlePass);
+	}
+
+	private static JSONObject buildRecord(String source, String ref, String alt, int seed) {
+		JSONObject record = new JSONObject();
+		record.put("SOURCE", source);
+		record.put("REF", ref);
+		record.put("ALT", alt);
+		record.put("AN", 20000 + seed);
+		record.put("AC", 10 * seed);
+		record.put("AF", (10.0 * seed) / (20000 + seed));
+		record.put("nhomalt", seed);
+		record.put("hem", null);
+		for (String group : new String[]{ "oth", "amr", "raw", "fin", "afr", "nfe", "eas", "asj", "female", "male" }) {
+			JSONObject jGroup = new JSONObject();
+			jGroup.put("AN", 2000 + seed * group.length());
+			jGroup.put("AC", seed * group.charAt(0) % 17);
+			jGroup.put("AF", 0.001);
+			record.put(group, jGroup);
+		}
+		return record;
+	}
+
+	private static void measure(String name, Supplier<GnomadResult> supplier) {
+		for (int i = 0; i < WARMUP; i++) {
+			supplier.get();
+		}
+
+		long bytes1 = allocatedBytes();
+		long t1 = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			supplier.get();
+		}
+		long time = System.nanoTime() - t1;
+		long bytes = allocatedBytes() - bytes1;
+
+		log.debug("{}: {} ns/call, {} bytes/call", name, time / ITERATIONS, bytes / ITERATIONS);
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static class StubSource implements Source {
+
+		private final JSONArray jRecords;
+
+		private StubSource(JSONArray jRecords) {
+			this.jRecords = jRecords;
+		}
+
+		@Override
+		public JSONArray getGnomad(Position position) {
+			return (position.value == POSITION) ? jRecords : null;
+		}
+
+		@Override
+		public Record getRecord(Position position) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Sequence getFastaSequence(Interval interval) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Conservation getConservation(Position position) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public JSONArray getDbSNP(Interval interval) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public JSONArray getDbNSFP(Interval interval) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public JSONArray getSpliceAI(Interval interval) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Подсчет, как он был в GnomadConnectorImpl до перехода на GnomadRecord
+	 */
+	private static class LegacyAggregation {
+
+		private static GnomadResult build(List<GnomadDataResponse> exomes, List<GnomadDataResponse> genomes) {
+			List<GnomadDataResponse> overall = new ArrayList<>(exomes);
+			overall.addAll(genomes);
+			if (overall.isEmpty()) {
+				return null;
+			}
+
+			GnomadResult.Sum sumExomes = (exomes.isEmpty()) ? null : sum(exomes);
+			GnomadResult.Sum sumGenomes = (genomes.isEmpty()) ? null : sum(genomes);
+			GnomadResult.Sum sumOverall = sum(overall);
+
+			GnomadResult.Popmax popmax = popmax(overall, GnamadGroup.getByType(GnamadGroup.Type.GENERAL));
+			GnomadResult.Popmax widePopmax = popmax(overall, GnamadGroup.values());
+
+			Set<GnomadResult.Url> urls = new HashSet<>();
+			for (GnomadDataResponse item : overall) {
+				String chrom = item.getValue("CHROM");
+				long pos = ((Number) item.getValue("POS")).longValue();
+				String ref = item.getValue("REF");
+				String alt = item.getValue("ALT");
+
+				SequenceMatcher matcher = new SequenceMatcher(ref, alt);
+				List<String> a = new ArrayList<>();
+				List<String> b = new ArrayList<>();
+				int apos = 0;
+				int bpos = 0;
+				for (SequenceMatcher.Tuple3<Integer, Integer, Integer> match : matcher.getMatchingBlocks()) {
+					a.add(ref.substring(apos, match.value0));
+					apos = match.value0 + match.value2;
+					b.add(alt.substring(bpos, match.value1));
+					bpos = match.value1 + match.value2;
+				}
+
+				String newRef = String.join("", a);
+				String newAlt = String.join("", b);
+				if (newRef.isEmpty() || newAlt.isEmpty()) {
+					String firstMatch = String.valueOf(ref.charAt(0));
+					newRef = firstMatch + newRef;
+					newAlt = firstMatch + newAlt;
+				}
+				urls.add(new GnomadResult.Url(chrom, pos, newRef, newAlt));
+			}
+
+			return new GnomadResult(sumExomes, sumGenomes, sumOverall, popmax, widePopmax, urls);
+		}
+
+		private static GnomadResult.Sum sum(List<GnomadDataResponse> items) {
+			long an = count(items, "AN");
+			long ac = count(items, "AC");
+			double af = (an > 0) ? (double) ac / (double) an : 0;
+			long hom = count(items, "nhomalt");
+			Long hem = null;
+			for (GnomadDataResponse item : items) {
+				Number value = item.getValue("hem");
+				if (value == null) continue;
+				hem = (hem == null) ? value.longValue() : hem + value.longValue();
+			}
+			return new GnomadResult.Sum(an, ac, af, hom, hem);
+		}
+
+		private static GnomadResult.Popmax popmax(List<GnomadDataResponse> items, GnamadGroup[] groups) {
+			GnamadGroup group = null;
+			Double popmaxAF = null;
+			long popmaxAN = 0;
+			for (GnamadGroup iGroup : groups) {
+				long an = count(items, "AN_" + iGroup.name());
+				long ac = count(items, "AC_" + iGroup);
+				if (an == 0) {
+					continue;
+				}
+				double af = (double) ac / ((double) an);
+				if (popmaxAF == null || af > popmaxAF) {
+					group = iGroup;
+					popmaxAF = af;
+					popmaxAN = an;
+				}
+			}
+			return (group == null) ? null : new GnomadResult.Popmax(group, popmaxAF, popmaxAN);
+		}
+
+		private static long count(List<GnomadDataResponse> items, String column) {
+			long value = 0;
+			for (GnomadDataResponse item : items) {
+				Number number = item.getValue(column);
+				if (number == null) continue;
+				value += number.longValue();
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.processing;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import graphql.parser.Parser;
+import graphql.validation.Validator;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Накладные расходы graphql на один вариант, не зависящие от данных: разбор и валидация запроса.
+ * Сравнивается разбор запроса на каждое выполнение (как было раньше) с документом из PreparsedQuery.
+ */
+public class PreparsedQueryTest {
+
+	private final static Logger log = LoggerFactory.getLogger(PreparsedQueryTest.class);
+
+	private static final int WARMUP = 100;
+	private static final int ITERATIONS = 1000;
+
+	@Test
+	public void test() {
+		for (TypeQuery typeQuery : TypeQuery.values()) {
+			long t1 = System.nanoTime();
+			PreparsedQuery preparsedQuery = PreparsedQuery.get(typeQuery);
+			log.debug("{}, startup: {} ms", typeQuery, (System.nanoTime() - t1) / 1000000);
+
+			Assert.assertSame(preparsedQuery, PreparsedQuery.get(typeQuery));
+
+			ExecutionInput executionInput = ExecutionInput.newExecutionInput()
+					.query(preparsedQuery.query)
+					.build();
+
+			measure(typeQuery + ", parse per variant", () -> {
+				Document document = new Parser().parseDocument(preparsedQuery.query);
+				Assert.assertTrue(new Validator().validateDocument(preparsedQuery.schema, document).isEmpty());
+				return new PreparsedDocumentEntry(document);
+			});
+			measure(typeQuery + ", preparsed", () -> preparsedQuery.getDocument(executionInput, input -> {
+				throw new IllegalStateException();
+			}));
+		}
+	}
+
+	private static void measure(String name, Supplier<PreparsedDocumentEntry> supplier) {
+		for (int i = 0; i < WARMUP; i++) {
+			supplier.get();
+		}
+
+		long bytes1 = allocatedBytes();
+		long t1 = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			supplier.get();
+		}
+		long time = System.nanoTime() - t1;
+		long bytes = allocatedBytes() - bytes1;
+
+		log.debug("{}: {} ns/call, {} bytes/call", name, time / ITERATIONS, bytes / ITERATIONS);
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
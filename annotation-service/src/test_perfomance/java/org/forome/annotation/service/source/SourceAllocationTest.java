@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2020. Vladimir Ulitin, Partners Healthcare and members of Forome Association
+ *
+ *  Developed by Vladimir Ulitin and Michael Bouzinier
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ * 	 http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package org.forome.annotation.service.source;
+
+import net.minidev.json.JSONObject;
+import org.forome.annotation.config.source.SourceExternalConfig;
+import org.forome.annotation.service.source.external.ExternalDataSource;
+import org.forome.annotation.service.source.external.conservation.ConservationHttpRequest;
+import org.forome.annotation.service.source.external.dbNSFP.DbNSFPHttpRequest;
+import org.forome.annotation.service.source.external.dbSNP.DbSNPHttpRequest;
+import org.forome.annotation.service.source.external.fasta.FastaHttpRequest;
+import org.forome.annotation.service.source.external.gnomad.GnomadHttpRequest;
+import org.forome.annotation.service.source.external.source.ExternalSource;
+import org.forome.annotation.service.source.external.spliceai.SpliceAIHttpRequest;
+import org.forome.astorage.core.liftover.LiftoverConnector;
+import org.forome.core.struct.Assembly;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+/**
+ * Стоимость получения Source на каждый вариант: время и объем аллокаций на вызов.
+ * Сравнивается прежний путь (на каждый вариант - свой LiftoverConnector в InternalSource
+ * и свои объекты запросов в ExternalSource) с переиспользованием закешированных экземпляров.
+ */
+public class SourceAllocationTest {
+
+	private final static Logger log = LoggerFactory.getLogger(SourceAllocationTest.class);
+
+	private static final int WARMUP = 1000;
+	private static final int ITERATIONS = 100000;
+
+	/**
+	 * LiftoverConnector читает chain-файлы, поэтому на каждый вызов его создаем меньше раз
+	 */
+	private static final int LIFTOVER_WARMUP = 2;
+	private static final int LIFTOVER_ITERATIONS = 20;
+
+	@Test
+	public void test() throws Exception {
+		LiftoverConnector liftoverConnector = new LiftoverConnector();
+		ExternalDataSource dataSource = new ExternalDataSource(
+				new SourceExternalConfig(new JSONObject() {{
+					put("url", "http://localhost:8290");
+				}}),
+				liftoverConnector
+		);
+
+		Assert.assertSame(dataSource.getSource(Assembly.GRCh37), dataSource.getSource(Assembly.GRCh37));
+
+		//Было: InternalSource на каждый вариант создавал свой LiftoverConnector
+		measure("before, InternalSource: LiftoverConnector per variant",
+				LIFTOVER_WARMUP, LIFTOVER_ITERATIONS, LiftoverConnector::new
+		);
+
+		//Было: ExternalSource на каждый вариант, и на каждый запрос к нему - свой объект запроса
+		measure("before, ExternalSource: source and requests per variant", WARMUP, ITERATIONS, () -> {
+			ExternalSource source = new ExternalSource(dataSource, Assembly.GRCh37);
+			return new Object[]{
+					new FastaHttpRequest(dataSource.url),
+					new GnomadHttpRequest(source),
+					new DbSNPHttpRequest(source),
+					new DbNSFPHttpRequest(source),
+					new SpliceAIHttpRequest(source),
+					new ConservationHttpRequest(source)
+			};
+		});
+
+		//Стало: один Source на сборку и общий LiftoverConnector
+		measure("after, cached source", WARMUP, ITERATIONS, () -> dataSource.getSource(Assembly.GRCh37));
+	}
+
+	private static void measure(String name, int warmup, int iterations, Callable<Object> callable) throws Exception {
+		for (int i = 0; i < warmup; i++) {
+			callable.call();
+		}
+
+		long bytes1 = allocatedBytes();
+		long t1 = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			callable.call();
+		}
+		long time = System.nanoTime() - t1;
+		long bytes = allocatedBytes() - bytes1;
+
+		log.debug("{}: {} ns/call, {} bytes/call", name, time / iterations, bytes / iterations);
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+				.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}